@@ -25,25 +25,39 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Buffers metric values per metric name until they are old enough to be
+ * sent to the collector.
+ *
+ * Values are held in primitive timestamp/value arrays, one per series and
+ * guarded by the series itself, so puts for different metrics never contend
+ * and buffering a value does not box or allocate. A {@link TimelineMetric}
+ * with a value map is only built when the series is evicted. Series which
+ * stayed empty for longer than the max eviction time are removed, so names
+ * which are no longer reported do not stay in the cache.
+ */
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
 public class TimelineMetricsCache {
 
-  private final TimelineMetricHolder timelineMetricCache = new TimelineMetricHolder();
+  private final ConcurrentMap<String, MetricSeries> timelineMetricCache =
+    new ConcurrentSkipListMap<String, MetricSeries>();
   private static final Log LOG = LogFactory.getLog(TimelineMetric.class);
   public static final int MAX_RECS_PER_NAME_DEFAULT = 10000;
   public static final int MAX_EVICTION_TIME_MILLIS = 59000; // ~ 1 min
+  private static final int INITIAL_SERIES_CAPACITY = 16;
   private final int maxRecsPerName;
   private final int maxEvictionTimeInMillis;
   private boolean skipCounterTransform = true;
-  private final Map<String, Double> counterMetricLastValue = new HashMap<String, Double>();
+  private final AtomicLong lastIdleSweepMillis = new AtomicLong(System.currentTimeMillis());
 
   public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis) {
     this(maxRecsPerName, maxEvictionTimeInMillis, false);
@@ -56,130 +70,287 @@ public class TimelineMetricsCache {
     this.skipCounterTransform = skipCounterTransform;
   }
 
-  class TimelineMetricWrapper {
+  /**
+   * Buffered values of a single metric plus the state that outlives an
+   * eviction: the last buffered start time, used to drop duplicates, and the
+   * last raw counter value, used for counter deltas.
+   */
+  final class MetricSeries {
+    // Metric metadata, null while nothing is buffered
+    private TimelineMetric timelineMetric;
+    // Values are sorted by timestamp and live in [head, tail)
+    private long[] timestamps = new long[INITIAL_SERIES_CAPACITY];
+    private double[] values = new double[INITIAL_SERIES_CAPACITY];
+    private int head = 0;
+    private int tail = 0;
     private long timeDiff = -1;
     private long oldestTimestamp = -1;
-    private TimelineMetric timelineMetric;
 
-    TimelineMetricWrapper(TimelineMetric timelineMetric) {
-      this.timelineMetric = timelineMetric;
-      this.oldestTimestamp = timelineMetric.getStartTime();
-    }
+    private boolean hasEndOfBufferTimestamp = false;
+    private long endOfBufferTimestamp;
+    private boolean hasCounterLastValue = false;
+    private double counterLastValue;
 
-    private void updateTimeDiff(long timestamp) {
-      if (oldestTimestamp != -1 && timestamp > oldestTimestamp) {
-        timeDiff = timestamp - oldestTimestamp;
+    // Wall clock time of the last put, to find idle series
+    private long lastPutMillis = System.currentTimeMillis();
+    private boolean removed = false;
+
+    /**
+     * @return false if the series was removed as idle and the metric has to
+     * be put into a new one
+     */
+    synchronized boolean putMetric(TimelineMetric metric, boolean transformCounter, long now) {
+      if (removed) {
+        return false;
+      }
+      lastPutMillis = now;
+      TreeMap<Long, Double> metricValues = metric.getMetricValues();
+      // To avoid duplication at the end of the buffer and beginning of the
+      // next segment of values
+      if (hasEndOfBufferTimestamp && endOfBufferTimestamp == metric.getStartTime()) {
+        if (transformCounter) {
+          updateCounterLastValue(metricValues);
+        }
+        return true;
+      }
+
+      if (timelineMetric == null) {
+        timelineMetric = metric;
+        oldestTimestamp = metric.getStartTime();
+        timeDiff = -1;
+        addValues(metricValues, transformCounter);
       } else {
-        oldestTimestamp = timestamp;
+        if (size() > maxRecsPerName) {
+          evictEldest(metric);
+        }
+        addValues(metricValues, transformCounter);
+        updateTimeDiff(metric.getStartTime());
       }
+
+      // Buffer last ts value
+      hasEndOfBufferTimestamp = true;
+      endOfBufferTimestamp = metric.getStartTime();
+      return true;
     }
 
-    public synchronized void putMetric(TimelineMetric metric) {
-      TreeMap<Long, Double> metricValues = this.timelineMetric.getMetricValues();
-      if (metricValues.size() > maxRecsPerName) {
-        // remove values for eldest maxEvictionTimeInMillis
-        long newEldestTimestamp = oldestTimestamp + maxEvictionTimeInMillis;
-        TreeMap<Long, Double> metricsSubSet =
-          new TreeMap<>(metricValues.tailMap(newEldestTimestamp));
-        if (metricsSubSet.isEmpty()) {
-          oldestTimestamp = metric.getStartTime();
-          this.timelineMetric.setStartTime(metric.getStartTime());
-        } else {
-          Long newStartTime = metricsSubSet.firstKey();
-          oldestTimestamp = newStartTime;
-          this.timelineMetric.setStartTime(newStartTime);
-        }
-        this.timelineMetric.setMetricValues(metricsSubSet);
-        LOG.warn("Metrics cache overflow. Values for metric " +
-          metric.getMetricName() + " older than " + newEldestTimestamp +
-          " were removed to clean up the cache.");
+    /**
+     * Mark the series removed if nothing is buffered and nothing was put for
+     * longer than the max eviction time.
+     */
+    synchronized boolean removeIfIdle(long now) {
+      if (timelineMetric == null && now - lastPutMillis > maxEvictionTimeInMillis) {
+        removed = true;
       }
-      this.timelineMetric.addMetricValues(metric.getMetricValues());
-      updateTimeDiff(metric.getStartTime());
+      return removed;
     }
 
-    public synchronized long getTimeDiff() {
-      return timeDiff;
+    synchronized boolean isEvictable() {
+      return timelineMetric != null && timeDiff >= getMaxEvictionTimeInMillis();
     }
 
-    public synchronized TimelineMetric getTimelineMetric() {
-      return timelineMetric;
+    /**
+     * Hand out the buffered values and reset the buffer, keeping the arrays
+     * for the next segment.
+     */
+    synchronized TimelineMetric drain() {
+      if (timelineMetric == null) {
+        return null;
+      }
+      TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+      for (int i = head; i < tail; i++) {
+        metricValues.put(timestamps[i], values[i]);
+      }
+      TimelineMetric drained = timelineMetric;
+      drained.setMetricValues(metricValues);
+
+      timelineMetric = null;
+      head = 0;
+      tail = 0;
+      timeDiff = -1;
+      oldestTimestamp = -1;
+      return drained;
     }
-  }
 
-  // TODO: Add weighted eviction
-  class TimelineMetricHolder extends ConcurrentSkipListMap<String, TimelineMetricWrapper> {
-    private static final long serialVersionUID = 2L;
-    // To avoid duplication at the end of the buffer and beginning of the next
-    // segment of values
-    private Map<String, Long> endOfBufferTimestamps = new HashMap<String, Long>();
+    synchronized TimelineMetric evict() {
+      return isEvictable() ? drain() : null;
+    }
 
-    public TimelineMetric evict(String metricName) {
-      TimelineMetricWrapper metricWrapper = this.get(metricName);
+    int size() {
+      return tail - head;
+    }
 
-      if (metricWrapper == null
-        || metricWrapper.getTimeDiff() < getMaxEvictionTimeInMillis()) {
-        return null;
+    private void updateTimeDiff(long timestamp) {
+      if (oldestTimestamp != -1 && timestamp > oldestTimestamp) {
+        timeDiff = timestamp - oldestTimestamp;
+      } else {
+        oldestTimestamp = timestamp;
       }
+    }
 
-      TimelineMetric timelineMetric = metricWrapper.getTimelineMetric();
-      this.remove(metricName);
-
-      return timelineMetric;
+    private void evictEldest(TimelineMetric metric) {
+      // remove values for eldest maxEvictionTimeInMillis
+      long newEldestTimestamp = oldestTimestamp + maxEvictionTimeInMillis;
+      int index = Arrays.binarySearch(timestamps, head, tail, newEldestTimestamp);
+      head = index >= 0 ? index : -index - 1;
+      if (head == tail) {
+        head = 0;
+        tail = 0;
+        oldestTimestamp = metric.getStartTime();
+      } else {
+        oldestTimestamp = timestamps[head];
+      }
+      timelineMetric.setStartTime(oldestTimestamp);
+      LOG.warn("Metrics cache overflow. Values for metric " +
+        metric.getMetricName() + " older than " + newEldestTimestamp +
+        " were removed to clean up the cache.");
     }
 
-    public TimelineMetrics evictAll() {
-      List<TimelineMetric> metricList = new ArrayList<TimelineMetric>();
+    private void addValues(TreeMap<Long, Double> metricValues, boolean transformCounter) {
+      if (metricValues == null || metricValues.isEmpty()) {
+        if (transformCounter) {
+          updateCounterLastValue(metricValues);
+        }
+        return;
+      }
+      double previousValue = 0;
+      if (transformCounter) {
+        previousValue = hasCounterLastValue ? counterLastValue :
+          metricValues.firstEntry().getValue();
+      }
+      for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+        Double value = entry.getValue();
+        if (value == null) {
+          continue;
+        }
+        double v = value;
+        if (transformCounter) {
+          addValue(entry.getKey(), v - previousValue);
+          previousValue = v;
+        } else {
+          addValue(entry.getKey(), v);
+        }
+      }
+      if (transformCounter) {
+        hasCounterLastValue = true;
+        counterLastValue = previousValue;
+      }
+    }
 
-      for (Iterator<Map.Entry<String, TimelineMetricWrapper>> it = this.entrySet().iterator(); it.hasNext();) {
-        Map.Entry<String, TimelineMetricWrapper> cacheEntry = it.next();
-        TimelineMetricWrapper metricWrapper = cacheEntry.getValue();
-        if (metricWrapper != null) {
-          TimelineMetric timelineMetric = cacheEntry.getValue().getTimelineMetric();
-          metricList.add(timelineMetric);
+    private void updateCounterLastValue(TreeMap<Long, Double> metricValues) {
+      if (metricValues != null && !metricValues.isEmpty()) {
+        Double last = metricValues.lastEntry().getValue();
+        if (last != null) {
+          counterLastValue = last;
         }
-        it.remove();
+      } else if (!hasCounterLastValue) {
+        counterLastValue = 0;
       }
-      TimelineMetrics timelineMetrics = new TimelineMetrics();
-      timelineMetrics.setMetrics(metricList);
-      return timelineMetrics;
+      hasCounterLastValue = true;
     }
 
-    public void put(String metricName, TimelineMetric timelineMetric) {
-      if (isDuplicate(timelineMetric)) {
+    private void addValue(long timestamp, double value) {
+      if (tail == head || timestamp > timestamps[tail - 1]) {
+        ensureCapacity();
+        timestamps[tail] = timestamp;
+        values[tail] = value;
+        tail++;
         return;
       }
-      TimelineMetricWrapper metric = this.get(metricName);
-      if (metric == null) {
-        this.put(metricName, new TimelineMetricWrapper(timelineMetric));
-      } else {
-        metric.putMetric(timelineMetric);
+      int index = Arrays.binarySearch(timestamps, head, tail, timestamp);
+      if (index >= 0) {
+        values[index] = value;
+        return;
       }
-      // Buffer last ts value
-      endOfBufferTimestamps.put(metricName, timelineMetric.getStartTime());
+      int insertAt = -index - 1;
+      int offset = head;
+      ensureCapacity();
+      insertAt -= offset - head;
+      System.arraycopy(timestamps, insertAt, timestamps, insertAt + 1, tail - insertAt);
+      System.arraycopy(values, insertAt, values, insertAt + 1, tail - insertAt);
+      timestamps[insertAt] = timestamp;
+      values[insertAt] = value;
+      tail++;
     }
 
     /**
-     * Test whether last buffered timestamp is same as the newly received.
-     * @param timelineMetric @TimelineMetric
-     * @return true/false
+     * Make room for one more value at the tail, compacting the arrays when
+     * eldest values were dropped or growing them when full.
      */
-    private boolean isDuplicate(TimelineMetric timelineMetric) {
-      return endOfBufferTimestamps.containsKey(timelineMetric.getMetricName())
-        && endOfBufferTimestamps.get(timelineMetric.getMetricName()).equals(timelineMetric.getStartTime());
+    private void ensureCapacity() {
+      if (tail < timestamps.length) {
+        return;
+      }
+      int size = size();
+      if (head > 0 && size < timestamps.length) {
+        System.arraycopy(timestamps, head, timestamps, 0, size);
+        System.arraycopy(values, head, values, 0, size);
+      } else {
+        int capacity = timestamps.length * 2;
+        long[] newTimestamps = new long[capacity];
+        double[] newValues = new double[capacity];
+        System.arraycopy(timestamps, head, newTimestamps, 0, size);
+        System.arraycopy(values, head, newValues, 0, size);
+        timestamps = newTimestamps;
+        values = newValues;
+      }
+      head = 0;
+      tail = size;
+    }
+  }
+
+  private MetricSeries getOrCreateSeries(String metricName) {
+    MetricSeries series = timelineMetricCache.get(metricName);
+    if (series == null) {
+      MetricSeries newSeries = new MetricSeries();
+      series = timelineMetricCache.putIfAbsent(metricName, newSeries);
+      if (series == null) {
+        series = newSeries;
+      }
     }
+    return series;
   }
 
   public TimelineMetric getTimelineMetric(String metricName) {
-    if (timelineMetricCache.containsKey(metricName)) {
-      return timelineMetricCache.evict(metricName);
+    MetricSeries series = timelineMetricCache.get(metricName);
+    if (series != null) {
+      return series.evict();
     }
 
     return null;
   }
 
   public TimelineMetrics getAllMetrics() {
-    return timelineMetricCache.evictAll();
+    List<TimelineMetric> metricList = new ArrayList<TimelineMetric>();
+    for (MetricSeries series : timelineMetricCache.values()) {
+      TimelineMetric timelineMetric = series.drain();
+      if (timelineMetric != null) {
+        metricList.add(timelineMetric);
+      }
+    }
+    removeIdleSeries(System.currentTimeMillis());
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(metricList);
+    return timelineMetrics;
+  }
+
+  /**
+   * Remove the idle series, at most once per max eviction time.
+   */
+  private void removeIdleSeries(long now) {
+    long lastSweep = lastIdleSweepMillis.get();
+    if (now - lastSweep <= maxEvictionTimeInMillis ||
+        !lastIdleSweepMillis.compareAndSet(lastSweep, now)) {
+      return;
+    }
+    for (Map.Entry<String, MetricSeries> entry : timelineMetricCache.entrySet()) {
+      if (entry.getValue().removeIfIdle(now)) {
+        timelineMetricCache.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  int getSeriesCount() {
+    return timelineMetricCache.size();
   }
 
   /**
@@ -191,29 +362,19 @@ public class TimelineMetricsCache {
   }
 
   public void putTimelineMetric(TimelineMetric timelineMetric) {
-    timelineMetricCache.put(timelineMetric.getMetricName(), timelineMetric);
-  }
-
-  private void transformMetricValuesToDerivative(TimelineMetric timelineMetric) {
-    String metricName = timelineMetric.getMetricName();
-    double firstValue = timelineMetric.getMetricValues().size() > 0
-        ? timelineMetric.getMetricValues().entrySet().iterator().next().getValue() : 0;
-    Double value = counterMetricLastValue.get(metricName);
-    double previousValue = value != null ? value : firstValue;
-    Map<Long, Double> metricValues = timelineMetric.getMetricValues();
-    TreeMap<Long, Double>   newMetricValues = new TreeMap<Long, Double>();
-    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
-      newMetricValues.put(entry.getKey(), entry.getValue() - previousValue);
-      previousValue = entry.getValue();
-    }
-    timelineMetric.setMetricValues(newMetricValues);
-    counterMetricLastValue.put(metricName, previousValue);
+    putTimelineMetric(timelineMetric, false);
   }
 
   public void putTimelineMetric(TimelineMetric timelineMetric, boolean isCounter) {
-    if (isCounter && !skipCounterTransform) {
-      transformMetricValuesToDerivative(timelineMetric);
+    String metricName = timelineMetric.getMetricName();
+    boolean transformCounter = isCounter && !skipCounterTransform;
+    long now = System.currentTimeMillis();
+    MetricSeries series = getOrCreateSeries(metricName);
+    while (!series.putMetric(timelineMetric, transformCounter, now)) {
+      // Removed as idle after the lookup
+      timelineMetricCache.remove(metricName, series);
+      series = getOrCreateSeries(metricName);
     }
-    putTimelineMetric(timelineMetric);
+    removeIdleSeries(now);
   }
 }
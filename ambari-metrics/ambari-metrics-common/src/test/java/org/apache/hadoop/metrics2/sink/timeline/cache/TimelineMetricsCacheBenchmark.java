@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline.cache;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the time and bytes allocated to buffer values in the
+ * {@link TimelineMetricsCache} and to drain them with
+ * {@link TimelineMetricsCache#getAllMetrics()}, 1000 metrics of 60 single
+ * value puts each with the defaults, half of them counters, followed by the
+ * put throughput of several threads writing different metrics. It is not run
+ * as part of the build and needs a JVM which supports thread allocation
+ * measurement; run it with
+ * <pre>
+ * java -cp ... org.apache.hadoop.metrics2.sink.timeline.cache.TimelineMetricsCacheBenchmark [metrics] [puts] [iterations] [threads]
+ * </pre>
+ */
+public class TimelineMetricsCacheBenchmark {
+
+  private static final long START_TIME = 1500000000000L;
+
+  public static void main(String[] args) throws Exception {
+    int metricCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int puts = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+    System.out.println(String.format("%d metrics, %d puts per metric", metricCount, puts));
+    System.out.println(String.format("%10s %10s %10s %10s %10s %16s", "iteration",
+      "put ms", "put MB", "drain ms", "drain MB", "threaded puts/s"));
+
+    com.sun.management.ThreadMXBean threadMXBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    // The first iteration warms up
+    for (int i = 0; i <= iterations; i++) {
+      // The cache keeps and modifies the first metric of each series
+      List<List<TimelineMetric>> metrics = createMetrics(metricCount, puts);
+      TimelineMetricsCache cache = new TimelineMetricsCache(
+        TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT, TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+      long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      put(cache, metrics, 0, 1);
+      long putNanos = System.nanoTime() - start;
+      long putBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+
+      bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+      start = System.nanoTime();
+      int drained = cache.getAllMetrics().getMetrics().size();
+      long drainNanos = System.nanoTime() - start;
+      long drainBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+      if (drained != metricCount) {
+        throw new IllegalStateException("Unexpected number of drained metrics " + drained);
+      }
+
+      long concurrentNanos = putConcurrently(createMetrics(metricCount, puts), threads);
+
+      if (i > 0) {
+        System.out.println(String.format("%10d %10d %10d %10d %10d %16d", i,
+          putNanos / 1000000, putBytes / (1024 * 1024),
+          drainNanos / 1000000, drainBytes / (1024 * 1024),
+          (long) metricCount * puts * 1000000000L / concurrentNanos));
+      }
+    }
+  }
+
+  private static void put(TimelineMetricsCache cache, List<List<TimelineMetric>> metrics,
+                          int offset, int step) {
+    for (int m = offset; m < metrics.size(); m += step) {
+      boolean counter = m % 2 == 1;
+      for (TimelineMetric metric : metrics.get(m)) {
+        cache.putTimelineMetric(metric, counter);
+      }
+    }
+  }
+
+  private static long putConcurrently(final List<List<TimelineMetric>> metrics,
+                                      final int threads) throws InterruptedException {
+    final TimelineMetricsCache cache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT, TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    List<Thread> writers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t++) {
+      final int offset = t;
+      Thread writer = new Thread() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          put(cache, metrics, offset, threads);
+        }
+      };
+      writer.start();
+      writers.add(writer);
+    }
+    long start = System.nanoTime();
+    startLatch.countDown();
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static List<List<TimelineMetric>> createMetrics(int metricCount, int puts) {
+    List<List<TimelineMetric>> metrics = new ArrayList<List<TimelineMetric>>(metricCount);
+    for (int m = 0; m < metricCount; m++) {
+      List<TimelineMetric> series = new ArrayList<TimelineMetric>(puts);
+      for (int p = 0; p < puts; p++) {
+        // Sinks put one value every 10 seconds
+        long time = START_TIME + p * 10000L;
+        TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+        values.put(time, (double) (m % 2 == 1 ? p * 100 : p % 10));
+        TimelineMetric metric = new TimelineMetric();
+        metric.setMetricName("metric" + m);
+        metric.setHostName("host");
+        metric.setAppId("benchmark");
+        metric.setStartTime(time);
+        metric.setType("Number");
+        metric.setMetricValues(values);
+        series.add(metric);
+      }
+      metrics.add(series);
+    }
+    return metrics;
+  }
+}
@@ -18,14 +18,18 @@
 package org.apache.hadoop.metrics2.sink.timeline.cache;
 
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class TimelineMetricsCacheTest {
 
@@ -124,6 +128,102 @@ public class TimelineMetricsCacheTest {
     assertEquals(DEFAULT_START_TIME + maxEvictionTime * 2, cachedMetric.getStartTime());
   }
 
+  @Test
+  public void testOutOfOrderAndDuplicateValues() throws Exception {
+    timelineMetricsCache.putTimelineMetric(createTimelineMetric(new TreeMap<Long, Double>() {{
+      put(10L, 1.0);
+      put(30L, 3.0);
+    }}, DEFAULT_START_TIME));
+    timelineMetricsCache.putTimelineMetric(createTimelineMetric(new TreeMap<Long, Double>() {{
+      put(20L, 2.0);
+      put(30L, 4.0);
+      put(5L, 0.5);
+    }}, DEFAULT_START_TIME + TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS));
+
+    TimelineMetric cachedMetric = timelineMetricsCache.getTimelineMetric(METRIC_NAME);
+    assertNotNull(cachedMetric);
+    assertEquals(new TreeMap<Long, Double>() {{
+      put(5L, 0.5);
+      put(10L, 1.0);
+      put(20L, 2.0);
+      put(30L, 4.0);
+    }}, cachedMetric.getMetricValues());
+    assertNull(timelineMetricsCache.getTimelineMetric(METRIC_NAME));
+  }
+
+  @Test
+  public void testGetAllMetricsWithManyValues() throws Exception {
+    int count = 1000;
+    for (int i = 0; i < count; i++) {
+      timelineMetricsCache.putTimelineMetric(createTimelineMetricSingleValue(DEFAULT_START_TIME + i));
+    }
+    // Not old enough to be evicted by name
+    assertNull(timelineMetricsCache.getTimelineMetric(METRIC_NAME));
+
+    TimelineMetrics metrics = timelineMetricsCache.getAllMetrics();
+    assertEquals(1, metrics.getMetrics().size());
+    TimelineMetric cachedMetric = metrics.getMetrics().get(0);
+    assertEquals(count, cachedMetric.getMetricValues().size());
+    assertEquals(DEFAULT_START_TIME, (long) cachedMetric.getMetricValues().firstKey());
+    assertEquals(DEFAULT_START_TIME + count - 1, (long) cachedMetric.getMetricValues().lastKey());
+    assertEquals(0, timelineMetricsCache.getAllMetrics().getMetrics().size());
+  }
+
+  @Test
+  public void testConcurrentPutsForDifferentMetrics() throws Exception {
+    final int threads = 8;
+    final int valuesPerThread = 5000;
+    List<Thread> writers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t++) {
+      final String metricName = METRIC_NAME + t;
+      writers.add(new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < valuesPerThread; i++) {
+            TimelineMetric metric = createTimelineMetricSingleValue(DEFAULT_START_TIME + i);
+            metric.setMetricName(metricName);
+            timelineMetricsCache.putTimelineMetric(metric);
+          }
+        }
+      });
+    }
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+
+    TimelineMetrics metrics = timelineMetricsCache.getAllMetrics();
+    assertEquals(threads, metrics.getMetrics().size());
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      assertEquals(valuesPerThread, metric.getMetricValues().size());
+    }
+  }
+
+  @Test
+  public void testIdleSeriesAreRemoved() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT, 100);
+    TimelineMetric idle = createTimelineMetricSingleValue(DEFAULT_START_TIME);
+    idle.setMetricName(METRIC_NAME + "idle");
+    cache.putTimelineMetric(idle);
+    cache.putTimelineMetric(createTimelineMetricSingleValue(DEFAULT_START_TIME));
+    assertEquals(2, cache.getAllMetrics().getMetrics().size());
+    assertEquals(2, cache.getSeriesCount());
+
+    Thread.sleep(250);
+    cache.putTimelineMetric(createTimelineMetricSingleValue(DEFAULT_START_TIME + 1));
+    assertEquals(1, cache.getSeriesCount());
+
+    // A name reported again gets a new series
+    idle = createTimelineMetricSingleValue(DEFAULT_START_TIME + 1);
+    idle.setMetricName(METRIC_NAME + "idle");
+    cache.putTimelineMetric(idle);
+    assertEquals(2, cache.getSeriesCount());
+    assertEquals(2, cache.getAllMetrics().getMetrics().size());
+  }
+
   private TimelineMetric createTimelineMetricSingleValue(final long startTime) {
     TreeMap<Long, Double> values = new TreeMap<Long, Double>();
     values.put(startTime, 0.0);
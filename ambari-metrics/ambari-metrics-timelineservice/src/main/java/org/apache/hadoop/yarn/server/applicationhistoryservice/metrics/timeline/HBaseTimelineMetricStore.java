@@ -25,7 +25,6 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.metrics2.sink.timeline.ContainerMetric;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
-import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.metrics2.sink.timeline.TopNConfig;
@@ -42,6 +41,8 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.ConditionBuilder;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.TopNCondition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function.SeriesAggregateFunction;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function.TimelineMetricSeries;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function.TimelineMetricsPostProcessor;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function.TimelineMetricsSeriesAggregateFunction;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function.TimelineMetricsSeriesAggregateFunctionFactory;
 
@@ -51,7 +52,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -62,6 +63,9 @@ import java.util.concurrent.TimeUnit;
 
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.USE_GROUPBY_AGGREGATOR_QUERIES;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.DEFAULT_TOPN_HOSTS_LIMIT;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_PIPELINE_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_QUERY_CACHE_ENABLED;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.ACTUAL_AGGREGATOR_NAMES;
 
 public class HBaseTimelineMetricStore extends AbstractService implements TimelineMetricStore {
@@ -75,6 +79,7 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
   private TimelineMetricMetadataManager metricMetadataManager;
   private Integer defaultTopNHostsLimit;
   private MetricCollectorHAController haController;
+  private TimelineMetricsIngestPipeline ingestPipeline;
 
   /**
    * Construct the service.
@@ -106,8 +111,12 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       // Start the controller
       if (!configuration.isDistributedCollectorModeDisabled()) {
         haController = new MetricCollectorHAController(configuration);
+        Set<String> metricNames = new HashSet<>();
+        for (TimelineMetricMetadataKey key : metricMetadataManager.getMetadataCache().keySet()) {
+          metricNames.add(key.getMetricName());
+        }
         try {
-          haController.initializeHAController();
+          haController.initializeHAController(metricNames);
         } catch (Exception e) {
           LOG.error(e);
           throw new MetricsSystemInitializationException("Unable to " +
@@ -120,6 +129,24 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       //Initialize whitelisting & blacklisting if needed
       TimelineMetricsFilter.initializeMetricFilter(configuration);
 
+      // Other collectors write rows this one does not see in distributed mode
+      if (metricsConf.getBoolean(TIMELINE_METRICS_HOT_TIER_ENABLED, false)) {
+        if (configuration.isDistributedCollectorModeDisabled()) {
+          hBaseAccessor.setHotTier(new TimelineMetricsHotTier(metricsConf));
+        } else {
+          LOG.warn("Metrics hot tier is not supported in distributed collector mode.");
+        }
+      }
+
+      if (metricsConf.getBoolean(TIMELINE_METRICS_QUERY_CACHE_ENABLED, false)) {
+        hBaseAccessor.setQueryCache(new TimelineMetricsQueryCache(metricsConf));
+      }
+
+      if (metricsConf.getBoolean(TIMELINE_METRICS_INGEST_PIPELINE_ENABLED, false)) {
+        ingestPipeline = new TimelineMetricsIngestPipeline(hBaseAccessor, metricMetadataManager, metricsConf);
+        ingestPipeline.start();
+      }
+
       defaultTopNHostsLimit = Integer.parseInt(metricsConf.get(DEFAULT_TOPN_HOSTS_LIMIT, "20"));
       if (Boolean.parseBoolean(metricsConf.get(USE_GROUPBY_AGGREGATOR_QUERIES, "true"))) {
         LOG.info("Using group by aggregators for aggregating host and cluster metrics.");
@@ -185,6 +212,9 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
 
   @Override
   protected void serviceStop() throws Exception {
+    if (ingestPipeline != null) {
+      ingestPipeline.stop(30, TimeUnit.SECONDS);
+    }
     super.serviceStop();
   }
 
@@ -253,63 +283,14 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       metrics = hBaseAccessor.getMetricRecords(condition, metricFunctions);
     }
 
-    metrics = postProcessMetrics(metrics);
-
-    if (metrics.getMetrics().size() == 0) {
-      return metrics;
-    }
-
-    return seriesAggregateMetrics(seriesAggrFunctionInstance, metrics);
-  }
-
-  private TimelineMetrics postProcessMetrics(TimelineMetrics metrics) {
-    List<TimelineMetric> metricsList = metrics.getMetrics();
-
-    for (TimelineMetric metric : metricsList){
-      String name = metric.getMetricName();
-      if (name.contains("._rate")){
-        updateValuesAsRate(metric.getMetricValues(), false);
-      } else if (name.contains("._diff")) {
-        updateValuesAsRate(metric.getMetricValues(), true);
-      }
-    }
-
-    return metrics;
-  }
-
-  private TimelineMetrics seriesAggregateMetrics(TimelineMetricsSeriesAggregateFunction seriesAggrFuncInstance,
-      TimelineMetrics metrics) {
-    if (seriesAggrFuncInstance != null) {
-      TimelineMetric appliedMetric = seriesAggrFuncInstance.apply(metrics);
-      metrics.setMetrics(Collections.singletonList(appliedMetric));
-    }
-    return metrics;
+    return new TimelineMetricsPostProcessor(seriesAggrFunctionInstance).process(metrics);
   }
 
   static Map<Long, Double> updateValuesAsRate(Map<Long, Double> metricValues, boolean isDiff) {
-    Long prevTime = null;
-    Double prevVal = null;
-    long step;
-    Double diff;
-
-    for(Iterator<Map.Entry<Long, Double>> it = metricValues.entrySet().iterator(); it.hasNext(); ) {
-      Map.Entry<Long, Double> timeValueEntry = it.next();
-      Long currTime = timeValueEntry.getKey();
-      Double currVal = timeValueEntry.getValue();
-
-      if (prevTime != null) {
-        step = currTime - prevTime;
-        diff = currVal - prevVal;
-        Double rate = isDiff ? diff : (diff / TimeUnit.MILLISECONDS.toSeconds(step));
-        timeValueEntry.setValue(rate);
-      } else {
-        it.remove();
-      }
-
-      prevTime = currTime;
-      prevVal = currVal;
-    }
-
+    TimelineMetricSeries series = TimelineMetricSeries.fromMetricValues(metricValues);
+    series.rate(isDiff);
+    metricValues.clear();
+    metricValues.putAll(series.toMetricValues());
     return metricValues;
   }
 
@@ -344,7 +325,11 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     // Error indicated by the Sql exception
     TimelinePutResponse response = new TimelinePutResponse();
 
-    hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics, false);
+    if (ingestPipeline != null) {
+      ingestPipeline.accept(metrics);
+    } else {
+      hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics, false);
+    }
 
     return response;
   }
@@ -407,6 +392,32 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     return instances;
   }
 
+  @Override
+  public Map<String, Number> getIngestStatistics() {
+    if (ingestPipeline == null) {
+      return Collections.emptyMap();
+    }
+    return ingestPipeline.getStatistics();
+  }
+
+  @Override
+  public Map<String, Number> getHotTierStatistics() {
+    TimelineMetricsHotTier hotTier = hBaseAccessor.getHotTier();
+    if (hotTier == null) {
+      return Collections.emptyMap();
+    }
+    return hotTier.getStatistics();
+  }
+
+  @Override
+  public Map<String, Number> getQueryCacheStatistics() {
+    TimelineMetricsQueryCache queryCache = hBaseAccessor.getQueryCache();
+    if (queryCache == null) {
+      return Collections.emptyMap();
+    }
+    return queryCache.getStatistics();
+  }
+
   private void scheduleAggregatorThread(final TimelineMetricAggregator aggregator) {
     if (!aggregator.isDisabled()) {
       ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(
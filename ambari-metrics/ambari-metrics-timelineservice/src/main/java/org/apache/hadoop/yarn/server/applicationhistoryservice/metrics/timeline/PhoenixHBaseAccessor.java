@@ -47,11 +47,11 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultPhoenixDataSource;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixConnectionProvider;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.SplitByMetricNamesCondition;
-import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
 import org.apache.phoenix.exception.PhoenixIOException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
@@ -89,6 +89,7 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HBASE_PRECISION_TABLE_COMPACTION_POLICY_CLASS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HBASE_PRECISION_TABLE_COMPACTION_POLICY_KEY;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_PRECISION_TABLE_DURABILITY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_PRECISION_TABLE_VALUES_ENCODING;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_AGGREGATE_TABLES_DURABILITY;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HBASE_BLOCKING_STORE_FILES;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATORS_SKIP_BLOCK_CACHE;
@@ -181,6 +182,9 @@ public class PhoenixHBaseAccessor {
   private final boolean skipBlockCacheForAggregatorsEnabled;
   private final String timelineMetricsTablesDurability;
   private final String timelineMetricsPrecisionTableDurability;
+  private final boolean binaryValuesEncodingEnabled;
+  private volatile TimelineMetricsHotTier hotTier;
+  private volatile TimelineMetricsQueryCache queryCache;
 
   static final String HSTORE_COMPACTION_CLASS_KEY =
     "hbase.hstore.defaultengine.compactionpolicy.class";
@@ -224,6 +228,8 @@ public class PhoenixHBaseAccessor {
     this.skipBlockCacheForAggregatorsEnabled = metricsConf.getBoolean(AGGREGATORS_SKIP_BLOCK_CACHE, false);
     this.timelineMetricsTablesDurability = metricsConf.get(TIMELINE_METRICS_AGGREGATE_TABLES_DURABILITY, "");
     this.timelineMetricsPrecisionTableDurability = metricsConf.get(TIMELINE_METRICS_PRECISION_TABLE_DURABILITY, "");
+    this.binaryValuesEncodingEnabled = TimelineMetricValuesCodec.BINARY_ENCODING.equalsIgnoreCase(
+      metricsConf.getTrimmed(TIMELINE_METRICS_PRECISION_TABLE_VALUES_ENCODING, TimelineMetricValuesCodec.JSON_ENCODING));
 
     tableTTL.put(METRICS_RECORD_TABLE_NAME, metricsConf.get(PRECISION_TABLE_TTL, String.valueOf(1 * 86400)));  // 1 day
     tableTTL.put(CONTAINER_METRICS_TABLE_NAME, metricsConf.get(CONTAINER_METRICS_TTL, String.valueOf(30 * 86400)));  // 30 days
@@ -252,6 +258,41 @@ public class PhoenixHBaseAccessor {
     }
   }
 
+  /**
+   * Keep committed METRIC_RECORD rows in the hot tier and serve queries for
+   * them from it.
+   */
+  public void setHotTier(TimelineMetricsHotTier hotTier) {
+    this.hotTier = hotTier;
+  }
+
+  public TimelineMetricsHotTier getHotTier() {
+    return hotTier;
+  }
+
+  /**
+   * Answer time series queries from the cached results of earlier queries
+   * and only read the time ranges not cached yet.
+   */
+  public void setQueryCache(TimelineMetricsQueryCache queryCache) {
+    this.queryCache = queryCache;
+  }
+
+  public TimelineMetricsQueryCache getQueryCache() {
+    return queryCache;
+  }
+
+  /**
+   * Drop cached query results for the table in the time range, called once
+   * rows for it have been written.
+   */
+  public void invalidateQueryCache(String tableName, long startTime, long endTime) {
+    TimelineMetricsQueryCache queryCache = this.queryCache;
+    if (queryCache != null) {
+      queryCache.invalidate(tableName, startTime, endTime);
+    }
+  }
+
   public boolean isInsertCacheEmpty() {
     return insertCache.isEmpty();
   }
@@ -276,6 +317,8 @@ public class PhoenixHBaseAccessor {
     Connection conn = null;
     PreparedStatement metricRecordStmt = null;
     long currentTime = System.currentTimeMillis();
+    TimelineMetricsHotTier hotTier = this.hotTier;
+    List<TimelineMetric> committedMetrics = hotTier == null ? null : new ArrayList<TimelineMetric>();
 
     try {
       conn = getConnection();
@@ -312,11 +355,14 @@ public class PhoenixHBaseAccessor {
           metricRecordStmt.setDouble(9, aggregates[1]);
           metricRecordStmt.setDouble(10, aggregates[2]);
           metricRecordStmt.setLong(11, (long) aggregates[3]);
-          String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-          metricRecordStmt.setString(12, json);
+          metricRecordStmt.setString(12, TimelineMetricValuesCodec.encode(
+            metric.getMetricValues(), binaryValuesEncodingEnabled));
 
           try {
             metricRecordStmt.executeUpdate();
+            if (committedMetrics != null) {
+              committedMetrics.add(metric);
+            }
           } catch (SQLException sql) {
             LOG.error("Failed on insert records to store.", sql);
           }
@@ -325,6 +371,9 @@ public class PhoenixHBaseAccessor {
 
       // commit() blocked if HBase unavailable
       conn.commit();
+      if (hotTier != null) {
+        hotTier.add(committedMetrics, currentTime);
+      }
     } catch (Exception exception){
       exception.printStackTrace();
     }
@@ -349,13 +398,13 @@ public class PhoenixHBaseAccessor {
   private static TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs)
       throws SQLException, IOException {
     TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(readLastMetricValue(rs.getString("METRICS")));
     return metric;
   }
 
-  private static TreeMap<Long, Double> readLastMetricValueFromJSON(String json)
+  private static TreeMap<Long, Double> readLastMetricValue(String encoded)
       throws IOException {
-    TreeMap<Long, Double> values = readMetricFromJSON(json);
+    TreeMap<Long, Double> values = readMetricValues(encoded);
     Long lastTimeStamp = values.lastKey();
 
     TreeMap<Long, Double> valueMap = new TreeMap<Long, Double>();
@@ -363,6 +412,18 @@ public class PhoenixHBaseAccessor {
     return valueMap;
   }
 
+  /**
+   * Read the METRICS column of a precision table row, written either as
+   * JSON or in the binary format.
+   */
+  public static TreeMap<Long, Double> readMetricValues(String encoded) throws IOException {
+    return TimelineMetricValuesCodec.decode(encoded);
+  }
+
+  public boolean isBinaryValuesEncodingEnabled() {
+    return binaryValuesEncodingEnabled;
+  }
+
   @SuppressWarnings("unchecked")
   public static TreeMap<Long, Double>  readMetricFromJSON(String json) throws IOException {
     return mapper.readValue(json, metricValuesTypeRef);
@@ -765,6 +826,34 @@ public class PhoenixHBaseAccessor {
       LOG.debug("Empty metrics insert request.");
       return;
     }
+    filterAndUpdateMetadata(metadataManager, metrics);
+
+    if  (!skipCache && cacheEnabled) {
+      LOG.debug("Adding metrics to cache");
+      if (insertCache.size() >= cacheSize) {
+        commitMetricsFromCache();
+      }
+      try {
+        insertCache.put(metrics); // blocked while the queue is full
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+      }
+    } else {
+      LOG.debug("Skipping metrics cache");
+      commitMetrics(metrics);
+    }
+  }
+
+  /**
+   * Update the metadata cache for every metric and remove metrics rejected
+   * by the {@link TimelineMetricsFilter}.
+   */
+  public void filterAndUpdateMetadata(TimelineMetricMetadataManager metadataManager,
+                                      TimelineMetrics metrics) {
+    List<TimelineMetric> timelineMetrics = metrics.getMetrics();
+    if (timelineMetrics == null) {
+      return;
+    }
     for (Iterator<TimelineMetric> iterator = timelineMetrics.iterator(); iterator.hasNext();) {
 
       TimelineMetric tm = iterator.next();
@@ -783,21 +872,6 @@ public class PhoenixHBaseAccessor {
         iterator.remove();
       }
     }
-
-    if  (!skipCache && cacheEnabled) {
-      LOG.debug("Adding metrics to cache");
-      if (insertCache.size() >= cacheSize) {
-        commitMetricsFromCache();
-      }
-      try {
-        insertCache.put(metrics); // blocked while the queue is full
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-    } else {
-      LOG.debug("Skipping metrics cache");
-      commitMetrics(metrics);
-    }
   }
 
   public void insertMetricRecords(TimelineMetrics metrics, boolean skipCache) throws SQLException, IOException {
@@ -808,11 +882,160 @@ public class PhoenixHBaseAccessor {
     insertMetricRecords(metrics, false);
   }
 
-  @SuppressWarnings("unchecked")
   public TimelineMetrics getMetricRecords(
     final Condition condition, Multimap<String, List<Function>> metricFunctions)
     throws SQLException, IOException {
 
+    TimelineMetricsQueryCache queryCache = this.queryCache;
+    if (queryCache != null && queryCache.isCacheable(condition, metricFunctions)) {
+      return queryCache.getMetricRecords(condition, metricFunctions, false,
+        new TimelineMetricsQueryCache.MetricRecordsReader() {
+          @Override
+          public TimelineMetrics read(Condition condition, Multimap<String, List<Function>> metricFunctions)
+            throws SQLException, IOException {
+            return getUncachedMetricRecords(condition, metricFunctions);
+          }
+        });
+    }
+    return getUncachedMetricRecords(condition, metricFunctions);
+  }
+
+  private TimelineMetrics getUncachedMetricRecords(
+    final Condition condition, Multimap<String, List<Function>> metricFunctions)
+    throws SQLException, IOException {
+
+    TimelineMetricsHotTier hotTier = this.hotTier;
+    if (hotTier == null) {
+      return getStoredMetricRecords(condition, metricFunctions);
+    }
+
+    long startNanos = System.nanoTime();
+    long coveredFrom = hotTier.getCoveredFrom();
+    if (!isHotTierCondition(condition, metricFunctions) || condition.getEndTime() <= coveredFrom) {
+      TimelineMetrics metrics = getStoredMetricRecords(condition, metricFunctions);
+      hotTier.recordMiss(System.nanoTime() - startNanos);
+      return metrics;
+    }
+
+    // Same checks as for the METRIC_RECORD query
+    condition.setPrecision(Precision.SECONDS);
+    PhoenixTransactSQL.validateRowCountLimit(condition);
+
+    boolean spillOver = condition.getStartTime() < coveredFrom;
+    TimelineMetrics metrics;
+    if (spillOver) {
+      // Older part of the window from the store, the rest from the hot tier
+      Condition storedCondition = new DefaultCondition(
+        new ArrayList<String>(condition.getMetricNames()), condition.getHostnames(),
+        condition.getAppId(), condition.getInstanceId(), condition.getStartTime(),
+        coveredFrom, Precision.SECONDS, condition.getLimit(), condition.isGrouped());
+      metrics = getStoredMetricRecords(storedCondition, metricFunctions);
+    } else {
+      metrics = new TimelineMetrics();
+    }
+
+    for (TimelineMetric metric : hotTier.getMetricRecords(condition,
+        Math.max(condition.getStartTime(), coveredFrom), condition.getEndTime(), condition.getLimit())) {
+      appendMetricFromHotTier(metrics, condition, metricFunctions, metric);
+    }
+
+    if (spillOver) {
+      hotTier.recordPartialHit(System.nanoTime() - startNanos);
+    } else {
+      hotTier.recordHit(System.nanoTime() - startNanos);
+    }
+    LOG.debug("Metrics records size: " + metrics.getMetrics().size());
+    return metrics;
+  }
+
+  /**
+   * Only time series queries for precision data of exact metric names and
+   * hostnames that read the values of each metric can be answered by the hot
+   * tier.
+   */
+  private boolean isHotTierCondition(Condition condition,
+                                     Multimap<String, List<Function>> metricFunctions) {
+    if (condition.getClass() != DefaultCondition.class
+        || metricFunctions == null
+        || condition.isPointInTime()
+        || condition.getStatement() != null
+        || condition.getStartTime() == null || condition.getEndTime() == null
+        || condition.getEndTime() < condition.getStartTime()
+        || condition.getMetricNames() == null || condition.getMetricNames().isEmpty()) {
+      return false;
+    }
+
+    Precision precision = condition.getPrecision() != null ? condition.getPrecision() :
+      Precision.getPrecision(condition.getStartTime(), condition.getEndTime());
+    if (precision != Precision.SECONDS) {
+      return false;
+    }
+
+    for (String metricName : condition.getMetricNames()) {
+      if (metricName.contains("%")) {
+        return false;
+      }
+    }
+    if (condition.getHostnames() != null) {
+      for (String hostname : condition.getHostnames()) {
+        if (hostname.contains("%")) {
+          return false;
+        }
+      }
+    }
+
+    for (List<Function> functions : metricFunctions.values()) {
+      if (functions == null) {
+        continue;
+      }
+      if (functions.size() > 1) {
+        return false;
+      }
+      for (Function f : functions) {
+        if (f.getReadFunction() != Function.ReadFunction.VALUE) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Same as {@link #appendMetricFromResultSet} for precision data read from
+   * the hot tier.
+   */
+  private void appendMetricFromHotTier(TimelineMetrics metrics, Condition condition,
+                                       Multimap<String, List<Function>> metricFunctions,
+                                       TimelineMetric hotMetric) {
+    Collection<List<Function>> functionList = findMetricFunctions(metricFunctions, hotMetric.getMetricName());
+    if (functionList == null) {
+      return;
+    }
+
+    String metricName = hotMetric.getMetricName();
+    boolean copy = false;
+    for (List<Function> functions : functionList) {
+      TimelineMetric metric = copy ? new TimelineMetric(hotMetric) : hotMetric;
+      copy = true;
+      Function f = functions == null || functions.isEmpty() ? null : functions.get(0);
+      if (f != null && f.getSuffix() != null) { //Case : Requesting "._rate" for precision data
+        metric.setMetricName(metricName + f.getSuffix());
+      } else {
+        metric.setMetricName(metricName);
+      }
+      if (condition.isGrouped()) {
+        metrics.addOrMergeTimelineMetric(metric);
+      } else {
+        metrics.getMetrics().add(metric);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private TimelineMetrics getStoredMetricRecords(
+    final Condition condition, Multimap<String, List<Function>> metricFunctions)
+    throws SQLException, IOException {
+
     validateConditionIsNotEmpty(condition);
 
     Connection conn = getConnection();
@@ -1002,6 +1225,28 @@ public class PhoenixHBaseAccessor {
   public TimelineMetrics getAggregateMetricRecords(final Condition condition,
       Multimap<String, List<Function>> metricFunctions) throws SQLException {
 
+    TimelineMetricsQueryCache queryCache = this.queryCache;
+    if (queryCache == null || !queryCache.isCacheable(condition, metricFunctions)) {
+      return getUncachedAggregateMetricRecords(condition, metricFunctions);
+    }
+    try {
+      return queryCache.getMetricRecords(condition, metricFunctions, true,
+        new TimelineMetricsQueryCache.MetricRecordsReader() {
+          @Override
+          public TimelineMetrics read(Condition condition, Multimap<String, List<Function>> metricFunctions)
+            throws SQLException {
+            return getUncachedAggregateMetricRecords(condition, metricFunctions);
+          }
+        });
+    } catch (IOException e) {
+      // Not thrown by the aggregate reader
+      throw new SQLException(e);
+    }
+  }
+
+  private TimelineMetrics getUncachedAggregateMetricRecords(final Condition condition,
+      Multimap<String, List<Function>> metricFunctions) throws SQLException {
+
     validateConditionIsNotEmpty(condition);
 
     Connection conn = getConnection();
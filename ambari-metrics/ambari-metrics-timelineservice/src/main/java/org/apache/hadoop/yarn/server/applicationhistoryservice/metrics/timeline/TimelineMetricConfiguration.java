@@ -290,6 +290,51 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRICS_PRECISION_TABLE_HBASE_BLOCKING_STORE_FILES =
     "timeline.metrics.precision.table.hbase.hstore.blockingStoreFiles";
 
+  public static final String TIMELINE_METRICS_PRECISION_TABLE_VALUES_ENCODING =
+    "timeline.metrics.precision.table.values.encoding";
+
+  public static final String TIMELINE_METRICS_INGEST_PIPELINE_ENABLED =
+    "timeline.metrics.service.ingest.pipeline.enabled";
+
+  public static final String TIMELINE_METRICS_INGEST_ACCEPT_QUEUE_SIZE =
+    "timeline.metrics.service.ingest.accept.queue.size";
+
+  public static final String TIMELINE_METRICS_INGEST_COMMIT_QUEUE_SIZE =
+    "timeline.metrics.service.ingest.commit.queue.size";
+
+  public static final String TIMELINE_METRICS_INGEST_BATCH_SIZE =
+    "timeline.metrics.service.ingest.batch.size";
+
+  public static final String TIMELINE_METRICS_INGEST_BATCH_LINGER_MILLIS =
+    "timeline.metrics.service.ingest.batch.linger.millis";
+
+  public static final String TIMELINE_METRICS_INGEST_COMMIT_THREADS =
+    "timeline.metrics.service.ingest.commit.threads";
+
+  public static final String TIMELINE_METRICS_INGEST_RETRY_AFTER_SECONDS =
+    "timeline.metrics.service.ingest.retry.after.seconds";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_ENABLED =
+    "timeline.metrics.service.hot.tier.enabled";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_MAX_AGE_MINUTES =
+    "timeline.metrics.service.hot.tier.max.age.minutes";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_MAX_SIZE_MB =
+    "timeline.metrics.service.hot.tier.max.size.mb";
+
+  public static final String TIMELINE_METRICS_QUERY_CACHE_ENABLED =
+    "timeline.metrics.service.query.cache.enabled";
+
+  public static final String TIMELINE_METRICS_QUERY_CACHE_MAX_SIZE_MB =
+    "timeline.metrics.service.query.cache.max.size.mb";
+
+  public static final String TIMELINE_METRICS_QUERY_CACHE_SETTLE_SECONDS =
+    "timeline.metrics.service.query.cache.settle.seconds";
+
+  public static final String TIMELINE_METRICS_AGGREGATION_PARTITIONS =
+    "timeline.metrics.service.aggregation.partitions";
+
   public static final String HOST_APP_ID = "HOST";
 
   public static final String DEFAULT_INSTANCE_PORT = "12001";
@@ -457,6 +502,21 @@ public class TimelineMetricConfiguration {
     }
   }
 
+  /**
+   * Number of metric name ranges the host and cluster aggregation is split
+   * into, for distribution across collectors.
+   */
+  public int getAggregationPartitionCount() {
+    try {
+      if (metricsConf != null) {
+        return Math.max(1, metricsConf.getInt(TIMELINE_METRICS_AGGREGATION_PARTITIONS, 1));
+      }
+      return 1;
+    } catch (Exception e) {
+      return 1;
+    }
+  }
+
   public boolean isSecurityEnabled() {
     return hbaseConf.get("hbase.security.authentication", "").equals("kerberos");
   }
@@ -93,4 +93,27 @@ public interface TimelineMetricStore {
    * @return [ hostname ]
    */
   List<String> getLiveInstances();
+
+  /**
+   * Return queue depths and per stage latencies of the asynchronous ingest
+   * pipeline, empty if the pipeline is disabled.
+   * @return { statistic : value }
+   */
+  Map<String, Number> getIngestStatistics();
+
+  /**
+   * Return the size of the in memory hot tier for recent precision data and
+   * how often and how fast queries were answered from it, empty if the hot
+   * tier is disabled.
+   * @return { statistic : value }
+   */
+  Map<String, Number> getHotTierStatistics();
+
+  /**
+   * Return the size of the query result cache, its hit ratios, the bytes
+   * not read from the store and query latencies, empty if the cache is
+   * disabled.
+   * @return { statistic : value }
+   */
+  Map<String, Number> getQueryCacheStatistics();
 }
@@ -0,0 +1,410 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes the METRICS column of the precision table.
+ *
+ * Two formats are supported:
+ * 1. JSON, the legacy format, a serialized TreeMap of timestamp to value.
+ * 2. Binary, a versioned Gorilla style encoding, delta-of-delta timestamps
+ * followed by XOR compressed doubles, stored Base64 encoded so that the
+ * existing VARCHAR column can hold both formats.
+ *
+ * Reads detect the format of every row, so tables holding a mix of JSON and
+ * binary rows are read transparently.
+ */
+public class TimelineMetricValuesCodec {
+
+  public static final String JSON_ENCODING = "json";
+  public static final String BINARY_ENCODING = "binary";
+
+  static final byte VERSION_1 = 1;
+
+  private TimelineMetricValuesCodec() {}
+
+  /**
+   * Encode metric values in the requested format. Series that cannot be
+   * represented in binary (null values) are always written as JSON.
+   */
+  public static String encode(TreeMap<Long, Double> values, boolean binary)
+      throws IOException {
+    if (binary && values != null && !values.containsValue(null)) {
+      return DatatypeConverter.printBase64Binary(encodeBinary(values));
+    }
+    return TimelineUtils.dumpTimelineRecordtoJSON(values);
+  }
+
+  /**
+   * Decode the METRICS column, detecting JSON and binary rows.
+   */
+  public static TreeMap<Long, Double> decode(String encoded) throws IOException {
+    if (encoded == null) {
+      return null;
+    }
+    if (isJson(encoded)) {
+      return PhoenixHBaseAccessor.readMetricFromJSON(encoded);
+    }
+    try {
+      return decodeBinary(DatatypeConverter.parseBase64Binary(encoded));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unable to decode metric values.", e);
+    }
+  }
+
+  /**
+   * Decode the METRICS column and append the values to the buffer in the
+   * order they are stored, without building a map.
+   */
+  public static void decode(String encoded, ValuesBuffer buffer) throws IOException {
+    if (encoded == null) {
+      return;
+    }
+    if (isJson(encoded)) {
+      decodeJson(encoded, buffer);
+      return;
+    }
+    try {
+      decodeBinary(DatatypeConverter.parseBase64Binary(encoded), buffer);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unable to decode metric values.", e);
+    }
+  }
+
+  private static void decodeJson(String json, ValuesBuffer buffer) throws IOException {
+    JsonParser parser = PhoenixHBaseAccessor.mapper.getJsonFactory().createJsonParser(json);
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        long timestamp = Long.parseLong(parser.getCurrentName());
+        JsonToken token = parser.nextToken();
+        buffer.add(timestamp, token == JsonToken.VALUE_NULL ? Double.NaN : parser.getDoubleValue());
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException("Unable to decode metric values.", e);
+    } finally {
+      parser.close();
+    }
+  }
+
+  static boolean isJson(String encoded) {
+    for (int i = 0; i < encoded.length(); i++) {
+      char c = encoded.charAt(i);
+      if (!Character.isWhitespace(c)) {
+        return c == '{' || c == 'n';
+      }
+    }
+    return true;
+  }
+
+  static byte[] encodeBinary(TreeMap<Long, Double> values) {
+    BitWriter writer = new BitWriter(16 + values.size() * 4);
+    writer.writeBits(VERSION_1, 8);
+    writer.writeBits(values.size(), 32);
+    if (values.isEmpty()) {
+      return writer.toByteArray();
+    }
+
+    long prevTimestamp = 0;
+    long prevDelta = 0;
+    long prevValue = 0;
+    int prevLeading = -1;
+    int prevTrailing = 0;
+    boolean first = true;
+
+    for (Map.Entry<Long, Double> entry : values.entrySet()) {
+      long timestamp = entry.getKey();
+      long value = Double.doubleToRawLongBits(entry.getValue());
+
+      if (first) {
+        writer.writeBits(timestamp, 64);
+        writer.writeBits(value, 64);
+        first = false;
+      } else {
+        long delta = timestamp - prevTimestamp;
+        writeDeltaOfDelta(writer, delta - prevDelta);
+        prevDelta = delta;
+
+        long xor = value ^ prevValue;
+        if (xor == 0) {
+          writer.writeBit(false);
+        } else {
+          writer.writeBit(true);
+          int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+          int trailing = Long.numberOfTrailingZeros(xor);
+          if (prevLeading != -1 && leading >= prevLeading && trailing >= prevTrailing) {
+            writer.writeBit(false);
+            writer.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+          } else {
+            int significant = 64 - leading - trailing;
+            writer.writeBit(true);
+            writer.writeBits(leading, 5);
+            // 64 significant bits do not fit in 6 bits, stored as 0
+            writer.writeBits(significant == 64 ? 0 : significant, 6);
+            writer.writeBits(xor >>> trailing, significant);
+            prevLeading = leading;
+            prevTrailing = trailing;
+          }
+        }
+      }
+      prevTimestamp = timestamp;
+      prevValue = value;
+    }
+
+    return writer.toByteArray();
+  }
+
+  static TreeMap<Long, Double> decodeBinary(byte[] bytes) throws IOException {
+    ValuesBuffer buffer = new ValuesBuffer();
+    decodeBinary(bytes, buffer);
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    for (int i = 0; i < buffer.size(); i++) {
+      values.put(buffer.getTimestamp(i), buffer.getValue(i));
+    }
+    return values;
+  }
+
+  static void decodeBinary(byte[] bytes, ValuesBuffer buffer) throws IOException {
+    BitReader reader = new BitReader(bytes);
+    int version = (int) reader.readBits(8);
+    if (version != VERSION_1) {
+      throw new IOException("Unsupported metric values encoding version: " + version);
+    }
+    int count = (int) reader.readBits(32);
+    if (count == 0) {
+      return;
+    }
+
+    long timestamp = reader.readBits(64);
+    long value = reader.readBits(64);
+    buffer.add(timestamp, Double.longBitsToDouble(value));
+
+    long delta = 0;
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 1; i < count; i++) {
+      delta += readDeltaOfDelta(reader);
+      timestamp += delta;
+
+      if (reader.readBit()) {
+        if (reader.readBit()) {
+          leading = (int) reader.readBits(5);
+          int significant = (int) reader.readBits(6);
+          if (significant == 0) {
+            significant = 64;
+          }
+          trailing = 64 - leading - significant;
+        }
+        long xor = reader.readBits(64 - leading - trailing) << trailing;
+        value ^= xor;
+      }
+      buffer.add(timestamp, Double.longBitsToDouble(value));
+    }
+  }
+
+  private static void writeDeltaOfDelta(BitWriter writer, long dod) {
+    if (dod == 0) {
+      writer.writeBit(false);
+    } else if (fits(dod, 7)) {
+      writer.writeBits(0x2, 2);
+      writer.writeBits(dod, 7);
+    } else if (fits(dod, 9)) {
+      writer.writeBits(0x6, 3);
+      writer.writeBits(dod, 9);
+    } else if (fits(dod, 12)) {
+      writer.writeBits(0xE, 4);
+      writer.writeBits(dod, 12);
+    } else if (fits(dod, 32)) {
+      writer.writeBits(0x1E, 5);
+      writer.writeBits(dod, 32);
+    } else {
+      writer.writeBits(0x1F, 5);
+      writer.writeBits(dod, 64);
+    }
+  }
+
+  private static long readDeltaOfDelta(BitReader reader) {
+    if (!reader.readBit()) {
+      return 0;
+    }
+    if (!reader.readBit()) {
+      return signExtend(reader.readBits(7), 7);
+    }
+    if (!reader.readBit()) {
+      return signExtend(reader.readBits(9), 9);
+    }
+    if (!reader.readBit()) {
+      return signExtend(reader.readBits(12), 12);
+    }
+    if (!reader.readBit()) {
+      return signExtend(reader.readBits(32), 32);
+    }
+    return reader.readBits(64);
+  }
+
+  private static boolean fits(long value, int bits) {
+    long min = -(1L << (bits - 1));
+    long max = (1L << (bits - 1)) - 1;
+    return value >= min && value <= max;
+  }
+
+  private static long signExtend(long value, int bits) {
+    int shift = 64 - bits;
+    return (value << shift) >> shift;
+  }
+
+  /**
+   * Growable arrays of decoded timestamps and values, null values are kept
+   * as NaN. Reused across rows to avoid a map per row.
+   */
+  public static class ValuesBuffer {
+    private long[] timestamps = new long[16];
+    private double[] values = new double[16];
+    private int size;
+
+    public void add(long timestamp, double value) {
+      if (size == timestamps.length) {
+        timestamps = Arrays.copyOf(timestamps, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public long getTimestamp(int i) {
+      return timestamps[i];
+    }
+
+    public double getValue(int i) {
+      return values[i];
+    }
+
+    public void clear() {
+      size = 0;
+    }
+
+    /**
+     * Order the values by timestamp, for equal timestamps the value added
+     * last wins, the same as putting them into a map one row after the other.
+     */
+    public void sortAndDeduplicate() {
+      boolean sorted = true;
+      for (int i = 1; i < size && sorted; i++) {
+        sorted = timestamps[i - 1] < timestamps[i];
+      }
+      if (sorted) {
+        return;
+      }
+      // Rows of a series rarely overlap, not worth avoiding the map
+      TreeMap<Long, Double> map = new TreeMap<Long, Double>();
+      for (int i = 0; i < size; i++) {
+        map.put(timestamps[i], values[i]);
+      }
+      size = 0;
+      for (Map.Entry<Long, Double> entry : map.entrySet()) {
+        timestamps[size] = entry.getKey();
+        values[size] = entry.getValue();
+        size++;
+      }
+    }
+  }
+
+  static class BitWriter {
+    private byte[] buffer;
+    private int bitPosition = 0;
+
+    BitWriter(int initialSize) {
+      buffer = new byte[Math.max(initialSize, 16)];
+    }
+
+    void writeBit(boolean bit) {
+      ensureCapacity(1);
+      if (bit) {
+        buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+      }
+      bitPosition++;
+    }
+
+    /**
+     * Write the lowest numBits of value, most significant bit first.
+     */
+    void writeBits(long value, int numBits) {
+      ensureCapacity(numBits);
+      for (int i = numBits - 1; i >= 0; i--) {
+        if (((value >>> i) & 1L) != 0) {
+          buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+        }
+        bitPosition++;
+      }
+    }
+
+    private void ensureCapacity(int numBits) {
+      int required = (bitPosition + numBits + 7) >>> 3;
+      if (required > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, (bitPosition + 7) >>> 3);
+    }
+  }
+
+  static class BitReader {
+    private final byte[] buffer;
+    private int bitPosition = 0;
+
+    BitReader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    boolean readBit() {
+      if ((bitPosition >>> 3) >= buffer.length) {
+        throw new IllegalArgumentException("Truncated metric values.");
+      }
+      boolean bit = (buffer[bitPosition >>> 3] & (0x80 >>> (bitPosition & 7))) != 0;
+      bitPosition++;
+      return bit;
+    }
+
+    long readBits(int numBits) {
+      long value = 0;
+      for (int i = 0; i < numBits; i++) {
+        value = (value << 1) | (readBit() ? 1L : 0L);
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.TreeMap;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_RECORD_TABLE_NAME;
+
+/**
+ * Rewrites JSON encoded rows of the precision table in the binary format.
+ * Rows already in the binary format are left untouched, so the tool can be
+ * re-run safely over overlapping time ranges.
+ *
+ * Usage: TimelineMetricValuesMigrationTool [startTime] [endTime]
+ * Times are epoch milliseconds of SERVER_TIME, defaulting to the whole table.
+ */
+public class TimelineMetricValuesMigrationTool {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricValuesMigrationTool.class);
+
+  static final String SELECT_METRIC_VALUES_SQL = "SELECT METRIC_NAME, " +
+    "HOSTNAME, SERVER_TIME, APP_ID, INSTANCE_ID, METRICS FROM %s " +
+    "WHERE SERVER_TIME >= ? AND SERVER_TIME < ?";
+
+  static final String UPSERT_METRIC_VALUES_SQL = "UPSERT INTO %s " +
+    "(METRIC_NAME, HOSTNAME, SERVER_TIME, APP_ID, INSTANCE_ID, METRICS) " +
+    "VALUES (?, ?, ?, ?, ?, ?)";
+
+  private static final int COMMIT_BATCH_SIZE = 10000;
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+
+  public TimelineMetricValuesMigrationTool(PhoenixHBaseAccessor hBaseAccessor) {
+    this.hBaseAccessor = hBaseAccessor;
+  }
+
+  /**
+   * @return number of rows rewritten
+   */
+  public long migrate(long startTime, long endTime) throws SQLException, IOException {
+    Connection conn = null;
+    PreparedStatement selectStmt = null;
+    PreparedStatement upsertStmt = null;
+    ResultSet rs = null;
+    long migrated = 0;
+
+    try {
+      conn = hBaseAccessor.getConnection();
+      selectStmt = conn.prepareStatement(String.format(
+        SELECT_METRIC_VALUES_SQL, METRICS_RECORD_TABLE_NAME));
+      selectStmt.setLong(1, startTime);
+      selectStmt.setLong(2, endTime);
+      upsertStmt = conn.prepareStatement(String.format(
+        UPSERT_METRIC_VALUES_SQL, METRICS_RECORD_TABLE_NAME));
+
+      rs = selectStmt.executeQuery();
+      while (rs.next()) {
+        String encoded = rs.getString("METRICS");
+        if (encoded == null || !TimelineMetricValuesCodec.isJson(encoded)) {
+          continue;
+        }
+        TreeMap<Long, Double> values = TimelineMetricValuesCodec.decode(encoded);
+
+        upsertStmt.clearParameters();
+        upsertStmt.setString(1, rs.getString("METRIC_NAME"));
+        upsertStmt.setString(2, rs.getString("HOSTNAME"));
+        upsertStmt.setLong(3, rs.getLong("SERVER_TIME"));
+        upsertStmt.setString(4, rs.getString("APP_ID"));
+        upsertStmt.setString(5, rs.getString("INSTANCE_ID"));
+        upsertStmt.setString(6, TimelineMetricValuesCodec.encode(values, true));
+        upsertStmt.executeUpdate();
+
+        if (++migrated % COMMIT_BATCH_SIZE == 0) {
+          conn.commit();
+          LOG.info("Migrated " + migrated + " rows to binary metric values.");
+        }
+      }
+      conn.commit();
+    } finally {
+      if (rs != null) {
+        try {
+          rs.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (selectStmt != null) {
+        try {
+          selectStmt.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (upsertStmt != null) {
+        try {
+          upsertStmt.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (conn != null) {
+        try {
+          conn.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+    }
+
+    LOG.info("Migrated " + migrated + " rows to binary metric values.");
+    return migrated;
+  }
+
+  public static void main(String[] args) throws Exception {
+    long startTime = args.length > 0 ? Long.parseLong(args[0]) : 0L;
+    long endTime = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+
+    TimelineMetricConfiguration configuration = new TimelineMetricConfiguration();
+    configuration.initialize();
+    PhoenixHBaseAccessor hBaseAccessor = new PhoenixHBaseAccessor(
+      configuration.getHbaseConf(), configuration.getMetricsConf());
+
+    new TimelineMetricValuesMigrationTool(hBaseAccessor).migrate(startTime, endTime);
+    System.exit(0);
+  }
+}
@@ -0,0 +1,405 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_MAX_AGE_MINUTES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_MAX_SIZE_MB;
+
+/**
+ * In memory copy of the most recent METRIC_RECORD rows written by this
+ * collector, so that queries for recent precision data do not have to go to
+ * Phoenix.
+ *
+ * Rows are added once they have been committed, with the SERVER_TIME they were
+ * stored with, and kept as primitive arrays. They are evicted oldest first
+ * when they are older than the maximum age or the estimated size of the tier
+ * exceeds its limit. Every row committed with a SERVER_TIME at or after
+ * {@link #getCoveredFrom()} is in the tier, older rows have to be read from
+ * the store.
+ */
+public class TimelineMetricsHotTier {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsHotTier.class);
+
+  // Estimated heap used by a row and a series besides their values and
+  // names: object headers, fields, the arrays and the index entries.
+  static final int ROW_OVERHEAD_BYTES = 160;
+  static final int SERIES_OVERHEAD_BYTES = 256;
+
+  private static final Comparator<Row> ROW_COMPARATOR = new Comparator<Row>() {
+    @Override
+    public int compare(Row r1, Row r2) {
+      int result = r1.series.metricName.compareTo(r2.series.metricName);
+      if (result == 0) {
+        result = Long.compare(r1.serverTime, r2.serverTime);
+      }
+      if (result == 0) {
+        result = compareNullable(r1.series.hostname, r2.series.hostname);
+      }
+      return result;
+    }
+  };
+
+  private final long maxAgeMillis;
+  private final long maxBytes;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<SeriesKey, Series> series = new HashMap<SeriesKey, Series>();
+  private final Map<String, List<Series>> seriesByMetricName = new HashMap<String, List<Series>>();
+  private final ArrayDeque<Row> rows = new ArrayDeque<Row>();
+  private int rowCount;
+  private long bytes;
+  private volatile long coveredFrom;
+
+  private final LatencyStatistics hitStatistics = new LatencyStatistics();
+  private final LatencyStatistics partialHitStatistics = new LatencyStatistics();
+  private final LatencyStatistics missStatistics = new LatencyStatistics();
+  private final AtomicLong rowsAdded = new AtomicLong();
+  private final AtomicLong rowsEvictedByAge = new AtomicLong();
+  private final AtomicLong rowsEvictedBySize = new AtomicLong();
+
+  public TimelineMetricsHotTier(Configuration metricsConf) {
+    this(TimeUnit.MINUTES.toMillis(metricsConf.getInt(TIMELINE_METRICS_HOT_TIER_MAX_AGE_MINUTES, 60)),
+      metricsConf.getLong(TIMELINE_METRICS_HOT_TIER_MAX_SIZE_MB, 256) * 1024 * 1024,
+      System.currentTimeMillis());
+  }
+
+  TimelineMetricsHotTier(long maxAgeMillis, long maxBytes, long coveredFrom) {
+    this.maxAgeMillis = maxAgeMillis;
+    this.maxBytes = maxBytes;
+    this.coveredFrom = coveredFrom;
+    LOG.info("Initialized metrics hot tier, max age = " + maxAgeMillis +
+      " ms, max size = " + maxBytes + " bytes");
+  }
+
+  /**
+   * Add metrics committed to METRIC_RECORD with the given SERVER_TIME, a row
+   * already stored for a series at that time is replaced.
+   */
+  public void add(Collection<TimelineMetric> metrics, long serverTime) {
+    lock.writeLock().lock();
+    try {
+      if (serverTime < coveredFrom) {
+        // Committed after rows newer than it were evicted
+        return;
+      }
+      for (TimelineMetric metric : metrics) {
+        addRow(metric, serverTime);
+      }
+      evict(serverTime);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void addRow(TimelineMetric metric, long serverTime) {
+    SeriesKey key = new SeriesKey(metric.getMetricName(), metric.getHostName(),
+      metric.getAppId(), metric.getInstanceId());
+    Series s = series.get(key);
+    if (s == null) {
+      s = new Series(key);
+      series.put(key, s);
+      List<Series> named = seriesByMetricName.get(s.metricName);
+      if (named == null) {
+        named = new ArrayList<Series>(1);
+        seriesByMetricName.put(s.metricName, named);
+      }
+      named.add(s);
+      bytes += s.bytes;
+    }
+
+    Map<Long, Double> values = metric.getMetricValues();
+    long[] times = new long[values.size()];
+    double[] doubles = new double[values.size()];
+    int i = 0;
+    for (Map.Entry<Long, Double> value : values.entrySet()) {
+      times[i] = value.getKey();
+      doubles[i] = value.getValue() == null ? Double.NaN : value.getValue();
+      i++;
+    }
+
+    Row row = new Row(s, serverTime, metric.getStartTime(), metric.getUnits(), times, doubles);
+    Row replaced = s.rows.put(serverTime, row);
+    if (replaced != null) {
+      replaced.removed = true;
+      bytes -= replaced.bytes;
+    } else {
+      rowCount++;
+    }
+    rows.addLast(row);
+    bytes += row.bytes;
+    rowsAdded.incrementAndGet();
+  }
+
+  private void evict(long now) {
+    while (!rows.isEmpty()) {
+      Row row = rows.peekFirst();
+      if (row.removed) {
+        rows.pollFirst();
+      } else if (row.serverTime < now - maxAgeMillis) {
+        remove(rows.pollFirst());
+        rowsEvictedByAge.incrementAndGet();
+      } else if (bytes > maxBytes) {
+        remove(rows.pollFirst());
+        rowsEvictedBySize.incrementAndGet();
+      } else {
+        break;
+      }
+    }
+  }
+
+  private void remove(Row row) {
+    Series s = row.series;
+    s.rows.remove(row.serverTime);
+    rowCount--;
+    bytes -= row.bytes;
+    if (s.rows.isEmpty()) {
+      series.remove(s.key);
+      List<Series> named = seriesByMetricName.get(s.metricName);
+      named.remove(s);
+      if (named.isEmpty()) {
+        seriesByMetricName.remove(s.metricName);
+      }
+      bytes -= s.bytes;
+    }
+    if (row.serverTime >= coveredFrom) {
+      coveredFrom = row.serverTime + 1;
+    }
+  }
+
+  /**
+   * SERVER_TIME from which on all committed rows are in the tier.
+   */
+  public long getCoveredFrom() {
+    return coveredFrom;
+  }
+
+  /**
+   * Rows of the series matching the metric names, hostnames, app id and
+   * instance id of the condition with a SERVER_TIME in [startTime, endTime),
+   * ordered by metric name and SERVER_TIME like the METRIC_RECORD query.
+   * Metric names and hostnames are matched exactly, LIKE patterns are not
+   * supported.
+   */
+  public List<TimelineMetric> getMetricRecords(Condition condition, long startTime,
+                                               long endTime, Integer limit) {
+    Set<String> hostnames = condition.getHostnames() == null || condition.getHostnames().isEmpty() ?
+      null : new HashSet<String>(condition.getHostnames());
+    String appId = condition.getAppId();
+    String instanceId = condition.getInstanceId();
+
+    List<Row> found = new ArrayList<Row>();
+    lock.readLock().lock();
+    try {
+      for (String metricName : new HashSet<String>(condition.getMetricNames())) {
+        List<Series> named = seriesByMetricName.get(metricName);
+        if (named == null) {
+          continue;
+        }
+        for (Series s : named) {
+          if ((hostnames == null || hostnames.contains(s.hostname))
+              && (appId == null || appId.equals(s.appId))
+              && (instanceId == null || instanceId.equals(s.instanceId))) {
+            found.addAll(s.rows.subMap(startTime, endTime).values());
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    // Rows are never changed once added, build the results without the lock
+    Collections.sort(found, ROW_COMPARATOR);
+    int size = limit == null ? found.size() : Math.min(limit, found.size());
+    List<TimelineMetric> metrics = new ArrayList<TimelineMetric>(size);
+    for (int i = 0; i < size; i++) {
+      metrics.add(found.get(i).toTimelineMetric());
+    }
+    return metrics;
+  }
+
+  void recordHit(long nanos) {
+    hitStatistics.record(nanos);
+  }
+
+  void recordPartialHit(long nanos) {
+    partialHitStatistics.record(nanos);
+  }
+
+  void recordMiss(long nanos) {
+    missStatistics.record(nanos);
+  }
+
+  /**
+   * Size of the tier and query counts and latencies in milliseconds for
+   * queries served from the tier, from the tier and the store, or from the
+   * store only.
+   */
+  public Map<String, Number> getStatistics() {
+    Map<String, Number> statistics = new LinkedHashMap<String, Number>();
+    lock.readLock().lock();
+    try {
+      statistics.put("series", series.size());
+      statistics.put("rows", rowCount);
+      statistics.put("bytes", bytes);
+    } finally {
+      lock.readLock().unlock();
+    }
+    statistics.put("max.bytes", maxBytes);
+    statistics.put("covered.from", coveredFrom);
+    statistics.put("rows.added", rowsAdded.get());
+    statistics.put("rows.evicted.age", rowsEvictedByAge.get());
+    statistics.put("rows.evicted.size", rowsEvictedBySize.get());
+    hitStatistics.addTo(statistics, "query.hit");
+    partialHitStatistics.addTo(statistics, "query.partial");
+    missStatistics.addTo(statistics, "query.miss");
+    return statistics;
+  }
+
+  private static int compareNullable(String s1, String s2) {
+    if (s1 == null) {
+      return s2 == null ? 0 : -1;
+    }
+    return s2 == null ? 1 : s1.compareTo(s2);
+  }
+
+  private static long stringBytes(String s) {
+    return s == null ? 0 : 40 + 2 * s.length();
+  }
+
+  private static class SeriesKey {
+    private final String metricName;
+    private final String hostname;
+    private final String appId;
+    private final String instanceId;
+
+    SeriesKey(String metricName, String hostname, String appId, String instanceId) {
+      this.metricName = metricName;
+      this.hostname = hostname;
+      this.appId = appId;
+      this.instanceId = instanceId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof SeriesKey)) return false;
+
+      SeriesKey that = (SeriesKey) o;
+      return metricName.equals(that.metricName)
+        && (hostname != null ? hostname.equals(that.hostname) : that.hostname == null)
+        && (appId != null ? appId.equals(that.appId) : that.appId == null)
+        && (instanceId != null ? instanceId.equals(that.instanceId) : that.instanceId == null);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = metricName.hashCode();
+      result = 31 * result + (hostname != null ? hostname.hashCode() : 0);
+      result = 31 * result + (appId != null ? appId.hashCode() : 0);
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      return result;
+    }
+  }
+
+  private static class Series {
+    private final SeriesKey key;
+    private final String metricName;
+    private final String hostname;
+    private final String appId;
+    private final String instanceId;
+    private final long bytes;
+    private final TreeMap<Long, Row> rows = new TreeMap<Long, Row>();
+
+    Series(SeriesKey key) {
+      this.key = key;
+      this.metricName = key.metricName;
+      this.hostname = key.hostname;
+      this.appId = key.appId;
+      this.instanceId = key.instanceId;
+      this.bytes = SERIES_OVERHEAD_BYTES + stringBytes(metricName) + stringBytes(hostname)
+        + stringBytes(appId) + stringBytes(instanceId);
+    }
+  }
+
+  private static class Row {
+    private final Series series;
+    private final long serverTime;
+    private final long startTime;
+    private final String units;
+    private final long[] times;
+    private final double[] values;
+    private final long bytes;
+    // Replaced by a row for the same series and SERVER_TIME
+    private boolean removed;
+
+    Row(Series series, long serverTime, long startTime, String units,
+        long[] times, double[] values) {
+      this.series = series;
+      this.serverTime = serverTime;
+      this.startTime = startTime;
+      this.units = units;
+      this.times = times;
+      this.values = values;
+      this.bytes = ROW_OVERHEAD_BYTES + 16L * times.length;
+    }
+
+    /**
+     * Same as {@link org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricReadHelper#getTimelineMetricFromResultSet}
+     * for the stored row.
+     */
+    TimelineMetric toTimelineMetric() {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(series.metricName);
+      metric.setAppId(series.appId);
+      metric.setInstanceId(series.instanceId);
+      metric.setHostName(series.hostname);
+      metric.setTimestamp(serverTime);
+      metric.setStartTime(startTime);
+      metric.setType(units);
+      TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+      for (int i = 0; i < times.length; i++) {
+        metricValues.put(times[i], Double.isNaN(values[i]) ? null : values[i]);
+      }
+      metric.setMetricValues(metricValues);
+      return metric;
+    }
+  }
+}
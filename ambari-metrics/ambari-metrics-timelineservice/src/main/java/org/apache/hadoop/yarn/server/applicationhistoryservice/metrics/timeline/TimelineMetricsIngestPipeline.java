@@ -0,0 +1,313 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_ACCEPT_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_BATCH_LINGER_MILLIS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_COMMIT_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_COMMIT_THREADS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_RETRY_AFTER_SECONDS;
+
+/**
+ * Staged ingest path for {@link TimelineMetricStore#putMetrics}.
+ *
+ * accept -> [accept queue] -> filter, metadata, batch -> [commit queue] -> commit
+ *
+ * The HTTP thread only enqueues the request, a single processing thread
+ * filters, updates metadata and builds commit batches, and a pool of commit
+ * threads writes batches to Phoenix. Both queues are bounded; when HBase is
+ * slow the commit queue fills, the processing thread blocks, the accept queue
+ * fills and new requests are rejected with
+ * {@link MetricsIngestRejectedException} instead of holding Jetty threads.
+ */
+public class TimelineMetricsIngestPipeline {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsIngestPipeline.class);
+
+  private static final long POLL_TIMEOUT_MILLIS = 1000;
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final TimelineMetricMetadataManager metadataManager;
+  private final BlockingQueue<IngestRequest> acceptQueue;
+  private final BlockingQueue<CommitBatch> commitQueue;
+  private final int batchSize;
+  private final long batchLingerMillis;
+  private final int commitThreads;
+  private final int retryAfterSeconds;
+
+  private final LatencyStatistics processStatistics = new LatencyStatistics();
+  private final LatencyStatistics commitStatistics = new LatencyStatistics();
+  private final LatencyStatistics endToEndStatistics = new LatencyStatistics();
+  private final AtomicLong acceptedRequests = new AtomicLong();
+  private final AtomicLong rejectedRequests = new AtomicLong();
+
+  private ExecutorService processExecutor;
+  private ExecutorService commitExecutor;
+  private volatile boolean running = false;
+  // Commit threads run until the process stage has handed over its last batch
+  private volatile boolean processing = false;
+  // Held to accept a request, and exclusively to stop accepting them
+  private final ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+
+  public TimelineMetricsIngestPipeline(PhoenixHBaseAccessor hBaseAccessor,
+                                       TimelineMetricMetadataManager metadataManager,
+                                       Configuration metricsConf) {
+    this.hBaseAccessor = hBaseAccessor;
+    this.metadataManager = metadataManager;
+    this.acceptQueue = new ArrayBlockingQueue<IngestRequest>(
+      metricsConf.getInt(TIMELINE_METRICS_INGEST_ACCEPT_QUEUE_SIZE, 1000));
+    this.commitQueue = new ArrayBlockingQueue<CommitBatch>(
+      metricsConf.getInt(TIMELINE_METRICS_INGEST_COMMIT_QUEUE_SIZE, 16));
+    this.batchSize = metricsConf.getInt(TIMELINE_METRICS_INGEST_BATCH_SIZE, 5000);
+    this.batchLingerMillis = metricsConf.getLong(TIMELINE_METRICS_INGEST_BATCH_LINGER_MILLIS, 1000);
+    this.commitThreads = metricsConf.getInt(TIMELINE_METRICS_INGEST_COMMIT_THREADS, 2);
+    this.retryAfterSeconds = metricsConf.getInt(TIMELINE_METRICS_INGEST_RETRY_AFTER_SECONDS, 10);
+  }
+
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    processing = true;
+    processExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("ingest-process"));
+    processExecutor.submit(new ProcessStage());
+    commitExecutor = Executors.newFixedThreadPool(commitThreads, new NamedThreadFactory("ingest-commit"));
+    for (int i = 0; i < commitThreads; i++) {
+      commitExecutor.submit(new CommitStage());
+    }
+    LOG.info("Started metrics ingest pipeline with " + commitThreads +
+      " commit threads, batch size = " + batchSize);
+  }
+
+  /**
+   * Stop accepting requests and drain what has already been accepted.
+   */
+  public synchronized void stop(long timeout, TimeUnit unit) throws InterruptedException {
+    if (!running) {
+      return;
+    }
+    acceptLock.writeLock().lock();
+    try {
+      running = false;
+    } finally {
+      acceptLock.writeLock().unlock();
+    }
+    processExecutor.shutdown();
+    if (!processExecutor.awaitTermination(timeout, unit)) {
+      // The interrupted process stage still hands over its current batch, so
+      // the commit stage must keep running until it has exited
+      LOG.warn("Ingest process stage did not drain " + acceptQueue.size() +
+        " accepted requests in time, interrupting it.");
+      processExecutor.shutdownNow();
+      if (!processExecutor.awaitTermination(timeout, unit)) {
+        LOG.error("Ingest process stage did not exit after being interrupted.");
+      }
+    }
+    processing = false;
+    commitExecutor.shutdown();
+    if (!commitExecutor.awaitTermination(timeout, unit)) {
+      LOG.warn("Ingest commit stage did not commit " + commitQueue.size() +
+        " batches in time, interrupting it.");
+      commitExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Enqueue metrics for asynchronous storage, does not block.
+   * @throws MetricsIngestRejectedException if the pipeline is full
+   */
+  public void accept(TimelineMetrics metrics) throws MetricsIngestRejectedException {
+    boolean accepted;
+    // Once stop() holds the lock no request can be enqueued, so the process
+    // stage drains every accepted request before it exits
+    acceptLock.readLock().lock();
+    try {
+      accepted = running && acceptQueue.offer(new IngestRequest(metrics));
+    } finally {
+      acceptLock.readLock().unlock();
+    }
+    if (!accepted) {
+      rejectedRequests.incrementAndGet();
+      throw new MetricsIngestRejectedException("Metrics ingest queue is full, " +
+        "retry after " + retryAfterSeconds + " seconds.", retryAfterSeconds);
+    }
+    acceptedRequests.incrementAndGet();
+  }
+
+  /**
+   * Queue depths, request counts and per stage latencies in milliseconds.
+   */
+  public Map<String, Number> getStatistics() {
+    Map<String, Number> statistics = new LinkedHashMap<String, Number>();
+    statistics.put("accept.queue.depth", acceptQueue.size());
+    statistics.put("accept.queue.remaining", acceptQueue.remainingCapacity());
+    statistics.put("commit.queue.depth", commitQueue.size());
+    statistics.put("commit.queue.remaining", commitQueue.remainingCapacity());
+    statistics.put("requests.accepted", acceptedRequests.get());
+    statistics.put("requests.rejected", rejectedRequests.get());
+    processStatistics.addTo(statistics, "process");
+    commitStatistics.addTo(statistics, "commit");
+    endToEndStatistics.addTo(statistics, "total");
+    return statistics;
+  }
+
+  private class ProcessStage implements Runnable {
+    @Override
+    public void run() {
+      List<TimelineMetrics> batch = new ArrayList<TimelineMetrics>();
+      int batchMetrics = 0;
+      long batchDeadline = 0;
+      long oldestAcceptTime = 0;
+
+      while (running || !acceptQueue.isEmpty()) {
+        try {
+          long wait = batch.isEmpty() ? POLL_TIMEOUT_MILLIS :
+            Math.max(0, batchDeadline - System.currentTimeMillis());
+          IngestRequest request = acceptQueue.poll(wait, TimeUnit.MILLISECONDS);
+
+          if (request != null) {
+            long start = System.nanoTime();
+            hBaseAccessor.filterAndUpdateMetadata(metadataManager, request.metrics);
+            processStatistics.record(System.nanoTime() - start);
+
+            if (request.metrics.getMetrics() != null && !request.metrics.getMetrics().isEmpty()) {
+              if (batch.isEmpty()) {
+                batchDeadline = System.currentTimeMillis() + batchLingerMillis;
+                oldestAcceptTime = request.acceptTime;
+              }
+              batch.add(request.metrics);
+              batchMetrics += request.metrics.getMetrics().size();
+            }
+          }
+
+          if (!batch.isEmpty() && (batchMetrics >= batchSize || !running ||
+              System.currentTimeMillis() >= batchDeadline)) {
+            // Blocks while the commit stage is saturated, which in turn
+            // fills the accept queue and rejects new requests
+            commitQueue.put(new CommitBatch(batch, oldestAcceptTime));
+            batch = new ArrayList<TimelineMetrics>();
+            batchMetrics = 0;
+          }
+        } catch (InterruptedException e) {
+          LOG.warn("Ingest process stage interrupted, " + acceptQueue.size() +
+            " accepted requests are not stored.");
+          if (!batch.isEmpty() && !commitQueue.offer(new CommitBatch(batch, oldestAcceptTime))) {
+            LOG.warn("Commit queue is full, " + batch.size() + " processed requests are not stored.");
+          }
+          Thread.currentThread().interrupt();
+          return;
+        } catch (Exception e) {
+          LOG.error("Failed to process metrics put request.", e);
+        }
+      }
+
+      // A request batched just before stop() cleared the flag is still pending
+      if (!batch.isEmpty()) {
+        try {
+          commitQueue.put(new CommitBatch(batch, oldestAcceptTime));
+        } catch (InterruptedException e) {
+          LOG.warn("Ingest process stage interrupted, " + batch.size() +
+            " processed requests are not stored.");
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  private class CommitStage implements Runnable {
+    @Override
+    public void run() {
+      while (processing || !commitQueue.isEmpty()) {
+        try {
+          CommitBatch batch = commitQueue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+          if (batch == null) {
+            continue;
+          }
+          long start = System.nanoTime();
+          hBaseAccessor.commitMetrics(batch.metrics);
+          long end = System.nanoTime();
+          commitStatistics.record(end - start);
+          endToEndStatistics.record(end - batch.oldestAcceptTime);
+        } catch (InterruptedException e) {
+          LOG.warn("Ingest commit stage interrupted.");
+          Thread.currentThread().interrupt();
+          return;
+        } catch (Exception e) {
+          LOG.error("Failed to commit metrics batch.", e);
+        }
+      }
+    }
+  }
+
+  private static class IngestRequest {
+    private final TimelineMetrics metrics;
+    private final long acceptTime = System.nanoTime();
+
+    IngestRequest(TimelineMetrics metrics) {
+      this.metrics = metrics;
+    }
+  }
+
+  private static class CommitBatch {
+    private final List<TimelineMetrics> metrics;
+    private final long oldestAcceptTime;
+
+    CommitBatch(List<TimelineMetrics> metrics, long oldestAcceptTime) {
+      this.metrics = metrics;
+      this.oldestAcceptTime = oldestAcceptTime;
+    }
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
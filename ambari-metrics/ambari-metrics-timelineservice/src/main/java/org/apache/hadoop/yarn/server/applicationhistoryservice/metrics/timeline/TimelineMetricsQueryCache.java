@@ -0,0 +1,815 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.PrecisionLimitExceededException;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_QUERY_CACHE_MAX_SIZE_MB;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_QUERY_CACHE_SETTLE_SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_DAILY_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_HOURLY_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_MINUTE_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_DAILY_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_HOURLY_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_MINUTE_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_RECORD_TABLE_NAME;
+
+/**
+ * Cache of time series query results, so that dashboards polling the same
+ * sliding window only read the part of the window they have not seen yet.
+ *
+ * Results are kept per metric name, functions, hostnames, app id, instance
+ * id and precision, as the rows of the underlying table split into buckets
+ * aligned to the precision. A bucket holds every row with a SERVER_TIME in
+ * its range and is only stored once it is older than the settle time, rows
+ * for it are not expected anymore then. A query is answered from the cached
+ * buckets and reads only the missing head and tail of its window, the
+ * results are stitched back into the series the store would have returned.
+ * Buckets are invalidated when an aggregator of this collector writes their
+ * time range, whole entries are evicted least recently used first when the
+ * estimated size exceeds the limit.
+ */
+public class TimelineMetricsQueryCache {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsQueryCache.class);
+
+  // Estimated heap used by an entry, bucket, series and row besides their
+  // values and names: object headers, fields, arrays and map entries.
+  static final int ENTRY_OVERHEAD_BYTES = 512;
+  static final int BUCKET_OVERHEAD_BYTES = 96;
+  static final int SERIES_OVERHEAD_BYTES = 256;
+  static final int ROW_OVERHEAD_BYTES = 160;
+
+  private static final Comparator<Row> SERVER_TIME_COMPARATOR = new Comparator<Row>() {
+    @Override
+    public int compare(Row r1, Row r2) {
+      return Long.compare(r1.serverTime, r2.serverTime);
+    }
+  };
+
+  /**
+   * Reads the rows of a condition from the store, one metric per row.
+   */
+  public interface MetricRecordsReader {
+    TimelineMetrics read(Condition condition, Multimap<String, List<Function>> metricFunctions)
+      throws SQLException, IOException;
+  }
+
+  private final long maxBytes;
+  private final long settleMillis;
+
+  private final Lock lock = new ReentrantLock();
+  // Access ordered, the eldest entry is the least recently used one
+  private final LinkedHashMap<EntryKey, Entry> entries =
+    new LinkedHashMap<EntryKey, Entry>(16, 0.75f, true);
+  private int bucketCount;
+  private long bytes;
+  // Rows read before an invalidation are not stored
+  private long generation;
+
+  private final LatencyStatistics hitStatistics = new LatencyStatistics();
+  private final LatencyStatistics partialHitStatistics = new LatencyStatistics();
+  private final LatencyStatistics missStatistics = new LatencyStatistics();
+  private final AtomicLong rowsFromCache = new AtomicLong();
+  private final AtomicLong rowsFromStore = new AtomicLong();
+  private final AtomicLong bytesSaved = new AtomicLong();
+  private final AtomicLong storeQueries = new AtomicLong();
+  private final AtomicLong bucketsInvalidated = new AtomicLong();
+  private final AtomicLong entriesEvicted = new AtomicLong();
+
+  public TimelineMetricsQueryCache(Configuration metricsConf) {
+    this(metricsConf.getLong(TIMELINE_METRICS_QUERY_CACHE_MAX_SIZE_MB, 128) * 1024 * 1024,
+      TimeUnit.SECONDS.toMillis(metricsConf.getInt(TIMELINE_METRICS_QUERY_CACHE_SETTLE_SECONDS, 180)));
+  }
+
+  TimelineMetricsQueryCache(long maxBytes, long settleMillis) {
+    this.maxBytes = maxBytes;
+    this.settleMillis = settleMillis;
+    LOG.info("Initialized metrics query cache, max size = " + maxBytes +
+      " bytes, settle time = " + settleMillis + " ms");
+  }
+
+  /**
+   * Time covered by a bucket of the given precision.
+   */
+  static long getBucketMillis(Precision precision) {
+    switch (precision) {
+      case DAYS:
+        return TimeUnit.DAYS.toMillis(1);
+      case HOURS:
+        return TimeUnit.HOURS.toMillis(1);
+      default:
+        return TimeUnit.MINUTES.toMillis(5);
+    }
+  }
+
+  /**
+   * Table read for the precision, by the cluster aggregate or by the host
+   * query.
+   */
+  static String getTableName(Precision precision, boolean clusterAggregates) {
+    switch (precision) {
+      case DAYS:
+        return clusterAggregates ? METRICS_CLUSTER_AGGREGATE_DAILY_TABLE_NAME : METRICS_AGGREGATE_DAILY_TABLE_NAME;
+      case HOURS:
+        return clusterAggregates ? METRICS_CLUSTER_AGGREGATE_HOURLY_TABLE_NAME : METRICS_AGGREGATE_HOURLY_TABLE_NAME;
+      case MINUTES:
+        return clusterAggregates ? METRICS_CLUSTER_AGGREGATE_MINUTE_TABLE_NAME : METRICS_AGGREGATE_MINUTE_TABLE_NAME;
+      default:
+        return clusterAggregates ? METRICS_CLUSTER_AGGREGATE_TABLE_NAME : METRICS_RECORD_TABLE_NAME;
+    }
+  }
+
+  /**
+   * Buckets ending at or before the returned time may be stored. Precision
+   * rows are written with the time they were committed, aggregates for a
+   * time range only once it has passed, so those lag one more bucket.
+   */
+  long getStableBefore(Precision precision, boolean clusterAggregates, long now) {
+    long bucketMillis = getBucketMillis(precision);
+    long stableBefore = alignDown(now - settleMillis, bucketMillis);
+    if (clusterAggregates || precision != Precision.SECONDS) {
+      stableBefore -= bucketMillis;
+    }
+    return stableBefore;
+  }
+
+  /**
+   * Only grouped time series queries of exact metric names and hostnames
+   * without a limit below the default are cached.
+   */
+  public boolean isCacheable(Condition condition, Multimap<String, List<Function>> metricFunctions) {
+    if (condition.getClass() != DefaultCondition.class
+        || metricFunctions == null
+        || !condition.isGrouped()
+        || condition.isPointInTime()
+        || condition.getStatement() != null
+        || condition.getStartTime() == null || condition.getEndTime() == null
+        || condition.getEndTime() <= condition.getStartTime()
+        || condition.getMetricNames() == null || condition.getMetricNames().isEmpty()) {
+      return false;
+    }
+    if (condition.getLimit() != null && condition.getLimit() < PhoenixHBaseAccessor.RESULTSET_LIMIT) {
+      return false;
+    }
+
+    for (String metricName : condition.getMetricNames()) {
+      if (metricName.contains("%")) {
+        return false;
+      }
+    }
+    if (condition.getHostnames() != null) {
+      for (String hostname : condition.getHostnames()) {
+        if (hostname.contains("%")) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Results of a cacheable condition, read from the cache and, for the time
+   * ranges not cached, with the reader.
+   *
+   * @param clusterAggregates whether the condition is for the cluster
+   *                          aggregate tables or for the host tables
+   */
+  public TimelineMetrics getMetricRecords(Condition condition,
+                                          Multimap<String, List<Function>> metricFunctions,
+                                          boolean clusterAggregates, MetricRecordsReader reader)
+    throws SQLException, IOException {
+    return getMetricRecords(condition, metricFunctions, clusterAggregates, reader,
+      System.currentTimeMillis());
+  }
+
+  TimelineMetrics getMetricRecords(Condition condition,
+                                   Multimap<String, List<Function>> metricFunctions,
+                                   boolean clusterAggregates, MetricRecordsReader reader,
+                                   long now) throws SQLException, IOException {
+    long startNanos = System.nanoTime();
+
+    // Same checks as for the query of the whole window
+    if (condition.getPrecision() == null) {
+      condition.setPrecision(Precision.getPrecision(condition.getStartTime(), condition.getEndTime()));
+    }
+    PhoenixTransactSQL.validateRowCountLimit(condition);
+
+    Precision precision = condition.getPrecision();
+    long startTime = condition.getStartTime();
+    long endTime = condition.getEndTime();
+    long bucketMillis = getBucketMillis(precision);
+    long stableBefore = getStableBefore(precision, clusterAggregates, now);
+
+    // Read the head from the start of its bucket, so that it can be stored
+    long alignedStart = alignDown(startTime, bucketMillis);
+    long readFrom = alignedStart + bucketMillis <= stableBefore
+      && isWithinRowCountLimit(condition, alignedStart) ? alignedStart : startTime;
+
+    List<String> hostnames = condition.getHostnames() == null || condition.getHostnames().isEmpty() ?
+      null : new ArrayList<String>(new TreeSet<String>(condition.getHostnames()));
+
+    List<Part> parts = new ArrayList<Part>();
+    long readGeneration;
+    lock.lock();
+    try {
+      readGeneration = generation;
+      for (String metricName : new LinkedHashSet<String>(condition.getMetricNames())) {
+        EntryKey key = new EntryKey(metricName,
+          new ArrayList<List<Function>>(metricFunctions.get(metricName)), hostnames,
+          condition.getAppId(), condition.getInstanceId(), precision, clusterAggregates);
+        Part part = new Part(key);
+        Entry entry = entries.get(key);
+        long missingFrom = -1;
+        for (long bucketStart = alignedStart; bucketStart < endTime; bucketStart += bucketMillis) {
+          Bucket bucket = entry == null ? null : entry.buckets.get(bucketStart);
+          if (bucket != null) {
+            if (missingFrom >= 0) {
+              part.missing.add(new TimeRange(missingFrom, bucketStart));
+              missingFrom = -1;
+            }
+            part.cachedRows.addAll(bucket.rows);
+          } else if (missingFrom < 0) {
+            missingFrom = Math.max(bucketStart, readFrom);
+          }
+        }
+        if (missingFrom >= 0) {
+          part.missing.add(new TimeRange(missingFrom, endTime));
+        }
+        parts.add(part);
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    // Metrics missing the same time range are read with one query
+    Map<TimeRange, List<Part>> reads = new LinkedHashMap<TimeRange, List<Part>>();
+    for (Part part : parts) {
+      for (TimeRange range : part.missing) {
+        List<Part> rangeParts = reads.get(range);
+        if (rangeParts == null) {
+          rangeParts = new ArrayList<Part>();
+          reads.put(range, rangeParts);
+        }
+        rangeParts.add(part);
+      }
+    }
+    for (Map.Entry<TimeRange, List<Part>> read : reads.entrySet()) {
+      readRange(condition, metricFunctions, precision, read.getKey(), read.getValue(), reader);
+    }
+
+    if (!reads.isEmpty()) {
+      lock.lock();
+      try {
+        if (readGeneration == generation) {
+          for (Part part : parts) {
+            store(part, bucketMillis, stableBefore, startTime - (endTime - startTime));
+          }
+          evict();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    boolean cached = false;
+    for (Part part : parts) {
+      cached |= appendMetrics(metrics, part, startTime, endTime);
+    }
+
+    long nanos = System.nanoTime() - startNanos;
+    if (reads.isEmpty()) {
+      hitStatistics.record(nanos);
+    } else if (cached) {
+      partialHitStatistics.record(nanos);
+    } else {
+      missStatistics.record(nanos);
+    }
+    return metrics;
+  }
+
+  private boolean isWithinRowCountLimit(Condition condition, long startTime) {
+    try {
+      PhoenixTransactSQL.validateRowCountLimit(new DefaultCondition(
+        new ArrayList<String>(condition.getMetricNames()), condition.getHostnames(),
+        condition.getAppId(), condition.getInstanceId(), startTime, condition.getEndTime(),
+        condition.getPrecision(), null, false));
+      return true;
+    } catch (PrecisionLimitExceededException e) {
+      return false;
+    }
+  }
+
+  private void readRange(Condition condition, Multimap<String, List<Function>> metricFunctions,
+                         Precision precision, TimeRange range, List<Part> rangeParts,
+                         MetricRecordsReader reader) throws SQLException, IOException {
+    List<String> metricNames = new ArrayList<String>(rangeParts.size());
+    Multimap<String, List<Function>> rangeFunctions = ArrayListMultimap.create();
+    Map<String, Part> partsByName = new HashMap<String, Part>();
+    for (Part part : rangeParts) {
+      String metricName = part.key.metricName;
+      metricNames.add(metricName);
+      rangeFunctions.putAll(metricName, metricFunctions.get(metricName));
+      partsByName.put(metricName, part);
+    }
+
+    // Not grouped, every row is returned with its SERVER_TIME
+    Condition rangeCondition = new DefaultCondition(metricNames, condition.getHostnames(),
+      condition.getAppId(), condition.getInstanceId(), range.from, range.to, precision, null, false);
+    TimelineMetrics read = reader.read(rangeCondition, rangeFunctions);
+    storeQueries.incrementAndGet();
+
+    for (TimelineMetric metric : read.getMetrics()) {
+      Part part = findPart(partsByName, metric.getMetricName());
+      if (part != null) {
+        part.readRows.add(new Row(new Series(metric), metric));
+      }
+    }
+  }
+
+  /**
+   * Part of the query a metric belongs to, metric names are returned with
+   * the suffixes of their functions.
+   */
+  private static Part findPart(Map<String, Part> partsByName, String metricName) {
+    Part part = partsByName.get(metricName);
+    int suffix = metricName.lastIndexOf("._");
+    while (part == null && suffix > 0) {
+      part = partsByName.get(metricName.substring(0, suffix));
+      suffix = metricName.lastIndexOf("._", suffix - 1);
+    }
+    return part;
+  }
+
+  private void store(Part part, long bucketMillis, long stableBefore, long keepFrom) {
+    Entry entry = entries.get(part.key);
+    Collections.sort(part.readRows, SERVER_TIME_COMPARATOR);
+    for (TimeRange range : part.missing) {
+      int rowIndex = 0;
+      long storeUntil = Math.min(range.to, stableBefore);
+      for (long bucketStart = alignUp(range.from, bucketMillis);
+           bucketStart + bucketMillis <= storeUntil; bucketStart += bucketMillis) {
+        if (entry == null) {
+          entry = new Entry(part.key, bucketMillis);
+          entries.put(part.key, entry);
+          bytes += entry.bytes;
+        }
+        if (entry.buckets.containsKey(bucketStart)) {
+          continue;
+        }
+        while (rowIndex < part.readRows.size()
+            && part.readRows.get(rowIndex).serverTime < bucketStart) {
+          rowIndex++;
+        }
+        List<Row> rows = new ArrayList<Row>();
+        while (rowIndex < part.readRows.size()
+            && part.readRows.get(rowIndex).serverTime < bucketStart + bucketMillis) {
+          rows.add(entry.canonicalize(part.readRows.get(rowIndex++)));
+        }
+        Bucket bucket = new Bucket(rows);
+        entry.buckets.put(bucketStart, bucket);
+        entry.bytes += bucket.bytes;
+        bytes += bucket.bytes;
+        bucketCount++;
+      }
+    }
+
+    if (entry != null) {
+      // Drop buckets the sliding window has moved past
+      Iterator<Map.Entry<Long, Bucket>> it = entry.buckets.headMap(keepFrom - bucketMillis, true)
+        .entrySet().iterator();
+      while (it.hasNext()) {
+        removeBucket(entry, it);
+      }
+    }
+  }
+
+  private void removeBucket(Entry entry, Iterator<Map.Entry<Long, Bucket>> it) {
+    Bucket bucket = it.next().getValue();
+    it.remove();
+    entry.bytes -= bucket.bytes;
+    bytes -= bucket.bytes;
+    bucketCount--;
+  }
+
+  private void evict() {
+    Iterator<Entry> it = entries.values().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      Entry entry = it.next();
+      it.remove();
+      bytes -= entry.bytes;
+      bucketCount -= entry.buckets.size();
+      entriesEvicted.incrementAndGet();
+    }
+  }
+
+  /**
+   * Append the cached and read rows of the part with a SERVER_TIME in
+   * [startTime, endTime) as grouped metrics, same as
+   * {@link TimelineMetrics#addOrMergeTimelineMetric} does for the rows of
+   * the store.
+   *
+   * @return whether rows were served from the cache
+   */
+  private boolean appendMetrics(TimelineMetrics metrics, Part part, long startTime, long endTime) {
+    List<Row> rows = new ArrayList<Row>(part.cachedRows.size() + part.readRows.size());
+    rows.addAll(part.cachedRows);
+    rows.addAll(part.readRows);
+    Collections.sort(rows, SERVER_TIME_COMPARATOR);
+
+    Map<Series, TimelineMetric> bySeries = new LinkedHashMap<Series, TimelineMetric>();
+    for (Row row : rows) {
+      if (row.serverTime < startTime || row.serverTime >= endTime) {
+        continue;
+      }
+      TimelineMetric metric = bySeries.get(row.series);
+      if (metric == null) {
+        metric = row.toTimelineMetric();
+        bySeries.put(row.series, metric);
+        metrics.getMetrics().add(metric);
+      } else {
+        row.addValuesTo(metric);
+        if (metric.getStartTime() > row.startTime) {
+          metric.setStartTime(row.startTime);
+        }
+      }
+    }
+
+    long cachedRows = 0;
+    long cachedBytes = 0;
+    for (Row row : part.cachedRows) {
+      if (row.serverTime >= startTime && row.serverTime < endTime) {
+        cachedRows++;
+        cachedBytes += row.bytes;
+      }
+    }
+    rowsFromCache.addAndGet(cachedRows);
+    rowsFromStore.addAndGet(part.readRows.size());
+    bytesSaved.addAndGet(cachedBytes);
+    return !part.cachedRows.isEmpty();
+  }
+
+  /**
+   * Drop the cached buckets of the table overlapping [startTime, endTime],
+   * called once rows for that time range have been written to it.
+   */
+  public void invalidate(String tableName, long startTime, long endTime) {
+    lock.lock();
+    try {
+      generation++;
+      Iterator<Entry> entryIt = entries.values().iterator();
+      while (entryIt.hasNext()) {
+        Entry entry = entryIt.next();
+        if (!entry.tableName.equals(tableName)) {
+          continue;
+        }
+        Iterator<Map.Entry<Long, Bucket>> it = entry.buckets.subMap(
+          alignDown(startTime, entry.bucketMillis), true, endTime, true).entrySet().iterator();
+        while (it.hasNext()) {
+          removeBucket(entry, it);
+          bucketsInvalidated.incrementAndGet();
+        }
+        if (entry.buckets.isEmpty()) {
+          entryIt.remove();
+          bytes -= entry.bytes;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Size of the cache, query counts and latencies in milliseconds for
+   * queries answered from the cache, from the cache and the store, or from
+   * the store only, and the share of rows and bytes not read from the store.
+   */
+  public Map<String, Number> getStatistics() {
+    Map<String, Number> statistics = new LinkedHashMap<String, Number>();
+    lock.lock();
+    try {
+      statistics.put("entries", entries.size());
+      statistics.put("buckets", bucketCount);
+      statistics.put("bytes", bytes);
+    } finally {
+      lock.unlock();
+    }
+    statistics.put("max.bytes", maxBytes);
+    long cached = rowsFromCache.get();
+    long read = rowsFromStore.get();
+    statistics.put("rows.cached", cached);
+    statistics.put("rows.read", read);
+    statistics.put("row.hit.ratio", cached + read == 0 ? 0 : (double) cached / (cached + read));
+    statistics.put("bytes.saved", bytesSaved.get());
+    statistics.put("store.queries", storeQueries.get());
+    statistics.put("buckets.invalidated", bucketsInvalidated.get());
+    statistics.put("entries.evicted", entriesEvicted.get());
+    hitStatistics.addTo(statistics, "query.hit");
+    partialHitStatistics.addTo(statistics, "query.partial");
+    missStatistics.addTo(statistics, "query.miss");
+    long hits = hitStatistics.getCount();
+    long queries = hits + partialHitStatistics.getCount() + missStatistics.getCount();
+    statistics.put("hit.ratio", queries == 0 ? 0 : (double) hits / queries);
+    return statistics;
+  }
+
+  static long alignDown(long time, long bucketMillis) {
+    long offset = time % bucketMillis;
+    return offset < 0 ? time - offset - bucketMillis : time - offset;
+  }
+
+  static long alignUp(long time, long bucketMillis) {
+    long aligned = alignDown(time, bucketMillis);
+    return aligned == time ? time : aligned + bucketMillis;
+  }
+
+  private static boolean equal(Object o1, Object o2) {
+    return o1 == null ? o2 == null : o1.equals(o2);
+  }
+
+  private static int hash(Object o) {
+    return o == null ? 0 : o.hashCode();
+  }
+
+  private static long stringBytes(String s) {
+    return s == null ? 0 : 40 + 2 * s.length();
+  }
+
+  private static class EntryKey {
+    private final String metricName;
+    private final List<List<Function>> functions;
+    private final List<String> hostnames;
+    private final String appId;
+    private final String instanceId;
+    private final Precision precision;
+    private final boolean clusterAggregates;
+
+    EntryKey(String metricName, List<List<Function>> functions, List<String> hostnames,
+             String appId, String instanceId, Precision precision, boolean clusterAggregates) {
+      this.metricName = metricName;
+      this.functions = functions;
+      this.hostnames = hostnames;
+      this.appId = appId;
+      this.instanceId = instanceId;
+      this.precision = precision;
+      this.clusterAggregates = clusterAggregates;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof EntryKey)) return false;
+
+      EntryKey that = (EntryKey) o;
+      return metricName.equals(that.metricName)
+        && functions.equals(that.functions)
+        && equal(hostnames, that.hostnames)
+        && equal(appId, that.appId)
+        && equal(instanceId, that.instanceId)
+        && precision == that.precision
+        && clusterAggregates == that.clusterAggregates;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = metricName.hashCode();
+      result = 31 * result + functions.hashCode();
+      result = 31 * result + hash(hostnames);
+      result = 31 * result + hash(appId);
+      result = 31 * result + hash(instanceId);
+      result = 31 * result + precision.hashCode();
+      result = 31 * result + (clusterAggregates ? 1 : 0);
+      return result;
+    }
+  }
+
+  private static class Entry {
+    private final String tableName;
+    private final long bucketMillis;
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<Long, Bucket>();
+    private final Map<Series, Series> series = new HashMap<Series, Series>();
+    private long bytes = ENTRY_OVERHEAD_BYTES;
+
+    Entry(EntryKey key, long bucketMillis) {
+      this.tableName = getTableName(key.precision, key.clusterAggregates);
+      this.bucketMillis = bucketMillis;
+      if (key.hostnames != null) {
+        for (String hostname : key.hostnames) {
+          bytes += stringBytes(hostname);
+        }
+      }
+    }
+
+    /**
+     * Row sharing the series of the rows already in the entry.
+     */
+    Row canonicalize(Row row) {
+      Series s = series.get(row.series);
+      if (s == null) {
+        s = row.series;
+        series.put(s, s);
+        bytes += s.bytes;
+        return row;
+      }
+      return s == row.series ? row : new Row(s, row);
+    }
+  }
+
+  private static class Bucket {
+    private final List<Row> rows;
+    private final long bytes;
+
+    Bucket(List<Row> rows) {
+      this.rows = Collections.unmodifiableList(rows);
+      long rowBytes = 0;
+      for (Row row : rows) {
+        rowBytes += row.bytes;
+      }
+      this.bytes = BUCKET_OVERHEAD_BYTES + rowBytes;
+    }
+  }
+
+  /**
+   * Metric of a query with its cached rows, missing time ranges and the rows
+   * read for them.
+   */
+  private static class Part {
+    private final EntryKey key;
+    private final List<Row> cachedRows = new ArrayList<Row>();
+    private final List<TimeRange> missing = new ArrayList<TimeRange>();
+    private final List<Row> readRows = new ArrayList<Row>();
+
+    Part(EntryKey key) {
+      this.key = key;
+    }
+  }
+
+  private static class TimeRange {
+    private final long from;
+    private final long to;
+
+    TimeRange(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof TimeRange)) return false;
+
+      TimeRange that = (TimeRange) o;
+      return from == that.from && to == that.to;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.valueOf(from).hashCode() + Long.valueOf(to).hashCode();
+    }
+  }
+
+  private static class Series {
+    private final String metricName;
+    private final String hostname;
+    private final String appId;
+    private final String instanceId;
+    private final String type;
+    private final String units;
+    private final long bytes;
+
+    Series(TimelineMetric metric) {
+      this.metricName = metric.getMetricName();
+      this.hostname = metric.getHostName();
+      this.appId = metric.getAppId();
+      this.instanceId = metric.getInstanceId();
+      this.type = metric.getType();
+      this.units = metric.getUnits();
+      this.bytes = SERIES_OVERHEAD_BYTES + stringBytes(metricName) + stringBytes(hostname)
+        + stringBytes(appId) + stringBytes(instanceId) + stringBytes(type) + stringBytes(units);
+    }
+
+    // Same identity as TimelineMetric#equalsExceptTime
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Series)) return false;
+
+      Series that = (Series) o;
+      return equal(metricName, that.metricName)
+        && equal(hostname, that.hostname)
+        && equal(appId, that.appId)
+        && equal(instanceId, that.instanceId);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = hash(metricName);
+      result = 31 * result + hash(hostname);
+      result = 31 * result + hash(appId);
+      result = 31 * result + hash(instanceId);
+      return result;
+    }
+  }
+
+  private static class Row {
+    private final Series series;
+    private final long serverTime;
+    private final long startTime;
+    private final long[] times;
+    private final double[] values;
+    private final long bytes;
+
+    Row(Series series, TimelineMetric metric) {
+      this.series = series;
+      this.serverTime = metric.getTimestamp();
+      this.startTime = metric.getStartTime();
+      Map<Long, Double> metricValues = metric.getMetricValues();
+      this.times = new long[metricValues.size()];
+      this.values = new double[metricValues.size()];
+      int i = 0;
+      for (Map.Entry<Long, Double> value : metricValues.entrySet()) {
+        times[i] = value.getKey();
+        values[i] = value.getValue() == null ? Double.NaN : value.getValue();
+        i++;
+      }
+      this.bytes = ROW_OVERHEAD_BYTES + 16L * times.length;
+    }
+
+    Row(Series series, Row row) {
+      this.series = series;
+      this.serverTime = row.serverTime;
+      this.startTime = row.startTime;
+      this.times = row.times;
+      this.values = row.values;
+      this.bytes = row.bytes;
+    }
+
+    TimelineMetric toTimelineMetric() {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(series.metricName);
+      metric.setAppId(series.appId);
+      metric.setInstanceId(series.instanceId);
+      metric.setHostName(series.hostname);
+      metric.setType(series.type);
+      metric.setUnits(series.units);
+      metric.setTimestamp(serverTime);
+      metric.setStartTime(startTime);
+      metric.setMetricValues(new TreeMap<Long, Double>());
+      addValuesTo(metric);
+      return metric;
+    }
+
+    void addValuesTo(TimelineMetric metric) {
+      Map<Long, Double> metricValues = metric.getMetricValues();
+      for (int i = 0; i < times.length; i++) {
+        metricValues.put(times[i], Double.isNaN(values[i]) ? null : values[i]);
+      }
+    }
+  }
+}
@@ -36,9 +36,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_CHECKPOINT_DELAY;
@@ -65,6 +68,8 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
   protected AggregationTaskRunner taskRunner;
   protected List<String> downsampleMetricPatterns;
   protected List<CustomDownSampler> configuredDownSamplers;
+  // Metric name partitions of the running cycle, null for all metrics
+  private List<Integer> currentPartitions;
 
   // Explicitly name aggregators for logging needs
   private final AGGREGATOR_NAME aggregatorName;
@@ -116,8 +121,17 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
    * Access relaxed for tests
    */
   public void runOnce(Long SLEEP_INTERVAL) {
+    if (taskRunner != null && taskRunner.isPartitioned() && isMetricPartitioned()) {
+      runOwnedPartitions(SLEEP_INTERVAL);
+      return;
+    }
+
     boolean performAggregationFunction = true;
-    if (taskRunner != null) {
+    if (taskRunner != null && taskRunner.isPartitioned()) {
+      // Aggregate all metrics on the owner of the first metric name partition,
+      // which continues from the existing checkpoint
+      performAggregationFunction = taskRunner.getOwnedPartitions(getAggregatorType()).contains(0);
+    } else if (taskRunner != null) {
       switch (getAggregatorType()) {
         case HOST:
           performAggregationFunction = taskRunner.performsHostAggregation();
@@ -152,11 +166,77 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
     }
   }
 
+  /**
+   * Return true if the work of this aggregator can be split into metric name
+   * partitions. Aggregators which need all metrics of a cycle at once are run
+   * by the owner of the first partition.
+   */
+  protected boolean isMetricPartitioned() {
+    return true;
+  }
+
+  /**
+   * Aggregate the metric name partitions owned by this instance. Partitions
+   * at the same checkpoint share a single aggregation query, a partition
+   * taken over from another instance catches up from its own checkpoint.
+   */
+  private void runOwnedPartitions(Long SLEEP_INTERVAL) {
+    List<Integer> partitions = taskRunner.getOwnedPartitions(getAggregatorType());
+    if (partitions.isEmpty()) {
+      LOG.info("Skipping aggregation function not owned by this instance.");
+      return;
+    }
+
+    long currentTime = System.currentTimeMillis();
+    Map<Long, List<Integer>> partitionsByCheckpoint = new TreeMap<>();
+    for (Integer partition : partitions) {
+      long lastCheckPointTime = readLastCheckpointSavingOnFirstRun(currentTime, partition);
+      if (lastCheckPointTime != -1) {
+        List<Integer> checkpointPartitions = partitionsByCheckpoint.get(lastCheckPointTime);
+        if (checkpointPartitions == null) {
+          checkpointPartitions = new ArrayList<>();
+          partitionsByCheckpoint.put(lastCheckPointTime, checkpointPartitions);
+        }
+        checkpointPartitions.add(partition);
+      }
+    }
+
+    for (Map.Entry<Long, List<Integer>> entry : partitionsByCheckpoint.entrySet()) {
+      long lastCheckPointTime = entry.getKey();
+      LOG.info("Last check point time: " + lastCheckPointTime + ", lagBy: "
+        + ((currentTime - lastCheckPointTime) / 1000)
+        + " seconds, partitions: " + entry.getValue());
+
+      currentPartitions = entry.getValue();
+      boolean success;
+      try {
+        success = doWork(lastCheckPointTime, lastCheckPointTime + SLEEP_INTERVAL);
+      } finally {
+        currentPartitions = null;
+      }
+
+      if (success) {
+        for (Integer partition : entry.getValue()) {
+          try {
+            saveCheckPoint(partition, lastCheckPointTime + SLEEP_INTERVAL);
+          } catch (IOException io) {
+            LOG.warn("Error saving checkpoint, restarting aggregation at " +
+              "previous checkpoint.");
+          }
+        }
+      }
+    }
+  }
+
   private long readLastCheckpointSavingOnFirstRun(long currentTime) {
+    return readLastCheckpointSavingOnFirstRun(currentTime, null);
+  }
+
+  private long readLastCheckpointSavingOnFirstRun(long currentTime, Integer partition) {
     long lastCheckPointTime = -1;
 
     try {
-      lastCheckPointTime = readCheckPoint();
+      lastCheckPointTime = partition == null ? readCheckPoint() : readCheckPoint(partition);
       if (lastCheckPointTime != -1) {
         LOG.info("Last Checkpoint read : " + new Date(lastCheckPointTime));
         if (isLastCheckPointTooOld(currentTime, lastCheckPointTime)) {
@@ -164,7 +244,7 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
             "lastCheckPointTime = " + new Date(lastCheckPointTime));
           lastCheckPointTime = getRoundedAggregateTimeMillis(getSleepIntervalMillis()) - getSleepIntervalMillis();
           LOG.info("Saving checkpoint time. " + new Date((lastCheckPointTime)));
-          saveCheckPoint(lastCheckPointTime);
+          saveCheckPoint(partition, lastCheckPointTime);
 
         } else {
 
@@ -185,7 +265,7 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
         LOG.info("No checkpoint found");
         long firstCheckPoint = getRoundedAggregateTimeMillis(getSleepIntervalMillis());
         LOG.info("Saving checkpoint time. " + new Date((firstCheckPoint)));
-        saveCheckPoint(firstCheckPoint);
+        saveCheckPoint(partition, firstCheckPoint);
       }
     } catch (IOException io) {
       LOG.warn("Unable to write last checkpoint time. Resuming sleep.", io);
@@ -223,6 +303,23 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
     return -1;
   }
 
+  private long readCheckPoint(int partition) {
+    return taskRunner.getCheckpointManager().readCheckpoint(aggregatorName, partition);
+  }
+
+  private void saveCheckPoint(Integer partition, long checkpointTime) throws IOException {
+    if (partition == null) {
+      saveCheckPoint(checkpointTime);
+      return;
+    }
+    boolean success = taskRunner.getCheckpointManager().writeCheckpoint(aggregatorName, partition, checkpointTime);
+    if (!success) {
+      LOG.error("Error saving checkpoint with AggregationTaskRunner, " +
+        "aggregator = " + aggregatorName + ", partition = " + partition +
+        ", value = " + checkpointTime);
+    }
+  }
+
   protected void saveCheckPoint(long checkpointTime) throws IOException {
     if (taskRunner != null) {
       boolean success = taskRunner.getCheckpointManager().writeCheckpoint(aggregatorName, checkpointTime);
@@ -280,6 +377,10 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
 
       aggregate(rs, startTime, endTime);
 
+      // Cached query results may predate the rows written for the interval,
+      // the cluster second aggregator writes up to one interval earlier
+      hBaseAccessor.invalidateQueryCache(outputTableName, startTime - (endTime - startTime), endTime);
+
     } catch (SQLException | IOException e) {
       LOG.error("Exception during aggregating metrics.", e);
       success = false;
@@ -322,6 +423,12 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
       LOG.debug("No downsamplers configured");
       return;
     }
+    // Downsampler queries are not partitioned, the owner of the first
+    // metric name partition runs them
+    if (currentPartitions != null && !currentPartitions.contains(0)) {
+      LOG.debug("Downsampling done by the owner of partition 0");
+      return;
+    }
 
     // Generate UPSERT query prefix. UPSERT part of the query is needed on the Aggregator side.
     // SELECT part of the query is provided by the downsampler.
@@ -476,6 +583,26 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
     return sb.toString();
   }
 
+  /**
+   * Returns the METRIC_NAME range condition of the metric name partitions
+   * aggregated in this cycle, null if all metrics are aggregated.
+   */
+  protected String getMetricPartitionRangeClause() {
+    if (currentPartitions == null) {
+      return null;
+    }
+    return taskRunner.getMetricNamePartitions().getRangeClause(currentPartitions);
+  }
+
+  /**
+   * Returns the METRIC_NAME range clause followed by AND to be used like
+   * {@link #getDownsampledMetricSkipClause()}.
+   */
+  protected String getMetricPartitionClause() {
+    String rangeClause = getMetricPartitionRangeClause();
+    return rangeClause == null ? StringUtils.EMPTY : " " + rangeClause + " AND ";
+  }
+
   /**
    * Get @AGGREGATOR_TYPE based on the output table.
    * This is solely used by the HAController to determine which lock to acquire.
@@ -18,6 +18,8 @@
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
 
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Is used to determine metrics aggregate table.
@@ -28,6 +30,11 @@ import java.util.Arrays;
 public class Function {
   public static Function DEFAULT_VALUE_FUNCTION = new Function(ReadFunction.VALUE, null);
   private static final String SUFFIX_SEPARATOR = "\\._";
+  // Functions are parsed once per metric name, the cache is reset when it
+  // grows beyond the limit
+  private static final int MAX_PARSED_FUNCTIONS = 10000;
+  private static final ConcurrentMap<String, Function> PARSED_FUNCTIONS =
+    new ConcurrentHashMap<String, Function>();
 
   private ReadFunction readFunction = ReadFunction.VALUE;
   private PostProcessingFunction postProcessingFunction = null;
@@ -50,6 +57,18 @@ public class Function {
    * @return @Function
    */
   public static Function fromMetricName(String metricName) {
+    Function function = PARSED_FUNCTIONS.get(metricName);
+    if (function == null) {
+      function = parseMetricName(metricName);
+      if (PARSED_FUNCTIONS.size() >= MAX_PARSED_FUNCTIONS) {
+        PARSED_FUNCTIONS.clear();
+      }
+      PARSED_FUNCTIONS.put(metricName, function);
+    }
+    return function;
+  }
+
+  private static Function parseMetricName(String metricName) {
     // gets postprocessing, and aggregation function
     // ex. Metric._rate._avg
     String[] parts = metricName.split(SUFFIX_SEPARATOR);
@@ -95,6 +114,10 @@ public class Function {
     return readFunction;
   }
 
+  public PostProcessingFunction getPostProcessingFunction() {
+    return postProcessingFunction;
+  }
+
   @Override
   public String toString() {
     return "Function{" +
@@ -126,7 +149,10 @@ public class Function {
   public enum PostProcessingFunction {
     NONE(""),
     RATE("._rate"),
-    DIFF("._diff");
+    DIFF("._diff"),
+    // Average over the value and the points before it, see
+    // TimelineMetricsPostProcessor#MOVING_AVERAGE_POINTS
+    MOVAVG("._movavg");
 
     PostProcessingFunction(String suffix){
       this.suffix = suffix;
@@ -155,7 +181,7 @@ public class Function {
       try {
         return PostProcessingFunction.valueOf(functionName.toUpperCase());
       } catch (IllegalArgumentException e) {
-        throw new FunctionFormatException("Function should be ._rate", e);
+        throw new FunctionFormatException("Function should be ._rate, ._diff or ._movavg", e);
       }
     }
   }
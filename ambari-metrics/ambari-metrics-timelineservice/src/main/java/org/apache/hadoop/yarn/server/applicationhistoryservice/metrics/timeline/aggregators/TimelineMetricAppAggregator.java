@@ -115,6 +115,21 @@ public class TimelineMetricAppAggregator {
     }
   }
 
+  /**
+   * Whether {@link #processTimelineClusterMetric} has anything to do for
+   * metrics of the app on the host, lets callers skip building the cluster
+   * metric.
+   */
+  public boolean isCandidate(String appId, String hostname) {
+    if (appId == null) {
+      return false;
+    }
+    if (appId.equalsIgnoreCase(HOST_APP_ID)) {
+      return hostedAppsMap.containsKey(hostname);
+    }
+    return appIdsToAggregate.contains(appId);
+  }
+
   /**
    * Build a cluster app metric from a host metric
    */
@@ -58,8 +58,9 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
 
   @Override
   protected Condition prepareMetricQueryCondition(long startTime, long endTime) {
-    Condition condition = new DefaultCondition(null, null, null, null, startTime,
+    DefaultCondition condition = new DefaultCondition(null, null, null, null, startTime,
       endTime, null, null, true);
+    condition.setMetricNameRangeClause(getMetricPartitionRangeClause());
     condition.setNoLimit();
     condition.setFetchSize(resultsetFetchSize);
     String sqlStr = String.format(GET_CLUSTER_AGGREGATE_TIME_SQL, getQueryHint(startTime), tableName);
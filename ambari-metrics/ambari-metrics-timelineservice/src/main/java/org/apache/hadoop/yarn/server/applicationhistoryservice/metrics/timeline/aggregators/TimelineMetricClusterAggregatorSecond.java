@@ -31,10 +31,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
-import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.mutable.MutableInt;
 import org.apache.hadoop.conf.Configuration;
@@ -42,6 +43,7 @@ import org.apache.hadoop.metrics2.sink.timeline.PostProcessingUtil;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricValuesCodec;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.MetricCollectorHAController;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
@@ -55,7 +57,6 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
  */
 public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggregator {
   public Long timeSliceIntervalMillis;
-  private TimelineMetricReadHelper timelineMetricReadHelper = new TimelineMetricReadHelper(true);
   // Aggregator to perform app-level aggregates for host metrics
   private final TimelineMetricAppAggregator appAggregator;
   // 1 minute client side buffering adjustment
@@ -106,6 +107,16 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     appAggregator.cleanup();
   }
 
+  /**
+   * The live_hosts metric and the hosted apps used for app-level aggregates
+   * of host metrics need the metrics of all hosts and apps, so this
+   * aggregator is not split into metric name partitions.
+   */
+  @Override
+  protected boolean isMetricPartitioned() {
+    return false;
+  }
+
   @Override
   protected Condition prepareMetricQueryCondition(long startTime, long endTime) {
 
@@ -148,50 +159,41 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
 
   Map<TimelineClusterMetric, MetricClusterAggregate> aggregateMetricsFromResultSet(ResultSet rs, List<Long[]> timeSlices)
       throws SQLException, IOException {
-    Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
-      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
-
-    TimelineMetric metric = null;
+    ClusterAggregates clusterAggregates = new ClusterAggregates(timeSlices.size());
+    HostSeries series = new HostSeries();
     Map<String, MutableInt> hostedAppCounter = new HashMap<>();
-    if (rs.next()) {
-      metric = timelineMetricReadHelper.getTimelineMetricFromResultSet(rs);
-
-      // Call slice after all rows for a host are read
-      while (rs.next()) {
-        TimelineMetric nextMetric = timelineMetricReadHelper.getTimelineMetricFromResultSet(rs);
-        // If rows belong to same host combine them before slicing. This
-        // avoids issues across rows that belong to same hosts but get
-        // counted as coming from different ones.
-        if (metric.equalsExceptTime(nextMetric)) {
-          metric.addMetricValues(nextMetric.getMetricValues());
-        } else {
+
+    // Rows are ordered by metric name, hostname and app id. Rows that belong
+    // to the same host are combined before slicing, this avoids issues across
+    // rows that belong to same hosts but get counted as coming from
+    // different ones. The values of a row are decoded straight into the
+    // arrays of the series.
+    while (rs.next()) {
+      String metricName = rs.getString("METRIC_NAME");
+      String hostname = rs.getString("HOSTNAME");
+      String appId = rs.getString("APP_ID");
+      String units = rs.getString("UNITS");
+
+      if (!series.isSameSeries(metricName, hostname, appId)) {
+        if (series.started) {
           // Process the current metric
-          int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
-          if (!hostedAppCounter.containsKey(metric.getAppId())) {
-            hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-          } else {
-            int currentHostCount = hostedAppCounter.get(metric.getAppId()).intValue();
-            if (currentHostCount < numHosts) {
-              hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-            }
-          }
-          metric = nextMetric;
+          updateHostedAppCounter(hostedAppCounter, series.appId,
+            processAggregateClusterMetrics(clusterAggregates, series, timeSlices));
         }
+        series.start(metricName, hostname, appId, null, units);
       }
+      TimelineMetricValuesCodec.decode(rs.getString("METRICS"), series.values);
     }
     // Process last metric
-    if (metric != null) {
-      int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
-      if (!hostedAppCounter.containsKey(metric.getAppId())) {
-        hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-      } else {
-        int currentHostCount = hostedAppCounter.get(metric.getAppId()).intValue();
-        if (currentHostCount < numHosts) {
-          hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-        }
-      }
+    if (series.started) {
+      updateHostedAppCounter(hostedAppCounter, series.appId,
+        processAggregateClusterMetrics(clusterAggregates, series, timeSlices));
     }
 
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    clusterAggregates.mergeInto(aggregateClusterMetrics, timeSlices);
+
     // Add app level aggregates to save
     aggregateClusterMetrics.putAll(appAggregator.getAggregateClusterMetrics());
 
@@ -202,6 +204,15 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     return aggregateClusterMetrics;
   }
 
+  private void updateHostedAppCounter(Map<String, MutableInt> hostedAppCounter, String appId, int numHosts) {
+    MutableInt currentHostCount = hostedAppCounter.get(appId);
+    if (currentHostCount == null) {
+      hostedAppCounter.put(appId, new MutableInt(numHosts));
+    } else if (currentHostCount.intValue() < numHosts) {
+      currentHostCount.setValue(numHosts);
+    }
+  }
+
   /**
    * Slice metric values into interval specified by :
    * timeline.metrics.cluster.aggregator.minute.timeslice.interval
@@ -209,39 +220,45 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
    */
   protected int processAggregateClusterMetrics(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
                                               TimelineMetric metric, List<Long[]> timeSlices) {
-    // Create time slices
-    TimelineMetricMetadataKey appKey =  new TimelineMetricMetadataKey(metric.getMetricName(), metric.getAppId());
+    ClusterAggregates clusterAggregates = new ClusterAggregates(timeSlices.size());
+    if (processAggregateClusterMetrics(clusterAggregates, HostSeries.of(metric), timeSlices) == 0) {
+      return 0;
+    }
+    return clusterAggregates.mergeInto(aggregateClusterMetrics, timeSlices);
+  }
+
+  /**
+   * Add the slice values of a host series to the cluster aggregates.
+   * @return the highest number of hosts of a slice the series contributed to
+   */
+  private int processAggregateClusterMetrics(ClusterAggregates clusterAggregates, HostSeries series,
+                                             List<Long[]> timeSlices) {
+    TimelineMetricMetadataKey appKey =  new TimelineMetricMetadataKey(series.metricName, series.appId);
     TimelineMetricMetadata metricMetadata = metadataManagerInstance.getMetadataCacheValue(appKey);
 
     if (metricMetadata != null && !metricMetadata.isSupportsAggregates()) {
-      LOG.debug("Skipping cluster aggregation for " + metric.getMetricName());
+      LOG.debug("Skipping cluster aggregation for " + series.metricName);
       return 0;
     }
 
-    Map<TimelineClusterMetric, Double> clusterMetrics = sliceFromTimelineMetric(metric, timeSlices);
-    int numHosts = 0;
-
-    if (clusterMetrics != null && !clusterMetrics.isEmpty()) {
-      for (Map.Entry<TimelineClusterMetric, Double> clusterMetricEntry : clusterMetrics.entrySet()) {
-
-        TimelineClusterMetric clusterMetric = clusterMetricEntry.getKey();
-        Double avgValue = clusterMetricEntry.getValue();
-
-        MetricClusterAggregate aggregate = aggregateClusterMetrics.get(clusterMetric);
-
-        if (aggregate == null) {
-          aggregate = new MetricClusterAggregate(avgValue, 1, null, avgValue, avgValue);
-          aggregateClusterMetrics.put(clusterMetric, aggregate);
-        } else {
-          aggregate.updateSum(avgValue);
-          aggregate.updateNumberOfHosts(1);
-          aggregate.updateMax(avgValue);
-          aggregate.updateMin(avgValue);
-        }
+    double[] sliceValues = sliceValues(series, timeSlices);
+    if (sliceValues == null) {
+      return 0;
+    }
 
-        numHosts = aggregate.getNumberOfHosts();
+    ClusterMetricSlices clusterMetric = clusterAggregates.get(series);
+    boolean appCandidate = appAggregator.isCandidate(series.appId, series.hostname);
+    int numHosts = 0;
+    for (int slice = 0; slice < sliceValues.length; slice++) {
+      double value = sliceValues[slice];
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      numHosts = Math.max(numHosts, clusterMetric.add(slice, value));
+      if (appCandidate) {
         // Update app level aggregates
-        appAggregator.processTimelineClusterMetric(clusterMetric, metric.getHostName(), avgValue);
+        appAggregator.processTimelineClusterMetric(new TimelineClusterMetric(series.metricName,
+          series.appId, series.instanceId, timeSlices.get(slice)[1], series.type), series.hostname, value);
       }
     }
     return numHosts;
@@ -250,187 +267,181 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
   protected Map<TimelineClusterMetric, Double> sliceFromTimelineMetric(
     TimelineMetric timelineMetric, List<Long[]> timeSlices) {
 
-    if (timelineMetric.getMetricValues().isEmpty()) {
+    double[] sliceValues = sliceValues(HostSeries.of(timelineMetric), timeSlices);
+    if (sliceValues == null) {
       return null;
     }
 
     Map<TimelineClusterMetric, Double> timelineClusterMetricMap =
       new HashMap<TimelineClusterMetric, Double>();
+    for (int slice = 0; slice < sliceValues.length; slice++) {
+      if (!Double.isNaN(sliceValues[slice])) {
+        timelineClusterMetricMap.put(new TimelineClusterMetric(
+          timelineMetric.getMetricName(),
+          timelineMetric.getAppId(),
+          timelineMetric.getInstanceId(),
+          timeSlices.get(slice)[1],
+          timelineMetric.getType()), sliceValues[slice]);
+      }
+    }
+    return timelineClusterMetricMap;
+  }
+
+  /**
+   * Average the values of a host series within each time slice and
+   * interpolate the slices without values if enabled. The slices have to be
+   * the consecutive, equally long slices of {@link #getTimeSlices}.
+   *
+   * @return value by slice index, NaN for slices without a value, or null if
+   * the series has no values. The array is reused for the next series.
+   */
+  private double[] sliceValues(HostSeries series, List<Long[]> timeSlices) {
+    TimelineMetricValuesCodec.ValuesBuffer values = series.values;
+    if (values.size() == 0) {
+      return null;
+    }
+    values.sortAndDeduplicate();
 
-    Long timeShift = timelineMetric.getTimestamp() - timelineMetric.getStartTime();
-    if (timeShift < 0) {
-      LOG.debug("Invalid time shift found, possible discrepancy in clocks. " +
-        "timeShift = " + timeShift);
-      timeShift = 0l;
+    int numSlices = timeSlices.size();
+    double[] measured = series.measuredSlices(numSlices);
+    if (numSlices == 0) {
+      return measured;
     }
+    long slicesStart = timeSlices.get(0)[0];
+    long sliceInterval = timeSlices.get(0)[1] - slicesStart;
 
-    Long prevTimestamp = -1l;
-    TimelineClusterMetric prevMetric = null;
+    // A value at t belongs to the slice (start, end] with t in it. Values are
+    // ordered, so the values of a slice are consecutive.
+    int prevSlice = -1;
     int count = 0;
     double sum = 0.0;
-
-    Map<Long,Double> timeSliceValueMap = new HashMap<>();
-    for (Map.Entry<Long, Double> metric : timelineMetric.getMetricValues().entrySet()) {
+    for (int i = 0; i < values.size(); i++) {
+      double value = values.getValue(i);
       // TODO: investigate null values - pre filter
-      if (metric.getValue() == null) {
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      long timestamp = values.getTimestamp(i);
+      if (timestamp <= slicesStart) {
         continue;
       }
+      long slice = (timestamp - slicesStart - 1) / sliceInterval;
+      if (slice >= numSlices) {
+        break;
+      }
 
-      Long timestamp = getSliceTimeForMetric(timeSlices, Long.parseLong(metric.getKey().toString()));
-      if (timestamp != -1) {
-        // Metric is within desired time range
-        TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
-          timelineMetric.getMetricName(),
-          timelineMetric.getAppId(),
-          timelineMetric.getInstanceId(),
-          timestamp,
-          timelineMetric.getType());
-
-        if (prevTimestamp < 0 || timestamp.equals(prevTimestamp)) {
-          Double newValue = metric.getValue();
-          if (newValue > 0.0) {
-            sum += newValue;
-            count++;
-          }
-        } else {
-          double metricValue = (count > 0) ? (sum / count) : 0.0;
-            timelineClusterMetricMap.put(prevMetric, metricValue);
-          timeSliceValueMap.put(prevMetric.getTimestamp(), metricValue);
-          sum = metric.getValue();
-          count = sum > 0.0 ? 1 : 0;
+      if (prevSlice < 0 || slice == prevSlice) {
+        if (value > 0.0) {
+          sum += value;
+          count++;
         }
-
-        prevTimestamp = timestamp;
-        prevMetric = clusterMetric;
+      } else {
+        measured[prevSlice] = (count > 0) ? (sum / count) : 0.0;
+        sum = value;
+        count = sum > 0.0 ? 1 : 0;
       }
+      prevSlice = (int) slice;
     }
 
-    if (prevTimestamp > 0) {
-      double metricValue = (count > 0) ? (sum / count) : 0.0;
-      timelineClusterMetricMap.put(prevMetric, metricValue);
-      timeSliceValueMap.put(prevTimestamp, metricValue);
+    if (prevSlice >= 0) {
+      measured[prevSlice] = (count > 0) ? (sum / count) : 0.0;
     }
 
-    if (interpolationEnabled) {
-      interpolateMissingPeriods(timelineClusterMetricMap, timelineMetric, timeSlices, timeSliceValueMap);
+    if (!interpolationEnabled) {
+      return measured;
     }
-
-    return timelineClusterMetricMap;
+    double[] sliced = series.slices(numSlices);
+    System.arraycopy(measured, 0, sliced, 0, numSlices);
+    interpolateMissingPeriods(sliced, measured, series, timeSlices);
+    return sliced;
   }
 
-  private void interpolateMissingPeriods(Map<TimelineClusterMetric, Double> timelineClusterMetricMap,
-                                         TimelineMetric timelineMetric,
-                                         List<Long[]> timeSlices,
-                                         Map<Long, Double> timeSliceValueMap) {
+  private void interpolateMissingPeriods(double[] sliced, double[] measured,
+                                         HostSeries series, List<Long[]> timeSlices) {
 
 
-    if (StringUtils.isNotEmpty(timelineMetric.getType()) && "COUNTER".equalsIgnoreCase(timelineMetric.getType())) {
+    if (StringUtils.isNotEmpty(series.type) && "COUNTER".equalsIgnoreCase(series.type)) {
       //For Counter Based metrics, ok to do interpolation and extrapolation
 
       List<Long> requiredTimestamps = new ArrayList<>();
-      for (Long[] timeSlice : timeSlices) {
-        if (!timeSliceValueMap.containsKey(timeSlice[1])) {
-          requiredTimestamps.add(timeSlice[1]);
+      for (int slice = 0; slice < measured.length; slice++) {
+        if (Double.isNaN(measured[slice])) {
+          requiredTimestamps.add(timeSlices.get(slice)[1]);
         }
       }
-      Map<Long, Double> interpolatedValuesMap = PostProcessingUtil.interpolate(timelineMetric.getMetricValues(), requiredTimestamps);
+      if (requiredTimestamps.isEmpty()) {
+        return;
+      }
+      Map<Long, Double> interpolatedValuesMap = PostProcessingUtil.interpolate(series.getValueMap(), requiredTimestamps);
 
       if (interpolatedValuesMap != null) {
-        for (Map.Entry<Long, Double> entry : interpolatedValuesMap.entrySet()) {
-          Double interpolatedValue = entry.getValue();
-
+        for (int slice = 0; slice < measured.length; slice++) {
+          Double interpolatedValue = interpolatedValuesMap.get(timeSlices.get(slice)[1]);
           if (interpolatedValue != null) {
-            TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
-              timelineMetric.getMetricName(),
-              timelineMetric.getAppId(),
-              timelineMetric.getInstanceId(),
-              entry.getKey(),
-              timelineMetric.getType());
-
-            timelineClusterMetricMap.put(clusterMetric, interpolatedValue);
-          } else {
-            LOG.debug("Cannot compute interpolated value, hence skipping.");
+            sliced[slice] = interpolatedValue;
           }
         }
       }
     } else {
       //For other metrics, ok to do only interpolation
 
+      boolean found = false;
+      for (int slice = 0; slice < measured.length && !found; slice++) {
+        found = !Double.isNaN(measured[slice]);
+      }
+
       Double defaultNextSeenValue = null;
-      if (MapUtils.isEmpty(timeSliceValueMap) && MapUtils.isNotEmpty(timelineMetric.getMetricValues())) {
+      if (!found) {
         //If no value was found within the start_time based slices, but the metric has value in the server_time range,
         // use that.
 
-        LOG.debug("No value found within range for metric : " + timelineMetric.getMetricName());
-        Map.Entry<Long,Double> firstEntry  = timelineMetric.getMetricValues().firstEntry();
-        defaultNextSeenValue = firstEntry.getValue();
-        LOG.debug("Found a data point outside timeslice range: " + new Date(firstEntry.getKey()) + ": " + defaultNextSeenValue);
+        LOG.debug("No value found within range for metric : " + series.metricName);
+        double firstValue = series.values.getValue(0);
+        defaultNextSeenValue = Double.isNaN(firstValue) ? null : firstValue;
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Found a data point outside timeslice range: " + new Date(series.values.getTimestamp(0)) +
+            ": " + defaultNextSeenValue);
+        }
       }
 
-      for (int sliceNum = 0; sliceNum < timeSlices.size(); sliceNum++) {
-        Long[] timeSlice = timeSlices.get(sliceNum);
-
-        if (!timeSliceValueMap.containsKey(timeSlice[1])) {
+      for (int slice = 0; slice < measured.length; slice++) {
+        if (!Double.isNaN(measured[slice])) {
+          continue;
+        }
+        Long[] timeSlice = timeSlices.get(slice);
+        if (LOG.isDebugEnabled()) {
           LOG.debug("Found an empty slice : " + new Date(timeSlice[0]) + ", " + new Date(timeSlice[1]));
+        }
 
-          Double lastSeenValue = null;
-          int index = sliceNum - 1;
-          Long[] prevTimeSlice = null;
-          while (lastSeenValue == null && index >= 0) {
-            prevTimeSlice = timeSlices.get(index--);
-            lastSeenValue = timeSliceValueMap.get(prevTimeSlice[1]);
-          }
-
-          Double nextSeenValue = null;
-          index = sliceNum + 1;
-          Long[] nextTimeSlice = null;
-          while (nextSeenValue == null && index < timeSlices.size()) {
-            nextTimeSlice = timeSlices.get(index++);
-            nextSeenValue = timeSliceValueMap.get(nextTimeSlice[1]);
-          }
+        int prevSlice = slice - 1;
+        while (prevSlice >= 0 && Double.isNaN(measured[prevSlice])) {
+          prevSlice--;
+        }
+        int nextSlice = slice + 1;
+        while (nextSlice < measured.length && Double.isNaN(measured[nextSlice])) {
+          nextSlice++;
+        }
 
-          if (nextSeenValue == null) {
-            nextSeenValue = defaultNextSeenValue;
-          }
+        Double lastSeenValue = prevSlice >= 0 ? Double.valueOf(measured[prevSlice]) : null;
+        Double nextSeenValue = nextSlice < measured.length ? Double.valueOf(measured[nextSlice]) : defaultNextSeenValue;
 
-          Double interpolatedValue = PostProcessingUtil.interpolate(timeSlice[1],
-            (prevTimeSlice != null ? prevTimeSlice[1] : null), lastSeenValue,
-            (nextTimeSlice != null ? nextTimeSlice[1] : null), nextSeenValue);
+        Double interpolatedValue = PostProcessingUtil.interpolate(timeSlice[1],
+          (prevSlice >= 0 ? timeSlices.get(prevSlice)[1] : null), lastSeenValue,
+          (nextSlice < measured.length ? timeSlices.get(nextSlice)[1] : null), nextSeenValue);
 
-          if (interpolatedValue != null) {
-            TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
-              timelineMetric.getMetricName(),
-              timelineMetric.getAppId(),
-              timelineMetric.getInstanceId(),
-              timeSlice[1],
-              timelineMetric.getType());
-
-            LOG.debug("Interpolated value : " + interpolatedValue);
-            timelineClusterMetricMap.put(clusterMetric, interpolatedValue);
-          } else {
-            LOG.debug("Cannot compute interpolated value, hence skipping.");
-          }
+        if (interpolatedValue != null) {
+          LOG.debug("Interpolated value : " + interpolatedValue);
+          sliced[slice] = interpolatedValue;
+        } else {
+          LOG.debug("Cannot compute interpolated value, hence skipping.");
         }
       }
     }
   }
 
-  /**
-   * Return end of the time slice into which the metric fits.
-   */
-  private Long getSliceTimeForMetric(List<Long[]> timeSlices, Long timestamp) {
-    for (Long[] timeSlice : timeSlices) {
-      if (timestamp > timeSlice[0] && timestamp <= timeSlice[1]) {
-        return timeSlice[1];
-      }
-    }
-    return -1l;
-  }
-
   /* Add cluster metric for number of hosts that are hosting an appId */
   private void processLiveAppCountMetrics(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
       Map<String, MutableInt> appHostsCount, long timestamp) {
-
     for (Map.Entry<String, MutableInt> appHostsEntry : appHostsCount.entrySet()) {
       TimelineClusterMetric timelineClusterMetric = new TimelineClusterMetric(
         "live_hosts", appHostsEntry.getKey(), null, timestamp, null);
@@ -444,4 +455,162 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     }
 
   }
+
+  /**
+   * Values of the host series being aggregated, reused across series.
+   */
+  private static class HostSeries {
+    private final TimelineMetricValuesCodec.ValuesBuffer values = new TimelineMetricValuesCodec.ValuesBuffer();
+    private boolean started;
+    private String metricName;
+    private String hostname;
+    private String appId;
+    private String instanceId;
+    private String type;
+    private double[] measuredSlices = new double[0];
+    private double[] slices = new double[0];
+
+    static HostSeries of(TimelineMetric metric) {
+      HostSeries series = new HostSeries();
+      series.start(metric.getMetricName(), metric.getHostName(), metric.getAppId(),
+        metric.getInstanceId(), metric.getType());
+      for (Map.Entry<Long, Double> value : metric.getMetricValues().entrySet()) {
+        series.values.add(value.getKey(), value.getValue() == null ? Double.NaN : value.getValue());
+      }
+      return series;
+    }
+
+    void start(String metricName, String hostname, String appId, String instanceId, String type) {
+      this.started = true;
+      this.metricName = metricName;
+      this.hostname = hostname;
+      this.appId = appId;
+      this.instanceId = instanceId;
+      this.type = type;
+      values.clear();
+    }
+
+    boolean isSameSeries(String metricName, String hostname, String appId) {
+      return started
+        && StringUtils.equals(this.metricName, metricName)
+        && StringUtils.equals(this.hostname, hostname)
+        && StringUtils.equals(this.appId, appId);
+    }
+
+    double[] measuredSlices(int numSlices) {
+      if (measuredSlices.length != numSlices) {
+        measuredSlices = new double[numSlices];
+      }
+      Arrays.fill(measuredSlices, Double.NaN);
+      return measuredSlices;
+    }
+
+    double[] slices(int numSlices) {
+      if (slices.length != numSlices) {
+        slices = new double[numSlices];
+      }
+      return slices;
+    }
+
+    TreeMap<Long, Double> getValueMap() {
+      TreeMap<Long, Double> valueMap = new TreeMap<Long, Double>();
+      for (int i = 0; i < values.size(); i++) {
+        if (!Double.isNaN(values.getValue(i))) {
+          valueMap.put(values.getTimestamp(i), values.getValue(i));
+        }
+      }
+      return valueMap;
+    }
+  }
+
+  /**
+   * Cluster aggregates of one aggregation cycle. Every cluster metric is
+   * looked up once per host series and keeps its sum, max, min and number of
+   * hosts in arrays indexed by time slice.
+   */
+  private static class ClusterAggregates {
+    private final int numSlices;
+    private final Map<TimelineClusterMetric, ClusterMetricSlices> clusterMetrics =
+      new LinkedHashMap<TimelineClusterMetric, ClusterMetricSlices>();
+
+    ClusterAggregates(int numSlices) {
+      this.numSlices = numSlices;
+    }
+
+    ClusterMetricSlices get(HostSeries series) {
+      // Slices of a cluster metric share the key, the timestamp is not used
+      TimelineClusterMetric key = new TimelineClusterMetric(series.metricName, series.appId,
+        series.instanceId, 0, series.type);
+      ClusterMetricSlices clusterMetric = clusterMetrics.get(key);
+      if (clusterMetric == null) {
+        clusterMetric = new ClusterMetricSlices(key, numSlices);
+        clusterMetrics.put(key, clusterMetric);
+      }
+      return clusterMetric;
+    }
+
+    /**
+     * Add the aggregates of all slices with values to the map.
+     * @return the highest number of hosts of an updated aggregate
+     */
+    int mergeInto(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+                  List<Long[]> timeSlices) {
+      int numHosts = 0;
+      for (ClusterMetricSlices clusterMetric : clusterMetrics.values()) {
+        TimelineClusterMetric key = clusterMetric.key;
+        for (int slice = 0; slice < numSlices; slice++) {
+          if (clusterMetric.hosts[slice] == 0) {
+            continue;
+          }
+          TimelineClusterMetric sliceMetric = new TimelineClusterMetric(key.getMetricName(),
+            key.getAppId(), key.getInstanceId(), timeSlices.get(slice)[1], key.getType());
+          MetricClusterAggregate aggregate = aggregateClusterMetrics.get(sliceMetric);
+          if (aggregate == null) {
+            aggregate = new MetricClusterAggregate(clusterMetric.sum[slice], clusterMetric.hosts[slice],
+              null, clusterMetric.max[slice], clusterMetric.min[slice]);
+            aggregateClusterMetrics.put(sliceMetric, aggregate);
+          } else {
+            aggregate.updateSum(clusterMetric.sum[slice]);
+            aggregate.updateNumberOfHosts(clusterMetric.hosts[slice]);
+            aggregate.updateMax(clusterMetric.max[slice]);
+            aggregate.updateMin(clusterMetric.min[slice]);
+          }
+          numHosts = Math.max(numHosts, aggregate.getNumberOfHosts());
+        }
+      }
+      return numHosts;
+    }
+  }
+
+  private static class ClusterMetricSlices {
+    private final TimelineClusterMetric key;
+    private final double[] sum;
+    private final double[] max;
+    private final double[] min;
+    private final int[] hosts;
+
+    ClusterMetricSlices(TimelineClusterMetric key, int numSlices) {
+      this.key = key;
+      this.sum = new double[numSlices];
+      this.max = new double[numSlices];
+      this.min = new double[numSlices];
+      this.hosts = new int[numSlices];
+    }
+
+    /**
+     * @return number of hosts of the slice
+     */
+    int add(int slice, double value) {
+      if (hosts[slice] == 0) {
+        sum[slice] = value;
+        max[slice] = value;
+        min[slice] = value;
+      } else {
+        sum[slice] += value;
+        max[slice] = Math.max(max[slice], value);
+        min[slice] = Math.min(min[slice], value);
+      }
+      return ++hosts[slice];
+    }
+  }
 }
@@ -66,8 +66,9 @@ public class TimelineMetricHostAggregator extends AbstractTimelineAggregator {
 
   @Override
   protected Condition prepareMetricQueryCondition(long startTime, long endTime) {
-    Condition condition = new DefaultCondition(null, null, null, null, startTime,
+    DefaultCondition condition = new DefaultCondition(null, null, null, null, startTime,
       endTime, null, null, true);
+    condition.setMetricNameRangeClause(getMetricPartitionRangeClause());
     condition.setNoLimit();
     condition.setFetchSize(resultsetFetchSize);
     condition.setStatement(String.format(GET_METRIC_AGGREGATE_ONLY_SQL,
@@ -75,7 +75,7 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
 
     condition.setStatement(String.format(GET_AGGREGATED_APP_METRIC_GROUPBY_SQL,
       getQueryHint(startTime), outputTableName, endTime, aggregateColumnName, tableName,
-      getDownsampledMetricSkipClause(), startTime, endTime));
+      getDownsampledMetricSkipClause() + getMetricPartitionClause(), startTime, endTime));
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("Condition: " + condition.toString());
@@ -65,7 +65,7 @@ public class TimelineMetricHostAggregator extends AbstractTimelineAggregator {
 
     condition.setStatement(String.format(GET_AGGREGATED_HOST_METRIC_GROUPBY_SQL,
       getQueryHint(startTime), outputTableName, endTime, tableName,
-      getDownsampledMetricSkipClause(), startTime, endTime));
+      getDownsampledMetricSkipClause() + getMetricPartitionClause(), startTime, endTime));
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("Condition: " + condition.toString());
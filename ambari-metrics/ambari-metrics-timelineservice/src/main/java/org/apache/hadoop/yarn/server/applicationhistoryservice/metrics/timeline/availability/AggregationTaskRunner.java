@@ -25,9 +25,14 @@ import org.apache.helix.HelixManagerFactory;
 import org.apache.helix.InstanceType;
 import org.apache.helix.participant.StateMachineEngine;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator.AGGREGATOR_TYPE.CLUSTER;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator.AGGREGATOR_TYPE.HOST;
@@ -48,11 +53,12 @@ public class AggregationTaskRunner {
   private HelixManager manager;
   private static final Log LOG = LogFactory.getLog(AggregationTaskRunner.class);
   private CheckpointManager checkpointManager;
-  // Map partition name to an aggregator dimension
-  static final Map<String, AGGREGATOR_TYPE> PARTITION_AGGREGATION_TYPES = new HashMap<>();
-  // Ownership flags to be set by the State transitions
-  private final AtomicBoolean performsClusterAggregation = new AtomicBoolean(false);
-  private final AtomicBoolean performsHostAggregation = new AtomicBoolean(false);
+  // Number of metric name ranges each aggregator dimension is split into
+  private final int metricPartitionCount;
+  private volatile MetricNamePartitions metricNamePartitions;
+  // Owned metric name partitions, set by the State transitions
+  private final Set<Integer> clusterPartitions = new ConcurrentSkipListSet<>();
+  private final Set<Integer> hostPartitions = new ConcurrentSkipListSet<>();
 
   public enum AGGREGATOR_NAME {
     METRIC_RECORD_MINUTE,
@@ -74,19 +80,50 @@ public class AggregationTaskRunner {
     ACTUAL_AGGREGATOR_NAMES.put(METRIC_AGGREGATE_MINUTE, "TimelineClusterAggregatorMinute");
     ACTUAL_AGGREGATOR_NAMES.put(METRIC_AGGREGATE_HOURLY, "TimelineClusterAggregatorHourly");
     ACTUAL_AGGREGATOR_NAMES.put(METRIC_AGGREGATE_DAILY, "TimelineClusterAggregatorDaily");
-
-    // Partition name to task assignment
-    PARTITION_AGGREGATION_TYPES.put(METRIC_AGGREGATORS + "_0", CLUSTER);
-    PARTITION_AGGREGATION_TYPES.put(METRIC_AGGREGATORS + "_1", HOST);
   }
 
   public AggregationTaskRunner(String instanceName, String zkAddress, String clusterName) {
+    this(instanceName, zkAddress, clusterName, 1);
+  }
+
+  public AggregationTaskRunner(String instanceName, String zkAddress,
+                               String clusterName, int metricPartitionCount) {
     this.instanceName = instanceName;
     this.zkAddress = zkAddress;
     this.clusterName = clusterName;
+    this.metricPartitionCount = metricPartitionCount;
+    this.metricNamePartitions = new MetricNamePartitions(
+      MetricNamePartitions.computeSplitPoints(Collections.<String>emptySet(), metricPartitionCount));
+  }
+
+  /**
+   * Resource partitions alternate between the cluster and host dimension,
+   * METRIC_AGGREGATORS_0 and METRIC_AGGREGATORS_1 hold the first metric
+   * name range of each.
+   */
+  static AGGREGATOR_TYPE getPartitionAggregationType(String partitionName) {
+    return getResourcePartition(partitionName) % 2 == 0 ? CLUSTER : HOST;
+  }
+
+  static int getMetricPartition(String partitionName) {
+    return getResourcePartition(partitionName) / 2;
+  }
+
+  private static int getResourcePartition(String partitionName) {
+    return Integer.parseInt(partitionName.substring(METRIC_AGGREGATORS.length() + 1));
   }
 
   public void initialize() throws Exception {
+    initialize(Collections.<String>emptySet());
+  }
+
+  /**
+   * Connect the participant and agree on the metric name split points.
+   *
+   * @param metricNames known metric names to compute split points from,
+   *                    if no other collector stored them yet
+   */
+  public void initialize(Collection<String> metricNames) throws Exception {
     manager = HelixManagerFactory.getZKHelixManager(clusterName, instanceName,
       InstanceType.PARTICIPANT, zkAddress);
 
@@ -98,41 +135,77 @@ public class AggregationTaskRunner {
     manager.connect();
 
     checkpointManager = new CheckpointManager(manager.getHelixPropertyStore());
+
+    if (metricPartitionCount > 1) {
+      List<String> splitPoints = checkpointManager.readOrWriteSplitPoints(metricPartitionCount,
+        MetricNamePartitions.computeSplitPoints(metricNames, metricPartitionCount));
+      if (splitPoints == null || splitPoints.size() != metricPartitionCount - 1) {
+        throw new IllegalStateException("Unable to read metric name split points, found " + splitPoints);
+      }
+      metricNamePartitions = new MetricNamePartitions(splitPoints);
+      LOG.info("Metric name split points for " + metricPartitionCount + " partitions : " + splitPoints);
+    }
   }
 
   public boolean performsClusterAggregation() {
-    return performsClusterAggregation.get();
+    return !clusterPartitions.isEmpty();
   }
 
   public boolean performsHostAggregation() {
-    return performsHostAggregation.get();
+    return !hostPartitions.isEmpty();
+  }
+
+  /**
+   * Return true if aggregation is split into metric name ranges.
+   */
+  public boolean isPartitioned() {
+    return metricPartitionCount > 1;
+  }
+
+  public MetricNamePartitions getMetricNamePartitions() {
+    return metricNamePartitions;
+  }
+
+  /**
+   * Metric name partitions of the dimension owned by this instance.
+   */
+  public List<Integer> getOwnedPartitions(AGGREGATOR_TYPE type) {
+    switch (type) {
+      case HOST:
+        return new ArrayList<>(hostPartitions);
+      case CLUSTER:
+        return new ArrayList<>(clusterPartitions);
+    }
+    return Collections.emptyList();
   }
 
   public CheckpointManager getCheckpointManager() {
     return checkpointManager;
   }
 
-  public void setPartitionAggregationFunction(AGGREGATOR_TYPE type) {
-    switch (type) {
+  public void setPartitionAggregationFunction(String partitionName) {
+    int partition = getMetricPartition(partitionName);
+    switch (getPartitionAggregationType(partitionName)) {
       case HOST:
-        performsHostAggregation.set(true);
-        LOG.info("Set host aggregator function for : " + instanceName);
+        hostPartitions.add(partition);
+        LOG.info("Set host aggregator function for : " + instanceName + ", partition = " + partition);
         break;
       case CLUSTER:
-        performsClusterAggregation.set(true);
-        LOG.info("Set cluster aggregator function for : " + instanceName);
+        clusterPartitions.add(partition);
+        LOG.info("Set cluster aggregator function for : " + instanceName + ", partition = " + partition);
     }
   }
 
-  public void unsetPartitionAggregationFunction(AGGREGATOR_TYPE type) {
-    switch (type) {
+  public void unsetPartitionAggregationFunction(String partitionName) {
+    int partition = getMetricPartition(partitionName);
+    switch (getPartitionAggregationType(partitionName)) {
       case HOST:
-        performsHostAggregation.set(false);
-        LOG.info("Unset host aggregator function for : " + instanceName);
+        hostPartitions.remove(partition);
+        LOG.info("Unset host aggregator function for : " + instanceName + ", partition = " + partition);
         break;
       case CLUSTER:
-        performsClusterAggregation.set(false);
-        LOG.info("Unset cluster aggregator function for : " + instanceName);
+        clusterPartitions.remove(partition);
+        LOG.info("Unset cluster aggregator function for : " + instanceName + ", partition = " + partition);
     }
   }
 
@@ -26,6 +26,8 @@ import org.apache.helix.ZNRecord;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.apache.zookeeper.data.Stat;
 
+import java.util.List;
+
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.ACTUAL_AGGREGATOR_NAMES;
 
 public class CheckpointManager {
@@ -34,6 +36,10 @@ public class CheckpointManager {
 
   static final String ZNODE_FIELD = "checkpoint";
   static final String CHECKPOINT_PATH_PREFIX = "CHECKPOINTS";
+  static final String PARTITION_DELIMITER = "_";
+  static final String SPLIT_POINTS_PATH = "/PARTITIONS/METRIC_NAME_SPLIT_POINTS";
+  static final String SPLIT_POINTS_FIELD = "splitPoints";
+  static final String PARTITION_COUNT_FIELD = "partitionCount";
 
   public CheckpointManager(ZkHelixPropertyStore<ZNRecord> propertyStore) {
     this.propertyStore = propertyStore;
@@ -45,7 +51,28 @@ public class CheckpointManager {
    * @return timestamp
    */
   public long readCheckpoint(AGGREGATOR_NAME aggregatorName) {
-    String path = getCheckpointZKPath(aggregatorName);
+    return readCheckpoint(getCheckpointZKPath(aggregatorName));
+  }
+
+  /**
+   * Read the checkpoint of a metric name partition. A partition that was
+   * never checkpointed continues from the aggregator checkpoint, which is
+   * shared with partition 0.
+   *
+   * @return timestamp
+   */
+  public long readCheckpoint(AGGREGATOR_NAME aggregatorName, int partition) {
+    long checkpoint = readCheckpoint(getCheckpointZKPath(aggregatorName, partition));
+    if (checkpoint == -1 && partition > 0) {
+      checkpoint = readCheckpoint(aggregatorName);
+    }
+    return checkpoint;
+  }
+
+  /**
+   * Access relaxed for tests
+   */
+  protected long readCheckpoint(String path) {
     LOG.debug("Reading checkpoint at " + path);
     Stat stat = new Stat();
     ZNRecord znRecord = propertyStore.get(path, stat, AccessOption.PERSISTENT);
@@ -64,7 +91,23 @@ public class CheckpointManager {
    * @return sucsess
    */
   public boolean writeCheckpoint(AGGREGATOR_NAME aggregatorName, long value) {
-    String path = getCheckpointZKPath(aggregatorName);
+    return writeCheckpoint(getCheckpointZKPath(aggregatorName), value);
+  }
+
+  /**
+   * Write the checkpoint of a metric name partition in zookeeper
+   *
+   * @param value timestamp
+   * @return success
+   */
+  public boolean writeCheckpoint(AGGREGATOR_NAME aggregatorName, int partition, long value) {
+    return writeCheckpoint(getCheckpointZKPath(aggregatorName, partition), value);
+  }
+
+  /**
+   * Access relaxed for tests
+   */
+  protected boolean writeCheckpoint(String path, long value) {
     LOG.debug(String.format("Saving checkpoint at %s with value %s", path, value));
     return propertyStore.update(path, new CheckpointDataUpdater(path, value), AccessOption.PERSISTENT);
   }
@@ -88,6 +131,47 @@ public class CheckpointManager {
     }
   }
 
+  /**
+   * Read the metric name split points shared by all collectors, the first
+   * collector to ask for a partition count stores the given split points.
+   *
+   * @return split points in use for the partition count
+   */
+  public List<String> readOrWriteSplitPoints(int partitionCount, List<String> splitPoints) {
+    propertyStore.update(SPLIT_POINTS_PATH,
+      new SplitPointsDataUpdater(partitionCount, splitPoints), AccessOption.PERSISTENT);
+    ZNRecord znRecord = propertyStore.get(SPLIT_POINTS_PATH, new Stat(), AccessOption.PERSISTENT);
+    return znRecord != null ? znRecord.getListField(SPLIT_POINTS_FIELD) : null;
+  }
+
+  static class SplitPointsDataUpdater implements DataUpdater<ZNRecord> {
+    final int partitionCount;
+    final List<String> splitPoints;
+
+    public SplitPointsDataUpdater(int partitionCount, List<String> splitPoints) {
+      this.partitionCount = partitionCount;
+      this.splitPoints = splitPoints;
+    }
+
+    @Override
+    public ZNRecord update(ZNRecord currentData) {
+      if (currentData != null &&
+          currentData.getIntField(PARTITION_COUNT_FIELD, -1) == partitionCount) {
+        return currentData;
+      }
+      LOG.info("Saving metric name split points for " + partitionCount + " partitions.");
+      ZNRecord newData = new ZNRecord(SPLIT_POINTS_PATH);
+      newData.setIntField(PARTITION_COUNT_FIELD, partitionCount);
+      newData.setListField(SPLIT_POINTS_FIELD, splitPoints);
+      return newData;
+    }
+  }
+
+  String getCheckpointZKPath(AGGREGATOR_NAME aggregatorName, int partition) {
+    String path = getCheckpointZKPath(aggregatorName);
+    return partition > 0 ? path + PARTITION_DELIMITER + partition : path;
+  }
+
   String getCheckpointZKPath(AGGREGATOR_NAME aggregatorName) {
     StringBuilder sb = new StringBuilder("/");
     sb.append(CHECKPOINT_PATH_PREFIX);
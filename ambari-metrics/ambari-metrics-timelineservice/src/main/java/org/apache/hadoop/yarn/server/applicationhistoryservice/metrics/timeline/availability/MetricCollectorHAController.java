@@ -33,12 +33,14 @@ import org.apache.helix.NotificationContext;
 import org.apache.helix.controller.GenericHelixController;
 import org.apache.helix.manager.zk.ZKHelixAdmin;
 import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
 import org.apache.helix.model.InstanceConfig;
 import org.apache.helix.model.LiveInstance;
 import org.apache.helix.model.OnlineOfflineSMD;
 import org.apache.helix.model.StateModelDefinition;
 import org.apache.helix.tools.StateModelConfigGenerator;;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +63,8 @@ public class MetricCollectorHAController {
   final InstanceConfig instanceConfig;
   final AggregationTaskRunner aggregationTaskRunner;
   final TimelineMetricConfiguration configuration;
+  // Metric name ranges per aggregator dimension
+  final int metricPartitionCount;
 
   // Cache list of known live instances
   final List<String> liveInstanceNames = new ArrayList<>();
@@ -104,8 +108,9 @@ public class MetricCollectorHAController {
     instanceConfig.setHostName(instanceHostname);
     instanceConfig.setPort(instancePort);
     instanceConfig.setInstanceEnabled(true);
+    metricPartitionCount = Math.max(1, configuration.getAggregationPartitionCount());
     aggregationTaskRunner = new AggregationTaskRunner(
-      instanceConfig.getInstanceName(), zkConnectUrl, getClusterName());
+      instanceConfig.getInstanceName(), zkConnectUrl, getClusterName(), metricPartitionCount);
   }
 
   /**
@@ -119,6 +124,16 @@ public class MetricCollectorHAController {
    * Initialize the instance with zookeeper via Helix
    */
   public void initializeHAController() throws Exception {
+    initializeHAController(Collections.<String>emptySet());
+  }
+
+  /**
+   * Initialize the instance with zookeeper via Helix
+   *
+   * @param metricNames known metric names, used to split aggregation into
+   *                    metric name ranges of similar size
+   */
+  public void initializeHAController(Collection<String> metricNames) throws Exception {
     String clusterName = getClusterName();
     admin = new ZKHelixAdmin(zkConnectUrl);
     // create cluster
@@ -147,20 +162,30 @@ public class MetricCollectorHAController {
     }
 
     // Add resources with 1 cluster-wide replica
-    // Since our aggregators are unbalanced in terms of work distribution we
-    // only need to distribute writes to METRIC_AGGREGATE and
-    // METRIC_RECORD_MINUTE
+    // Each aggregator dimension (cluster, host) gets one partition per
+    // metric name range, Helix FULL_AUTO spreads them over live instances
+    // and moves them off failed ones.
+    int numPartitions = 2 * metricPartitionCount;
     List<String> resources = admin.getResourcesInCluster(clusterName);
     if (!resources.contains(METRIC_AGGREGATORS)) {
-      LOG.info("Adding resource " + METRIC_AGGREGATORS + " with 2 partitions and 1 replicas");
-      admin.addResource(clusterName, METRIC_AGGREGATORS, 2, DEFAULT_STATE_MODEL, FULL_AUTO.toString());
+      LOG.info("Adding resource " + METRIC_AGGREGATORS + " with " + numPartitions +
+        " partitions and 1 replicas");
+      admin.addResource(clusterName, METRIC_AGGREGATORS, numPartitions, DEFAULT_STATE_MODEL, FULL_AUTO.toString());
+    } else {
+      IdealState idealState = admin.getResourceIdealState(clusterName, METRIC_AGGREGATORS);
+      if (idealState.getNumPartitions() != numPartitions) {
+        LOG.info("Changing partitions of resource " + METRIC_AGGREGATORS + " from " +
+          idealState.getNumPartitions() + " to " + numPartitions);
+        idealState.setNumPartitions(numPartitions);
+        admin.setResourceIdealState(clusterName, METRIC_AGGREGATORS, idealState);
+      }
     }
     // this will set up the ideal state, it calculates the preference list for
     // each partition similar to consistent hashing
     admin.rebalance(clusterName, METRIC_AGGREGATORS, 1);
 
     // Start participant
-    startAggregators();
+    startAggregators(metricNames);
 
     // Start controller
     startController();
@@ -183,9 +208,9 @@ public class MetricCollectorHAController {
     return isInitialized;
   }
 
-  private void startAggregators() {
+  private void startAggregators(Collection<String> metricNames) {
     try {
-      aggregationTaskRunner.initialize();
+      aggregationTaskRunner.initialize(metricNames);
 
     } catch (Exception e) {
       LOG.error("Unable to start aggregators.", e);
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Splits the metric name key space into contiguous ranges. Partition i
+ * holds the metric names n with splitPoints[i - 1] <= n < splitPoints[i],
+ * the first and last partitions are open ended. Since every metrics table
+ * leads its row key with METRIC_NAME, a range restricts the aggregator
+ * scans to the rows of that partition.
+ */
+public class MetricNamePartitions {
+  // Printable ASCII used for split points when too few names are known
+  private static final int FIRST_CHAR = 0x20;
+  private static final int CHAR_RANGE = 0x7f - FIRST_CHAR;
+
+  private final List<String> splitPoints;
+
+  public MetricNamePartitions(List<String> splitPoints) {
+    this.splitPoints = Collections.unmodifiableList(new ArrayList<>(splitPoints));
+  }
+
+  public int getPartitionCount() {
+    return splitPoints.size() + 1;
+  }
+
+  public List<String> getSplitPoints() {
+    return splitPoints;
+  }
+
+  /**
+   * Partition holding the metric name.
+   */
+  public int getPartition(String metricName) {
+    int index = Collections.binarySearch(splitPoints, metricName);
+    return index >= 0 ? index + 1 : -(index + 1);
+  }
+
+  /**
+   * Split the known metric names into ranges holding the same number of
+   * names. With fewer names than partitions, split points are spread over
+   * the first two characters instead.
+   */
+  public static List<String> computeSplitPoints(Collection<String> metricNames, int partitionCount) {
+    List<String> splitPoints = new ArrayList<>();
+    List<String> names = new ArrayList<>(new TreeSet<>(metricNames));
+
+    if (names.size() >= partitionCount) {
+      for (int i = 1; i < partitionCount; i++) {
+        splitPoints.add(names.get((int) ((long) i * names.size() / partitionCount)));
+      }
+    } else {
+      int keySpace = CHAR_RANGE * CHAR_RANGE;
+      for (int i = 1; i < partitionCount; i++) {
+        int key = (int) ((long) i * keySpace / partitionCount);
+        splitPoints.add(new String(new char[] {
+          (char) (FIRST_CHAR + key / CHAR_RANGE), (char) (FIRST_CHAR + key % CHAR_RANGE) }));
+      }
+    }
+    return splitPoints;
+  }
+
+  /**
+   * SQL condition on METRIC_NAME selecting the given partitions, adjacent
+   * partitions are merged into a single range.
+   *
+   * @return condition or null if the partitions cover all metric names
+   */
+  public String getRangeClause(Collection<Integer> partitions) {
+    TreeSet<Integer> sorted = new TreeSet<>(partitions);
+    if (sorted.isEmpty()) {
+      throw new IllegalArgumentException("No partitions to select.");
+    }
+    if (sorted.first() < 0 || sorted.last() >= getPartitionCount()) {
+      throw new IllegalArgumentException("Unknown partition in " + partitions);
+    }
+    if (sorted.size() == getPartitionCount()) {
+      return null;
+    }
+
+    List<String> ranges = new ArrayList<>();
+    Integer first = null;
+    Integer last = null;
+    for (Integer partition : sorted) {
+      if (last != null && partition != last + 1) {
+        ranges.add(getRangeClause(first, last));
+        first = null;
+      }
+      if (first == null) {
+        first = partition;
+      }
+      last = partition;
+    }
+    ranges.add(getRangeClause(first, last));
+
+    if (ranges.size() == 1) {
+      return ranges.get(0);
+    }
+    StringBuilder sb = new StringBuilder("(");
+    for (int i = 0; i < ranges.size(); i++) {
+      if (i > 0) {
+        sb.append(" OR ");
+      }
+      sb.append(ranges.get(i));
+    }
+    sb.append(")");
+    return sb.toString();
+  }
+
+  private String getRangeClause(int first, int last) {
+    StringBuilder sb = new StringBuilder("(");
+    if (first > 0) {
+      sb.append("METRIC_NAME >= ").append(quote(splitPoints.get(first - 1)));
+    }
+    if (last < splitPoints.size()) {
+      if (first > 0) {
+        sb.append(" AND ");
+      }
+      sb.append("METRIC_NAME < ").append(quote(splitPoints.get(last)));
+    }
+    sb.append(")");
+    return sb.toString();
+  }
+
+  private static String quote(String value) {
+    return "'" + value.replace("'", "''") + "'";
+  }
+}
@@ -21,10 +21,10 @@ import com.google.common.base.Joiner;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -34,35 +34,101 @@ public abstract class AbstractTimelineMetricsSeriesAggregateFunction
 
   @Override
   public TimelineMetric apply(TimelineMetrics timelineMetrics) {
+    List<TimelineMetric> metrics = timelineMetrics.getMetrics();
+    List<TimelineMetricSeries> series = new ArrayList<>(metrics.size());
+    for (TimelineMetric timelineMetric : metrics) {
+      series.add(TimelineMetricSeries.fromMetricValues(timelineMetric.getMetricValues()));
+    }
+    return apply(metrics, series);
+  }
+
+  /**
+   * Aggregate the values of the metrics per timestamp.
+   *
+   * @param series values of each metric, used instead of the metric values
+   *               of the metrics
+   */
+  public TimelineMetric apply(List<TimelineMetric> metrics, List<TimelineMetricSeries> series) {
     Set<String> metricNameSet = new TreeSet<>();
     Set<String> hostNameSet = new TreeSet<>();
     Set<String> appIdSet = new TreeSet<>();
     Set<String> instanceIdSet = new TreeSet<>();
-    TreeMap<Long, List<Double>> metricValues = new TreeMap<>();
 
-    for (TimelineMetric timelineMetric : timelineMetrics.getMetrics()) {
+    int total = 0;
+    for (int i = 0; i < metrics.size(); i++) {
+      TimelineMetric timelineMetric = metrics.get(i);
       metricNameSet.add(timelineMetric.getMetricName());
       addToSetOnlyNotNull(hostNameSet, timelineMetric.getHostName());
       addToSetOnlyNotNull(appIdSet, timelineMetric.getAppId());
       addToSetOnlyNotNull(instanceIdSet, timelineMetric.getInstanceId());
+      total += series.get(i).size();
+    }
 
-      for (Map.Entry<Long, Double> metricValue : timelineMetric.getMetricValues().entrySet()) {
-        Long timestamp = metricValue.getKey();
-        Double value = metricValue.getValue();
-        if (!metricValues.containsKey(timestamp)) {
-          metricValues.put(timestamp, new LinkedList<Double>());
+    // Distinct timestamps of all series and the slot of every value, series
+    // collected at the same timestamps need no sorting
+    long[] timestamps;
+    int distinct;
+    int[] slots = null;
+    if (haveSameTimes(series)) {
+      TimelineMetricSeries first = series.get(0);
+      distinct = first.size();
+      timestamps = new long[distinct];
+      for (int i = 0; i < distinct; i++) {
+        timestamps[i] = first.getTime(i);
+      }
+    } else {
+      timestamps = new long[total];
+      int n = 0;
+      for (TimelineMetricSeries s : series) {
+        for (int i = 0; i < s.size(); i++) {
+          timestamps[n++] = s.getTime(i);
+        }
+      }
+      Arrays.sort(timestamps);
+      distinct = 0;
+      for (int i = 0; i < total; i++) {
+        if (distinct == 0 || timestamps[i] != timestamps[distinct - 1]) {
+          timestamps[distinct++] = timestamps[i];
+        }
+      }
+      slots = new int[total];
+      n = 0;
+      for (TimelineMetricSeries s : series) {
+        for (int i = 0; i < s.size(); i++) {
+          slots[n++] = Arrays.binarySearch(timestamps, 0, distinct, s.getTime(i));
         }
-        metricValues.get(timestamp).add(value);
       }
     }
 
-    TreeMap<Long, Double> aggregatedMetricValues = new TreeMap<>();
-    for (Map.Entry<Long, List<Double>> metricValue : metricValues.entrySet()) {
-      List<Double> values = metricValue.getValue();
-      if (values.size() == 0) {
-        throw new IllegalArgumentException("count of values should be more than 0");
+    // Group the values by timestamp, missing values are left out
+    int[] offsets = new int[distinct + 1];
+    int n = 0;
+    for (TimelineMetricSeries s : series) {
+      for (int i = 0; i < s.size(); i++, n++) {
+        if (!Double.isNaN(s.getValue(i))) {
+          offsets[(slots == null ? i : slots[n]) + 1]++;
+        }
       }
-      aggregatedMetricValues.put(metricValue.getKey(), applyFunction(values));
+    }
+    for (int slot = 0; slot < distinct; slot++) {
+      offsets[slot + 1] += offsets[slot];
+    }
+    double[] values = new double[offsets[distinct]];
+    int[] next = Arrays.copyOf(offsets, distinct);
+    n = 0;
+    for (TimelineMetricSeries s : series) {
+      for (int i = 0; i < s.size(); i++, n++) {
+        if (!Double.isNaN(s.getValue(i))) {
+          values[next[slots == null ? i : slots[n]]++] = s.getValue(i);
+        }
+      }
+    }
+
+    TreeMap<Long, Double> aggregatedMetricValues = new TreeMap<>();
+    for (int slot = 0; slot < distinct; slot++) {
+      int from = offsets[slot];
+      int to = offsets[slot + 1];
+      aggregatedMetricValues.put(timestamps[slot], from == to ? null : applyFunction(values, from, to));
     }
 
     TimelineMetric timelineMetric = new TimelineMetric();
@@ -77,6 +143,25 @@ public abstract class AbstractTimelineMetricsSeriesAggregateFunction
     return timelineMetric;
   }
 
+  private static boolean haveSameTimes(List<TimelineMetricSeries> series) {
+    if (series.isEmpty()) {
+      return false;
+    }
+    TimelineMetricSeries first = series.get(0);
+    for (int s = 1; s < series.size(); s++) {
+      TimelineMetricSeries other = series.get(s);
+      if (other.size() != first.size()) {
+        return false;
+      }
+      for (int i = 0; i < first.size(); i++) {
+        if (other.getTime(i) != first.getTime(i)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   protected String getMetricName(Iterator<String> metricNames) {
     return getFunctionName() + "(" + Joiner.on(",").join(metricNames) + ")";
   }
@@ -85,7 +170,11 @@ public abstract class AbstractTimelineMetricsSeriesAggregateFunction
     return Joiner.on(",").join(hostNames);
   }
 
-  protected abstract Double applyFunction(List<Double> values);
+  /**
+   * Aggregate of values[from] to values[to - 1], there is at least one value.
+   * The values may be reordered.
+   */
+  protected abstract double applyFunction(double[] values, int from, int to);
   protected abstract String getFunctionName();
 
   private void addToSetOnlyNotNull(Set<String> set, String value) {
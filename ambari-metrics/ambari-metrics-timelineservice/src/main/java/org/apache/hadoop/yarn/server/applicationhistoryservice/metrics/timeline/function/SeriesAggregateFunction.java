@@ -20,7 +20,7 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
 
 public enum SeriesAggregateFunction {
-  AVG, MIN, MAX, SUM;
+  AVG, MIN, MAX, SUM, P50, P90, P95, P99;
 
   public static boolean isPresent(String functionName) {
     try {
@@ -36,7 +36,7 @@ public enum SeriesAggregateFunction {
       return SeriesAggregateFunction.valueOf(functionName.toUpperCase());
     } catch (NullPointerException | IllegalArgumentException e) {
       throw new Function.FunctionFormatException(
-            "Function should be sum, avg, min, max. Got " + functionName, e);
+            "Function should be sum, avg, min, max, p50, p90, p95, p99. Got " + functionName, e);
     }
   }
 }
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Values of a series as parallel arrays ordered by time, a missing value is
+ * stored as NaN. Functions are applied in place.
+ */
+public class TimelineMetricSeries {
+  private final long[] times;
+  private final double[] values;
+  private int size;
+
+  public TimelineMetricSeries(long[] times, double[] values, int size) {
+    this.times = times;
+    this.values = values;
+    this.size = size;
+  }
+
+  public static TimelineMetricSeries fromMetricValues(Map<Long, Double> metricValues) {
+    long[] times = new long[metricValues.size()];
+    double[] values = new double[metricValues.size()];
+    int i = 0;
+    for (Map.Entry<Long, Double> value : metricValues.entrySet()) {
+      times[i] = value.getKey();
+      values[i] = value.getValue() == null ? Double.NaN : value.getValue();
+      i++;
+    }
+    return new TimelineMetricSeries(times, values, i);
+  }
+
+  public TreeMap<Long, Double> toMetricValues() {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    for (int i = 0; i < size; i++) {
+      metricValues.put(times[i], Double.isNaN(values[i]) ? null : values[i]);
+    }
+    return metricValues;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getTime(int i) {
+    return times[i];
+  }
+
+  public double getValue(int i) {
+    return values[i];
+  }
+
+  /**
+   * Replace the values by the change from the previous value, per second
+   * of the whole seconds between them unless a diff is requested. The first
+   * value has no previous one and is dropped.
+   */
+  public void rate(boolean isDiff) {
+    if (size == 0) {
+      return;
+    }
+    long prevTime = times[0];
+    double prevValue = values[0];
+    for (int i = 1; i < size; i++) {
+      long time = times[i];
+      double value = values[i];
+      double diff = value - prevValue;
+      times[i - 1] = time;
+      values[i - 1] = isDiff ? diff : diff / TimeUnit.MILLISECONDS.toSeconds(time - prevTime);
+      prevTime = time;
+      prevValue = value;
+    }
+    size--;
+  }
+
+  /**
+   * Replace every value by the average of the value and up to points - 1
+   * values before it, missing values are left out.
+   */
+  public void movingAverage(int points) {
+    double[] window = new double[points];
+    double sum = 0;
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      double value = values[i];
+      if (i >= points) {
+        double leaving = window[i % points];
+        if (!Double.isNaN(leaving)) {
+          sum -= leaving;
+          count--;
+        }
+      }
+      window[i % points] = value;
+      if (!Double.isNaN(value)) {
+        sum += value;
+        count++;
+      }
+      values[i] = count == 0 ? Double.NaN : sum / count;
+    }
+  }
+}
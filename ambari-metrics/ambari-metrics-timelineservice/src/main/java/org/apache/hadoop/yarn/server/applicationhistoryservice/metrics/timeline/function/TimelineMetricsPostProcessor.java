@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function.PostProcessingFunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies the post processing functions requested with the metric names,
+ * rate, diff and moving average, and the series aggregate function to query
+ * results. The values of every series are copied to primitive arrays once,
+ * processed in place and either aggregated directly or copied back.
+ */
+public class TimelineMetricsPostProcessor {
+  // Points averaged by ._movavg
+  public static final int MOVING_AVERAGE_POINTS = 5;
+
+  private final TimelineMetricsSeriesAggregateFunction seriesAggregateFunction;
+
+  public TimelineMetricsPostProcessor(TimelineMetricsSeriesAggregateFunction seriesAggregateFunction) {
+    this.seriesAggregateFunction = seriesAggregateFunction;
+  }
+
+  public TimelineMetrics process(TimelineMetrics metrics) {
+    List<TimelineMetric> metricsList = metrics.getMetrics();
+    if (metricsList.isEmpty()) {
+      return metrics;
+    }
+
+    if (seriesAggregateFunction instanceof AbstractTimelineMetricsSeriesAggregateFunction) {
+      List<TimelineMetricSeries> series = new ArrayList<>(metricsList.size());
+      for (TimelineMetric metric : metricsList) {
+        TimelineMetricSeries s = TimelineMetricSeries.fromMetricValues(metric.getMetricValues());
+        apply(getPostProcessingFunction(metric.getMetricName()), s);
+        series.add(s);
+      }
+      TimelineMetric appliedMetric = ((AbstractTimelineMetricsSeriesAggregateFunction) seriesAggregateFunction)
+        .apply(metricsList, series);
+      metrics.setMetrics(Collections.singletonList(appliedMetric));
+      return metrics;
+    }
+
+    for (TimelineMetric metric : metricsList) {
+      PostProcessingFunction function = getPostProcessingFunction(metric.getMetricName());
+      if (function != null && function != PostProcessingFunction.NONE) {
+        TimelineMetricSeries s = TimelineMetricSeries.fromMetricValues(metric.getMetricValues());
+        apply(function, s);
+        metric.setMetricValues(s.toMetricValues());
+      }
+    }
+    if (seriesAggregateFunction != null) {
+      metrics.setMetrics(Collections.singletonList(seriesAggregateFunction.apply(metrics)));
+    }
+    return metrics;
+  }
+
+  static void apply(PostProcessingFunction function, TimelineMetricSeries series) {
+    if (function == null) {
+      return;
+    }
+    switch (function) {
+      case RATE:
+        series.rate(false);
+        break;
+      case DIFF:
+        series.rate(true);
+        break;
+      case MOVAVG:
+        series.movingAverage(MOVING_AVERAGE_POINTS);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Post processing function of a metric returned with the suffixes of its
+   * functions, null if the suffixes are not functions.
+   */
+  static PostProcessingFunction getPostProcessingFunction(String metricName) {
+    if (!metricName.contains("._")) {
+      return null;
+    }
+    try {
+      return Function.fromMetricName(metricName).getPostProcessingFunction();
+    } catch (IllegalArgumentException e) {
+      // also thrown for names with too many suffixes
+      return null;
+    }
+  }
+}
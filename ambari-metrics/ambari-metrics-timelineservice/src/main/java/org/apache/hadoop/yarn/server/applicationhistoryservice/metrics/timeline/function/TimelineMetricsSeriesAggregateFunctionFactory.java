@@ -33,9 +33,17 @@ public class TimelineMetricsSeriesAggregateFunctionFactory {
       return new TimelineMetricsSeriesMaxAggregateFunction();
     case SUM:
       return new TimelineMetricsSeriesSumAggregateFunction();
+    case P50:
+      return new TimelineMetricsSeriesPercentileAggregateFunction(func.name(), 50);
+    case P90:
+      return new TimelineMetricsSeriesPercentileAggregateFunction(func.name(), 90);
+    case P95:
+      return new TimelineMetricsSeriesPercentileAggregateFunction(func.name(), 95);
+    case P99:
+      return new TimelineMetricsSeriesPercentileAggregateFunction(func.name(), 99);
     default:
-      throw new Function.FunctionFormatException("Function should be sum, avg, min, max. Got " +
-          func.name());
+      throw new Function.FunctionFormatException(
+          "Function should be sum, avg, min, max, p50, p90, p95, p99. Got " + func.name());
     }
   }
 }
\ No newline at end of file
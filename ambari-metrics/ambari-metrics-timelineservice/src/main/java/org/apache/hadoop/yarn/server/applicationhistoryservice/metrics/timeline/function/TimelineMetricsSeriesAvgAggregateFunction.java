@@ -17,19 +17,17 @@
  */
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
 
-import java.util.List;
-
 public class TimelineMetricsSeriesAvgAggregateFunction extends AbstractTimelineMetricsSeriesAggregateFunction {
   private static final String FUNCTION_NAME = "AVG";
 
   @Override
-  protected Double applyFunction(List<Double> values) {
+  protected double applyFunction(double[] values, int from, int to) {
     double sum = 0.0d;
-    for (Double value : values) {
-      sum += value;
+    for (int i = from; i < to; i++) {
+      sum += values[i];
     }
 
-    return sum / values.size();
+    return sum / (to - from);
   }
 
   @Override
@@ -17,17 +17,15 @@
  */
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
 
-import java.util.List;
-
 public class TimelineMetricsSeriesMaxAggregateFunction extends AbstractTimelineMetricsSeriesAggregateFunction {
   private static final String FUNCTION_NAME = "MAX";
 
   @Override
-  protected Double applyFunction(List<Double> values) {
-    double max = Double.MIN_VALUE;
-    for (Double value : values) {
-      if (value > max) {
-        max = value;
+  protected double applyFunction(double[] values, int from, int to) {
+    double max = values[from];
+    for (int i = from + 1; i < to; i++) {
+      if (values[i] > max) {
+        max = values[i];
       }
     }
 
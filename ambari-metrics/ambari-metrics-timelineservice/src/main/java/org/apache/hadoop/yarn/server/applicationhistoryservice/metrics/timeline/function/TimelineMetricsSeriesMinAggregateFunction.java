@@ -17,17 +17,15 @@
  */
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
 
-import java.util.List;
-
 public class TimelineMetricsSeriesMinAggregateFunction extends AbstractTimelineMetricsSeriesAggregateFunction {
   private static final String FUNCTION_NAME = "MIN";
 
   @Override
-  protected Double applyFunction(List<Double> values) {
-    double min = Double.MAX_VALUE;
-    for (Double value : values) {
-      if (value < min) {
-        min = value;
+  protected double applyFunction(double[] values, int from, int to) {
+    double min = values[from];
+    for (int i = from + 1; i < to; i++) {
+      if (values[i] < min) {
+        min = values[i];
       }
     }
 
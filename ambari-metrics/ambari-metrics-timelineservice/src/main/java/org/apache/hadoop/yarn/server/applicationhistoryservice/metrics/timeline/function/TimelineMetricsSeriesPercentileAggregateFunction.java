@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
+
+import java.util.Arrays;
+
+/**
+ * Nearest rank percentile of the values of the series at a timestamp.
+ */
+public class TimelineMetricsSeriesPercentileAggregateFunction extends AbstractTimelineMetricsSeriesAggregateFunction {
+  private final String functionName;
+  private final double percentile;
+
+  public TimelineMetricsSeriesPercentileAggregateFunction(String functionName, double percentile) {
+    if (percentile <= 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile should be in (0, 100]. Got " + percentile);
+    }
+    this.functionName = functionName;
+    this.percentile = percentile;
+  }
+
+  @Override
+  protected double applyFunction(double[] values, int from, int to) {
+    Arrays.sort(values, from, to);
+    int rank = (int) Math.ceil(percentile / 100 * (to - from));
+    return values[from + Math.max(rank, 1) - 1];
+  }
+
+  @Override
+  protected String getFunctionName() {
+    return functionName;
+  }
+}
@@ -17,16 +17,14 @@
  */
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
 
-import java.util.List;
-
 public class TimelineMetricsSeriesSumAggregateFunction extends AbstractTimelineMetricsSeriesAggregateFunction {
   private static final String FUNCTION_NAME = "SUM";
 
   @Override
-  protected Double applyFunction(List<Double> values) {
+  protected double applyFunction(double[] values, int from, int to) {
     double sum = 0.0d;
-    for (Double value : values) {
-      sum += value;
+    for (int i = from; i < to; i++) {
+      sum += values[i];
     }
 
     return sum;
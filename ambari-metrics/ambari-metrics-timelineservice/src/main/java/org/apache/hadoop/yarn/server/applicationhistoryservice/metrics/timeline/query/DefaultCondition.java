@@ -43,6 +43,7 @@ public class DefaultCondition implements Condition {
   String statement;
   Set<String> orderByColumns = new LinkedHashSet<String>();
   boolean metricNamesNotCondition = false;
+  String metricNameRangeClause;
 
   private static final Log LOG = LogFactory.getLog(DefaultCondition.class);
 
@@ -76,6 +77,7 @@ public class DefaultCondition implements Condition {
     StringBuilder sb = new StringBuilder();
 
     boolean appendConjunction = appendMetricNameClause(sb);
+    appendConjunction = append(sb, appendConjunction, metricNameRangeClause, " " + metricNameRangeClause);
 
     appendConjunction = appendHostnameClause(sb, appendConjunction);
 
@@ -381,4 +383,12 @@ public class DefaultCondition implements Condition {
   public void setMetricNamesNotCondition(boolean metricNamesNotCondition) {
     this.metricNamesNotCondition = metricNamesNotCondition;
   }
+
+  /**
+   * Restrict the query to a range of metric names, for aggregators working
+   * on a metric name partition.
+   */
+  public void setMetricNameRangeClause(String metricNameRangeClause) {
+    this.metricNameRangeClause = metricNameRangeClause;
+  }
 }
@@ -527,7 +527,7 @@ public class PhoenixTransactSQL {
     }
   }
 
-  private static void validateRowCountLimit(Condition condition) {
+  public static void validateRowCountLimit(Condition condition) {
     if (condition.getMetricNames() == null
       || condition.getMetricNames().isEmpty()) {
       //aggregator can use empty metrics query
@@ -36,6 +36,7 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricsIngestRejectedException;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStore;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.EntityIdentifier;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.GenericObjectMapper;
@@ -279,6 +280,12 @@ public class TimelineWebServices {
 
       return timelineMetricStore.putMetrics(metrics);
 
+    } catch (MetricsIngestRejectedException e) {
+      LOG.debug("Metrics ingest pipeline is full, rejecting request.");
+      throw new WebApplicationException(
+        Response.status(Response.Status.SERVICE_UNAVAILABLE)
+          .header("Retry-After", e.getRetryAfterSeconds())
+          .build());
     } catch (Exception e) {
       LOG.error("Error saving metrics.", e);
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
@@ -412,6 +419,54 @@ public class TimelineWebServices {
     }
   }
 
+  /**
+   * Queue depths, request counts and stage latencies of the asynchronous
+   * ingest pipeline.
+   */
+  @GET
+  @Path("/metrics/ingest")
+  @Produces({ MediaType.APPLICATION_JSON })
+  public Map<String, Number> getIngestStatistics(
+    @Context HttpServletRequest req,
+    @Context HttpServletResponse res
+  ) {
+    init(res);
+
+    return timelineMetricStore.getIngestStatistics();
+  }
+
+  /**
+   * Size, hit counts and query latencies of the hot tier for recent
+   * precision data.
+   */
+  @GET
+  @Path("/metrics/hottier")
+  @Produces({ MediaType.APPLICATION_JSON })
+  public Map<String, Number> getHotTierStatistics(
+    @Context HttpServletRequest req,
+    @Context HttpServletResponse res
+  ) {
+    init(res);
+
+    return timelineMetricStore.getHotTierStatistics();
+  }
+
+  /**
+   * Size, hit ratios, bytes saved and query latencies of the query result
+   * cache.
+   */
+  @GET
+  @Path("/metrics/querycache")
+  @Produces({ MediaType.APPLICATION_JSON })
+  public Map<String, Number> getQueryCacheStatistics(
+    @Context HttpServletRequest req,
+    @Context HttpServletResponse res
+  ) {
+    init(res);
+
+    return timelineMetricStore.getQueryCacheStatistics();
+  }
+
   /**
    * This is a discovery endpoint that advertises known live collector
    * instances. Note: It will always answer with current instance as live.
@@ -55,6 +55,7 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.Collection;
 
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.METRICS_SITE_CONFIGURATION_FILE;
 import static org.easymock.EasyMock.anyObject;
@@ -205,7 +206,7 @@ public class TestApplicationHistoryServer {
     expectNew(MetricCollectorHAController.class, metricConfiguration)
       .andReturn(haControllerMock);
 
-    haControllerMock.initializeHAController();
+    haControllerMock.initializeHAController(EasyMock.<Collection<String>>anyObject());
     expectLastCall().once();
     expect(haControllerMock.isInitialized()).andReturn(false).anyTimes();
 
@@ -25,6 +25,7 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function.ReadFunction.AVG;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function.PostProcessingFunction.RATE;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function.PostProcessingFunction.DIFF;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function.PostProcessingFunction.MOVAVG;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class FunctionTest {
@@ -52,6 +53,12 @@ public class FunctionTest {
     f = fromMetricName("Metric._diff");
     assertThat(f).isEqualTo(new Function(null, DIFF));
 
+    // Moving average support
+    f = fromMetricName("Metric._movavg._avg");
+    assertThat(f).isEqualTo(new Function(AVG, MOVAVG));
+
+    // Parsed functions are reused
+    assertThat(fromMetricName("Metric._movavg._avg")).isSameAs(f);
   }
 
   @Ignore // If unknown function: behavior is best effort query without function
@@ -58,6 +58,28 @@ public class TestPhoenixTransactSQL {
     Assert.assertEquals(expectedClause, preparedClause);
   }
 
+  @Test
+  public void testConditionClauseWithMetricNameRange() throws Exception {
+    DefaultCondition condition = new DefaultCondition(
+      new ArrayList<>(Arrays.asList("cpu_user", "mem_free")), null,
+      "a1", null, 1407959718L, 1407959918L, null, null, false);
+    condition.setMetricNameRangeClause("((METRIC_NAME < 'c') OR (METRIC_NAME >= 'm'))");
+
+    String preparedClause = condition.getConditionClause().toString();
+    String expectedClause = "(METRIC_NAME IN (?, ?)) AND ((METRIC_NAME < 'c') OR (METRIC_NAME >= 'm')) AND " +
+      "APP_ID = ? AND SERVER_TIME >= ? AND SERVER_TIME < ?";
+
+    Assert.assertEquals(expectedClause, preparedClause);
+
+    condition = new DefaultCondition(null, null, null, null, 1407959718L, 1407959918L, null, null, false);
+    condition.setMetricNameRangeClause("(METRIC_NAME >= 'c' AND METRIC_NAME < 'm')");
+
+    preparedClause = condition.getConditionClause().toString();
+    expectedClause = " (METRIC_NAME >= 'c' AND METRIC_NAME < 'm') AND SERVER_TIME >= ? AND SERVER_TIME < ?";
+
+    Assert.assertEquals(expectedClause, preparedClause);
+  }
+
   @Test
   public void testSplitByMetricNamesCondition() throws Exception {
     Condition c = new DefaultCondition(
@@ -100,4 +100,19 @@ public class TestTimelineMetricStore implements TimelineMetricStore {
   public List<String> getLiveInstances() {
     return Collections.emptyList();
   }
+
+  @Override
+  public Map<String, Number> getIngestStatistics() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public Map<String, Number> getHotTierStatistics() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public Map<String, Number> getQueryCacheStatistics() {
+    return Collections.emptyMap();
+  }
 }
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Measures the size of the METRICS column and the time and bytes allocated
+ * to encode and decode it with the JSON and the binary format of
+ * {@link TimelineMetricValuesCodec}, 10000 rows of 6 points 10 seconds
+ * apart with the defaults, half of them gauges and half counters. Decoding
+ * is measured into value maps, as the query path reads them, and into a
+ * {@link TimelineMetricValuesCodec.ValuesBuffer}, as the cluster aggregator
+ * reads them. It is not run as part of the build and needs a JVM which
+ * supports thread allocation measurement; run it with
+ * <pre>
+ * java -Xmx2g -cp ... org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricValuesCodecBenchmark [rows] [points] [iterations]
+ * </pre>
+ */
+public class TimelineMetricValuesCodecBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int points = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    List<TreeMap<Long, Double>> rows = createRows(rowCount, points);
+    System.out.println(String.format("%d rows, %d points per row", rowCount, points));
+    System.out.println(String.format("%8s %10s %12s %10s %12s %10s %12s %10s %12s", "", "iteration",
+      "column bytes", "encode ms", "encode MB", "map ms", "map MB", "buffer ms", "buffer MB"));
+
+    com.sun.management.ThreadMXBean threadMXBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    TimelineMetricValuesCodec.ValuesBuffer buffer = new TimelineMetricValuesCodec.ValuesBuffer();
+
+    for (boolean binary : new boolean[] { false, true }) {
+      // The first iteration warms up
+      for (int i = 0; i <= iterations; i++) {
+        List<String> encoded = new ArrayList<String>(rowCount);
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long columnBytes = 0;
+        for (TreeMap<Long, Double> row : rows) {
+          String column = TimelineMetricValuesCodec.encode(row, binary);
+          columnBytes += column.length();
+          encoded.add(column);
+        }
+        long encodeNanos = System.nanoTime() - start;
+        long encodeBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+
+        bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        int decodedPoints = 0;
+        for (String column : encoded) {
+          decodedPoints += TimelineMetricValuesCodec.decode(column).size();
+        }
+        long mapNanos = System.nanoTime() - start;
+        long mapBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+
+        bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (String column : encoded) {
+          buffer.clear();
+          TimelineMetricValuesCodec.decode(column, buffer);
+          decodedPoints += buffer.size();
+        }
+        long bufferNanos = System.nanoTime() - start;
+        long bufferBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+
+        if (decodedPoints != 2 * rowCount * points) {
+          throw new IllegalStateException("Unexpected number of decoded points " + decodedPoints);
+        }
+        if (i > 0) {
+          System.out.println(String.format("%8s %10d %12d %10d %12d %10d %12d %10d %12d",
+            binary ? "binary" : "json", i, columnBytes,
+            encodeNanos / 1000000, encodeBytes / (1024 * 1024),
+            mapNanos / 1000000, mapBytes / (1024 * 1024),
+            bufferNanos / 1000000, bufferBytes / (1024 * 1024)));
+        }
+      }
+    }
+  }
+
+  private static List<TreeMap<Long, Double>> createRows(int rowCount, int points) {
+    Random random = new Random(42);
+    List<TreeMap<Long, Double>> rows = new ArrayList<TreeMap<Long, Double>>(rowCount);
+    long startTime = 1500000000000L;
+    for (int r = 0; r < rowCount; r++) {
+      TreeMap<Long, Double> row = new TreeMap<Long, Double>();
+      double counter = random.nextInt(1000000);
+      for (int p = 0; p < points; p++) {
+        // Sinks report a few milliseconds off the 10 second period
+        long time = startTime + p * 10000L + random.nextInt(20);
+        if (r % 2 == 0) {
+          row.put(time, Math.round(random.nextDouble() * 10000) / 100.0);
+        } else {
+          counter += random.nextInt(5000);
+          row.put(time, counter);
+        }
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricValuesCodecTest {
+
+  private static TreeMap<Long, Double> createValues(int count, long interval, Random random) {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long timestamp = 1470000000000L;
+    for (int i = 0; i < count; i++) {
+      // Sink timestamps jitter around the collection interval
+      timestamp += interval + random.nextInt(200) - 100;
+      values.put(timestamp, (double) random.nextInt(1000));
+    }
+    return values;
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws Exception {
+    Random random = new Random(42);
+    for (int count : new int[] {0, 1, 2, 6, 60, 720}) {
+      TreeMap<Long, Double> values = createValues(count, 10000, random);
+      String encoded = TimelineMetricValuesCodec.encode(values, true);
+      assertEquals(values, TimelineMetricValuesCodec.decode(encoded));
+    }
+  }
+
+  @Test
+  public void testBinaryRoundTripSpecialValues() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(-5L, Double.NaN);
+    values.put(0L, Double.MAX_VALUE);
+    values.put(1L, -0.0);
+    values.put(Long.MAX_VALUE / 2, Double.NEGATIVE_INFINITY);
+    values.put(Long.MAX_VALUE, Double.MIN_VALUE);
+    values.put(Long.MIN_VALUE, 3.14);
+
+    String encoded = TimelineMetricValuesCodec.encode(values, true);
+    assertEquals(values, TimelineMetricValuesCodec.decode(encoded));
+  }
+
+  @Test
+  public void testReadsLegacyJson() throws Exception {
+    TreeMap<Long, Double> values = createValues(10, 10000, new Random(7));
+    String json = TimelineUtils.dumpTimelineRecordtoJSON(values);
+    assertEquals(values, TimelineMetricValuesCodec.decode(json));
+    assertEquals(values, PhoenixHBaseAccessor.readMetricValues(json));
+  }
+
+  @Test
+  public void testJsonEncodingWhenDisabledOrNullValues() throws Exception {
+    TreeMap<Long, Double> values = createValues(5, 10000, new Random(7));
+    assertTrue(TimelineMetricValuesCodec.isJson(TimelineMetricValuesCodec.encode(values, false)));
+
+    values.put(1L, null);
+    String encoded = TimelineMetricValuesCodec.encode(values, true);
+    assertTrue(TimelineMetricValuesCodec.isJson(encoded));
+    assertEquals(values, TimelineMetricValuesCodec.decode(encoded));
+  }
+
+  @Test
+  public void testDecodeRowsIntoBuffer() throws Exception {
+    TreeMap<Long, Double> first = createValues(6, 10000, new Random(5));
+    TreeMap<Long, Double> second = createValues(6, 10000, new Random(5));
+    second.put(first.firstKey(), 2000.0);
+    second.put(1L, null);
+
+    TimelineMetricValuesCodec.ValuesBuffer buffer = new TimelineMetricValuesCodec.ValuesBuffer();
+    TimelineMetricValuesCodec.decode(TimelineMetricValuesCodec.encode(first, true), buffer);
+    TimelineMetricValuesCodec.decode(TimelineMetricValuesCodec.encode(second, false), buffer);
+    assertEquals(13, buffer.size());
+
+    // Sorted by timestamp, values of the later row win, nulls become NaN
+    buffer.sortAndDeduplicate();
+    assertEquals(7, buffer.size());
+    assertEquals(1L, buffer.getTimestamp(0));
+    assertTrue(Double.isNaN(buffer.getValue(0)));
+    assertEquals(first.firstKey().longValue(), buffer.getTimestamp(1));
+    assertEquals(2000.0, buffer.getValue(1), 0.0);
+    assertEquals(first.lastKey().longValue(), buffer.getTimestamp(6));
+    assertEquals(second.lastEntry().getValue(), buffer.getValue(6), 0.0);
+
+    buffer.clear();
+    assertEquals(0, buffer.size());
+  }
+
+  @Test
+  public void testBinaryIsSmallerThanJson() throws Exception {
+    TreeMap<Long, Double> values = createValues(60, 10000, new Random(3));
+    String json = TimelineMetricValuesCodec.encode(values, false);
+    String binary = TimelineMetricValuesCodec.encode(values, true);
+    assertTrue("binary: " + binary.length() + ", json: " + json.length(),
+      binary.length() * 2 < json.length());
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricsHotTierTest {
+
+  private static final long START = 1500000000000L;
+
+  private static TimelineMetric createMetric(String metricName, String hostname, long startTime,
+                                             double value) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setHostName(hostname);
+    metric.setAppId("HOST");
+    metric.setUnits("%");
+    metric.setStartTime(startTime);
+    metric.getMetricValues().put(startTime, value);
+    metric.getMetricValues().put(startTime + 10000, value + 1);
+    return metric;
+  }
+
+  private static Condition createCondition(List<String> metricNames, List<String> hostnames) {
+    return new DefaultCondition(metricNames, hostnames, "HOST", null,
+      START, START + TimeUnit.HOURS.toMillis(1), Precision.SECONDS, null, true);
+  }
+
+  @Test
+  public void testGetMetricRecords() throws Exception {
+    TimelineMetricsHotTier hotTier = new TimelineMetricsHotTier(TimeUnit.HOURS.toMillis(1),
+      1024 * 1024, START);
+
+    hotTier.add(Arrays.asList(
+      createMetric("mem_free", "h1", START, 1.0),
+      createMetric("cpu_user", "h1", START, 2.0),
+      createMetric("cpu_user", "h2", START, 3.0)), START + 1000);
+    hotTier.add(Collections.singletonList(createMetric("cpu_user", "h1", START + 20000, 4.0)),
+      START + 21000);
+
+    Condition condition = createCondition(Arrays.asList("cpu_user", "mem_free"),
+      Collections.singletonList("h1"));
+    List<TimelineMetric> metrics = hotTier.getMetricRecords(condition, START, START + 60000, null);
+
+    // Ordered by metric name and SERVER_TIME
+    assertEquals(3, metrics.size());
+    assertEquals("cpu_user", metrics.get(0).getMetricName());
+    assertEquals(START + 1000, metrics.get(0).getTimestamp());
+    assertEquals(START, metrics.get(0).getStartTime());
+    assertEquals("h1", metrics.get(0).getHostName());
+    assertEquals("HOST", metrics.get(0).getAppId());
+    assertEquals("%", metrics.get(0).getType());
+    assertEquals(2.0, metrics.get(0).getMetricValues().get(START), 0.0);
+    assertEquals(3.0, metrics.get(0).getMetricValues().get(START + 10000), 0.0);
+    assertEquals(START + 21000, metrics.get(1).getTimestamp());
+    assertEquals("mem_free", metrics.get(2).getMetricName());
+
+    // SERVER_TIME in [startTime, endTime)
+    assertEquals(1, hotTier.getMetricRecords(condition, START + 1001, START + 60000, null).size());
+    assertEquals(2, hotTier.getMetricRecords(condition, START, START + 21000, null).size());
+
+    // Limit and other hosts
+    assertEquals(2, hotTier.getMetricRecords(condition, START, START + 60000, 2).size());
+    condition = createCondition(Collections.singletonList("cpu_user"), Arrays.asList("h1", "h2"));
+    assertEquals(3, hotTier.getMetricRecords(condition, START, START + 60000, null).size());
+  }
+
+  @Test
+  public void testRowForSameServerTimeIsReplaced() throws Exception {
+    TimelineMetricsHotTier hotTier = new TimelineMetricsHotTier(TimeUnit.HOURS.toMillis(1),
+      1024 * 1024, START);
+
+    hotTier.add(Collections.singletonList(createMetric("cpu_user", "h1", START, 1.0)), START + 1000);
+    hotTier.add(Collections.singletonList(createMetric("cpu_user", "h1", START, 5.0)), START + 1000);
+
+    List<TimelineMetric> metrics = hotTier.getMetricRecords(
+      createCondition(Collections.singletonList("cpu_user"), Collections.singletonList("h1")),
+      START, START + 60000, null);
+    assertEquals(1, metrics.size());
+    assertEquals(5.0, metrics.get(0).getMetricValues().get(START), 0.0);
+    assertEquals(1, hotTier.getStatistics().get("rows").intValue());
+    assertEquals(TimelineMetricsHotTier.SERIES_OVERHEAD_BYTES + 3 * 40 + 2 * ("cpu_user".length() + 2 + 4)
+        + TimelineMetricsHotTier.ROW_OVERHEAD_BYTES + 2 * 16,
+      hotTier.getStatistics().get("bytes").longValue());
+  }
+
+  @Test
+  public void testEvictionByAge() throws Exception {
+    TimelineMetricsHotTier hotTier = new TimelineMetricsHotTier(TimeUnit.MINUTES.toMillis(10),
+      1024 * 1024, START);
+
+    hotTier.add(Collections.singletonList(createMetric("cpu_user", "h1", START, 1.0)), START + 1000);
+    hotTier.add(Collections.singletonList(createMetric("cpu_user", "h2", START, 1.0)), START + 2000);
+    assertEquals(START, hotTier.getCoveredFrom());
+
+    long later = START + TimeUnit.MINUTES.toMillis(10) + 1500;
+    hotTier.add(Collections.singletonList(createMetric("cpu_user", "h1", later, 2.0)), later);
+
+    assertEquals(START + 1001, hotTier.getCoveredFrom());
+    assertEquals(2, hotTier.getStatistics().get("rows").intValue());
+    assertEquals(1L, hotTier.getStatistics().get("rows.evicted.age"));
+
+    // Rows committed before the evicted ones are read from the store
+    hotTier.add(Collections.singletonList(createMetric("cpu_user", "h3", START, 1.0)), START + 500);
+    assertEquals(2, hotTier.getStatistics().get("rows").intValue());
+  }
+
+  @Test
+  public void testEvictionBySize() throws Exception {
+    long rowBytes = TimelineMetricsHotTier.ROW_OVERHEAD_BYTES + 2 * 16;
+    long seriesBytes = TimelineMetricsHotTier.SERIES_OVERHEAD_BYTES + 3 * 40 + 2 * ("cpu_user".length() + 2 + 4);
+    TimelineMetricsHotTier hotTier = new TimelineMetricsHotTier(TimeUnit.HOURS.toMillis(1),
+      seriesBytes + 3 * rowBytes, START);
+
+    for (int i = 0; i < 5; i++) {
+      hotTier.add(Collections.singletonList(createMetric("cpu_user", "h1", START, i)), START + i * 1000);
+    }
+
+    assertEquals(3, hotTier.getStatistics().get("rows").intValue());
+    assertEquals(2L, hotTier.getStatistics().get("rows.evicted.size"));
+    assertTrue(hotTier.getStatistics().get("bytes").longValue() <= seriesBytes + 3 * rowBytes);
+    assertEquals(START + 1001, hotTier.getCoveredFrom());
+
+    List<TimelineMetric> metrics = hotTier.getMetricRecords(
+      createCondition(Collections.singletonList("cpu_user"), Collections.singletonList("h1")),
+      START, START + 60000, null);
+    assertEquals(3, metrics.size());
+    assertEquals(START + 2000, metrics.get(0).getTimestamp());
+  }
+}
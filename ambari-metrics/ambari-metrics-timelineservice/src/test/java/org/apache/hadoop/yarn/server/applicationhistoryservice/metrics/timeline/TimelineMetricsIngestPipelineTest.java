@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_ACCEPT_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_BATCH_LINGER_MILLIS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_COMMIT_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_COMMIT_THREADS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_INGEST_RETRY_AFTER_SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimelineMetricsIngestPipelineTest {
+
+  private static TimelineMetrics createMetrics() {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    metric.setHostName("h1");
+    metric.setAppId("HOST");
+    metric.setStartTime(System.currentTimeMillis());
+    metric.getMetricValues().put(System.currentTimeMillis(), 1.0);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(metric);
+    return metrics;
+  }
+
+  private static Configuration createConf(int queueSize) {
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(TIMELINE_METRICS_INGEST_ACCEPT_QUEUE_SIZE, queueSize);
+    metricsConf.setInt(TIMELINE_METRICS_INGEST_COMMIT_QUEUE_SIZE, queueSize);
+    metricsConf.setInt(TIMELINE_METRICS_INGEST_BATCH_SIZE, 1);
+    metricsConf.setLong(TIMELINE_METRICS_INGEST_BATCH_LINGER_MILLIS, 10);
+    metricsConf.setInt(TIMELINE_METRICS_INGEST_COMMIT_THREADS, 1);
+    metricsConf.setInt(TIMELINE_METRICS_INGEST_RETRY_AFTER_SECONDS, 5);
+    return metricsConf;
+  }
+
+  @Test(timeout = 30000)
+  public void testAcceptedMetricsAreCommitted() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = EasyMock.createNiceMock(PhoenixHBaseAccessor.class);
+    TimelineMetricMetadataManager metadataManager = EasyMock.createNiceMock(TimelineMetricMetadataManager.class);
+    final CountDownLatch committed = new CountDownLatch(3);
+
+    hBaseAccessor.filterAndUpdateMetadata(EasyMock.eq(metadataManager),
+      EasyMock.anyObject(TimelineMetrics.class));
+    EasyMock.expectLastCall().times(3);
+    hBaseAccessor.commitMetrics(EasyMock.<Collection<TimelineMetrics>>anyObject());
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        committed.countDown();
+        return null;
+      }
+    }).times(3);
+    EasyMock.replay(hBaseAccessor, metadataManager);
+
+    TimelineMetricsIngestPipeline pipeline =
+      new TimelineMetricsIngestPipeline(hBaseAccessor, metadataManager, createConf(10));
+    pipeline.start();
+    for (int i = 0; i < 3; i++) {
+      pipeline.accept(createMetrics());
+    }
+    assertTrue(committed.await(10, TimeUnit.SECONDS));
+    pipeline.stop(10, TimeUnit.SECONDS);
+
+    EasyMock.verify(hBaseAccessor);
+    assertEquals(3L, pipeline.getStatistics().get("requests.accepted"));
+    assertEquals(3L, pipeline.getStatistics().get("commit.count"));
+  }
+
+  @Test(timeout = 30000)
+  public void testRejectWhenCommitIsBlocked() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = EasyMock.createNiceMock(PhoenixHBaseAccessor.class);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    hBaseAccessor.commitMetrics(EasyMock.<Collection<TimelineMetrics>>anyObject());
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        release.await();
+        return null;
+      }
+    }).anyTimes();
+    EasyMock.replay(hBaseAccessor);
+
+    TimelineMetricsIngestPipeline pipeline =
+      new TimelineMetricsIngestPipeline(hBaseAccessor, null, createConf(1));
+    pipeline.start();
+
+    try {
+      for (int i = 0; i < 100; i++) {
+        pipeline.accept(createMetrics());
+        Thread.sleep(20);
+      }
+      fail("Expected the pipeline to reject requests while commit is blocked");
+    } catch (MetricsIngestRejectedException e) {
+      assertEquals(5, e.getRetryAfterSeconds());
+    } finally {
+      release.countDown();
+      pipeline.stop(10, TimeUnit.SECONDS);
+    }
+    assertEquals(1L, pipeline.getStatistics().get("requests.rejected"));
+  }
+
+  @Test(timeout = 60000)
+  public void testAcceptedMetricsAreCommittedOnStop() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = EasyMock.createNiceMock(PhoenixHBaseAccessor.class);
+    final AtomicInteger committed = new AtomicInteger();
+
+    // Slow processing keeps a request in flight between the two queues
+    hBaseAccessor.filterAndUpdateMetadata(EasyMock.<TimelineMetricMetadataManager>isNull(),
+      EasyMock.anyObject(TimelineMetrics.class));
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        Thread.sleep(5);
+        return null;
+      }
+    }).anyTimes();
+    hBaseAccessor.commitMetrics(EasyMock.<Collection<TimelineMetrics>>anyObject());
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        committed.addAndGet(((Collection<?>) EasyMock.getCurrentArguments()[0]).size());
+        return null;
+      }
+    }).anyTimes();
+    EasyMock.replay(hBaseAccessor);
+
+    final TimelineMetricsIngestPipeline pipeline =
+      new TimelineMetricsIngestPipeline(hBaseAccessor, null, createConf(20));
+    pipeline.start();
+
+    // Requests racing with stop are either rejected or committed
+    final AtomicInteger accepted = new AtomicInteger();
+    final AtomicBoolean stopping = new AtomicBoolean();
+    final CountDownLatch started = new CountDownLatch(4);
+    Thread[] producers = new Thread[4];
+    for (int i = 0; i < producers.length; i++) {
+      producers[i] = new Thread() {
+        @Override
+        public void run() {
+          started.countDown();
+          while (true) {
+            try {
+              pipeline.accept(createMetrics());
+              accepted.incrementAndGet();
+            } catch (MetricsIngestRejectedException e) {
+              if (stopping.get()) {
+                return;
+              }
+              Thread.yield();
+            }
+          }
+        }
+      };
+      producers[i].start();
+    }
+    started.await();
+    Thread.sleep(50);
+    stopping.set(true);
+    pipeline.stop(30, TimeUnit.SECONDS);
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    assertTrue(accepted.get() > 0);
+    assertEquals(accepted.get(), committed.get());
+    assertEquals((long) accepted.get(), pipeline.getStatistics().get("requests.accepted"));
+  }
+
+  @Test(timeout = 30000)
+  public void testLingeringBatchIsCommittedWhenStopTimesOut() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = EasyMock.createNiceMock(PhoenixHBaseAccessor.class);
+    final CountDownLatch processed = new CountDownLatch(1);
+    final AtomicInteger committed = new AtomicInteger();
+
+    hBaseAccessor.filterAndUpdateMetadata(EasyMock.<TimelineMetricMetadataManager>isNull(),
+      EasyMock.anyObject(TimelineMetrics.class));
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        processed.countDown();
+        return null;
+      }
+    });
+    hBaseAccessor.commitMetrics(EasyMock.<Collection<TimelineMetrics>>anyObject());
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        committed.addAndGet(((Collection<?>) EasyMock.getCurrentArguments()[0]).size());
+        return null;
+      }
+    }).anyTimes();
+    EasyMock.replay(hBaseAccessor);
+
+    // The batch lingers far longer than stop() waits for the process stage
+    Configuration metricsConf = createConf(10);
+    metricsConf.setInt(TIMELINE_METRICS_INGEST_BATCH_SIZE, 1000);
+    metricsConf.setLong(TIMELINE_METRICS_INGEST_BATCH_LINGER_MILLIS, 60000);
+    TimelineMetricsIngestPipeline pipeline =
+      new TimelineMetricsIngestPipeline(hBaseAccessor, null, metricsConf);
+    pipeline.start();
+    pipeline.accept(createMetrics());
+    assertTrue(processed.await(10, TimeUnit.SECONDS));
+
+    pipeline.stop(1, TimeUnit.SECONDS);
+    assertEquals(1, committed.get());
+  }
+
+  @Test(expected = MetricsIngestRejectedException.class)
+  public void testRejectWhenNotStarted() throws Exception {
+    TimelineMetricsIngestPipeline pipeline = new TimelineMetricsIngestPipeline(
+      EasyMock.createNiceMock(PhoenixHBaseAccessor.class), null, createConf(10));
+    pipeline.accept(new TimelineMetrics());
+  }
+}
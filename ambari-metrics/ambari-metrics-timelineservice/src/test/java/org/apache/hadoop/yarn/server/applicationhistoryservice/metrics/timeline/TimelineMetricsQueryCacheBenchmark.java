@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays metric queries against {@link TimelineMetricsQueryCache} over a
+ * store that generates a row per minute for every series, and reports the
+ * store queries and rows read with and without the cache.
+ *
+ * The queries are taken from a recorded log, every line with a
+ * /ws/v1/timeline/metrics request is replayed at its endTime with its
+ * metricNames, hostname, appId, instanceId, startTime, endTime and
+ * precision parameters. Without a log, dashboards refreshing a one hour
+ * window every 15 seconds for two hours are simulated. It is not run as
+ * part of the build; run it with
+ * <pre>
+ * java -cp ... org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricsQueryCacheBenchmark [query log] [max cache size MB]
+ * </pre>
+ */
+public class TimelineMetricsQueryCacheBenchmark {
+
+  private static final long ROW_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+  private static final int POINTS_PER_ROW = 6;
+
+  private static class Query {
+    private final List<String> metricNames;
+    private final List<String> hostnames;
+    private final String appId;
+    private final String instanceId;
+    private final long startTime;
+    private final long endTime;
+    private final Precision precision;
+
+    Query(List<String> metricNames, List<String> hostnames, String appId, String instanceId,
+          long startTime, long endTime, Precision precision) {
+      this.metricNames = metricNames;
+      this.hostnames = hostnames;
+      this.appId = appId;
+      this.instanceId = instanceId;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.precision = precision;
+    }
+
+    Condition createCondition() {
+      return new DefaultCondition(new ArrayList<String>(getFunctions().keySet()), hostnames, appId,
+        instanceId, startTime, endTime, precision, null, true);
+    }
+
+    Multimap<String, List<Function>> getFunctions() {
+      Multimap<String, List<Function>> metricFunctions = ArrayListMultimap.create();
+      for (String metricName : metricNames) {
+        int suffix = metricName.indexOf("._");
+        String name = suffix > 0 ? metricName.substring(0, suffix) : metricName;
+        metricFunctions.put(name, Collections.singletonList(Function.fromMetricName(metricName)));
+      }
+      return metricFunctions;
+    }
+  }
+
+  /**
+   * Store generating a row per minute for each metric and host of a
+   * condition, one metric per row like the accessor returns them.
+   */
+  private static class GeneratingReader implements TimelineMetricsQueryCache.MetricRecordsReader {
+    private long queries;
+    private long rows;
+
+    @Override
+    public TimelineMetrics read(Condition condition, Multimap<String, List<Function>> metricFunctions) {
+      queries++;
+      TimelineMetrics metrics = new TimelineMetrics();
+      List<String> hostnames = condition.getHostnames() == null || condition.getHostnames().isEmpty() ?
+        Collections.<String>singletonList(null) : condition.getHostnames();
+      long first = TimelineMetricsQueryCache.alignUp(condition.getStartTime(), ROW_INTERVAL);
+      for (String metricName : condition.getMetricNames()) {
+        for (String hostname : hostnames) {
+          for (long serverTime = first; serverTime < condition.getEndTime(); serverTime += ROW_INTERVAL) {
+            TimelineMetric metric = new TimelineMetric();
+            metric.setMetricName(metricName);
+            metric.setHostName(hostname);
+            metric.setAppId(condition.getAppId());
+            metric.setInstanceId(condition.getInstanceId());
+            metric.setTimestamp(serverTime);
+            metric.setStartTime(serverTime - ROW_INTERVAL);
+            for (int p = 0; p < POINTS_PER_ROW; p++) {
+              long time = serverTime - ROW_INTERVAL + p * ROW_INTERVAL / POINTS_PER_ROW;
+              metric.getMetricValues().put(time, (double) (time / 1000 % 100));
+            }
+            metrics.getMetrics().add(metric);
+            rows++;
+          }
+        }
+      }
+      return metrics;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<Query> queries = args.length > 0 && !args[0].isEmpty() ? readQueryLog(args[0]) : simulateDashboards();
+    long maxBytes = (args.length > 1 ? Long.parseLong(args[1]) : 128) * 1024 * 1024;
+    System.out.println(queries.size() + " queries");
+
+    GeneratingReader uncached = new GeneratingReader();
+    long start = System.nanoTime();
+    for (Query query : queries) {
+      uncached.read(query.createCondition(), query.getFunctions());
+    }
+    long uncachedNanos = System.nanoTime() - start;
+
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(maxBytes, TimeUnit.MINUTES.toMillis(3));
+    GeneratingReader cached = new GeneratingReader();
+    start = System.nanoTime();
+    for (Query query : queries) {
+      Condition condition = query.createCondition();
+      Multimap<String, List<Function>> metricFunctions = query.getFunctions();
+      boolean clusterAggregates = condition.getHostnames() == null || condition.getHostnames().isEmpty();
+      if (cache.isCacheable(condition, metricFunctions)) {
+        cache.getMetricRecords(condition, metricFunctions, clusterAggregates, cached, query.endTime);
+      } else {
+        cached.read(condition, metricFunctions);
+      }
+    }
+    long cachedNanos = System.nanoTime() - start;
+
+    System.out.println(String.format("%10s %14s %14s %10s", "", "store queries", "rows read", "ms"));
+    System.out.println(String.format("%10s %14d %14d %10d", "uncached", uncached.queries, uncached.rows,
+      uncachedNanos / 1000000));
+    System.out.println(String.format("%10s %14d %14d %10d", "cached", cached.queries, cached.rows,
+      cachedNanos / 1000000));
+    for (Map.Entry<String, Number> statistic : cache.getStatistics().entrySet()) {
+      System.out.println(statistic.getKey() + " = " + statistic.getValue());
+    }
+  }
+
+  private static List<Query> readQueryLog(String file) throws Exception {
+    List<Query> queries = new ArrayList<Query>();
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int path = line.indexOf("/ws/v1/timeline/metrics?");
+        if (path < 0) {
+          continue;
+        }
+        String queryString = line.substring(line.indexOf('?', path) + 1).split("[\\s\"]")[0];
+        Map<String, String> params = new HashMap<String, String>();
+        for (String param : queryString.split("&")) {
+          int eq = param.indexOf('=');
+          if (eq > 0) {
+            params.put(param.substring(0, eq), URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+          }
+        }
+        if (!params.containsKey("metricNames") || !params.containsKey("startTime")
+            || !params.containsKey("endTime")) {
+          continue;
+        }
+        String hostname = params.get("hostname");
+        String precision = params.get("precision");
+        queries.add(new Query(Arrays.asList(params.get("metricNames").split(",")),
+          hostname == null || hostname.isEmpty() ? null : Arrays.asList(hostname.split(",")),
+          params.get("appId"), params.get("instanceId"), toMillis(params.get("startTime")),
+          toMillis(params.get("endTime")), precision == null ? null : Precision.getPrecision(precision)));
+      }
+    } finally {
+      reader.close();
+    }
+    return queries;
+  }
+
+  // The service accepts seconds as well as milliseconds
+  private static long toMillis(String time) {
+    long value = Long.parseLong(time);
+    return value < 9999999999L ? value * 1000 : value;
+  }
+
+  private static List<Query> simulateDashboards() {
+    List<Query> queries = new ArrayList<Query>();
+    long start = 1500000000000L;
+    long window = TimeUnit.HOURS.toMillis(1);
+    List<List<String>> dashboards = Arrays.asList(
+      Arrays.asList("cpu_user", "cpu_system", "cpu_wio"),
+      Arrays.asList("mem_free", "mem_cached", "swap_free"),
+      Arrays.asList("bytes_in", "bytes_out", "pkts_in._rate"),
+      Arrays.asList("dfs.datanode.BytesWritten._rate", "dfs.datanode.BytesRead._rate"));
+    List<String> hosts = new ArrayList<String>();
+    for (int h = 0; h < 5; h++) {
+      hosts.add(String.format("host-%02d", h));
+    }
+    for (long now = start; now < start + 2 * window; now += TimeUnit.SECONDS.toMillis(15)) {
+      for (List<String> metricNames : dashboards) {
+        queries.add(new Query(metricNames, hosts, "HOST", null, now - window, now, null));
+        queries.add(new Query(metricNames, null, "HOST", null, now - window, now, null));
+      }
+    }
+    return queries;
+  }
+}
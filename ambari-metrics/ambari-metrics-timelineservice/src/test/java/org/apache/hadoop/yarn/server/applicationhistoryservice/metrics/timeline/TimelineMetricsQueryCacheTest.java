@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_MINUTE_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_RECORD_TABLE_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricsQueryCacheTest {
+
+  private static final long START = 1500000000000L;
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+  private static final long SETTLE = TimeUnit.MINUTES.toMillis(3);
+
+  /**
+   * Store with a row every minute for each metric and host, returned one
+   * metric per row like the accessor does for conditions not grouped.
+   */
+  private static class GeneratingReader implements TimelineMetricsQueryCache.MetricRecordsReader {
+    private final List<Condition> conditions = new ArrayList<Condition>();
+    private double offset;
+
+    @Override
+    public TimelineMetrics read(Condition condition, Multimap<String, List<Function>> metricFunctions) {
+      conditions.add(condition);
+      return generate(condition);
+    }
+
+    private TimelineMetrics generate(Condition condition) {
+      TimelineMetrics metrics = new TimelineMetrics();
+      for (String metricName : condition.getMetricNames()) {
+        for (String hostname : condition.getHostnames()) {
+          long first = condition.getStartTime() + 60000 - 1 - (condition.getStartTime() + 60000 - 1 - 7000) % 60000;
+          for (long serverTime = first; serverTime < condition.getEndTime(); serverTime += 60000) {
+            TimelineMetric metric = new TimelineMetric();
+            metric.setMetricName(metricName);
+            metric.setHostName(hostname);
+            metric.setAppId("HOST");
+            metric.setType("%");
+            metric.setTimestamp(serverTime);
+            metric.setStartTime(serverTime - 50000);
+            metric.getMetricValues().put(serverTime - 50000, offset + serverTime % 97);
+            metric.getMetricValues().put(serverTime - 10000, offset + serverTime % 89);
+            metrics.getMetrics().add(metric);
+          }
+        }
+      }
+      return metrics;
+    }
+
+    TimelineMetrics readGrouped(Condition condition) {
+      TimelineMetrics grouped = new TimelineMetrics();
+      for (TimelineMetric metric : generate(condition).getMetrics()) {
+        grouped.addOrMergeTimelineMetric(metric);
+      }
+      return grouped;
+    }
+  }
+
+  private static Multimap<String, List<Function>> createFunctions(String... metricNames) {
+    Multimap<String, List<Function>> metricFunctions = ArrayListMultimap.create();
+    for (String metricName : metricNames) {
+      metricFunctions.put(metricName, Collections.singletonList(Function.DEFAULT_VALUE_FUNCTION));
+    }
+    return metricFunctions;
+  }
+
+  private static Condition createCondition(long startTime, long endTime, String... metricNames) {
+    return new DefaultCondition(Arrays.asList(metricNames), Arrays.asList("h1", "h2"), "HOST", null,
+      startTime, endTime, Precision.SECONDS, null, true);
+  }
+
+  private static void assertSameMetrics(TimelineMetrics expected, TimelineMetrics actual) {
+    assertEquals(expected.getMetrics().size(), actual.getMetrics().size());
+    for (TimelineMetric expectedMetric : expected.getMetrics()) {
+      boolean found = false;
+      for (TimelineMetric metric : actual.getMetrics()) {
+        if (metric.equalsExceptTime(expectedMetric)) {
+          assertEquals(expectedMetric.getTimestamp(), metric.getTimestamp());
+          assertEquals(expectedMetric.getStartTime(), metric.getStartTime());
+          assertEquals(expectedMetric.getType(), metric.getType());
+          assertEquals(expectedMetric.getMetricValues(), metric.getMetricValues());
+          found = true;
+        }
+      }
+      assertTrue("Missing " + expectedMetric.getMetricName(), found);
+    }
+  }
+
+  @Test
+  public void testSlidingWindowReadsTail() throws Exception {
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(1024 * 1024, SETTLE);
+    GeneratingReader reader = new GeneratingReader();
+
+    long now = START + 2 * HOUR;
+    Condition condition = createCondition(now - HOUR, now, "cpu_user", "mem_free");
+    TimelineMetrics metrics = cache.getMetricRecords(condition,
+      createFunctions("cpu_user", "mem_free"), false, reader, now);
+    assertSameMetrics(reader.readGrouped(createCondition(now - HOUR, now, "cpu_user", "mem_free")), metrics);
+    assertEquals(1, reader.conditions.size());
+    // Both metrics are read with one query
+    assertEquals(2, reader.conditions.get(0).getMetricNames().size());
+    assertFalse(reader.conditions.get(0).isGrouped());
+
+    // Dashboard refresh a bit later, only the unsettled tail is read again
+    now += 70000;
+    reader.conditions.clear();
+    condition = createCondition(now - HOUR, now, "cpu_user", "mem_free");
+    metrics = cache.getMetricRecords(condition, createFunctions("cpu_user", "mem_free"), false, reader, now);
+    assertSameMetrics(reader.readGrouped(createCondition(now - HOUR, now, "cpu_user", "mem_free")), metrics);
+    assertEquals(1, reader.conditions.size());
+    long stableBefore = cache.getStableBefore(Precision.SECONDS, false, now);
+    assertEquals(Long.valueOf(stableBefore), reader.conditions.get(0).getStartTime());
+    assertEquals(Long.valueOf(now), reader.conditions.get(0).getEndTime());
+
+    Map<String, Number> statistics = cache.getStatistics();
+    assertEquals(1L, statistics.get("query.miss.count"));
+    assertEquals(1L, statistics.get("query.partial.count"));
+    assertEquals(2, statistics.get("entries"));
+    assertTrue(statistics.get("bytes.saved").longValue() > 0);
+    assertTrue(statistics.get("row.hit.ratio").doubleValue() > 0);
+  }
+
+  @Test
+  public void testSettledWindowIsServedFromCache() throws Exception {
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(1024 * 1024, SETTLE);
+    GeneratingReader reader = new GeneratingReader();
+
+    long now = START + 3 * HOUR;
+    long startTime = START + 7000;
+    cache.getMetricRecords(createCondition(startTime, START + HOUR, "cpu_user"),
+      createFunctions("cpu_user"), false, reader, now);
+    // The head is read from the start of its bucket
+    assertEquals(Long.valueOf(START), reader.conditions.get(0).getStartTime());
+
+    reader.conditions.clear();
+    TimelineMetrics metrics = cache.getMetricRecords(
+      createCondition(startTime + 60000, START + HOUR - 60000, "cpu_user"),
+      createFunctions("cpu_user"), false, reader, now);
+    assertTrue(reader.conditions.isEmpty());
+    assertSameMetrics(reader.readGrouped(
+      createCondition(startTime + 60000, START + HOUR - 60000, "cpu_user")), metrics);
+    assertEquals(1L, cache.getStatistics().get("query.hit.count"));
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(1024 * 1024, SETTLE);
+    GeneratingReader reader = new GeneratingReader();
+
+    long now = START + 3 * HOUR;
+    cache.getMetricRecords(createCondition(START, START + HOUR, "cpu_user"),
+      createFunctions("cpu_user"), false, reader, now);
+
+    // Other tables do not affect the cached precision rows
+    cache.invalidate(METRICS_AGGREGATE_MINUTE_TABLE_NAME, START, START + HOUR);
+    reader.conditions.clear();
+    cache.getMetricRecords(createCondition(START, START + HOUR, "cpu_user"),
+      createFunctions("cpu_user"), false, reader, now);
+    assertTrue(reader.conditions.isEmpty());
+
+    reader.offset = 1000;
+    cache.invalidate(METRICS_RECORD_TABLE_NAME, START + 20 * 60000, START + 22 * 60000);
+    TimelineMetrics metrics = cache.getMetricRecords(createCondition(START, START + HOUR, "cpu_user"),
+      createFunctions("cpu_user"), false, reader, now);
+    assertEquals(1, reader.conditions.size());
+    assertEquals(Long.valueOf(START + 20 * 60000), reader.conditions.get(0).getStartTime());
+    assertEquals(Long.valueOf(START + 25 * 60000), reader.conditions.get(0).getEndTime());
+    double value = metrics.getMetrics().get(0).getMetricValues().get(START + 21 * 60000 + 7000 - 50000);
+    assertTrue(value >= 1000);
+    assertEquals(1L, cache.getStatistics().get("buckets.invalidated"));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(64 * 1024, SETTLE);
+    GeneratingReader reader = new GeneratingReader();
+
+    long now = START + 3 * HOUR;
+    for (int i = 0; i < 10; i++) {
+      cache.getMetricRecords(createCondition(START, START + HOUR, "metric" + i),
+        createFunctions("metric" + i), false, reader, now);
+    }
+
+    Map<String, Number> statistics = cache.getStatistics();
+    assertTrue(statistics.get("bytes").longValue() <= 64 * 1024);
+    assertTrue(statistics.get("entries.evicted").longValue() > 0);
+
+    // The most recently used entry is kept
+    reader.conditions.clear();
+    cache.getMetricRecords(createCondition(START, START + HOUR, "metric9"),
+      createFunctions("metric9"), false, reader, now);
+    assertTrue(reader.conditions.isEmpty());
+  }
+
+  @Test
+  public void testIsCacheable() {
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(1024 * 1024, SETTLE);
+    assertTrue(cache.isCacheable(createCondition(START, START + HOUR, "cpu_user"),
+      createFunctions("cpu_user")));
+    assertFalse(cache.isCacheable(createCondition(START, START + HOUR, "cpu%"),
+      createFunctions("cpu%")));
+    assertFalse(cache.isCacheable(new DefaultCondition(Arrays.asList("cpu_user"), null, "HOST", null,
+      START, START + HOUR, Precision.SECONDS, null, false), createFunctions("cpu_user")));
+    assertFalse(cache.isCacheable(new DefaultCondition(Arrays.asList("cpu_user"), null, "HOST", null,
+      START, START + HOUR, Precision.SECONDS, 10, true), createFunctions("cpu_user")));
+  }
+}
@@ -18,18 +18,31 @@
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator.AGGREGATOR_TYPE;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.CheckpointManager;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.MetricNamePartitions;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.junit.Before;
 import org.junit.Test;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_CHECKPOINT_DELAY;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.RESULTSET_FETCH_SIZE;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
 
 public class AbstractTimelineAggregatorTest {
 
@@ -39,6 +52,8 @@ public class AbstractTimelineAggregatorTest {
   AtomicLong endTimeInDoWork;
   AtomicLong checkPoint;
   int actualRuns;
+  List<Long> startTimesInDoWork;
+  List<String> rangeClausesInDoWork;
 
   long sleepIntervalMillis;
   int checkpointCutOffMultiplier;
@@ -56,6 +71,8 @@ public class AbstractTimelineAggregatorTest {
     endTimeInDoWork = new AtomicLong(0);
     checkPoint = new AtomicLong(-1);
     actualRuns = 0;
+    startTimesInDoWork = new ArrayList<>();
+    rangeClausesInDoWork = new ArrayList<>();
 
     agg = new AbstractTimelineAggregator(AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND, null, metricsConf) {
       @Override
@@ -63,6 +80,8 @@ public class AbstractTimelineAggregatorTest {
         startTimeInDoWork.set(startTime);
         endTimeInDoWork.set(endTime);
         actualRuns++;
+        startTimesInDoWork.add(startTime);
+        rangeClausesInDoWork.add(getMetricPartitionRangeClause());
 
         return true;
       }
@@ -176,4 +195,200 @@ public class AbstractTimelineAggregatorTest {
 
 
  }
-}
\ No newline at end of file
+
+  @Test
+  public void testRunOwnedPartitionsGroupsByCheckpoint() throws Exception {
+    checkpointCutOffMultiplier = 4;
+    InMemoryCheckpointManager checkpointManager = new InMemoryCheckpointManager();
+    agg.outputTableName = "METRIC_AGGREGATE";
+    agg.taskRunner = createPartitionedTaskRunner(checkpointManager, AGGREGATOR_TYPE.CLUSTER, 0, 1, 2);
+
+    long roundedOffAggregatorTime = AbstractTimelineAggregator.getRoundedAggregateTimeMillis(sleepIntervalMillis);
+    // Partition 1 was never checkpointed and continues from partition 0
+    checkpointManager.writeCheckpoint(AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND,
+      0, roundedOffAggregatorTime - sleepIntervalMillis);
+    checkpointManager.writeCheckpoint(AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND,
+      2, roundedOffAggregatorTime - 2 * sleepIntervalMillis);
+
+    agg.runOnce(sleepIntervalMillis);
+
+    // Oldest checkpoint first, partitions at the same checkpoint share a query
+    assertEquals(Arrays.asList(roundedOffAggregatorTime - 2 * sleepIntervalMillis,
+      roundedOffAggregatorTime - sleepIntervalMillis), startTimesInDoWork);
+    assertEquals(Arrays.asList("(METRIC_NAME >= 'm')", "(METRIC_NAME < 'm')"), rangeClausesInDoWork);
+    assertEquals(roundedOffAggregatorTime, checkpointManager.readCheckpoint(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND, 0));
+    assertEquals(roundedOffAggregatorTime, checkpointManager.readCheckpoint(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND, 1));
+    assertEquals(roundedOffAggregatorTime - sleepIntervalMillis, checkpointManager.readCheckpoint(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND, 2));
+    // The aggregator checkpoint is the one of partition 0
+    assertEquals(roundedOffAggregatorTime, checkpointManager.readCheckpoint(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND));
+    assertEquals(-1, checkPoint.get());
+  }
+
+  @Test
+  public void testRunOwnedPartitionsCatchesUpTakenOverPartition() throws Exception {
+    checkpointCutOffMultiplier = 4;
+    InMemoryCheckpointManager checkpointManager = new InMemoryCheckpointManager();
+    agg.outputTableName = "METRIC_AGGREGATE";
+    AggregationTaskRunner taskRunner = createPartitionedTaskRunner(checkpointManager, AGGREGATOR_TYPE.CLUSTER, 0);
+    agg.taskRunner = taskRunner;
+
+    long roundedOffAggregatorTime = AbstractTimelineAggregator.getRoundedAggregateTimeMillis(sleepIntervalMillis);
+    checkpointManager.writeCheckpoint(AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND,
+      0, roundedOffAggregatorTime - sleepIntervalMillis);
+    // Left behind by the previous owner of partition 2
+    checkpointManager.writeCheckpoint(AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND,
+      2, roundedOffAggregatorTime - 3 * sleepIntervalMillis);
+
+    agg.runOnce(sleepIntervalMillis);
+    assertEquals(Arrays.asList(roundedOffAggregatorTime - sleepIntervalMillis), startTimesInDoWork);
+    assertEquals(Arrays.asList("(METRIC_NAME < 'c')"), rangeClausesInDoWork);
+
+    taskRunner.setPartitionAggregationFunction("METRIC_AGGREGATORS_4");
+    startTimesInDoWork.clear();
+    rangeClausesInDoWork.clear();
+
+    // Partition 0 is up to date, the taken over partition catches up alone
+    agg.runOnce(sleepIntervalMillis);
+    agg.runOnce(sleepIntervalMillis);
+    assertEquals(Arrays.asList(roundedOffAggregatorTime - 3 * sleepIntervalMillis,
+      roundedOffAggregatorTime - 2 * sleepIntervalMillis), startTimesInDoWork);
+    assertEquals(Arrays.asList("(METRIC_NAME >= 'm')", "(METRIC_NAME >= 'm')"), rangeClausesInDoWork);
+    assertEquals(roundedOffAggregatorTime - sleepIntervalMillis, checkpointManager.readCheckpoint(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND, 2));
+
+    agg.runOnce(sleepIntervalMillis);
+    assertEquals(roundedOffAggregatorTime, checkpointManager.readCheckpoint(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND, 2));
+
+    // Once caught up, both partitions are aggregated by a single query
+    // (checkpoints moved back by one cycle stand in for the next cycle)
+    checkpointManager.shift(-sleepIntervalMillis);
+    startTimesInDoWork.clear();
+    rangeClausesInDoWork.clear();
+    agg.runOnce(sleepIntervalMillis);
+    assertEquals(Arrays.asList(roundedOffAggregatorTime - sleepIntervalMillis), startTimesInDoWork);
+    assertEquals(Arrays.asList("((METRIC_NAME < 'c') OR (METRIC_NAME >= 'm'))"), rangeClausesInDoWork);
+  }
+
+  @Test
+  public void testMetricPartitionClauseInGroupByStatement() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    replay(hBaseAccessor);
+    final List<String> statements = new ArrayList<>();
+    AbstractTimelineAggregator hostAggregator =
+      new org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.v2.TimelineMetricHostAggregator(
+        AggregationTaskRunner.AGGREGATOR_NAME.METRIC_RECORD_MINUTE, hBaseAccessor, new Configuration(),
+        null, sleepIntervalMillis, 4, null, "METRIC_RECORD", "METRIC_RECORD_MINUTE", 120000L, null) {
+        @Override
+        public boolean doWork(long startTime, long endTime) {
+          statements.add(prepareMetricQueryCondition(startTime, endTime).getStatement());
+          return true;
+        }
+      };
+    InMemoryCheckpointManager checkpointManager = new InMemoryCheckpointManager();
+    hostAggregator.taskRunner = createPartitionedTaskRunner(checkpointManager, AGGREGATOR_TYPE.HOST, 1);
+
+    long startTime = AbstractTimelineAggregator.getRoundedAggregateTimeMillis(sleepIntervalMillis) - sleepIntervalMillis;
+    checkpointManager.writeCheckpoint(AggregationTaskRunner.AGGREGATOR_NAME.METRIC_RECORD_MINUTE, 1, startTime);
+    hostAggregator.runOnce(sleepIntervalMillis);
+
+    assertEquals(1, statements.size());
+    assertTrue(statements.get(0), statements.get(0).contains("FROM METRIC_RECORD " +
+      "WHERE (METRIC_NAME >= 'c' AND METRIC_NAME < 'm') AND  SERVER_TIME > " + startTime +
+      " AND SERVER_TIME <= " + (startTime + sleepIntervalMillis) + " GROUP BY"));
+
+    // Without partitions the statement is unrestricted
+    statements.clear();
+    hostAggregator.taskRunner = null;
+    hostAggregator.doWork(startTime, startTime + sleepIntervalMillis);
+    assertTrue(statements.get(0), statements.get(0).contains("FROM METRIC_RECORD WHERE SERVER_TIME > " + startTime));
+  }
+
+  @Test
+  public void testClusterSecondAggregatorRunsUnpartitionedOnFirstPartitionOwner() throws Exception {
+    TimelineMetricMetadataManager metadataManager = createNiceMock(TimelineMetricMetadataManager.class);
+    replay(metadataManager);
+    AbstractTimelineAggregator secondAggregator = new TimelineMetricClusterAggregatorSecond(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND, metadataManager, null,
+      new Configuration(), null, sleepIntervalMillis, 2, null, "METRIC_RECORD", "METRIC_AGGREGATE",
+      120000L, 30000L, null) {
+      @Override
+      public boolean doWork(long startTime, long endTime) {
+        startTimesInDoWork.add(startTime);
+        rangeClausesInDoWork.add(getMetricPartitionRangeClause());
+        return true;
+      }
+    };
+    InMemoryCheckpointManager checkpointManager = new InMemoryCheckpointManager();
+    long startTime = AbstractTimelineAggregator.getRoundedAggregateTimeMillis(sleepIntervalMillis) - sleepIntervalMillis;
+    checkpointManager.writeCheckpoint(AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND, startTime);
+
+    // live_hosts and app-level aggregates need all hosts, so the owners of
+    // other partitions leave the whole cycle to the owner of partition 0
+    secondAggregator.taskRunner = createPartitionedTaskRunner(checkpointManager, AGGREGATOR_TYPE.CLUSTER, 1, 2);
+    secondAggregator.runOnce(sleepIntervalMillis);
+    assertTrue(startTimesInDoWork.isEmpty());
+
+    secondAggregator.taskRunner = createPartitionedTaskRunner(checkpointManager, AGGREGATOR_TYPE.CLUSTER, 0);
+    secondAggregator.runOnce(sleepIntervalMillis);
+    assertEquals(Arrays.asList(startTime), startTimesInDoWork);
+    assertEquals(Arrays.asList((String) null), rangeClausesInDoWork);
+    assertEquals(startTime + sleepIntervalMillis, checkpointManager.readCheckpoint(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND));
+  }
+
+  /**
+   * Task runner owning the given metric name partitions of three, split at
+   * 'c' and 'm'.
+   */
+  private AggregationTaskRunner createPartitionedTaskRunner(final CheckpointManager checkpointManager,
+                                                            AGGREGATOR_TYPE type, int... partitions) {
+    AggregationTaskRunner taskRunner = new AggregationTaskRunner("h1", "localhost:2181", "ams", 3) {
+      @Override
+      public CheckpointManager getCheckpointManager() {
+        return checkpointManager;
+      }
+
+      @Override
+      public MetricNamePartitions getMetricNamePartitions() {
+        return new MetricNamePartitions(Arrays.asList("c", "m"));
+      }
+    };
+    for (int partition : partitions) {
+      // Cluster partitions are the even resource partitions, host partitions the odd ones
+      int resourcePartition = 2 * partition + (type == AGGREGATOR_TYPE.HOST ? 1 : 0);
+      taskRunner.setPartitionAggregationFunction("METRIC_AGGREGATORS_" + resourcePartition);
+    }
+    return taskRunner;
+  }
+
+  private static class InMemoryCheckpointManager extends CheckpointManager {
+    private final Map<String, Long> checkpoints = new HashMap<>();
+
+    InMemoryCheckpointManager() {
+      super(null);
+    }
+
+    @Override
+    protected long readCheckpoint(String path) {
+      Long checkpoint = checkpoints.get(path);
+      return checkpoint != null ? checkpoint : -1;
+    }
+
+    @Override
+    protected boolean writeCheckpoint(String path, long value) {
+      checkpoints.put(path, value);
+      return true;
+    }
+
+    void shift(long delta) {
+      for (Map.Entry<String, Long> entry : checkpoints.entrySet()) {
+        entry.setValue(entry.getValue() + delta);
+      }
+    }
+  }
+}
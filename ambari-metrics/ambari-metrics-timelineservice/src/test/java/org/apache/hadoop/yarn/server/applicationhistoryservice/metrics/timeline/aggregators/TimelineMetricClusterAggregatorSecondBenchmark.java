@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricValuesCodec;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
+
+/**
+ * Measures the time and the bytes allocated by
+ * {@link TimelineMetricClusterAggregatorSecond#aggregateMetricsFromResultSet}
+ * for one aggregation cycle over synthetic precision rows, 10M points with
+ * the defaults. It is not run as part of the build and needs a JVM which
+ * supports thread allocation measurement; run it with
+ * <pre>
+ * java -Xmx4g -cp ... org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricClusterAggregatorSecondBenchmark [hosts] [metrics] [json|binary] [iterations]
+ * </pre>
+ */
+public class TimelineMetricClusterAggregatorSecondBenchmark {
+
+  private static final String[] COLUMNS = { "METRIC_NAME", "HOSTNAME", "APP_ID", "UNITS", "METRICS" };
+
+  public static void main(String[] args) throws Exception {
+    int hosts = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int metrics = args.length > 1 ? Integer.parseInt(args[1]) : 834;
+    boolean binary = args.length <= 2 || TimelineMetricValuesCodec.BINARY_ENCODING.equals(args[2]);
+    int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+    long aggregatorInterval = 120000;
+    long sliceInterval = 30000;
+    long metricInterval = 10000;
+
+    TimelineMetricMetadataManager metadataManager = createNiceMock(TimelineMetricMetadataManager.class);
+    expect(metadataManager.getMetadataCacheValue((TimelineMetricMetadataKey) anyObject())).andReturn(null).anyTimes();
+    expect(metadataManager.getHostedAppsCache()).andReturn(new HashMap<String, Set<String>>()).anyTimes();
+    replay(metadataManager);
+
+    TimelineMetricClusterAggregatorSecond aggregator = new TimelineMetricClusterAggregatorSecond(
+      METRIC_AGGREGATE_SECOND, metadataManager, null, new Configuration(), null,
+      aggregatorInterval, 2, "false", "", "", aggregatorInterval, sliceInterval, null);
+
+    long endTime = AbstractTimelineAggregator.getRoundedAggregateTimeMillis(aggregatorInterval);
+    long startTime = endTime - aggregatorInterval;
+    List<Long[]> timeSlices = aggregator.getTimeSlices(startTime, endTime);
+
+    // One row per host series, ordered like the aggregator query
+    int pointsPerRow = (int) (aggregatorInterval / metricInterval);
+    Object[][] rows = new Object[hosts * metrics][];
+    int row = 0;
+    for (int m = 0; m < metrics; m++) {
+      for (int h = 0; h < hosts; h++) {
+        TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+        for (int p = 0; p < pointsPerRow; p++) {
+          values.put(startTime + p * metricInterval + 1000 + h % 1000, (double) ((m * 31 + h * 7 + p) % 100));
+        }
+        rows[row++] = new Object[] { String.format("metric.%04d", m), String.format("host-%05d", h),
+          "HOST", m % 10 == 0 ? "COUNTER" : null, TimelineMetricValuesCodec.encode(values, binary) };
+      }
+    }
+
+    long points = (long) rows.length * pointsPerRow;
+    System.out.println(String.format("%d rows, %d points per cycle, %s encoding", rows.length, points,
+      binary ? "binary" : "json"));
+    System.out.println(String.format("%10s %12s %12s %14s", "iteration", "ms", "MB allocated", "points/s"));
+
+    com.sun.management.ThreadMXBean threadMXBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    // The first iteration warms up
+    for (int i = 0; i <= iterations; i++) {
+      long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+
+      Map<TimelineClusterMetric, MetricClusterAggregate> aggregates =
+        aggregator.aggregateMetricsFromResultSet(createResultSet(rows), timeSlices);
+
+      long elapsed = System.nanoTime() - start;
+      long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+      if (i > 0) {
+        System.out.println(String.format("%10d %12d %12d %14d", i, elapsed / 1000000,
+          allocated / (1024 * 1024), points * 1000000000L / elapsed));
+      } else if (aggregates.isEmpty()) {
+        throw new IllegalStateException("No aggregates");
+      }
+    }
+  }
+
+  /**
+   * Result set over the rows, only next() and getString() are supported.
+   */
+  private static ResultSet createResultSet(final Object[][] rows) {
+    final Map<String, Integer> columns = new HashMap<String, Integer>();
+    for (int i = 0; i < COLUMNS.length; i++) {
+      columns.put(COLUMNS[i], i);
+    }
+    return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+      new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+        private int row = -1;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+          if (method.getName().equals("next")) {
+            return ++row < rows.length;
+          }
+          if (method.getName().equals("getString")) {
+            return rows[row][columns.get((String) args[0])];
+          }
+          throw new UnsupportedOperationException(method.getName());
+        }
+      });
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator.AGGREGATOR_TYPE.CLUSTER;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator.AGGREGATOR_TYPE.HOST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetricNamePartitionsTest {
+
+  @Test
+  public void testSplitPointsFromMetricNames() {
+    List<String> splitPoints = MetricNamePartitions.computeSplitPoints(Arrays.asList(
+      "mem_free", "cpu_user", "disk_free", "bytes_in", "load_one", "cpu_user", "swap_free", "proc_run"), 3);
+
+    assertEquals(Arrays.asList("disk_free", "mem_free"), splitPoints);
+
+    MetricNamePartitions partitions = new MetricNamePartitions(splitPoints);
+    assertEquals(3, partitions.getPartitionCount());
+    assertEquals(0, partitions.getPartition("cpu_user"));
+    assertEquals(1, partitions.getPartition("disk_free"));
+    assertEquals(1, partitions.getPartition("load_one"));
+    assertEquals(2, partitions.getPartition("mem_free"));
+    assertEquals(2, partitions.getPartition("swap_free"));
+  }
+
+  @Test
+  public void testSplitPointsWithoutMetricNames() {
+    List<String> splitPoints = MetricNamePartitions.computeSplitPoints(
+      Collections.<String>emptySet(), 4);
+
+    assertEquals(3, splitPoints.size());
+    for (int i = 1; i < splitPoints.size(); i++) {
+      assertTrue(splitPoints.get(i - 1).compareTo(splitPoints.get(i)) < 0);
+    }
+    assertTrue(MetricNamePartitions.computeSplitPoints(
+      Collections.<String>emptySet(), 1).isEmpty());
+  }
+
+  @Test
+  public void testRangeClause() {
+    MetricNamePartitions partitions = new MetricNamePartitions(Arrays.asList("c", "f", "m"));
+
+    assertEquals("(METRIC_NAME < 'c')", partitions.getRangeClause(Arrays.asList(0)));
+    assertEquals("(METRIC_NAME >= 'c' AND METRIC_NAME < 'm')",
+      partitions.getRangeClause(Arrays.asList(2, 1)));
+    assertEquals("(METRIC_NAME >= 'm')", partitions.getRangeClause(Arrays.asList(3)));
+    assertEquals("((METRIC_NAME < 'c') OR (METRIC_NAME >= 'f'))",
+      partitions.getRangeClause(Arrays.asList(0, 2, 3)));
+    assertNull(partitions.getRangeClause(Arrays.asList(0, 1, 2, 3)));
+
+    partitions = new MetricNamePartitions(Arrays.asList("o'clock"));
+    assertEquals("(METRIC_NAME < 'o''clock')", partitions.getRangeClause(Arrays.asList(0)));
+  }
+
+  @Test
+  public void testResourcePartitionAssignment() {
+    AggregationTaskRunner taskRunner = new AggregationTaskRunner("h1_12001", "", "cluster", 2);
+
+    assertEquals(CLUSTER, AggregationTaskRunner.getPartitionAggregationType("METRIC_AGGREGATORS_0"));
+    assertEquals(HOST, AggregationTaskRunner.getPartitionAggregationType("METRIC_AGGREGATORS_1"));
+    assertEquals(1, AggregationTaskRunner.getMetricPartition("METRIC_AGGREGATORS_3"));
+
+    taskRunner.setPartitionAggregationFunction("METRIC_AGGREGATORS_3");
+    taskRunner.setPartitionAggregationFunction("METRIC_AGGREGATORS_1");
+    assertTrue(taskRunner.performsHostAggregation());
+    assertTrue(!taskRunner.performsClusterAggregation());
+    assertEquals(Arrays.asList(0, 1), taskRunner.getOwnedPartitions(HOST));
+
+    taskRunner.unsetPartitionAggregationFunction("METRIC_AGGREGATORS_1");
+    assertEquals(Arrays.asList(1), taskRunner.getOwnedPartitions(HOST));
+    assertTrue(taskRunner.isPartitioned());
+    assertEquals(2, taskRunner.getMetricNamePartitions().getPartitionCount());
+  }
+}
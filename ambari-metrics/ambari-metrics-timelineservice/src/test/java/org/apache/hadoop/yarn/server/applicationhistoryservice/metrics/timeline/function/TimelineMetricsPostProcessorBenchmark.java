@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time and the bytes allocated to apply ._rate and a series
+ * sum to query results, 1000 series of 360 points with the defaults, with
+ * {@link TimelineMetricsPostProcessor} and with the previous implementation
+ * over the value maps. It is not run as part of the build and needs a JVM
+ * which supports thread allocation measurement; run it with
+ * <pre>
+ * java -Xmx2g -cp ... org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function.TimelineMetricsPostProcessorBenchmark [series] [points] [iterations]
+ * </pre>
+ */
+public class TimelineMetricsPostProcessorBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int seriesCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int points = args.length > 1 ? Integer.parseInt(args[1]) : 360;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    System.out.println(String.format("%d series, %d points per series", seriesCount, points));
+    System.out.println(String.format("%10s %10s %12s %12s", "", "iteration", "ms", "MB allocated"));
+
+    com.sun.management.ThreadMXBean threadMXBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    TimelineMetricsSeriesAggregateFunction sum =
+      TimelineMetricsSeriesAggregateFunctionFactory.newInstance(SeriesAggregateFunction.SUM);
+
+    for (boolean legacy : new boolean[] { true, false }) {
+      // The first iteration warms up
+      for (int i = 0; i <= iterations; i++) {
+        TimelineMetrics metrics = createMetrics(seriesCount, points);
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        TimelineMetrics result = legacy ? processLegacy(metrics) :
+          new TimelineMetricsPostProcessor(sum).process(metrics);
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+        if (i > 0) {
+          System.out.println(String.format("%10s %10d %12d %12d", legacy ? "legacy" : "arrays", i,
+            elapsed / 1000000, allocated / (1024 * 1024)));
+        } else if (result.getMetrics().get(0).getMetricValues().size() != points - 1) {
+          throw new IllegalStateException("Unexpected aggregate");
+        }
+      }
+    }
+  }
+
+  private static TimelineMetrics createMetrics(int seriesCount, int points) {
+    long startTime = 1500000000000L;
+    TimelineMetrics metrics = new TimelineMetrics();
+    for (int s = 0; s < seriesCount; s++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("bytes_in._rate");
+      metric.setHostName(String.format("host-%04d", s));
+      metric.setAppId("HOST");
+      TreeMap<Long, Double> metricValues = new TreeMap<>();
+      double value = 0;
+      for (int p = 0; p < points; p++) {
+        value += (s * 7 + p) % 100;
+        metricValues.put(startTime + p * 10000L, value);
+      }
+      metric.setMetricValues(metricValues);
+      metrics.getMetrics().add(metric);
+    }
+    return metrics;
+  }
+
+  // Previous implementation, rate over the value maps and a sum over lists
+  // of values per timestamp
+  private static TimelineMetrics processLegacy(TimelineMetrics metrics) {
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      if (metric.getMetricName().contains("._rate")) {
+        updateValuesAsRate(metric.getMetricValues());
+      }
+    }
+
+    TreeMap<Long, List<Double>> metricValues = new TreeMap<>();
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      for (Map.Entry<Long, Double> metricValue : metric.getMetricValues().entrySet()) {
+        if (!metricValues.containsKey(metricValue.getKey())) {
+          metricValues.put(metricValue.getKey(), new LinkedList<Double>());
+        }
+        metricValues.get(metricValue.getKey()).add(metricValue.getValue());
+      }
+    }
+    TreeMap<Long, Double> aggregatedMetricValues = new TreeMap<>();
+    for (Map.Entry<Long, List<Double>> metricValue : metricValues.entrySet()) {
+      double sum = 0.0;
+      for (Double value : metricValue.getValue()) {
+        sum += value;
+      }
+      aggregatedMetricValues.put(metricValue.getKey(), sum);
+    }
+
+    TimelineMetric aggregatedMetric = new TimelineMetric();
+    aggregatedMetric.setMetricValues(aggregatedMetricValues);
+    List<TimelineMetric> aggregated = new ArrayList<>();
+    aggregated.add(aggregatedMetric);
+    metrics.setMetrics(aggregated);
+    return metrics;
+  }
+
+  private static void updateValuesAsRate(Map<Long, Double> metricValues) {
+    Long prevTime = null;
+    Double prevVal = null;
+    for (Iterator<Map.Entry<Long, Double>> it = metricValues.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Long, Double> timeValueEntry = it.next();
+      Long currTime = timeValueEntry.getKey();
+      Double currVal = timeValueEntry.getValue();
+      if (prevTime != null) {
+        timeValueEntry.setValue((currVal - prevVal) / TimeUnit.MILLISECONDS.toSeconds(currTime - prevTime));
+      } else {
+        it.remove();
+      }
+      prevTime = currTime;
+      prevVal = currVal;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.function;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Test;
+
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TimelineMetricsPostProcessorTest {
+
+  private static final double DELTA = 0.00000000001;
+
+  private static TimelineMetric createMetric(String metricName, String hostName, double... values) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setHostName(hostName);
+    TreeMap<Long, Double> metricValues = new TreeMap<>();
+    for (int i = 0; i < values.length; i++) {
+      metricValues.put(60000L * (i + 1), Double.isNaN(values[i]) ? null : values[i]);
+    }
+    metric.setMetricValues(metricValues);
+    return metric;
+  }
+
+  @Test
+  public void testRateWithoutSeriesAggregate() throws Exception {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("bytes_in._rate", "h1", 60, 120, 300));
+    metrics.getMetrics().add(createMetric("bytes_in._diff", "h2", 60, 120, 100));
+    metrics.getMetrics().add(createMetric("bytes_out", "h1", 1, 2, 3));
+
+    metrics = new TimelineMetricsPostProcessor(null).process(metrics);
+
+    assertEquals(3, metrics.getMetrics().size());
+    TreeMap<Long, Double> rates = metrics.getMetrics().get(0).getMetricValues();
+    assertEquals(2, rates.size());
+    assertEquals(1.0, rates.get(120000L), DELTA);
+    assertEquals(3.0, rates.get(180000L), DELTA);
+    TreeMap<Long, Double> diffs = metrics.getMetrics().get(1).getMetricValues();
+    assertEquals(60.0, diffs.get(120000L), DELTA);
+    assertEquals(-20.0, diffs.get(180000L), DELTA);
+    assertEquals(3, metrics.getMetrics().get(2).getMetricValues().size());
+  }
+
+  @Test
+  public void testRateWithSeriesAggregate() throws Exception {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("bytes_in._rate", "h1", 60, 120, 300));
+    metrics.getMetrics().add(createMetric("bytes_in._rate", "h2", 0, 60, 120));
+
+    metrics = new TimelineMetricsPostProcessor(TimelineMetricsSeriesAggregateFunctionFactory
+      .newInstance(SeriesAggregateFunction.SUM)).process(metrics);
+
+    assertEquals(1, metrics.getMetrics().size());
+    TimelineMetric aggregatedMetric = metrics.getMetrics().get(0);
+    assertEquals("SUM(bytes_in._rate)", aggregatedMetric.getMetricName());
+    TreeMap<Long, Double> sums = aggregatedMetric.getMetricValues();
+    assertEquals(2, sums.size());
+    assertEquals(2.0, sums.get(120000L), DELTA);
+    assertEquals(4.0, sums.get(180000L), DELTA);
+  }
+
+  @Test
+  public void testMovingAverage() throws Exception {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("load_one._movavg", "h1", 1, 2, 3, Double.NaN, 5, 6, 7, 8));
+
+    metrics = new TimelineMetricsPostProcessor(null).process(metrics);
+
+    TreeMap<Long, Double> averages = metrics.getMetrics().get(0).getMetricValues();
+    assertEquals(8, averages.size());
+    assertEquals(1.0, averages.get(60000L), DELTA);
+    assertEquals(1.5, averages.get(120000L), DELTA);
+    // missing values are left out of the window
+    assertEquals(2.0, averages.get(240000L), DELTA);
+    assertEquals(11.0 / 4, averages.get(300000L), DELTA);
+    assertEquals(16.0 / 4, averages.get(360000L), DELTA);
+    assertEquals(26.0 / 4, averages.get(480000L), DELTA);
+  }
+
+  @Test
+  public void testMissingValuesInSeriesAggregate() throws Exception {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("cpu_user", "h1", 1, Double.NaN, 3));
+    metrics.getMetrics().add(createMetric("cpu_user", "h2", 3, Double.NaN, Double.NaN));
+
+    metrics = new TimelineMetricsPostProcessor(TimelineMetricsSeriesAggregateFunctionFactory
+      .newInstance(SeriesAggregateFunction.MAX)).process(metrics);
+
+    TreeMap<Long, Double> maxValues = metrics.getMetrics().get(0).getMetricValues();
+    assertEquals(3, maxValues.size());
+    assertEquals(3.0, maxValues.get(60000L), DELTA);
+    assertNull(maxValues.get(120000L));
+    assertEquals(3.0, maxValues.get(180000L), DELTA);
+  }
+
+  @Test
+  public void testMetricNameWithTooManySuffixes() throws Exception {
+    assertNull(TimelineMetricsPostProcessor.getPostProcessingFunction("a._b._c._rate"));
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(createMetric("a._b._c._rate", "h1", 60, 120, 300));
+
+    metrics = new TimelineMetricsPostProcessor(null).process(metrics);
+
+    assertEquals(3, metrics.getMetrics().get(0).getMetricValues().size());
+  }
+}
@@ -153,6 +153,35 @@ public class TimelineMetricsSeriesAggregateFunctionTest {
     }
   }
 
+  @Test public void testSeriesAggregateByPercentile() throws Exception {
+    TimelineMetrics testMetrics = new TimelineMetrics();
+    for (int i = 1; i <= 10; i++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("byte_in." + i);
+      metric.setHostName("host" + i);
+      TreeMap<Long, Double> metricValues = new TreeMap<>();
+      metricValues.put(1L, (double) i);
+      // the second point is missing on every other series
+      if (i % 2 == 0) {
+        metricValues.put(2L, 10.0 * i);
+      }
+      metric.setMetricValues(metricValues);
+      testMetrics.getMetrics().add(metric);
+    }
+
+    TimelineMetric aggregatedMetric = TimelineMetricsSeriesAggregateFunctionFactory
+        .newInstance(SeriesAggregateFunction.P50).apply(testMetrics);
+    TreeMap<Long, Double> percentileMetricValues = aggregatedMetric.getMetricValues();
+    assertEquals(2, percentileMetricValues.size());
+    assertEquals(5.0, percentileMetricValues.get(1L), DELTA);
+    assertEquals(60.0, percentileMetricValues.get(2L), DELTA);
+
+    aggregatedMetric = TimelineMetricsSeriesAggregateFunctionFactory
+        .newInstance(SeriesAggregateFunction.P90).apply(testMetrics);
+    assertEquals(9.0, aggregatedMetric.getMetricValues().get(1L), DELTA);
+    assertEquals(100.0, aggregatedMetric.getMetricValues().get(2L), DELTA);
+  }
+
   private TimelineMetrics getTestObject() {
     TimelineMetric metric = new TimelineMetric();
     metric.setMetricName("byte_in.1");
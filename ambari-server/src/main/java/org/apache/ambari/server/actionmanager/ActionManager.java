@@ -77,6 +77,16 @@ public class ActionManager {
     scheduler.stop();
   }
 
+  /**
+   * Gets the statistics of the action scheduler.
+   *
+   * @return the scheduler statistics keyed by name
+   * @see ActionScheduler#getSchedulingStatistics()
+   */
+  public Map<String, Long> getSchedulingStatistics() {
+    return scheduler.getSchedulingStatistics();
+  }
+
   public void sendActions(List<Stage> stages, ExecuteActionRequest actionRequest) throws AmbariException {
     Request request = requestFactory.createNewFromStages(stages, actionRequest);
     sendActions(request, actionRequest);
@@ -24,11 +24,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -49,13 +51,16 @@ import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.HostsMap;
 import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
+import org.apache.ambari.server.events.TaskUpdateEvent;
 import org.apache.ambari.server.events.jpa.EntityManagerCacheInvalidationEvent;
 import org.apache.ambari.server.events.listeners.tasks.TaskStatusListener;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.events.publishers.JPAEventPublisher;
+import org.apache.ambari.server.events.publishers.TaskEventPublisher;
 import org.apache.ambari.server.metadata.RoleCommandOrder;
 import org.apache.ambari.server.metadata.RoleCommandOrderProvider;
 import org.apache.ambari.server.metadata.RoleCommandPair;
+import org.apache.ambari.server.orm.AmbariJpaLocalTxnInterceptor;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.orm.entities.RequestEntity;
@@ -138,6 +143,12 @@ class ActionScheduler implements Runnable {
   @Inject
   private HostRoleCommandFactory hostRoleCommandFactory;
 
+  /**
+   * Used for receiving task status updates, which wake up the scheduler.
+   */
+  @Inject
+  private TaskEventPublisher taskEventPublisher;
+
   /**
    * Used for retrieving {@link HostRoleCommandEntity} instances which need to
    * be cancelled.
@@ -187,6 +198,34 @@ class ActionScheduler implements Runnable {
 
   private AtomicBoolean taskStatusLoaded = new AtomicBoolean();
 
+  /**
+   * The number of sleep cycles between full sweeps of the in progress stages
+   * when no task of them has completed in the meantime.
+   */
+  private int fullSweepCycles = 1;
+
+  /**
+   * Maps request IDs to the time the first task completion was reported for
+   * them since their next stage was last scheduled.
+   */
+  private final ConcurrentMap<Long, Long> requestUpdateTimes = new ConcurrentHashMap<>();
+
+  /**
+   * Wakes up the scheduler once the transaction of a task update has been
+   * committed.
+   */
+  private final Runnable awakeCallback = new Runnable() {
+    @Override
+    public void run() {
+      awake();
+    }
+  };
+
+  /**
+   * Scheduler statistics, guarded by {@code schedulingStatistics}.
+   */
+  private final Map<String, Long> schedulingStatistics = new LinkedHashMap<>();
+
   //Cache for clusterHostinfo, key - stageId-requestId
   private Cache<String, Map<String, Set<String>>> clusterHostInfoCache;
   private Cache<String, Map<String, String>> commandParamsStageCache;
@@ -276,6 +315,11 @@ class ActionScheduler implements Runnable {
   }
 
   public void start() {
+    fullSweepCycles = Math.max(1, configuration.getExecutionSchedulerFullSweepCycles());
+    if (null != taskEventPublisher) {
+      taskEventPublisher.register(this);
+    }
+
     schedulerThread = new Thread(this, "ambari-action-scheduler");
     schedulerThread.start();
 
@@ -305,17 +349,114 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Wakes up the scheduler when tasks of a request complete, so that the
+   * next stage of the request is scheduled without waiting for the next
+   * sweep. Status changes of tasks still in progress do not affect
+   * scheduling and are ignored. Task updates are published while the
+   * transaction which merges them is still open, so the scheduler is only
+   * woken up once that transaction has been committed; otherwise it could
+   * read the tasks before their new status is visible.
+   *
+   * @param event
+   *          the task update event (not {@code null}).
+   */
+  @Subscribe
+  public void onTaskUpdateEvent(TaskUpdateEvent event) {
+    long now = System.currentTimeMillis();
+    boolean completed = false;
+    for (HostRoleCommand hostRoleCommand : event.getHostRoleCommands()) {
+      if (hostRoleCommand.getStatus().isCompletedState()) {
+        requestUpdateTimes.putIfAbsent(hostRoleCommand.getRequestId(), now);
+        completed = true;
+      }
+    }
+
+    if (completed) {
+      incrementStatistic("wakeups.task.completed", 1);
+      AmbariJpaLocalTxnInterceptor.runAfterCommit(awakeCallback);
+    }
+  }
+
+  /**
+   * Gets the scheduler statistics: the number of wakeups caused by task
+   * completions, the number of full sweeps, and the latency, in milliseconds,
+   * between the completion of a task of a request and the scheduling of the
+   * next stage of that request.
+   *
+   * @return a copy of the scheduler statistics
+   */
+  public Map<String, Long> getSchedulingStatistics() {
+    synchronized (schedulingStatistics) {
+      Map<String, Long> statistics = new LinkedHashMap<>(schedulingStatistics);
+      Long count = statistics.get("stage.latency.count");
+      if (count != null && count > 0) {
+        statistics.put("stage.latency.avg", statistics.get("stage.latency.total") / count);
+      }
+      return statistics;
+    }
+  }
+
+  private void incrementStatistic(String name, long value) {
+    synchronized (schedulingStatistics) {
+      Long current = schedulingStatistics.get(name);
+      schedulingStatistics.put(name, current == null ? value : current + value);
+    }
+  }
+
+  /**
+   * Records the latency of scheduling a stage of the given request, if a
+   * task completion of the request is pending.
+   *
+   * @param stage
+   *          the stage whose commands have been scheduled
+   */
+  private void recordStageSchedulingLatency(Stage stage) {
+    Long updateTime = requestUpdateTimes.remove(stage.getRequestId());
+    if (null == updateTime) {
+      return;
+    }
+
+    long latency = System.currentTimeMillis() - updateTime;
+    synchronized (schedulingStatistics) {
+      incrementStatistic("stage.latency.count", 1);
+      incrementStatistic("stage.latency.total", latency);
+      schedulingStatistics.put("stage.latency.last", latency);
+      Long max = schedulingStatistics.get("stage.latency.max");
+      schedulingStatistics.put("stage.latency.max", max == null ? latency : Math.max(max, latency));
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Scheduled stage {} of request {} {} ms after its previous tasks completed",
+        stage.getStageId(), stage.getRequestId(), latency);
+    }
+  }
+
   @Override
   public void run() {
+    int idleCycles = 0;
     while (shouldRun) {
       try {
+        boolean awoken;
         synchronized (wakeupSyncObject) {
           if (!activeAwakeRequest) {
             wakeupSyncObject.wait(sleepTime);
           }
+          awoken = activeAwakeRequest;
           activeAwakeRequest = false;
         }
 
+        // task completions, new requests and cancellations wake up the
+        // scheduler explicitly; otherwise in progress stages are only swept
+        // periodically, to handle timeouts and lost agents
+        if (!awoken && ++idleCycles < fullSweepCycles) {
+          continue;
+        }
+        if (!awoken) {
+          incrementStatistic("sweeps.full", 1);
+        }
+        idleCycles = 0;
+
         doWork();
 
       } catch (InterruptedException ex) {
@@ -351,6 +492,7 @@ class ActionScheduler implements Runnable {
         }
 
         actionQueue.updateListOfHostsWithPendingTask(null);
+        requestUpdateTimes.clear();
         return;
       }
 
@@ -521,6 +663,9 @@ class ActionScheduler implements Runnable {
           }
         }
         actionQueue.enqueueAll(commandsToEnqueue.asMap());
+        if (!commandsToUpdate.isEmpty()) {
+          recordStageSchedulingLatency(stage);
+        }
         LOG.debug("==> Finished.");
 
         if (!configuration.getParallelStageExecution()) { // If disabled
@@ -535,6 +680,7 @@ class ActionScheduler implements Runnable {
       }
 
       requestsInProgress.retainAll(runningRequestIds);
+      requestUpdateTimes.keySet().retainAll(runningRequestIds);
 
     } finally {
       LOG.debug("Scheduler finished work.");
@@ -17,7 +17,6 @@
  */
 package org.apache.ambari.server.actionmanager;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -29,6 +28,7 @@ import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.ConfigHelper;
+import org.apache.ambari.server.state.ConfigurationSnapshot;
 import org.apache.ambari.server.state.DesiredConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -138,12 +138,16 @@ public class ExecutionCommandWrapper {
       // configurations
       Map<String, Map<String, String>> configurationTags = executionCommand.getConfigurationTags();
       if (null != configurationTags && !configurationTags.isEmpty()) {
-        Map<String, Map<String, String>> configProperties = configHelper
-            .getEffectiveConfigProperties(cluster, configurationTags);
+        ConfigurationSnapshot snapshot = configHelper.getEffectiveConfigSnapshot(cluster,
+            configurationTags);
+
+        executionCommand.setConfigurationSnapshot(snapshot);
 
         // Apply the configurations saved with the Execution Cmd on top of
-        // derived configs - This will take care of all the hacks
-        for (Map.Entry<String, Map<String, String>> entry : configProperties.entrySet()) {
+        // derived configs - This will take care of all the hacks. Types
+        // without any of those are shared with the other commands using the
+        // same snapshot
+        for (Map.Entry<String, Map<String, String>> entry : snapshot.getProperties().entrySet()) {
           String type = entry.getKey();
           Map<String, String> allLevelMergedConfig = entry.getValue();
 
@@ -155,13 +159,11 @@ public class ExecutionCommandWrapper {
             configurations.get(type).putAll(mergedConfig);
 
           } else {
-            configurations.put(type, new HashMap<String, String>());
-            configurations.get(type).putAll(allLevelMergedConfig);
+            configurations.put(type, allLevelMergedConfig);
           }
         }
 
-        Map<String, Map<String, Map<String, String>>> configAttributes = configHelper.getEffectiveConfigAttributes(
-            cluster, executionCommand.getConfigurationTags());
+        Map<String, Map<String, Map<String, String>>> configAttributes = snapshot.getAttributes();
 
         for (Map.Entry<String, Map<String, Map<String, String>>> attributesOccurrence : configAttributes.entrySet()) {
           String type = attributesOccurrence.getKey();
@@ -169,12 +171,12 @@ public class ExecutionCommandWrapper {
 
           if (executionCommand.getConfigurationAttributes() != null) {
             if (!executionCommand.getConfigurationAttributes().containsKey(type)) {
-              executionCommand.getConfigurationAttributes().put(type,
-                  new TreeMap<String, Map<String, String>>());
-            }
-            configHelper.cloneAttributesMap(attributes,
-                executionCommand.getConfigurationAttributes().get(type));
+              executionCommand.getConfigurationAttributes().put(type, attributes);
+            } else {
+              configHelper.cloneAttributesMap(attributes,
+                  executionCommand.getConfigurationAttributes().get(type));
             }
+          }
         }
       }
     } catch (ClusterNotFoundException cnfe) {
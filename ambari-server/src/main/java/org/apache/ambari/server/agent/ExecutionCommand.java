@@ -23,8 +23,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.state.ConfigHelper;
+import org.apache.ambari.server.state.ConfigurationSnapshot;
 import org.apache.ambari.server.state.ServiceInfo;
 import org.apache.ambari.server.utils.StageUtils;
 import org.apache.commons.logging.Log;
@@ -37,7 +40,7 @@ import com.google.gson.annotations.SerializedName;
  * Execution commands are scheduled by action manager, and these are
  * persisted in the database for recovery.
  */
-public class ExecutionCommand extends AgentCommand {
+public class ExecutionCommand extends AgentCommand implements Cloneable {
 
   private static Log LOG = LogFactory.getLog(ExecutionCommand.class);
 
@@ -144,6 +147,33 @@ public class ExecutionCommand extends AgentCommand {
   @SerializedName("configuration_credentials")
   private Map<String, Map<String, String>> configurationCredentials;
 
+  /**
+   * The hash of the {@link ConfigurationSnapshot} which the configurations of
+   * this command apply to. It is only set on commands created by
+   * {@link #createConfigurationDeltaCommand(ConfigurationSnapshot)}, whose configurations then only
+   * hold the overrides of the command itself.
+   */
+  @SerializedName("configurationsHash")
+  private String configurationsHash;
+
+  /**
+   * The effective configurations which were merged into the configurations of
+   * this command, or {@code null} if none.
+   */
+  private transient ConfigurationSnapshot configurationSnapshot;
+
+  /**
+   * The configurations of this command before the snapshot was merged into
+   * them.
+   */
+  private transient Map<String, Map<String, String>> configurationOverrides;
+
+  /**
+   * The configuration attributes of this command before the snapshot was
+   * merged into them.
+   */
+  private transient Map<String, Map<String, Map<String, String>>> configurationAttributeOverrides;
+
   public void setConfigurationCredentials(Map<String, Map<String, String>> configurationCredentials) {
     this.configurationCredentials = configurationCredentials;
   }
@@ -371,6 +401,92 @@ public class ExecutionCommand extends AgentCommand {
     configurationTags = configTags;
   }
 
+  /**
+   * @return the hash of the configuration snapshot sent with this command
+   */
+  public String getConfigurationsHash() {
+    return configurationsHash;
+  }
+
+  /**
+   * @return the configuration snapshot merged into this command
+   */
+  public ConfigurationSnapshot getConfigurationSnapshot() {
+    return configurationSnapshot;
+  }
+
+  /**
+   * Sets the snapshot of effective configurations which is about to be merged
+   * into the configurations of this command. The current configurations and
+   * attributes of the command are retained as its overrides so that they can
+   * be sent without the snapshot.
+   *
+   * @param configurationSnapshot
+   *          the snapshot (not {@code null}).
+   */
+  public void setConfigurationSnapshot(ConfigurationSnapshot configurationSnapshot) {
+    this.configurationSnapshot = configurationSnapshot;
+
+    configurationOverrides = new TreeMap<>();
+    if (null != configurations) {
+      for (Map.Entry<String, Map<String, String>> entry : configurations.entrySet()) {
+        configurationOverrides.put(entry.getKey(), new HashMap<>(entry.getValue()));
+      }
+    }
+
+    configurationAttributeOverrides = null;
+    if (null != configurationAttributes) {
+      configurationAttributeOverrides = new TreeMap<>();
+      for (Map.Entry<String, Map<String, Map<String, String>>> entry : configurationAttributes.entrySet()) {
+        Map<String, Map<String, String>> attributes = new TreeMap<>();
+        for (Map.Entry<String, Map<String, String>> attribute : entry.getValue().entrySet()) {
+          attributes.put(attribute.getKey(), new TreeMap<>(attribute.getValue()));
+        }
+
+        configurationAttributeOverrides.put(entry.getKey(), attributes);
+      }
+    }
+  }
+
+  /**
+   * Creates a copy of this command which only carries its own configuration
+   * overrides along with the hash of the {@link ConfigurationSnapshot} which
+   * they apply to, for agents which retrieve the snapshots separately.
+   *
+   * @param snapshot
+   *          the snapshot to send the hash of, which is either the snapshot of
+   *          this command or the same snapshot without the properties hidden
+   *          from the component of this command.
+   * @return the copy of this command, or this command if it has no snapshot.
+   * @see ConfigHelper#getComponentConfigSnapshot(ConfigurationSnapshot, String)
+   */
+  public ExecutionCommand createConfigurationDeltaCommand(ConfigurationSnapshot snapshot) {
+    if (null == configurationSnapshot) {
+      return this;
+    }
+
+    ExecutionCommand command;
+    try {
+      command = (ExecutionCommand) clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+
+    Map<String, Map<String, String>> overrides = new TreeMap<>();
+    for (Map.Entry<String, Map<String, String>> entry : configurationOverrides.entrySet()) {
+      overrides.put(entry.getKey(), new HashMap<>(entry.getValue()));
+    }
+
+    // the overrides must not expose properties hidden from the component either
+    ConfigHelper.processHiddenAttribute(overrides, configurationAttributes, role, false);
+
+    command.configurations = overrides;
+    command.configurationAttributes = configurationAttributeOverrides;
+    command.configurationSnapshot = snapshot;
+    command.configurationsHash = snapshot.getHash();
+    return command;
+  }
+
   /**
    * @return the configuration tags
    */
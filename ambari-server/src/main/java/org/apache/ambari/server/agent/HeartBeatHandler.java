@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +33,8 @@ import java.util.regex.Pattern;
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.HostNotFoundException;
 import org.apache.ambari.server.actionmanager.ActionManager;
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.agent.rest.CompactAgentEncoding;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.serveraction.kerberos.KerberosIdentityDataFileReader;
@@ -42,6 +45,7 @@ import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.ComponentInfo;
 import org.apache.ambari.server.state.ConfigHelper;
+import org.apache.ambari.server.state.ConfigurationSnapshot;
 import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.HostState;
 import org.apache.ambari.server.state.ServiceComponentHost;
@@ -114,6 +118,13 @@ public class HeartBeatHandler {
 
   private Map<String, HeartBeatResponse> hostResponses = new ConcurrentHashMap<>();
 
+  /**
+   * The hosts whose agents receive the configurations of their commands as a
+   * {@link ConfigurationSnapshot} hash along with the command overrides.
+   */
+  private Set<String> configurationSnapshotHosts = Collections.newSetFromMap(
+      new ConcurrentHashMap<String, Boolean>());
+
   @Inject
   public HeartBeatHandler(Clusters fsm, ActionQueue aq, ActionManager am,
                           Injector injector) {
@@ -249,6 +260,8 @@ public class HeartBeatHandler {
       }
     }
 
+    releaseConfigSnapshots(heartbeat.getReports());
+
     heartbeatProcessor.addHeartbeat(heartbeat);
 
     // Send commands if node is active
@@ -262,6 +275,19 @@ public class HeartBeatHandler {
 
 
 
+  /**
+   * Releases the configuration snapshots retained for the tasks which have
+   * completed.
+   */
+  private void releaseConfigSnapshots(List<CommandReport> reports) {
+    for (CommandReport report : reports) {
+      HostRoleStatus status = HostRoleStatus.valueOf(report.getStatus());
+      if (status.isCompletedState()) {
+        configHelper.releaseConfigSnapshot(report.getTaskId());
+      }
+    }
+  }
+
   protected void processRecoveryReport(RecoveryReport recoveryReport, String hostname) throws AmbariException {
     LOG.debug("Received recovery report: " + recoveryReport.toString());
     Host host = clusterFsm.getHost(hostname);
@@ -301,7 +327,17 @@ public class HeartBeatHandler {
                 }
               }
             }
-            response.addExecutionCommand((ExecutionCommand) ac);
+            ConfigurationSnapshot snapshot = ec.getConfigurationSnapshot();
+            if (null != snapshot && configurationSnapshotHosts.contains(hostname)) {
+              ConfigurationSnapshot componentSnapshot = configHelper.getComponentConfigSnapshot(
+                  snapshot, ec.getRole());
+
+              // the agent retrieves the snapshot later, so it must not be
+              // collected before the task is done
+              configHelper.retainConfigSnapshot(ec.getTaskId(), componentSnapshot);
+              ec = ec.createConfigurationDeltaCommand(componentSnapshot);
+            }
+            response.addExecutionCommand(ec);
             break;
           }
           case STATUS_COMMAND: {
@@ -444,6 +480,14 @@ public class HeartBeatHandler {
       LOG.debug("Agent configuration map set to " + response.getAgentConfig());
     }
 
+    response.setEncoding(getAgentEncoding(register));
+
+    if (config.isAgentConfigurationSnapshotsEnabled() && register.isConfigurationSnapshots()) {
+      configurationSnapshotHosts.add(hostname);
+    } else {
+      configurationSnapshotHosts.remove(hostname);
+    }
+
     /**
      * A host can belong to only one cluster. Though getClustersForHost(hostname)
      * returns a set of clusters, it will have only one entry.
@@ -469,6 +513,37 @@ public class HeartBeatHandler {
     return response;
   }
 
+  /**
+   * Selects the payload encoding that the registering agent should use for
+   * its heartbeats. Agents which do not advertise any encodings are older
+   * agents which only support JSON.
+   *
+   * @param register
+   *          the registration request.
+   * @return the name of the selected encoding (never {@code null}).
+   */
+  private String getAgentEncoding(Register register) {
+    List<String> encodings = register.getEncodings();
+    if (config.isAgentApiCompactEncodingEnabled() && null != encodings
+        && encodings.contains(CompactAgentEncoding.ENCODING_COMPACT)) {
+      return CompactAgentEncoding.ENCODING_COMPACT;
+    }
+
+    return CompactAgentEncoding.ENCODING_JSON;
+  }
+
+  /**
+   * Gets a {@link ConfigurationSnapshot} which was sent to an agent by its
+   * hash.
+   *
+   * @param hash
+   *          the hash of the snapshot.
+   * @return the snapshot, or {@code null} if it is no longer available.
+   */
+  public ConfigurationSnapshot handleConfigurationSnapshot(String hash) {
+    return configHelper.getConfigSnapshot(hash);
+  }
+
   /**
    * Annotate the response with some housekeeping details.
    * hasMappedComponents - indicates if any components are mapped to the host
@@ -19,14 +19,14 @@ package org.apache.ambari.server.agent;
 
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.Role;
@@ -39,6 +39,7 @@ import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.ExecutionCommand.KeyNames;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
 import org.apache.ambari.server.events.AlertEvent;
@@ -90,17 +91,22 @@ import com.google.inject.Injector;
 public class HeartbeatProcessor extends AbstractService{
   private static final Logger LOG = LoggerFactory.getLogger(HeartbeatProcessor.class);
 
-  private ScheduledExecutorService executor;
+  private ExecutorService executor;
 
-  private ConcurrentLinkedQueue<HeartBeat> heartBeatsQueue = new ConcurrentLinkedQueue<>();
+  /**
+   * Heartbeats are partitioned by host name into lanes; each lane is drained
+   * in order by a single worker, so the heartbeats of one host are never
+   * processed concurrently or out of order.
+   */
+  private final HeartbeatLane[] lanes;
 
   private volatile boolean shouldRun = true;
 
-  //TODO rewrite to correlate with heartbeat frequency, hardcoded in agent as of now
-  private long delay = 5000;
-  private long period = 1000;
-
-  private int poolSize = 1;
+  /**
+   * How long an idle worker waits for a heartbeat before re-checking whether
+   * it should still run.
+   */
+  private long pollTimeout = 1000;
 
   private Clusters clusterFsm;
   private HeartbeatMonitor heartbeatMonitor;
@@ -134,6 +140,9 @@ public class HeartbeatProcessor extends AbstractService{
   @Inject
   Gson gson;
 
+  @Inject
+  Configuration config;
+
   @Inject
   public HeartbeatProcessor(Clusters clusterFsm, ActionManager am, HeartbeatMonitor heartbeatMonitor,
                             Injector injector) {
@@ -143,16 +152,23 @@ public class HeartbeatProcessor extends AbstractService{
     this.heartbeatMonitor = heartbeatMonitor;
     this.clusterFsm = clusterFsm;
     actionManager = am;
+
+    int laneCount = Math.max(1, config.getHeartbeatProcessorLanes());
+    lanes = new HeartbeatLane[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      lanes[i] = new HeartbeatLane(i);
+    }
     ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("ambari-heartbeat-processor-%d").build();
-    executor = Executors.newScheduledThreadPool(poolSize, threadFactory);
+    executor = Executors.newFixedThreadPool(laneCount, threadFactory);
   }
 
   @Override
   protected void doStart() {
-    LOG.info("**** Starting heartbeats processing threads ****");
-    for (int i=0; i< poolSize; i++) {
-      executor.scheduleAtFixedRate(new HeartbeatProcessingTask(), delay, period, TimeUnit.MILLISECONDS);
+    LOG.info("**** Starting heartbeats processing threads ({} lanes) ****", lanes.length);
+    for (HeartbeatLane lane : lanes) {
+      executor.execute(lane);
     }
+    notifyStarted();
   }
 
   @Override
@@ -160,39 +176,191 @@ public class HeartbeatProcessor extends AbstractService{
     LOG.info("**** Stopping heartbeats processing threads ****");
     shouldRun = false;
     executor.shutdown();
+    notifyStopped();
   }
 
   public void addHeartbeat(HeartBeat heartBeat) {
-    heartBeatsQueue.add(heartBeat);
+    getLane(heartBeat.getHostname()).add(heartBeat);
+  }
+
+  /**
+   * @param hostname the host which sent the heartbeat
+   * @return the lane which processes heartbeats of the given host
+   */
+  private HeartbeatLane getLane(String hostname) {
+    int hash = hostname == null ? 0 : hostname.hashCode();
+    return lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+  }
+
+  /**
+   * Gets the backlog and lag statistics of every processing lane, keyed by
+   * {@code lane.<index>.<statistic>}. Lags are in milliseconds; the lag of a
+   * heartbeat is the time between being queued and being picked up.
+   *
+   * @return the lane statistics
+   */
+  public Map<String, Number> getLaneStatistics() {
+    Map<String, Number> statistics = new LinkedHashMap<>();
+    long now = System.currentTimeMillis();
+    for (HeartbeatLane lane : lanes) {
+      lane.addStatistics(statistics, now);
+    }
+    return statistics;
+  }
+
+  /**
+   * Merges a heartbeat with the still unprocessed heartbeat of the same host.
+   * Command reports and alerts of both are kept in order, since each of them
+   * is an event which must be processed. Component statuses only describe the
+   * current state, so only the latest status of each component is kept.
+   * Everything else is taken from the newer heartbeat. Neither heartbeat is
+   * modified, since the caller may still use them.
+   *
+   * @param pending the queued heartbeat
+   * @param next    the newer heartbeat of the same host
+   * @return the merged heartbeat
+   */
+  static HeartBeat coalesce(HeartBeat pending, HeartBeat next) {
+    HeartBeat merged = new HeartBeat();
+    merged.setResponseId(next.getResponseId());
+    merged.setTimestamp(next.getTimestamp());
+    merged.setHostname(next.getHostname());
+    merged.setNodeStatus(next.getNodeStatus());
+    merged.setMounts(next.getMounts());
+    merged.setRecoveryTimestamp(next.getRecoveryTimestamp());
+
+    List<CommandReport> reports = new ArrayList<>(pending.getReports());
+    reports.addAll(next.getReports());
+    merged.setReports(reports);
+
+    Map<String, ComponentStatus> statuses = new LinkedHashMap<>();
+    for (ComponentStatus status : pending.getComponentStatus()) {
+      statuses.put(getComponentKey(status), status);
+    }
+    for (ComponentStatus status : next.getComponentStatus()) {
+      statuses.remove(getComponentKey(status));
+      statuses.put(getComponentKey(status), status);
+    }
+    merged.setComponentStatus(new ArrayList<>(statuses.values()));
+
+    if (pending.getAlerts() != null) {
+      List<Alert> alerts = new ArrayList<>(pending.getAlerts());
+      if (next.getAlerts() != null) {
+        alerts.addAll(next.getAlerts());
+      }
+      merged.setAlerts(alerts);
+    } else {
+      merged.setAlerts(next.getAlerts());
+    }
+
+    merged.setAgentEnv(next.getAgentEnv() != null ? next.getAgentEnv() : pending.getAgentEnv());
+    merged.setRecoveryReport(next.getRecoveryReport() != null ? next.getRecoveryReport()
+        : pending.getRecoveryReport());
+    return merged;
   }
 
-  private HeartBeat pollHeartbeat() {
-    return heartBeatsQueue.poll();
+  private static String getComponentKey(ComponentStatus status) {
+    return status.getClusterName() + "/" + status.getServiceName() + "/" + status.getComponentName();
   }
 
   /**
-   * Processing task to be scheduled for execution
+   * A partition of the heartbeat backlog processed in order by one worker.
+   * At most one heartbeat per host is queued; when the lane falls behind, a
+   * newer heartbeat of a host is coalesced into the queued one.
    */
-  private class HeartbeatProcessingTask implements Runnable {
+  private class HeartbeatLane implements Runnable {
+
+    private final int index;
+
+    /**
+     * Queued heartbeats in arrival order of their hosts.
+     */
+    private final LinkedHashMap<String, QueuedHeartbeat> queue = new LinkedHashMap<>();
+
+    private long processed = 0;
+    private long coalesced = 0;
+    private long lastLag = 0;
+    private long maxLag = 0;
+
+    private HeartbeatLane(int index) {
+      this.index = index;
+    }
+
+    private synchronized void add(HeartBeat heartbeat) {
+      String hostname = heartbeat.getHostname();
+      QueuedHeartbeat queued = queue.get(hostname);
+      if (queued != null) {
+        queued.heartbeat = coalesce(queued.heartbeat, heartbeat);
+        coalesced++;
+      } else {
+        queue.put(hostname, new QueuedHeartbeat(heartbeat));
+        notify();
+      }
+    }
+
+    private synchronized QueuedHeartbeat poll() throws InterruptedException {
+      if (queue.isEmpty()) {
+        wait(pollTimeout);
+      }
+      Iterator<QueuedHeartbeat> iterator = queue.values().iterator();
+      if (!iterator.hasNext()) {
+        return null;
+      }
+      QueuedHeartbeat queued = iterator.next();
+      iterator.remove();
+
+      lastLag = System.currentTimeMillis() - queued.queuedTime;
+      maxLag = Math.max(maxLag, lastLag);
+      return queued;
+    }
+
+    private synchronized void addStatistics(Map<String, Number> statistics, long now) {
+      String prefix = "lane." + index + ".";
+      Iterator<QueuedHeartbeat> iterator = queue.values().iterator();
+      statistics.put(prefix + "queued", queue.size());
+      statistics.put(prefix + "oldest.lag", iterator.hasNext() ? now - iterator.next().queuedTime : 0L);
+      statistics.put(prefix + "last.lag", lastLag);
+      statistics.put(prefix + "max.lag", maxLag);
+      statistics.put(prefix + "processed", processed);
+      statistics.put(prefix + "coalesced", coalesced);
+    }
+
+    private synchronized void processed() {
+      processed++;
+    }
 
     @Override
     public void run() {
       while (shouldRun) {
         try {
-          HeartBeat heartbeat = pollHeartbeat();
-          if (heartbeat == null) {
-            break;
+          QueuedHeartbeat queued = poll();
+          if (queued == null) {
+            continue;
           }
-          processHeartbeat(heartbeat);
+          processHeartbeat(queued.heartbeat);
+          processed();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
         } catch (Exception e) {
           LOG.error("Exception received while processing heartbeat", e);
         } catch (Throwable throwable) {
           //catch everything to prevent task suppression
           LOG.error("ERROR: ", throwable);
         }
+      }
+    }
+  }
 
+  /**
+   * A heartbeat waiting in a lane, with the time the host was first queued.
+   */
+  private static class QueuedHeartbeat {
+    private final long queuedTime = System.currentTimeMillis();
+    private HeartBeat heartbeat;
 
-      }
+    private QueuedHeartbeat(HeartBeat heartbeat) {
+      this.heartbeat = heartbeat;
     }
   }
 
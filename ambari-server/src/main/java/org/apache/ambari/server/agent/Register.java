@@ -18,6 +18,8 @@
 
 package org.apache.ambari.server.agent;
 
+import java.util.List;
+
 import org.codehaus.jackson.annotate.JsonProperty;
 
 /**
@@ -36,6 +38,18 @@ public class Register {
   private String agentVersion;
   private String prefix;
 
+  /**
+   * The payload encodings supported by the agent, or {@code null} if it only
+   * supports JSON.
+   */
+  private List<String> encodings;
+
+  /**
+   * Whether the agent can retrieve configuration snapshots by their hash and
+   * apply the configuration overrides of commands to them.
+   */
+  private boolean configurationSnapshots;
+
   @JsonProperty("responseId")
   public int getResponseId() {
     return responseId;
@@ -98,6 +112,22 @@ public class Register {
     this.agentVersion = agentVersion;
   }
 
+  public List<String> getEncodings() {
+    return encodings;
+  }
+
+  public void setEncodings(List<String> encodings) {
+    this.encodings = encodings;
+  }
+
+  public boolean isConfigurationSnapshots() {
+    return configurationSnapshots;
+  }
+
+  public void setConfigurationSnapshots(boolean configurationSnapshots) {
+    this.configurationSnapshots = configurationSnapshots;
+  }
+
   public int getCurrentPingPort() {
     return currentPingPort;
   }
@@ -112,7 +142,9 @@ public class Register {
              "timestamp=" + timestamp + "\n" +
              "hostname="  + hostname + "\n" +
              "currentPingPort=" + currentPingPort + "\n" +
-             "prefix=" + prefix + "\n";
+             "prefix=" + prefix + "\n" +
+             "encodings=" + encodings + "\n" +
+             "configurationSnapshots=" + configurationSnapshots + "\n";
 
     if (hardwareProfile != null)
       ret = ret + "hardwareprofile=" + this.hardwareProfile.toString();
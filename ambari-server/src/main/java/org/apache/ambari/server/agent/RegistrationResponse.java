@@ -68,6 +68,12 @@ public class RegistrationResponse {
   @JsonProperty("statusCommands")
   private List<StatusCommand> statusCommands = null;
 
+  /**
+   * The payload encoding that the agent should use for its heartbeats.
+   */
+  @JsonProperty("encoding")
+  private String encoding;
+
   public RegistrationStatus getResponseStatus() {
     return response;
   }
@@ -137,6 +143,14 @@ public class RegistrationResponse {
     this.agentConfig = agentConfig;
   }
 
+  public String getEncoding() {
+    return encoding;
+  }
+
+  public void setEncoding(String encoding) {
+    this.encoding = encoding;
+  }
+
   @Override
   public String toString() {
     StringBuilder buffer = new StringBuilder("RegistrationResponse{");
@@ -146,6 +160,7 @@ public class RegistrationResponse {
     buffer.append(", alertDefinitionCommands=").append(alertDefinitionCommands);
     buffer.append(", recoveryConfig=").append(recoveryConfig);
     buffer.append(", agentConfig=").append(agentConfig);
+    buffer.append(", encoding=").append(encoding);
     buffer.append('}');
     return buffer.toString();
   }
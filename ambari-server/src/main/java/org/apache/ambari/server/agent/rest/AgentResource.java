@@ -37,6 +37,7 @@ import org.apache.ambari.server.agent.HeartBeatResponse;
 import org.apache.ambari.server.agent.Register;
 import org.apache.ambari.server.agent.RegistrationResponse;
 import org.apache.ambari.server.agent.RegistrationStatus;
+import org.apache.ambari.server.state.ConfigurationSnapshot;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -107,6 +108,9 @@ public class AgentResource {
   /**
    * Update state of the node (Internal API to be used by Ambari agent).
    *
+   * Agents which were offered the {@link CompactAgentEncoding} during
+   * registration may send and accept it instead of JSON.
+   *
    * @response.representation.200.doc This API is invoked by Ambari agent running
    *  on a cluster to update the state of various services running on the node.
    * @response.representation.200.mediaType application/json
@@ -117,8 +121,8 @@ public class AgentResource {
    */
   @Path("heartbeat/{hostName}")
   @POST
-  @Consumes(MediaType.APPLICATION_JSON)
-  @Produces({MediaType.APPLICATION_JSON})
+  @Consumes({MediaType.APPLICATION_JSON, CompactAgentEncoding.MEDIA_TYPE})
+  @Produces({MediaType.APPLICATION_JSON, CompactAgentEncoding.MEDIA_TYPE})
   public HeartBeatResponse heartbeat(HeartBeat message)
       throws WebApplicationException {
     if (LOG.isDebugEnabled()) {
@@ -151,7 +155,7 @@ public class AgentResource {
    */
   @Path("components/{clusterName}")
   @GET
-  @Produces({MediaType.APPLICATION_JSON})
+  @Produces({MediaType.APPLICATION_JSON, CompactAgentEncoding.MEDIA_TYPE})
   public ComponentsResponse components(
       @PathParam("clusterName") String clusterName) {
     if (LOG.isDebugEnabled()) {
@@ -173,4 +177,32 @@ public class AgentResource {
 
     return componentsResponse;
   }
+
+  /**
+   * Retrieves a configuration snapshot referenced by the execution commands
+   * sent to the agent (Internal API to be used by Ambari agent).
+   *
+   * @response.representation.200.doc This API is invoked by Ambari agent running
+   *  on a cluster to retrieve the effective configurations which the overrides
+   *  of its execution commands apply to
+   * @response.representation.200.mediaType application/json
+   * @response.representation.404.doc The snapshot is no longer available
+   * @response.representation.408.doc Request Timed out
+   * @param hash of the configuration snapshot
+   */
+  @Path("configurations/{hash}")
+  @GET
+  @Produces({MediaType.APPLICATION_JSON, CompactAgentEncoding.MEDIA_TYPE})
+  public ConfigurationSnapshot configurations(@PathParam("hash") String hash) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Received configurations request for snapshot " + hash);
+    }
+
+    ConfigurationSnapshot snapshot = hh.handleConfigurationSnapshot(hash);
+    if (null == snapshot) {
+      throw new WebApplicationException(404);
+    }
+
+    return snapshot;
+  }
 }
@@ -0,0 +1,557 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.util.TokenBuffer;
+
+/**
+ * The {@link CompactAgentEncoding} is a binary alternative to the JSON payloads
+ * exchanged with the agents. It encodes the same document that the Jackson
+ * {@link ObjectMapper} of the JSON provider would produce, so the agent data
+ * model and its serialized names are unchanged.
+ * <p/>
+ * Every message is a single frame:
+ * <pre>
+ * 'A' 'C' | version (1 byte) | flags (1 byte) | payload length (4 bytes) | payload
+ * </pre>
+ * The payload is a stream of tagged values. Numbers are written as variable
+ * length integers and short strings, which includes all object keys, are
+ * written once and then referred to by their index. Payloads larger than
+ * {@link #COMPRESSION_THRESHOLD} are deflated.
+ * <p/>
+ * Frames are read from agents, so their size is bounded: frames larger than
+ * {@link #MAX_FRAME_LENGTH}, payloads which inflate to more than
+ * {@link #MAX_PAYLOAD_LENGTH}, strings longer than {@link #MAX_STRING_LENGTH}
+ * and values nested deeper than {@link #MAX_DEPTH} are rejected before they
+ * are allocated.
+ * <p/>
+ * Agents advertise support for this encoding when they register and only use
+ * it once the server has selected it in the registration response; all other
+ * agents continue to use JSON.
+ */
+public final class CompactAgentEncoding {
+
+  /**
+   * The media type of compact payloads.
+   */
+  public static final String MEDIA_TYPE = "application/vnd.ambari.agent.compact";
+
+  /**
+   * The name of the JSON encoding used by agents which do not support any
+   * other.
+   */
+  public static final String ENCODING_JSON = "json";
+
+  /**
+   * The name of this encoding as advertised during registration.
+   */
+  public static final String ENCODING_COMPACT = "compact";
+
+  /**
+   * Payloads larger than this are compressed.
+   */
+  static final int COMPRESSION_THRESHOLD = 1024;
+
+  /**
+   * The maximum length of the payload of a frame as it is sent.
+   */
+  static final int MAX_FRAME_LENGTH = 32 * 1024 * 1024;
+
+  /**
+   * The maximum length of the payload of a frame once it has been inflated.
+   */
+  static final int MAX_PAYLOAD_LENGTH = 32 * 1024 * 1024;
+
+  /**
+   * The maximum length of a single string, in UTF-8 bytes.
+   */
+  static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+  /**
+   * The maximum nesting of arrays and objects.
+   */
+  static final int MAX_DEPTH = 256;
+
+  /**
+   * Frame header values.
+   */
+  private static final int MAGIC_0 = 'A';
+  private static final int MAGIC_1 = 'C';
+  private static final int VERSION = 1;
+  private static final int FLAG_DEFLATE = 0x01;
+
+  /**
+   * Value tags.
+   */
+  private static final int TAG_NULL = 0;
+  private static final int TAG_TRUE = 1;
+  private static final int TAG_FALSE = 2;
+  private static final int TAG_LONG = 3;
+  private static final int TAG_DOUBLE = 4;
+  private static final int TAG_NUMBER = 5;
+  private static final int TAG_STRING = 6;
+  private static final int TAG_STRING_DEFINITION = 7;
+  private static final int TAG_STRING_REFERENCE = 8;
+  private static final int TAG_BEGIN_ARRAY = 9;
+  private static final int TAG_END_ARRAY = 10;
+  private static final int TAG_BEGIN_OBJECT = 11;
+  private static final int TAG_END_OBJECT = 12;
+
+  /**
+   * Strings up to this length are added to the string table so that repeated
+   * keys, host names and configuration values are only written once.
+   */
+  private static final int MAX_TABLE_STRING_LENGTH = 128;
+
+  /**
+   * The maximum number of strings in the string table of a single frame.
+   */
+  private static final int MAX_TABLE_SIZE = 1 << 16;
+
+  /**
+   * Constructor.
+   */
+  private CompactAgentEncoding() {
+  }
+
+  /**
+   * Writes the specified object as a single frame.
+   *
+   * @param mapper
+   *          the mapper which defines how the object is serialized.
+   * @param src
+   *          the object to write (may be {@code null}).
+   * @param out
+   *          the stream to write the frame to.
+   * @throws IOException
+   *           if the object cannot be serialized or the frame would be larger
+   *           than an agent accepts.
+   */
+  public static void write(ObjectMapper mapper, Object src, OutputStream out)
+      throws IOException {
+    TokenBuffer tokens = new TokenBuffer(mapper);
+    mapper.writeValue(tokens, src);
+
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(4096);
+    DataOutputStream payloadStream = new DataOutputStream(payload);
+    writeTokens(tokens.asParser(mapper), payloadStream);
+    payloadStream.flush();
+
+    if (payload.size() > MAX_PAYLOAD_LENGTH) {
+      throw new IOException("The compact agent payload of " + payload.size()
+          + " bytes exceeds the maximum of " + MAX_PAYLOAD_LENGTH);
+    }
+
+    int flags = 0;
+    if (payload.size() > COMPRESSION_THRESHOLD) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.size() / 4);
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        DeflaterOutputStream deflaterStream = new DeflaterOutputStream(compressed, deflater);
+        payload.writeTo(deflaterStream);
+        deflaterStream.finish();
+      } finally {
+        deflater.end();
+      }
+
+      if (compressed.size() < payload.size()) {
+        payload = compressed;
+        flags |= FLAG_DEFLATE;
+      }
+    }
+
+    if (payload.size() > MAX_FRAME_LENGTH) {
+      throw new IOException("The compact agent frame of " + payload.size()
+          + " bytes exceeds the maximum of " + MAX_FRAME_LENGTH);
+    }
+
+    DataOutputStream frame = new DataOutputStream(out);
+    frame.writeByte(MAGIC_0);
+    frame.writeByte(MAGIC_1);
+    frame.writeByte(VERSION);
+    frame.writeByte(flags);
+    frame.writeInt(payload.size());
+    payload.writeTo(frame);
+    frame.flush();
+  }
+
+  /**
+   * Reads a single frame and converts it to the specified type.
+   *
+   * @param mapper
+   *          the mapper which defines how the object is deserialized.
+   * @param type
+   *          the type to convert the decoded document to.
+   * @param in
+   *          the stream to read the frame from.
+   * @return the decoded object (may be {@code null}).
+   * @throws IOException
+   *           if the frame is malformed, exceeds one of the limits or cannot
+   *           be converted to the type.
+   */
+  public static Object read(ObjectMapper mapper, Type type, InputStream in) throws IOException {
+    DataInputStream frame = new DataInputStream(in);
+    if (frame.readUnsignedByte() != MAGIC_0 || frame.readUnsignedByte() != MAGIC_1) {
+      throw new IOException("The payload is not a compact agent frame");
+    }
+
+    int version = frame.readUnsignedByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported compact agent frame version " + version);
+    }
+
+    int flags = frame.readUnsignedByte();
+    int length = frame.readInt();
+    if (length < 0 || length > MAX_FRAME_LENGTH) {
+      throw new IOException("Invalid compact agent frame length " + length);
+    }
+
+    // the payload is decoded as it is read so that a frame which claims to be
+    // larger than it is does not cause the claimed length to be allocated
+    BoundedInputStream payload = new BoundedInputStream(in, length, false);
+    if ((flags & FLAG_DEFLATE) != 0) {
+      payload = new BoundedInputStream(new InflaterInputStream(payload), MAX_PAYLOAD_LENGTH,
+          true);
+    }
+
+    DataInputStream values = new DataInputStream(payload);
+    TokenBuffer tokens = new TokenBuffer(mapper);
+    readValue(values, payload, new ArrayList<String>(), values.readUnsignedByte(), tokens, 0);
+
+    if (payload.read() != -1) {
+      throw new IOException("Unexpected data after the value in compact agent frame");
+    }
+
+    return mapper.readValue(tokens.asParser(mapper), mapper.getTypeFactory().constructType(type));
+  }
+
+  /**
+   * Writes the values of the specified parser in the compact encoding.
+   */
+  private static void writeTokens(JsonParser parser, DataOutputStream out) throws IOException {
+    Map<String, Integer> strings = new HashMap<>();
+    for (JsonToken token = parser.nextToken(); null != token; token = parser.nextToken()) {
+      switch (token) {
+        case START_OBJECT:
+          out.writeByte(TAG_BEGIN_OBJECT);
+          break;
+        case END_OBJECT:
+          out.writeByte(TAG_END_OBJECT);
+          break;
+        case START_ARRAY:
+          out.writeByte(TAG_BEGIN_ARRAY);
+          break;
+        case END_ARRAY:
+          out.writeByte(TAG_END_ARRAY);
+          break;
+        case FIELD_NAME:
+          writeString(out, strings, parser.getCurrentName());
+          break;
+        case VALUE_STRING:
+          writeString(out, strings, parser.getText());
+          break;
+        case VALUE_NUMBER_INT:
+          if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+            out.writeByte(TAG_NUMBER);
+            writeUtf8(out, parser.getText());
+          } else {
+            long value = parser.getLongValue();
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, (value << 1) ^ (value >> 63));
+          }
+          break;
+        case VALUE_NUMBER_FLOAT:
+          if (parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+            out.writeByte(TAG_NUMBER);
+            writeUtf8(out, parser.getText());
+          } else {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(parser.getDoubleValue());
+          }
+          break;
+        case VALUE_TRUE:
+          out.writeByte(TAG_TRUE);
+          break;
+        case VALUE_FALSE:
+          out.writeByte(TAG_FALSE);
+          break;
+        case VALUE_NULL:
+          out.writeByte(TAG_NULL);
+          break;
+        default:
+          throw new IOException("Unable to write " + token + " in a compact agent frame");
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream out, Map<String, Integer> strings,
+      String value) throws IOException {
+    Integer index = strings.get(value);
+    if (null != index) {
+      out.writeByte(TAG_STRING_REFERENCE);
+      writeVarLong(out, index);
+    } else if (value.length() <= MAX_TABLE_STRING_LENGTH && strings.size() < MAX_TABLE_SIZE) {
+      out.writeByte(TAG_STRING_DEFINITION);
+      writeUtf8(out, value);
+      strings.put(value, strings.size());
+    } else {
+      out.writeByte(TAG_STRING);
+      writeUtf8(out, value);
+    }
+  }
+
+  /**
+   * Reads the value which starts with the specified tag into the generator.
+   */
+  private static void readValue(DataInputStream in, BoundedInputStream payload,
+      List<String> strings, int tag, JsonGenerator generator, int depth) throws IOException {
+    switch (tag) {
+      case TAG_NULL:
+        generator.writeNull();
+        break;
+      case TAG_TRUE:
+        generator.writeBoolean(true);
+        break;
+      case TAG_FALSE:
+        generator.writeBoolean(false);
+        break;
+      case TAG_LONG:
+        long zigzag = readVarLong(in);
+        long value = (zigzag >>> 1) ^ -(zigzag & 1);
+
+        // like the JSON parser, report the smallest type which holds the value
+        if (value == (int) value) {
+          generator.writeNumber((int) value);
+        } else {
+          generator.writeNumber(value);
+        }
+        break;
+      case TAG_DOUBLE:
+        generator.writeNumber(in.readDouble());
+        break;
+      case TAG_NUMBER:
+        String number = readUtf8(in, payload);
+        try {
+          if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            generator.writeNumber(new BigInteger(number));
+          } else {
+            generator.writeNumber(new BigDecimal(number));
+          }
+        } catch (NumberFormatException exception) {
+          throw new IOException("Invalid number " + number + " in compact agent frame");
+        }
+        break;
+      case TAG_STRING:
+      case TAG_STRING_DEFINITION:
+      case TAG_STRING_REFERENCE:
+        generator.writeString(readString(in, payload, strings, tag));
+        break;
+      case TAG_BEGIN_ARRAY:
+        checkDepth(depth);
+        generator.writeStartArray();
+        for (int next = in.readUnsignedByte(); next != TAG_END_ARRAY; next = in.readUnsignedByte()) {
+          readValue(in, payload, strings, next, generator, depth + 1);
+        }
+        generator.writeEndArray();
+        break;
+      case TAG_BEGIN_OBJECT:
+        checkDepth(depth);
+        generator.writeStartObject();
+        for (int next = in.readUnsignedByte(); next != TAG_END_OBJECT; next = in.readUnsignedByte()) {
+          generator.writeFieldName(readString(in, payload, strings, next));
+          readValue(in, payload, strings, in.readUnsignedByte(), generator, depth + 1);
+        }
+        generator.writeEndObject();
+        break;
+      default:
+        throw new IOException("Unexpected tag " + tag + " in compact agent frame");
+    }
+  }
+
+  private static void checkDepth(int depth) throws IOException {
+    if (depth >= MAX_DEPTH) {
+      throw new IOException("Values in compact agent frame are nested deeper than " + MAX_DEPTH);
+    }
+  }
+
+  /**
+   * Reads the string which starts with the specified tag.
+   */
+  private static String readString(DataInputStream in, BoundedInputStream payload,
+      List<String> strings, int tag) throws IOException {
+    switch (tag) {
+      case TAG_STRING:
+        return readUtf8(in, payload);
+      case TAG_STRING_DEFINITION:
+        String value = readUtf8(in, payload);
+        strings.add(value);
+        return value;
+      case TAG_STRING_REFERENCE:
+        long index = readVarLong(in);
+        if (index < 0 || index >= strings.size()) {
+          throw new IOException("Invalid string reference " + index + " in compact agent frame");
+        }
+        return strings.get((int) index);
+      default:
+        throw new IOException("Expected a string but found tag " + tag + " in compact agent frame");
+    }
+  }
+
+  private static String readUtf8(DataInputStream in, BoundedInputStream payload)
+      throws IOException {
+    long length = readVarLong(in);
+    if (length < 0 || length > MAX_STRING_LENGTH || length > payload.remaining()) {
+      throw new IOException("Invalid string length " + length + " in compact agent frame");
+    }
+
+    byte[] bytes = new byte[(int) length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new IOException("Malformed variable length integer in compact agent frame");
+  }
+
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+
+    out.writeByte((int) value);
+  }
+
+  private static void writeUtf8(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads at most a fixed number of bytes from the wrapped stream. Once they
+   * have been read, it either reports the end of the stream or, if the limit
+   * is strict, fails if the wrapped stream has more data.
+   */
+  private static final class BoundedInputStream extends FilterInputStream {
+    private final long m_limit;
+    private final boolean m_strict;
+    private long m_remaining;
+
+    private BoundedInputStream(InputStream in, long limit, boolean strict) {
+      super(in);
+      m_limit = limit;
+      m_strict = strict;
+      m_remaining = limit;
+    }
+
+    /**
+     * Gets the number of bytes which can still be read.
+     */
+    private long remaining() {
+      return m_remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (m_remaining == 0) {
+        return checkEnd();
+      }
+
+      int b = in.read();
+      if (b != -1) {
+        m_remaining--;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+
+      if (m_remaining == 0) {
+        return checkEnd();
+      }
+
+      int read = in.read(b, off, (int) Math.min(len, m_remaining));
+      if (read > 0) {
+        m_remaining -= read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(Math.min(n, m_remaining));
+      m_remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), m_remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private int checkEnd() throws IOException {
+      if (m_strict && in.read() != -1) {
+        throw new IOException("The compact agent payload exceeds the maximum of " + m_limit
+            + " bytes");
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * The {@link CompactAgentProvider} reads and writes agent payloads using the
+ * {@link CompactAgentEncoding}. It is used for requests and responses whose
+ * media type is {@link CompactAgentEncoding#MEDIA_TYPE}; the default JSON
+ * provider handles everything else.
+ */
+@Provider
+@Consumes(CompactAgentEncoding.MEDIA_TYPE)
+@Produces(CompactAgentEncoding.MEDIA_TYPE)
+public class CompactAgentProvider implements MessageBodyReader<Object>,
+    MessageBodyWriter<Object> {
+
+  /**
+   * Configured in the same way as the Jackson mapper of the JSON provider so
+   * that both read and produce the same documents.
+   */
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  @Override
+  public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType) {
+    return true;
+  }
+
+  @Override
+  public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
+      throws IOException, WebApplicationException {
+    return CompactAgentEncoding.read(mapper, genericType, entityStream);
+  }
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType) {
+    return true;
+  }
+
+  /**
+   * Not known
+   */
+  @Override
+  public long getSize(Object o, Class<?> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations,
+      MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+      throws IOException, WebApplicationException {
+    CompactAgentEncoding.write(mapper, o, entityStream);
+  }
+}
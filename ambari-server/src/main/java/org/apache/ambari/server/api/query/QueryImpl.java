@@ -987,6 +987,13 @@ public class QueryImpl implements Query, ResourceInstance {
     // Initiate this request's requestInfoProperties with the ones set from the original request
     Map<String, String> requestInfoProperties = new HashMap<>(this.requestInfoProperties);
 
+    // the provider may only page the resources itself if the predicate does
+    // not need to be applied to populated properties or sub-resources first
+    PageRequest providerPageRequest = pageRequest;
+    if (pageRequest != null && populateResourceRequired(getResourceDefinition().getType())) {
+      providerPageRequest = null;
+    }
+
     if (pageRequest != null) {
       requestInfoProperties.put(BaseRequest.PAGE_SIZE_PROPERTY_KEY,
           Integer.toString(pageRequest.getPageSize() + pageRequest.getOffset()));
@@ -999,7 +1006,7 @@ public class QueryImpl implements Query, ResourceInstance {
 
     if (allProperties) {
       return PropertyHelper.getReadRequest(Collections.<String> emptySet(),
-          requestInfoProperties, null, pageRequest, sortRequest);
+          requestInfoProperties, null, providerPageRequest, sortRequest);
     }
 
     Map<String, TemporalInfo> mapTemporalInfo    = new HashMap<>();
@@ -1017,7 +1024,7 @@ public class QueryImpl implements Query, ResourceInstance {
     }
 
     return PropertyHelper.getReadRequest(setProperties, requestInfoProperties,
-        mapTemporalInfo, pageRequest, sortRequest);
+        mapTemporalInfo, providerPageRequest, sortRequest);
   }
 
 
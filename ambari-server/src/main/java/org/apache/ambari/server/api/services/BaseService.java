@@ -18,6 +18,8 @@
 
 package org.apache.ambari.server.api.services;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -25,6 +27,7 @@ import java.util.Set;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.ambari.server.api.resources.ResourceInstance;
@@ -36,6 +39,7 @@ import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
 import org.apache.ambari.server.api.services.serializers.CsvSerializer;
 import org.apache.ambari.server.api.services.serializers.JsonSerializer;
 import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.api.services.serializers.StreamingResultSerializer;
 import org.apache.ambari.server.audit.request.RequestAuditLogger;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.utils.RetryHelper;
@@ -66,10 +70,24 @@ public abstract class BaseService {
 
   protected static RequestAuditLogger requestAuditLogger;
 
+  /**
+   * Whether results may be streamed to the client as they are serialized.
+   */
+  private static volatile boolean streamingSerializationEnabled = false;
+
   public static void init(RequestAuditLogger instance) {
     requestAuditLogger = instance;
   }
 
+  /**
+   * Enable or disable streaming of serialized results to the client.
+   *
+   * @param enabled  {@code true} to stream results
+   */
+  public static void setStreamingSerializationEnabled(boolean enabled) {
+    streamingSerializationEnabled = enabled;
+  }
+
   /**
    * Requests are funneled through this method so that common logic can be executed.
    * Creates a request instance and invokes it's process method.  Uses the default
@@ -144,7 +162,7 @@ public abstract class BaseService {
     ResultSerializer serializer = mediaType == null ? getResultSerializer() : getResultSerializer(mediaType);
 
     Response.ResponseBuilder builder = Response.status(result.getStatus().getStatusCode()).entity(
-        serializer.serialize(result));
+        serialize(serializer, mediaType, result));
 
     if (mediaType != null) {
       builder.type(mediaType);
@@ -154,6 +172,41 @@ public abstract class BaseService {
     return builder.build();
   }
 
+  /**
+   * Serialize the given result. Non-error results serialized by a
+   * {@link StreamingResultSerializer} with the default media type are
+   * returned as a {@link StreamingOutput} which writes directly to the
+   * response stream, all other results are serialized in memory.
+   *
+   * @param serializer  the result serializer
+   * @param mediaType   the requested media type; may be null
+   * @param result      the result to serialize
+   *
+   * @return the response entity
+   */
+  private Object serialize(final ResultSerializer serializer, MediaType mediaType, final Result result) {
+    if (mediaType == null && isStreamingSerializationSupported() &&
+        serializer instanceof StreamingResultSerializer && !result.getStatus().isErrorState()) {
+      return new StreamingOutput() {
+        @Override
+        public void write(OutputStream output) throws IOException {
+          ((StreamingResultSerializer) serializer).serialize(result, output);
+        }
+      };
+    }
+    return serializer.serialize(result);
+  }
+
+  /**
+   * Determine whether results of this service may be streamed to the client.
+   * Services which consume their own responses should return {@code false}.
+   *
+   * @return {@code true} if results may be streamed
+   */
+  protected boolean isStreamingSerializationSupported() {
+    return streamingSerializationEnabled;
+  }
+
   /**
    * Obtain the factory from which to create Request instances.
    *
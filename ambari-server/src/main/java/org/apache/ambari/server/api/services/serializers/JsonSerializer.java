@@ -20,6 +20,7 @@ package org.apache.ambari.server.api.services.serializers;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
@@ -35,13 +36,14 @@ import org.apache.ambari.server.controller.spi.Resource;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.util.DefaultPrettyPrinter;
 
 /**
  * JSON serializer.
  * Responsible for representing a result as JSON.
  */
-public class JsonSerializer implements ResultSerializer {
+public class JsonSerializer implements StreamingResultSerializer {
 
   /**
    * Factory used to create JSON generator.
@@ -55,20 +57,21 @@ public class JsonSerializer implements ResultSerializer {
    */
   JsonGenerator m_generator;
 
+  public JsonSerializer() {
+    // property values are written into one larger document, so the generator
+    // is only flushed once the whole result has been written
+    m_mapper.configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
+  }
 
   @Override
   public Object serialize(Result result) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-
       if (result.getStatus().isErrorState()) {
         return serializeError(result.getStatus());
       }
 
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
-      processResultMetadata(result.getResultMetadata());
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      serialize(result, bytesOut);
       return bytesOut.toString("UTF-8");
     } catch (IOException e) {
       //todo: exception handling.  Create ResultStatus 500 and call serializeError
@@ -76,6 +79,17 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
+  @Override
+  public void serialize(Result result, OutputStream out) throws IOException {
+    m_generator = createJsonGenerator(out);
+    m_generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    TreeNode<Resource> treeNode = result.getResultTree();
+    processNode(treeNode);
+    processResultMetadata(result.getResultMetadata());
+    m_generator.close();
+  }
+
   @Override
   public Object serializeError(ResultStatus error) {
     try {
@@ -245,8 +259,8 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(out,
         Charset.forName("UTF-8").newEncoder()));
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
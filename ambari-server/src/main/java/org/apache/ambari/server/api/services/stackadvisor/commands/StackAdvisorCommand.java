@@ -358,6 +358,15 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     }
   }
 
+  /**
+   * Host and service information is read from the response entity, so it
+   * must be serialized in memory.
+   */
+  @Override
+  protected boolean isStreamingSerializationSupported() {
+    return false;
+  }
+
   String getHostsInformation(StackAdvisorRequest request) throws StackAdvisorException {
     String hostsURI = String.format(GET_HOSTS_INFO_URI, request.getHostsCommaSeparated());
 
@@ -494,6 +494,14 @@ public class Configuration {
   public static final ConfigurationProperty<String> API_GZIP_MIN_COMPRESSION_SIZE = new ConfigurationProperty<>(
       "api.gzip.compression.min.size", "10240");
 
+  /**
+   * Determines whether REST API results are written directly to the response
+   * stream while they are serialized instead of being buffered in memory.
+   */
+  @Markdown(description = "Determines whether REST API responses are streamed to the client while they are serialized instead of first being built in memory. This lowers the memory used by large collection queries.")
+  public static final ConfigurationProperty<Boolean> API_STREAMING_SERIALIZATION_ENABLED = new ConfigurationProperty<>(
+      "api.streaming.serialization.enabled", Boolean.TRUE);
+
   /**
    * Determiens whether communication with the Ambari Agents should have the
    * JSON payloads compressed with GZIP.
@@ -502,6 +510,22 @@ public class Configuration {
   public static final ConfigurationProperty<String> AGENT_API_GZIP_COMPRESSION_ENABLED = new ConfigurationProperty<>(
       "agent.api.gzip.compression.enabled", "true");
 
+  /**
+   * Determines whether Ambari Agents which support it are offered the compact
+   * binary payload encoding during registration.
+   */
+  @Markdown(description = "Determines whether Ambari Agents which support it are offered a compact, compressed binary encoding for their heartbeat payloads during registration. Agents which do not support it continue to use JSON.")
+  public static final ConfigurationProperty<Boolean> AGENT_API_COMPACT_ENCODING_ENABLED = new ConfigurationProperty<>(
+      "agent.api.compact.encoding.enabled", Boolean.TRUE);
+
+  /**
+   * Determines whether Ambari Agents which support it receive the
+   * configurations of their commands as a snapshot hash and overrides.
+   */
+  @Markdown(description = "Determines whether Ambari Agents which support it receive the effective configurations of their commands as a hash of a configuration snapshot, which they retrieve once and cache, along with the overrides of each command instead of the full configurations.")
+  public static final ConfigurationProperty<Boolean> AGENT_CONFIGURATION_SNAPSHOTS_ENABLED = new ConfigurationProperty<>(
+      "agent.configuration.snapshots.enabled", Boolean.FALSE);
+
   /**
    * Determines whether SSL is used to communicate between Ambari Server and Ambari Agents.
    */
@@ -1187,6 +1211,22 @@ public class Configuration {
   @Markdown(description = "Enable the profiling of internal locks.")
   public static final ConfigurationProperty<Boolean> SERVER_LOCKS_PROFILING = new ConfigurationProperty<>("server.locks.profiling", Boolean.FALSE);
 
+  /**
+   * The interval, in seconds, at which the contention of profiled locks is
+   * logged.
+   */
+  @Markdown(description = "The interval, in seconds, at which the internal locks which threads spent the most time waiting for are logged when lock profiling is enabled. A value of `0` disables the report.")
+  public static final ConfigurationProperty<Integer> SERVER_LOCKS_PROFILING_REPORT_INTERVAL = new ConfigurationProperty<>(
+      "server.locks.profiling.report.interval", 300);
+
+  /**
+   * The number of threads used to deliver events to listeners which only
+   * require the events of each host or cluster to be ordered.
+   */
+  @Markdown(description = "The number of threads used to deliver Ambari events to listeners which only require the events of the same host or cluster to be delivered in order. Events of a host, and the other events of a cluster, are always delivered by the same thread. A value of `0` delivers all events on a single thread.")
+  public static final ConfigurationProperty<Integer> SERVER_EVENTS_PARTITIONS = new ConfigurationProperty<>(
+      "server.events.partitions", 4);
+
   /**
    * The size of the cache used to hold {@link HostRoleCommand} instances in-memory.
    */
@@ -1755,6 +1795,15 @@ public class Configuration {
   public static final ConfigurationProperty<Long> EXECUTION_SCHEDULER_WAIT = new ConfigurationProperty<>(
       "server.execution.scheduler.wait", 1L);
 
+  /**
+   * The number of {@link #EXECUTION_SCHEDULER_WAIT} cycles between full sweeps
+   * of the in progress stages by the action scheduler. Completed tasks, new
+   * requests and cancellations wake up the scheduler immediately.
+   */
+  @Markdown(description = "The number of `server.execution.scheduler.wait` cycles between periodic checks of all in progress stages for timed out tasks and lost agents. Completed tasks, new requests and cancellations are scheduled immediately.")
+  public static final ConfigurationProperty<Integer> EXECUTION_SCHEDULER_FULL_SWEEP_CYCLES = new ConfigurationProperty<>(
+      "server.execution.scheduler.full.sweep.cycles", 10);
+
   /**
    * The location on the Ambari Server where temporary artifacts can be created.
    */
@@ -2044,6 +2093,13 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> AGENT_THREADPOOL_SIZE = new ConfigurationProperty<>(
       "agent.threadpool.size.max", 25);
 
+  /**
+   * The number of lanes used to process agent heartbeats in parallel.
+   */
+  @Markdown(description = "The number of lanes used to process agent heartbeats in the background. Heartbeats are assigned to a lane by host name, and each lane processes the heartbeats of its hosts in order.")
+  public static final ConfigurationProperty<Integer> HEARTBEAT_PROCESSOR_LANES = new ConfigurationProperty<>(
+      "agent.heartbeat.processor.lanes", 4);
+
   /**
    * The maximum number of threads used to extract Ambari Views when Ambari
    * Server is starting up.
@@ -2335,6 +2391,26 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> ALERTS_CACHE_SIZE = new ConfigurationProperty<>(
       "alerts.cache.size", 50000);
 
+  /**
+   * The maximum time that alert updates may be held in memory before they are
+   * written to the database in a batch. Measured in {@link TimeUnit#MILLISECONDS}.
+   */
+  @Markdown(
+      relatedTo = "alerts.cache.enabled",
+      description = "The maximum time, in milliseconds, that current alert updates and new alert history entries are held in memory before they are written to the database in a single batch. A value of `0` writes them immediately. Only used when alert caching is enabled.")
+  public static final ConfigurationProperty<Long> ALERTS_CACHE_WRITE_BEHIND_MAX_STALENESS = new ConfigurationProperty<>(
+      "alerts.cache.write.behind.max.staleness", 0L);
+
+  /**
+   * The number of pending alert updates which forces an early write-behind
+   * flush.
+   */
+  @Markdown(
+      relatedTo = "alerts.cache.write.behind.max.staleness",
+      description = "The number of pending alert updates which causes them to be written to the database before the maximum staleness has elapsed.")
+  public static final ConfigurationProperty<Integer> ALERTS_CACHE_WRITE_BEHIND_BATCH_SIZE = new ConfigurationProperty<>(
+      "alerts.cache.write.behind.batch.size", 500);
+
   /**
    * When using SSL, this will be used to set the {@code Strict-Transport-Security} response header.
    */
@@ -2579,6 +2655,26 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> METRIC_RETRIEVAL_SERVICE_REQUEST_TTL = new ConfigurationProperty<>(
       "metrics.retrieval-service.request.ttl", 5);
 
+  /**
+   * Overrides of {@link #METRIC_RETRIEVAL_SERVICE_REQUEST_TTL} for the
+   * endpoints of specific components, such as {@code DATANODE:30}.
+   */
+  @Markdown(
+      relatedTo = "metrics.retrieval-service.request.ttl",
+      description = "A comma-separated list of component names and the number of seconds to wait between issuing JMX or REST metric requests to their endpoints, such as `DATANODE:30,NODEMANAGER:30`. "
+          + "Components which are not listed use the value of `metrics.retrieval-service.request.ttl`.")
+  public static final ConfigurationProperty<String> METRIC_RETRIEVAL_SERVICE_REQUEST_TTL_COMPONENTS = new ConfigurationProperty<>(
+      "metrics.retrieval-service.request.ttl.components", null);
+
+  /**
+   * The maximum number of requests that the {@link MetricsRetrievalService}
+   * makes to the same host and port at the same time.
+   */
+  @Markdown(description = "The maximum number of JMX or REST metric requests in flight to the same host and port. "
+      + "While an endpoint is at this limit, further requests to it are skipped and its cached metrics are used instead.")
+  public static final ConfigurationProperty<Integer> METRIC_RETRIEVAL_SERVICE_REQUEST_ENDPOINT_CONCURRENCY = new ConfigurationProperty<>(
+      "metrics.retrieval-service.request.endpoint.concurrency", 2);
+
   /**
    * The number of tasks that can be queried from the database at once In the
    * case of more tasks, multiple queries are issued
@@ -3843,6 +3939,17 @@ public class Configuration {
     return Boolean.parseBoolean(getProperty(API_GZIP_COMPRESSION_ENABLED));
   }
 
+  /**
+   * Check to see if the API responses should be streamed to the client while
+   * they are serialized.
+   *
+   * @return {@code true} if responses are streamed, {@code false} if they are
+   *         built in memory first.
+   */
+  public boolean isApiStreamingSerializationEnabled() {
+    return Boolean.parseBoolean(getProperty(API_STREAMING_SERIALIZATION_ENABLED));
+  }
+
   /**
    * Check to see if the agent API responses should be compressed via gzip or not
    * @return false if not, true if gzip compression needs to be used.
@@ -3851,6 +3958,23 @@ public class Configuration {
     return Boolean.parseBoolean(getProperty(AGENT_API_GZIP_COMPRESSION_ENABLED));
   }
 
+  /**
+   * Check to see if agents should be offered the compact payload encoding
+   * @return true if agents which support it may use the compact encoding.
+   */
+  public boolean isAgentApiCompactEncodingEnabled() {
+    return Boolean.parseBoolean(getProperty(AGENT_API_COMPACT_ENCODING_ENABLED));
+  }
+
+  /**
+   * Check to see if agents should receive configuration snapshot hashes
+   * @return true if agents which support it may receive the configurations of
+   *         their commands as a snapshot hash and overrides.
+   */
+  public boolean isAgentConfigurationSnapshotsEnabled() {
+    return Boolean.parseBoolean(getProperty(AGENT_CONFIGURATION_SNAPSHOTS_ENABLED));
+  }
+
   /**
    * Check to see if the API responses should be compressed via gzip or not
    * Content will only be compressed if content length is either unknown or
@@ -4572,6 +4696,14 @@ public class Configuration {
     return sleepTime*1000;
   }
 
+  /**
+   * @return the number of scheduler wait cycles between full sweeps of the in
+   *         progress stages, default 10
+   */
+  public int getExecutionSchedulerFullSweepCycles() {
+    return Integer.parseInt(getProperty(EXECUTION_SCHEDULER_FULL_SWEEP_CYCLES));
+  }
+
   public Integer getExternalScriptTimeout() {
     return Integer.parseInt(getProperty(EXTERNAL_SCRIPT_TIMEOUT));
   }
@@ -4681,6 +4813,20 @@ public class Configuration {
     return Integer.parseInt(getProperty(AGENT_THREADPOOL_SIZE));
   }
 
+  /**
+   * @return the number of lanes used to process agent heartbeats, default 4
+   */
+  public int getHeartbeatProcessorLanes() {
+    return Integer.parseInt(getProperty(HEARTBEAT_PROCESSOR_LANES));
+  }
+
+  /**
+   * @return the number of threads delivering partitioned Ambari events, default 4
+   */
+  public int getAmbariEventPublisherPartitions() {
+    return Integer.parseInt(getProperty(SERVER_EVENTS_PARTITIONS));
+  }
+
   /**
    * Get the view extraction thread pool max size.
    *
@@ -5299,6 +5445,29 @@ public class Configuration {
     return Integer.parseInt(getProperty(ALERTS_CACHE_SIZE));
   }
 
+  /**
+   * Gets the maximum time that alert updates are held in memory before being
+   * written to the database, if alert caching is enabled.
+   *
+   * @return the maximum staleness in milliseconds, or {@code 0} if updates are
+   *         written immediately.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
+  public long getAlertCacheWriteBehindMaxStaleness() {
+    return Long.parseLong(getProperty(ALERTS_CACHE_WRITE_BEHIND_MAX_STALENESS));
+  }
+
+  /**
+   * Gets the number of pending alert updates which forces an early
+   * write-behind flush.
+   *
+   * @return the write-behind batch size.
+   */
+  @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
+  public int getAlertCacheWriteBehindBatchSize() {
+    return Integer.parseInt(getProperty(ALERTS_CACHE_WRITE_BEHIND_BATCH_SIZE));
+  }
+
   /**
    * Get the ambari display URL
    * @return
@@ -5362,6 +5531,13 @@ public class Configuration {
     return Boolean.parseBoolean(getProperty(SERVER_LOCKS_PROFILING));
   }
 
+  /**
+   * @return the interval, in seconds, at which the lock contention report is logged when lock profiling is enabled, or 0 if it is disabled
+   */
+  public int getServerLocksProfilingReportInterval() {
+    return Integer.parseInt(getProperty(SERVER_LOCKS_PROFILING_REPORT_INTERVAL));
+  }
+
   /**
    * @return the capacity of async audit logger
    */
@@ -5479,6 +5655,44 @@ public class Configuration {
     return Integer.parseInt(getProperty(METRIC_RETRIEVAL_SERVICE_REQUEST_TTL));
   }
 
+  /**
+   * Gets the number of seconds that requests made to the same URL will be
+   * discarded for the endpoints of specific components, overriding
+   * {@link #getMetricsServiceRequestTTL()}.
+   *
+   * @return the number of seconds by component name (never {@code null}).
+   */
+  public Map<String, Integer> getMetricsServiceRequestTTLOverrides() {
+    Map<String, Integer> overrides = new HashMap<>();
+    String value = getProperty(METRIC_RETRIEVAL_SERVICE_REQUEST_TTL_COMPONENTS);
+    if (StringUtils.isBlank(value)) {
+      return overrides;
+    }
+
+    for (String override : value.split(",")) {
+      String[] parts = override.split(":");
+      if (parts.length != 2 || !NumberUtils.isDigits(parts[1].trim())) {
+        LOG.warn("Ignoring the invalid metric request TTL override {} in {}", override,
+            METRIC_RETRIEVAL_SERVICE_REQUEST_TTL_COMPONENTS.getKey());
+        continue;
+      }
+
+      overrides.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+    }
+
+    return overrides;
+  }
+
+  /**
+   * Gets the maximum number of requests that the metrics retrieval service
+   * makes to the same host and port at the same time.
+   *
+   * @return the maximum number of concurrent requests per endpoint.
+   */
+  public int getMetricsServiceRequestEndpointConcurrency() {
+    return Integer.parseInt(getProperty(METRIC_RETRIEVAL_SERVICE_REQUEST_ENDPOINT_CONCURRENCY));
+  }
+
   /**
    * Gets whether the TTL request cache in the {@link MetricsRetrievalService}
    * is enabled. This evicting cache is used to prevent requests to the same URL
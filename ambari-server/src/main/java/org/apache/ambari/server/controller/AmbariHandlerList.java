@@ -18,10 +18,11 @@
 package org.apache.ambari.server.controller;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -54,7 +55,9 @@ import org.springframework.web.filter.DelegatingFilterProxy;
 
 /**
  * An Ambari specific extension of the FailsafeHandlerList that allows for the addition
- * of view instances as handlers.
+ * of view instances as handlers.  The handler of a view instance is only added and
+ * started on the first request for the instance, so that view instances which are
+ * not used do not slow down the server start.
  */
 @Singleton
 public class AmbariHandlerList extends HandlerCollection implements ViewInstanceHandlerList {
@@ -104,7 +107,7 @@ public class AmbariHandlerList extends HandlerCollection implements ViewInstance
   /**
    * Mapping of view instance entities to handlers.
    */
-  private final Map<ViewInstanceEntity, Handler> viewHandlerMap = new HashMap<>();
+  private final Map<ViewInstanceEntity, Handler> viewHandlerMap = new ConcurrentHashMap<>();
 
   /**
    * The non-view handlers.
@@ -164,22 +167,13 @@ public class AmbariHandlerList extends HandlerCollection implements ViewInstance
 // ----- ViewInstanceHandler -----------------------------------------------
 
   @Override
-  public void addViewInstance(ViewInstanceEntity viewInstanceDefinition) throws SystemException {
-    Handler handler = getHandler(viewInstanceDefinition);
-    viewHandlerMap.put(viewInstanceDefinition, handler);
-    super.addHandler(handler);
-    // if this is running then start the handler being added...
-    if(!isStopped() && !isStopping()) {
-      try {
-        handler.start();
-      } catch (Exception e) {
-        throw new SystemException("Caught exception adding a view instance.", e);
-      }
-    }
+  public synchronized void addViewInstance(ViewInstanceEntity viewInstanceDefinition) throws SystemException {
+    // the handler is added and started on the first request for the view instance
+    viewHandlerMap.put(viewInstanceDefinition, getHandler(viewInstanceDefinition));
   }
 
   @Override
-  public void removeViewInstance(ViewInstanceEntity viewInstanceDefinition) {
+  public synchronized void removeViewInstance(ViewInstanceEntity viewInstanceDefinition) {
     Handler handler = viewHandlerMap.get(viewInstanceDefinition);
     if (handler != null) {
       viewHandlerMap.remove(viewInstanceDefinition);
@@ -198,12 +192,67 @@ public class AmbariHandlerList extends HandlerCollection implements ViewInstance
     final Handler[] handlers = getHandlers();
 
     if (handlers != null && isStarted()) {
-      if (!processHandlers(viewHandlerMap.values(), target, baseRequest, request, response)) {
+      if (!processViewHandlers(target, baseRequest, request, response)) {
         processHandlers(nonViewHandlers, target, baseRequest, request, response);
       }
     }
   }
 
+  // call the view instance handlers until the request is handled, starting the handler
+  // of the targeted view instance if needed; return true if the request is handled
+  private boolean processViewHandlers(String target, Request baseRequest,
+                                      HttpServletRequest request, HttpServletResponse response)
+      throws IOException, ServletException {
+
+    for (Map.Entry<ViewInstanceEntity, Handler> entry : viewHandlerMap.entrySet()) {
+      Handler handler = entry.getValue();
+
+      if (!handler.isStarted()) {
+        String contextPath = entry.getKey().getContextPath();
+        if (!target.equals(contextPath) && !target.startsWith(contextPath + "/")) {
+          continue;
+        }
+        if (!startViewHandler(entry.getKey(), handler)) {
+          continue;
+        }
+      }
+
+      handler.handle(target, baseRequest, request, response);
+      if (baseRequest.isHandled()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // add and start the handler of the given view instance; return false if the view instance was removed
+  private synchronized boolean startViewHandler(ViewInstanceEntity viewInstanceDefinition, Handler handler)
+      throws ServletException {
+
+    if (viewHandlerMap.get(viewInstanceDefinition) != handler) {
+      return false;
+    }
+    if (handler.isStarted()) {
+      return true;
+    }
+
+    long startTime = System.currentTimeMillis();
+    try {
+      Handler[] handlers = getHandlers();
+      if (handlers == null || !Arrays.asList(handlers).contains(handler)) {
+        super.addHandler(handler);
+      }
+      handler.start();
+    } catch (Exception e) {
+      throw new ServletException("Caught exception starting view instance " +
+          viewInstanceDefinition.getContextPath() + ".", e);
+    }
+
+    LOG.info("Started view instance " + viewInstanceDefinition.getContextPath() + " in " +
+        (System.currentTimeMillis() - startTime) + " ms.");
+    return true;
+  }
+
   // call the given handlers until the request is handled; return true if the request is handled
   private boolean processHandlers(Collection<Handler> handlers, String target, Request baseRequest,
                                HttpServletRequest request, HttpServletResponse response)
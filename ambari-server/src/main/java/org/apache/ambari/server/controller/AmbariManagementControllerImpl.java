@@ -1287,6 +1287,12 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
               }
             }
 
+            // the staleness is cached, so filter on it before building the response
+            if (filterBasedConfigStaleness
+                && configHelper.isStaleConfigs(sch, desiredConfigs) != staleConfig) {
+              continue;
+            }
+
             ServiceComponentHostResponse r = sch.convertToResponse(desiredConfigs);
             if (null == r || (filterBasedConfigStaleness && r.isStaleConfig() != staleConfig)) {
               continue;
@@ -1343,6 +1349,12 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
               }
             }
 
+            // the staleness is cached, so filter on it before building the response
+            if (filterBasedConfigStaleness
+                && configHelper.isStaleConfigs(sch, desiredConfigs) != staleConfig) {
+              continue;
+            }
+
             ServiceComponentHostResponse r = sch.convertToResponse(desiredConfigs);
             if (null == r || (filterBasedConfigStaleness && r.isStaleConfig() != staleConfig)) {
               continue;
@@ -934,6 +934,7 @@ public class AmbariServer {
     ThreadPoolEnabledPropertyProvider.init(injector.getInstance(Configuration.class));
 
     BaseService.init(injector.getInstance(RequestAuditLogger.class));
+    BaseService.setStreamingSerializationEnabled(configs.isApiStreamingSerializationEnabled());
 
     RetryHelper.init(injector.getInstance(Clusters.class), configs.getOperationsRetryAttempts());
   }
@@ -18,6 +18,8 @@
 
 package org.apache.ambari.server.controller.internal;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -188,21 +190,26 @@ public class ClusterControllerImpl implements ClusterController {
       boolean providerAlreadyPaged  = queryResponse.isPagedResponse();
       boolean providerAlreadySorted = queryResponse.isSortedResponse();
 
-      // conditionally create a comparator if there is a sort
-      Comparator<Resource> resourceComparator = comparator;
       if (null != sortRequest) {
         checkSortRequestProperties(sortRequest, type, provider);
-        resourceComparator = new ResourceComparator(sortRequest);
       }
 
       // if the provider did not already sort the set, then sort it based
       // on the comparator
       if (!providerAlreadySorted) {
-        TreeSet<Resource> sortedResources = new TreeSet<>(
-          resourceComparator);
+        SortKeyComparator sortKeyComparator = new SortKeyComparator(sortRequest);
+
+        // a page only needs the resources up to its end or from its start in
+        // order, so select those instead of sorting all of the resources
+        if (null != pageRequest && !providerAlreadyPaged) {
+          PageResponse pageResponse = getSelectedPage(pageRequest, providerResources,
+              predicate, provider, sortKeyComparator);
+          if (null != pageResponse) {
+            return pageResponse;
+          }
+        }
 
-        sortedResources.addAll(providerResources);
-        resources = sortedResources;
+        resources = getSortedResources(providerResources, sortKeyComparator);
       }
 
       // start out assuming that the results are not paged and that
@@ -211,19 +218,19 @@ public class ClusterControllerImpl implements ClusterController {
 
       // conditionally page the results
       if (null != pageRequest && !providerAlreadyPaged) {
+        ResourceIterable filteredResources = new ResourceIterable(resources, predicate, provider);
         switch (pageRequest.getStartingPoint()) {
           case Beginning:
-            return getPageFromOffset(pageRequest.getPageSize(), 0, resources,
-                predicate, provider);
+            return getPageFromOffset(pageRequest.getPageSize(), 0, filteredResources, -1);
           case End:
-            return getPageToOffset(pageRequest.getPageSize(), -1, resources,
-                predicate, provider);
+            return getPageToOffset(pageRequest.getPageSize(), -1, resources.size(),
+                filteredResources, -1);
           case OffsetStart:
             return getPageFromOffset(pageRequest.getPageSize(),
-                pageRequest.getOffset(), resources, predicate, provider);
+                pageRequest.getOffset(), filteredResources, -1);
           case OffsetEnd:
             return getPageToOffset(pageRequest.getPageSize(),
-                pageRequest.getOffset(), resources, predicate, provider);
+                pageRequest.getOffset(), resources.size(), filteredResources, -1);
           case PredicateStart:
           case PredicateEnd:
             // TODO : need to support the following cases for pagination
@@ -575,43 +582,139 @@ public class ClusterControllerImpl implements ClusterController {
   }
 
   /**
-   * Evaluate the predicate and create a list of filtered resources
+   * Sort the given resources.
    *
-   * @param resourceIterable @ResourceIterable
-   * @return @LinkedList of filtered resources
+   * @param resources   the resources
+   * @param comparator  the comparator to sort by
+   *
+   * @return the sorted resources, without resources which compare equal to a previous one
    */
-  private LinkedList<Resource> getEvaluatedResources(ResourceIterable
-                                              resourceIterable) {
-    LinkedList<Resource> resources = new LinkedList<>();
-    if (resourceIterable != null) {
-      for (Resource resource : resourceIterable) {
-        resources.add(resource);
+  private Set<Resource> getSortedResources(Set<Resource> resources,
+                                           SortKeyComparator comparator) {
+    List<SortKey> sortKeys = new ArrayList<>(resources.size());
+    for (Resource resource : resources) {
+      sortKeys.add(comparator.getSortKey(resource));
+    }
+    Collections.sort(sortKeys, comparator);
+
+    Set<Resource> sortedResources = new LinkedHashSet<>();
+    SortKey previous = null;
+    for (SortKey sortKey : sortKeys) {
+      if (previous == null || comparator.compare(previous, sortKey) != 0) {
+        sortedResources.add(sortKey.resource);
       }
+      previous = sortKey;
     }
-    return resources;
+    return sortedResources;
   }
 
   /**
-   * Get one page of resources from the given set of resources starting at the given offset.
+   * Get one page of resources from the given unsorted set of resources. Only
+   * the resources which the page and its previous and next resources may be
+   * taken from are kept in order while the resources are evaluated; all others
+   * are dropped.
    *
-   * @param pageSize   the page size
-   * @param offset     the offset
-   * @param resources  the set of resources
-   * @param predicate  the predicate
+   * @param pageRequest  the page request
+   * @param resources    the unsorted set of resources
+   * @param predicate    the predicate
+   * @param evaluator    the predicate evaluator
+   * @param comparator   the comparator to sort by
+   *
+   * @return a page response containing a page of resources, or null if the
+   *         starting point of the page request is not supported
+   */
+  private PageResponse getSelectedPage(PageRequest pageRequest, Set<Resource> resources,
+                                       Predicate predicate,
+                                       ResourcePredicateEvaluator evaluator,
+                                       SortKeyComparator comparator) {
+    int pageSize = pageRequest.getPageSize();
+    int offset;
+    boolean fromStart;
+
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+        offset = 0;
+        fromStart = true;
+        break;
+      case End:
+        offset = -1;
+        fromStart = false;
+        break;
+      case OffsetStart:
+        offset = pageRequest.getOffset();
+        fromStart = true;
+        break;
+      case OffsetEnd:
+        offset = pageRequest.getOffset();
+        fromStart = false;
+        break;
+      default:
+        return null;
+    }
+
+    long limit = fromStart ? getPageFromOffsetLimit(pageSize, offset)
+        : getPageToOffsetLimit(pageSize, offset, resources.size());
+
+    TreeSet<SortKey> selected = new TreeSet<>(comparator);
+    int totalCount = 0;
+    for (Resource resource : new ResourceIterable(resources, predicate, evaluator)) {
+      ++totalCount;
+      SortKey sortKey = comparator.getSortKey(resource);
+
+      if (selected.size() < limit) {
+        selected.add(sortKey);
+      } else if (fromStart) {
+        if (comparator.compare(sortKey, selected.last()) < 0 && selected.add(sortKey)) {
+          selected.pollLast();
+        }
+      } else if (comparator.compare(sortKey, selected.first()) > 0 && selected.add(sortKey)) {
+        selected.pollFirst();
+      }
+    }
+
+    List<Resource> selectedResources = new ArrayList<>(selected.size());
+    for (SortKey sortKey : selected) {
+      selectedResources.add(sortKey.resource);
+    }
+
+    return fromStart
+        ? getPageFromOffset(pageSize, offset, selectedResources, totalCount)
+        : getPageToOffset(pageSize, offset, resources.size(), selectedResources, totalCount);
+  }
+
+  /**
+   * Get the number of resources from the start which a page starting at the given offset needs.
+   */
+  private static long getPageFromOffsetLimit(int pageSize, int offset) {
+    return (long) Math.max(offset, 0) + pageSize + 1;
+  }
+
+  /**
+   * Get the number of resources from the end which a page ending at the given offset needs.
+   */
+  private static long getPageToOffsetLimit(int pageSize, int offset, int resourceCount) {
+    long skipped = offset == -1 ? 0 : Math.max(resourceCount - 1L - offset, 0);
+    return skipped + pageSize + 1;
+  }
+
+  /**
+   * Get one page of resources from the given filtered and sorted resources starting at the given offset.
+   *
+   * @param pageSize    the page size
+   * @param offset      the offset
+   * @param resources   the filtered and sorted resources, at least up to the next resource of the page
+   * @param totalCount  the number of filtered resources; -1 to count the given resources
    *
    * @return a page response containing a page of resources
    */
   private PageResponse getPageFromOffset(int pageSize, int offset,
-      Set<Resource> resources,
-                                         Predicate predicate,
-                                         ResourcePredicateEvaluator evaluator) {
+                                         Iterable<Resource> resources,
+                                         int totalCount) {
 
     int currentOffset = 0;
     Resource previous      = null;
     Set<Resource> pageResources = new LinkedHashSet<>();
-    LinkedList<Resource> filteredResources =
-      getEvaluatedResources(new ResourceIterable(resources, predicate, evaluator));
-    Iterator<Resource> iterator = filteredResources.iterator();
+    Iterator<Resource> iterator = resources.iterator();
 
     // skip till offset
     while (currentOffset < offset && iterator.hasNext()) {
@@ -624,35 +727,55 @@ public class ClusterControllerImpl implements ClusterController {
       pageResources.add(iterator.next());
     }
 
+    Resource next = iterator.hasNext() ? iterator.next() : null;
+
+    if (totalCount == -1) {
+      totalCount = currentOffset + pageResources.size() + (next == null ? 0 : 1);
+      while (iterator.hasNext()) {
+        iterator.next();
+        ++totalCount;
+      }
+    }
+
     return new PageResponseImpl(pageResources,
         currentOffset,
         previous,
-        iterator.hasNext() ? iterator.next() : null,
-        filteredResources.size()
+        next,
+        totalCount
       );
   }
 
   /**
-   * Get one page of resources from the given set of resources ending at the given offset.
+   * Get one page of resources from the given filtered and sorted resources ending at the given offset.
    *
-   * @param pageSize   the page size
-   * @param offset     the offset; -1 indicates the end of the resource set
-   * @param resources  the set of resources
-   * @param predicate  the predicate
+   * @param pageSize       the page size
+   * @param offset         the offset; -1 indicates the end of the resource set
+   * @param resourceCount  the number of resources before filtering
+   * @param resources      the filtered and sorted resources, at least from the previous resource of the page
+   * @param totalCount     the number of filtered resources; -1 to count the given resources
    *
    * @return a page response containing a page of resources
    */
-  private PageResponse getPageToOffset(int pageSize, int offset,
-      Set<Resource> resources,
-                                       Predicate predicate,
-                                       ResourcePredicateEvaluator evaluator) {
+  private PageResponse getPageToOffset(int pageSize, int offset, int resourceCount,
+                                       Iterable<Resource> resources,
+                                       int totalCount) {
+
+    // only keep the resources from the end which the page needs
+    long               limit         = getPageToOffsetLimit(pageSize, offset, resourceCount);
+    ArrayDeque<Resource> tail        = new ArrayDeque<>();
+    int                count         = 0;
+    for (Resource resource : resources) {
+      if (tail.size() >= limit) {
+        tail.pollFirst();
+      }
+      tail.addLast(resource);
+      ++count;
+    }
 
-    int                currentOffset = resources.size() - 1;
+    int                currentOffset = resourceCount - 1;
     Resource           next          = null;
     List<Resource>     pageResources = new LinkedList<>();
-    LinkedList<Resource> filteredResources =
-      getEvaluatedResources(new ResourceIterable(resources, predicate, evaluator));
-    Iterator<Resource> iterator = filteredResources.descendingIterator();
+    Iterator<Resource> iterator      = tail.descendingIterator();
 
     if (offset != -1) {
       // skip till offset
@@ -672,7 +795,7 @@ public class ClusterControllerImpl implements ClusterController {
         currentOffset + 1,
         iterator.hasNext() ? iterator.next() : null,
         next,
-        filteredResources.size()
+        totalCount == -1 ? count : totalCount
       );
   }
 
@@ -903,6 +1026,136 @@ public class ClusterControllerImpl implements ClusterController {
   }
 
 
+  // ----- SortKey inner class -----------------------------------------------
+
+  /**
+   * A resource along with the values which it is sorted by, so that they are
+   * only looked up once per resource instead of once per comparison.
+   */
+  private static class SortKey {
+
+    private final Resource resource;
+
+    /**
+     * The values of the sort request properties followed by the values of the
+     * key properties of the resource.
+     */
+    private final Object[] values;
+
+    /**
+     * The string of the resource, only created if needed to break a tie.
+     */
+    private String string;
+
+    private SortKey(Resource resource, Object[] values) {
+      this.resource = resource;
+      this.values = values;
+    }
+
+    private String getString() {
+      if (string == null) {
+        string = resource.toString();
+      }
+      return string;
+    }
+  }
+
+
+  // ----- SortKeyComparator inner class -------------------------------------
+
+  /**
+   * Orders sort keys the same way as the {@link ResourceComparator} orders
+   * their resources.
+   */
+  private class SortKeyComparator implements Comparator<SortKey> {
+
+    private final String[] sortPropertyIds;
+
+    private final SortRequest.Order[] sortOrders;
+
+    /**
+     * The key property ids by resource type.
+     */
+    private final Map<Type, List<String>> keyPropertyIds = new HashMap<>();
+
+    /**
+     * Sort by properties.
+     * @param sortRequest @SortRequest to sort by; may be null.
+     */
+    private SortKeyComparator(SortRequest sortRequest) {
+      List<SortRequestProperty> properties = sortRequest == null
+          ? Collections.<SortRequestProperty>emptyList() : sortRequest.getProperties();
+
+      sortPropertyIds = new String[properties.size()];
+      sortOrders = new SortRequest.Order[properties.size()];
+      for (int i = 0; i < sortPropertyIds.length; i++) {
+        sortPropertyIds[i] = properties.get(i).getPropertyId();
+        sortOrders[i] = properties.get(i).getOrder();
+      }
+    }
+
+    /**
+     * Get the sort key of a resource.
+     *
+     * @param resource the resource
+     *
+     * @return the sort key
+     */
+    private SortKey getSortKey(Resource resource) {
+      List<String> keyIds = getKeyPropertyIds(resource.getType());
+
+      Object[] values = new Object[sortPropertyIds.length + keyIds.size()];
+      for (int i = 0; i < sortPropertyIds.length; i++) {
+        values[i] = resource.getPropertyValue(sortPropertyIds[i]);
+      }
+      for (int i = 0; i < keyIds.size(); i++) {
+        values[sortPropertyIds.length + i] = resource.getPropertyValue(keyIds.get(i));
+      }
+      return new SortKey(resource, values);
+    }
+
+    @Override
+    public int compare(SortKey key1, SortKey key2) {
+      // compare based on resource type
+      int compVal = key1.resource.getType().compareTo(key2.resource.getType());
+      if (compVal != 0) {
+        return compVal;
+      }
+
+      // compare based on requested properties and then on resource key properties
+      for (int i = 0; i < key1.values.length; i++) {
+        compVal = comparator.compareValues(key1.values[i], key2.values[i]);
+        if (i < sortOrders.length && sortOrders[i] != SortRequest.Order.ASC) {
+          compVal = -1 * compVal;
+        }
+        if (compVal != 0) {
+          return compVal;
+        }
+      }
+
+      // compare based on the resource strings
+      return key1.getString().compareTo(key2.getString());
+    }
+
+    private List<String> getKeyPropertyIds(Type resourceType) {
+      List<String> keyIds = keyPropertyIds.get(resourceType);
+      if (keyIds == null) {
+        Schema schema = getSchema(resourceType);
+
+        keyIds = new ArrayList<>();
+        for (Type type : schema.getKeyTypes()) {
+          String keyPropertyId = schema.getKeyPropertyId(type);
+          if (keyPropertyId != null) {
+            keyIds.add(keyPropertyId);
+          }
+        }
+        keyPropertyIds.put(resourceType, keyIds);
+      }
+      return keyIds;
+    }
+  }
+
+
   // ----- inner class : ExtendedResourceProviderWrapper ---------------------
 
   /**
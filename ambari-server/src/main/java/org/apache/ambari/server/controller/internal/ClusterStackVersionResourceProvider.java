@@ -84,6 +84,7 @@ import org.apache.ambari.server.state.ServiceInfo;
 import org.apache.ambari.server.state.ServiceOsSpecific;
 import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.repository.VersionDefinitionXml;
+import org.apache.ambari.server.state.svccomphost.HostComponentStateStore;
 import org.apache.ambari.server.utils.StageUtils;
 import org.apache.ambari.server.utils.VersionUtils;
 import org.apache.commons.lang.StringUtils;
@@ -193,6 +194,9 @@ public class ClusterStackVersionResourceProvider extends AbstractControllerResou
   @Inject
   private static HostComponentStateDAO hostComponentStateDAO;
 
+  @Inject
+  private static HostComponentStateStore hostComponentStateStore;
+
   /**
    * We have to include such a hack here, because if we
    * make finalizeUpgradeAction field static and request injection
@@ -935,6 +939,7 @@ public class ClusterStackVersionResourceProvider extends AbstractControllerResou
       RepositoryVersionEntity target) {
 
     hostComponentStateDAO.updateVersions(target.getVersion());
+    hostComponentStateStore.updateVersions(target.getVersion());
     hostVersionDAO.updateVersions(target, current);
     clusterVersionDAO.updateVersions(clusterId, target, current);
   }
@@ -25,6 +25,8 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,9 +44,14 @@ import org.apache.ambari.server.controller.HostResponse;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.controller.RequestStatusResponse;
 import org.apache.ambari.server.controller.ServiceComponentHostRequest;
+import org.apache.ambari.server.controller.predicate.AndPredicate;
+import org.apache.ambari.server.controller.predicate.EqualsPredicate;
+import org.apache.ambari.server.controller.predicate.OrPredicate;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
@@ -83,7 +90,8 @@ import com.google.inject.persist.Transactional;
 /**
  * Resource provider for host resources.
  */
-public class HostResourceProvider extends AbstractControllerResourceProvider {
+public class HostResourceProvider extends AbstractControllerResourceProvider
+    implements ExtendedResourceProvider {
 
   // ----- Property ID constants ---------------------------------------------
 
@@ -158,6 +166,26 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
     new HashSet<>(Arrays.asList(new String[]{
       HOST_NAME_PROPERTY_ID}));
 
+  /**
+   * The properties which are read directly from the {@link Host} without
+   * building its complete {@link HostResponse}. Queries which only filter and
+   * sort by these are paged before the responses of the hosts are built.
+   */
+  private static final Set<String> SUMMARY_PROPERTY_IDS = new HashSet<>(Arrays.asList(
+      HOST_CLUSTER_NAME_PROPERTY_ID, HOST_NAME_PROPERTY_ID, HOST_PUBLIC_NAME_PROPERTY_ID,
+      HOST_IP_PROPERTY_ID, HOST_TOTAL_MEM_PROPERTY_ID, HOST_CPU_COUNT_PROPERTY_ID,
+      HOST_PHYSICAL_CPU_COUNT_PROPERTY_ID, HOST_OS_ARCH_PROPERTY_ID, HOST_OS_TYPE_PROPERTY_ID,
+      HOST_RACK_INFO_PROPERTY_ID, HOST_LAST_HEARTBEAT_TIME_PROPERTY_ID,
+      HOST_LAST_REGISTRATION_TIME_PROPERTY_ID, HOST_HOST_STATUS_PROPERTY_ID,
+      HOST_STATE_PROPERTY_ID, HOST_MAINTENANCE_STATE_PROPERTY_ID));
+
+  /**
+   * The key properties in the order in which the cluster controller sorts by
+   * them.
+   */
+  private static final List<String> SORT_KEY_PROPERTY_IDS = Arrays.asList(
+      HOST_CLUSTER_NAME_PROPERTY_ID, HOST_NAME_PROPERTY_ID);
+
   @Inject
   private MaintenanceStateHelper maintenanceStateHelper;
 
@@ -231,16 +259,18 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
       }
     }
 
+    Set<String>   requestedIds = getRequestPropertyIds(request, predicate);
+    Set<Resource> resources    = new HashSet<>();
+
+    final boolean summary = SUMMARY_PROPERTY_IDS.containsAll(requestedIds);
+
     Set<HostResponse> responses = getResources(new Command<Set<HostResponse>>() {
       @Override
       public Set<HostResponse> invoke() throws AmbariException {
-        return getHosts(requests);
+        return getHosts(requests, summary);
       }
     });
 
-    Set<String>   requestedIds = getRequestPropertyIds(request, predicate);
-    Set<Resource> resources    = new HashSet<>();
-
     for (HostResponse response : responses) {
       Resource resource = new ResourceImpl(Resource.Type.Host);
 
@@ -285,8 +315,10 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
           response.getLastRegistrationTime(), requestedIds);
       setResourceProperty(resource, HOST_HOST_STATUS_PROPERTY_ID,
           response.getStatus(),requestedIds);
-      setResourceProperty(resource, HOST_HOST_HEALTH_REPORT_PROPERTY_ID,
-          response.getHealthStatus().getHealthReport(), requestedIds);
+      if (null != response.getHealthStatus()) {
+        setResourceProperty(resource, HOST_HOST_HEALTH_REPORT_PROPERTY_ID,
+            response.getHealthStatus().getHealthReport(), requestedIds);
+      }
       setResourceProperty(resource, HOST_RECOVERY_REPORT_PROPERTY_ID,
           response.getRecoveryReport(), requestedIds);
       setResourceProperty(resource, HOST_RECOVERY_SUMMARY_PROPERTY_ID,
@@ -309,6 +341,66 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
     return resources;
   }
 
+  // ----- ExtendedResourceProvider ----------------------------------------
+
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    if (!ResourcePagingHelper.isPageable(request, predicate, SUMMARY_PROPERTY_IDS)) {
+      return new QueryResponseImpl(getResources(request, predicate));
+    }
+
+    // page the host summaries first so that only the responses of the hosts
+    // on the requested page have to be built
+    QueryResponse page = ResourcePagingHelper.getPage(
+        getResources(PropertyHelper.getReadRequest(SUMMARY_PROPERTY_IDS), predicate), request,
+        predicate, SORT_KEY_PROPERTY_IDS);
+
+    if (page.getResources().isEmpty()) {
+      return page;
+    }
+
+    Map<String, Resource> pageHosts = new LinkedHashMap<>();
+    List<Predicate> hostPredicates = new ArrayList<>();
+    for (Resource summary : page.getResources()) {
+      String hostName = (String) summary.getPropertyValue(HOST_NAME_PROPERTY_ID);
+      String clusterName = (String) summary.getPropertyValue(HOST_CLUSTER_NAME_PROPERTY_ID);
+
+      Predicate hostPredicate = new EqualsPredicate<>(HOST_NAME_PROPERTY_ID, hostName);
+      if (null != clusterName) {
+        hostPredicate = new AndPredicate(
+            new EqualsPredicate<>(HOST_CLUSTER_NAME_PROPERTY_ID, clusterName), hostPredicate);
+      }
+
+      pageHosts.put(hostName, null);
+      hostPredicates.add(hostPredicate);
+    }
+
+    Set<Resource> hosts;
+    try {
+      hosts = getResources(request,
+          new OrPredicate(hostPredicates.toArray(new Predicate[hostPredicates.size()])));
+    } catch (NoSuchResourceException e) {
+      // the only host of the page has been removed in the meantime
+      hosts = Collections.emptySet();
+    }
+
+    for (Resource resource : hosts) {
+      pageHosts.put((String) resource.getPropertyValue(HOST_NAME_PROPERTY_ID), resource);
+    }
+
+    // keep the order of the page, skipping any host removed in the meantime
+    Set<Resource> resources = new LinkedHashSet<>();
+    for (Resource resource : pageHosts.values()) {
+      if (null != resource) {
+        resources.add(resource);
+      }
+    }
+
+    return new QueryResponseImpl(resources, true, true, page.getTotalResourceCount());
+  }
+
   @Override
   protected RequestStatus updateResourcesAuthorized(final Request request, Predicate predicate)
       throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
@@ -597,13 +689,29 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
   }
 
   protected Set<HostResponse> getHosts(Set<HostRequest> requests) throws AmbariException {
+    return getHosts(requests, false);
+  }
+
+  /**
+   * Gets the hosts matching the given requests.
+   *
+   * @param requests  the host requests
+   * @param summary   {@code true} to only set the properties of the responses
+   *                  which are part of the host summary
+   *
+   * @return the host responses
+   *
+   * @throws AmbariException if a single requested host or its cluster does not exist
+   */
+  private Set<HostResponse> getHosts(Set<HostRequest> requests, boolean summary)
+      throws AmbariException {
     Set<HostResponse> response = new HashSet<>();
 
     AmbariManagementController controller = getManagementController();
 
     for (HostRequest request : requests) {
       try {
-        response.addAll(getHosts(controller, request));
+        response.addAll(getHosts(controller, request, summary));
       } catch (HostNotFoundException e) {
         if (requests.size() == 1) {
           // only throw exception if 1 request.
@@ -617,6 +725,11 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
 
   protected static Set<HostResponse> getHosts(AmbariManagementController controller, HostRequest request)
       throws AmbariException {
+    return getHosts(controller, request, false);
+  }
+
+  private static Set<HostResponse> getHosts(AmbariManagementController controller,
+      HostRequest request, boolean summary) throws AmbariException {
 
     //TODO/FIXME host can only belong to a single cluster so get host directly from Cluster
     //TODO/FIXME what is the requirement for filtering on host attributes?
@@ -653,17 +766,19 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
 
     // retrieve the cluster desired configs once instead of per host
     Map<String, DesiredConfig> desiredConfigs = null;
-    if (null != cluster) {
-      cluster.getDesiredConfigs();
+    if (null != cluster && !summary) {
+      desiredConfigs = cluster.getDesiredConfigs();
     }
 
     for (Host h : hosts) {
       if (clusterName != null) {
         if (clusters.getClustersForHost(h.getHostName()).contains(cluster)) {
-          HostResponse r = h.convertToResponse();
+          HostResponse r = summary ? convertToSummaryResponse(h) : h.convertToResponse();
 
           r.setClusterName(clusterName);
-          r.setDesiredHostConfigs(h.getDesiredHostConfigs(cluster, desiredConfigs));
+          if (!summary) {
+            r.setDesiredHostConfigs(h.getDesiredHostConfigs(cluster, desiredConfigs));
+          }
           r.setMaintenanceState(h.getMaintenanceState(cluster.getClusterId()));
 
           response.add(r);
@@ -671,14 +786,16 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
           throw new HostNotFoundException(clusterName, hostName);
         }
       } else {
-        HostResponse r = h.convertToResponse();
+        HostResponse r = summary ? convertToSummaryResponse(h) : h.convertToResponse();
 
         Set<Cluster> clustersForHost = clusters.getClustersForHost(h.getHostName());
         //todo: host can only belong to a single cluster
         if (clustersForHost != null && clustersForHost.size() != 0) {
           Cluster clusterForHost = clustersForHost.iterator().next();
           r.setClusterName(clusterForHost.getClusterName());
-          r.setDesiredHostConfigs(h.getDesiredHostConfigs(clusterForHost, desiredConfigs));
+          if (!summary) {
+            r.setDesiredHostConfigs(h.getDesiredHostConfigs(clusterForHost, desiredConfigs));
+          }
           r.setMaintenanceState(h.getMaintenanceState(clusterForHost.getClusterId()));
         }
 
@@ -688,6 +805,33 @@ public class HostResourceProvider extends AbstractControllerResourceProvider {
     return response;
   }
 
+  /**
+   * Creates a response with only the summary properties of the host, which
+   * unlike its disks, health, attributes and desired configs can be read
+   * without parsing or loading anything.
+   *
+   * @param host  the host
+   *
+   * @return the host response
+   */
+  private static HostResponse convertToSummaryResponse(Host host) {
+    HostResponse r = new HostResponse(host.getHostName());
+
+    r.setPublicHostName(host.getPublicHostName());
+    r.setIpv4(host.getIPv4());
+    r.setTotalMemBytes(host.getTotalMemBytes());
+    r.setCpuCount(host.getCpuCount());
+    r.setPhCpuCount(host.getPhCpuCount());
+    r.setOsArch(host.getOsArch());
+    r.setOsType(host.getOsType());
+    r.setRackInfo(host.getRackInfo());
+    r.setLastHeartbeatTime(host.getLastHeartbeatTime());
+    r.setLastRegistrationTime(host.getLastRegistrationTime());
+    r.setHostState(host.getState().toString());
+    r.setStatus(host.getStatus());
+    return r;
+  }
+
   protected synchronized void updateHosts(Set<HostRequest> requests) throws AmbariException, AuthorizationException {
 
     if (requests.isEmpty()) {
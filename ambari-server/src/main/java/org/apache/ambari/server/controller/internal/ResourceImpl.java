@@ -79,10 +79,12 @@ public class ResourceImpl implements Resource {
       Map<String, Object> propertyMap = categoryEntry.getValue();
       if (propertyMap != null) {
         for (Map.Entry<String, Object> propertyEntry : propertyMap.entrySet()) {
-          String propertyId = PropertyHelper.getPropertyId(category, propertyEntry.getKey());
-          if (propertyIds == null || propertyIds.isEmpty() || PropertyHelper.containsProperty(propertyIds, propertyId)) {
-            Object propertyValue = propertyEntry.getValue();
-            setProperty(propertyId, propertyValue);
+          // the category and name are already split, so only join them if
+          // the property id is needed to check it against the requested ones
+          if (propertyIds == null || propertyIds.isEmpty() || PropertyHelper.containsProperty(propertyIds,
+              PropertyHelper.getPropertyId(category, propertyEntry.getKey()))) {
+            getCategoryProperties(getCategoryKey(category)).put(propertyEntry.getKey(),
+                propertyEntry.getValue());
           }
         }
       }
@@ -106,12 +108,7 @@ public class ResourceImpl implements Resource {
   public void setProperty(String id, Object value) {
     String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
 
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
-    if (properties == null) {
-      properties = Collections.synchronizedMap(new TreeMap<String, Object>());
-      propertiesMap.put(categoryKey, properties);
-    }
-    properties.put(PropertyHelper.getPropertyName(id), value);
+    getCategoryProperties(categoryKey).put(PropertyHelper.getPropertyName(id), value);
   }
 
   @Override
@@ -168,4 +165,13 @@ public class ResourceImpl implements Resource {
   private String getCategoryKey(String category) {
     return category == null ? "" : category;
   }
+
+  private Map<String, Object> getCategoryProperties(String categoryKey) {
+    Map<String, Object> properties = propertiesMap.get(categoryKey);
+    if (properties == null) {
+      properties = Collections.synchronizedMap(new TreeMap<String, Object>());
+      propertiesMap.put(categoryKey, properties);
+    }
+    return properties;
+  }
 }
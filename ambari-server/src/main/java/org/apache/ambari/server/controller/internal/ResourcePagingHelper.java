@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
+import org.apache.ambari.server.controller.utilities.PredicateHelper;
+
+/**
+ * The {@link ResourcePagingHelper} lets a resource provider apply the
+ * predicate, sort and page request of a query itself to a set of resources
+ * which only carry the properties needed to do so. The provider then only has
+ * to build the complete resources of the requested page instead of all of
+ * them. The order and paging semantics are those of the
+ * {@link ClusterControllerImpl}.
+ */
+final class ResourcePagingHelper {
+
+  /**
+   * Constructor.
+   */
+  private ResourcePagingHelper() {
+  }
+
+  /**
+   * Gets whether the page of the request can be determined by
+   * {@link #getPage(Collection, Request, Predicate, List)} from resources
+   * with only the given properties.
+   *
+   * @param request
+   *          the request.
+   * @param predicate
+   *          the predicate, or {@code null}.
+   * @param propertyIds
+   *          the properties which the provider can supply for all resources.
+   * @return {@code true} if the request has a page request and its
+   *         predicate and sort request only refer to the given properties.
+   */
+  static boolean isPageable(Request request, Predicate predicate, Set<String> propertyIds) {
+    PageRequest pageRequest = request.getPageRequest();
+    if (null == pageRequest) {
+      return false;
+    }
+
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+      case End:
+      case OffsetStart:
+      case OffsetEnd:
+        break;
+      default:
+        return false;
+    }
+
+    if (null != predicate
+        && !propertyIds.containsAll(PredicateHelper.getPropertyIds(predicate))) {
+      return false;
+    }
+
+    SortRequest sortRequest = request.getSortRequest();
+    return null == sortRequest || propertyIds.containsAll(sortRequest.getPropertyIds());
+  }
+
+  /**
+   * Filters, sorts and pages the given resources according to the request.
+   *
+   * @param resources
+   *          the resources to page.
+   * @param request
+   *          a request for which {@link #isPageable(Request, Predicate, Set)}
+   *          is {@code true}.
+   * @param predicate
+   *          the predicate, or {@code null}.
+   * @param keyPropertyIds
+   *          the key properties of the resources, in the order in which they
+   *          break ties of the sort request.
+   * @return the sorted page of resources along with the number of resources
+   *         which match the predicate.
+   */
+  static QueryResponse getPage(Collection<Resource> resources, Request request,
+      Predicate predicate, List<String> keyPropertyIds) {
+    List<Resource> matching = new ArrayList<>(resources.size());
+    for (Resource resource : resources) {
+      if (null == predicate || predicate.evaluate(resource)) {
+        matching.add(resource);
+      }
+    }
+
+    Collections.sort(matching, new PropertyComparator(request.getSortRequest(), keyPropertyIds));
+
+    PageRequest pageRequest = request.getPageRequest();
+    int size = matching.size();
+    int pageSize = pageRequest.getPageSize();
+    int from;
+    int to;
+
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+        from = 0;
+        to = pageSize;
+        break;
+      case OffsetStart:
+        from = pageRequest.getOffset();
+        to = from + pageSize;
+        break;
+      case End:
+        to = size;
+        from = to - pageSize;
+        break;
+      default:
+        // the page ends at the offset inclusively
+        to = pageRequest.getOffset() + 1;
+        from = to - pageSize;
+        break;
+    }
+
+    from = Math.min(Math.max(from, 0), size);
+    to = Math.min(Math.max(to, from), size);
+
+    return new QueryResponseImpl(new LinkedHashSet<>(matching.subList(from, to)), true, true,
+        size);
+  }
+
+
+  // ----- PropertyComparator ------------------------------------------------
+
+  /**
+   * Orders resources by the properties of a sort request and then by their
+   * keys, like the resource comparator of the {@link ClusterControllerImpl}.
+   */
+  private static class PropertyComparator implements Comparator<Resource> {
+
+    private final SortRequest sortRequest;
+
+    private final List<String> keyPropertyIds;
+
+    private PropertyComparator(SortRequest sortRequest, List<String> keyPropertyIds) {
+      this.sortRequest = sortRequest;
+      this.keyPropertyIds = keyPropertyIds;
+    }
+
+    @Override
+    public int compare(Resource resource1, Resource resource2) {
+      if (null != sortRequest) {
+        for (SortRequestProperty property : sortRequest.getProperties()) {
+          int compVal = compareValues(resource1.getPropertyValue(property.getPropertyId()),
+              resource2.getPropertyValue(property.getPropertyId()));
+
+          if (compVal != 0) {
+            return property.getOrder() == SortRequest.Order.ASC ? compVal : -compVal;
+          }
+        }
+      }
+
+      for (String keyPropertyId : keyPropertyIds) {
+        int compVal = compareValues(resource1.getPropertyValue(keyPropertyId),
+            resource2.getPropertyValue(keyPropertyId));
+
+        if (compVal != 0) {
+          return compVal;
+        }
+      }
+
+      return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compareValues(Object val1, Object val2) {
+      if (val1 == null || val2 == null) {
+        return val1 == null && val2 == null ? 0 : val1 == null ? -1 : 1;
+      }
+
+      if (val1 instanceof Comparable) {
+        try {
+          return ((Comparable) val1).compareTo(val2);
+        } catch (ClassCastException e) {
+          return 0;
+        }
+      }
+      return 0;
+    }
+  }
+}
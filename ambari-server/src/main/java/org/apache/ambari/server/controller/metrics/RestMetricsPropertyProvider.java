@@ -244,7 +244,8 @@ public class RestMetricsPropertyProvider extends ThreadPoolEnabledPropertyProvid
       String spec = getSpec(protocol, hostname, port, url);
 
       // always submit a request to cache the latest data
-      metricsRetrievalService.submitRequest(MetricSourceType.REST, streamProvider, spec);
+      metricsRetrievalService.submitRequest(MetricSourceType.REST, streamProvider, spec,
+          resourceComponentName);
 
       // check to see if there is a cached value and use it if there is
       Map<String, String> jsonMap = metricsRetrievalService.getCachedRESTMetric(spec);
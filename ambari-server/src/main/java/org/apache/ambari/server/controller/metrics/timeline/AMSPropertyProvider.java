@@ -76,6 +76,12 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
   private static AtomicInteger printSkipPopulateMsgHostCompCounter = new AtomicInteger(0);
   private static final Map<String, String> timelineAppIdCache = new ConcurrentHashMap<>(10);
 
+  /**
+   * Shared by all providers so that concurrent refreshes of host and point in
+   * time metrics, which are not cached, result in a single collector query.
+   */
+  private static final MetricsRequestCoalescer requestCoalescer = new MetricsRequestCoalescer();
+
   private static final Map<String, String> JVM_PROCESS_NAMES = new HashMap<>(2);
 
   private AmbariEventPublisher ambariEventPublisher;
@@ -197,7 +203,7 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
       Long startTime = (metricCacheKey.getTemporalInfo() != null) ? metricCacheKey.getTemporalInfo().getStartTimeMillis():null;
       Long endTime = (metricCacheKey.getTemporalInfo() != null) ? metricCacheKey.getTemporalInfo().getEndTimeMillis():null;
 
-      return requestHelper.fetchTimelineMetrics(uriBuilder, startTime, endTime);
+      return requestCoalescer.fetchTimelineMetrics(requestHelper, uriBuilder, startTime, endTime);
     }
 
 
@@ -0,0 +1,401 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics.timeline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.controller.metrics.timeline.cache.TimelineMetricCache;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URIBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Coalesces concurrent requests to the Metrics Collector. A request for the
+ * same collector, application and time window as a request which is still in
+ * flight, and whose metric names and hosts are all part of that request, waits
+ * for its response instead of sending an identical query.
+ * <p/>
+ * Other requests for the same collector, application and time window which
+ * arrive while a request is in flight are merged into one pending request for
+ * the union of their metric names and hosts. It is sent once the request in
+ * flight completes and its response is handed to all of them, so a burst of
+ * different queries costs two collector calls instead of one each. Requests
+ * for all metrics or all hosts are only merged with other such requests, and a
+ * merged request is limited to {@link #MAX_MERGED_METRIC_NAMES} metrics and
+ * {@link #MAX_MERGED_HOST_NAMES} hosts; requests beyond that are sent right
+ * away. Callers must therefore accept responses with more metrics and hosts
+ * than they asked for.
+ * <p/>
+ * This is meant for the queries which are not served by the
+ * {@link TimelineMetricCache}, such as host and point in time metrics, which
+ * many dashboards refreshing at the same time would otherwise send over and
+ * over.
+ */
+public class MetricsRequestCoalescer {
+  private final static Logger LOG = LoggerFactory.getLogger(MetricsRequestCoalescer.class);
+
+  private static final String METRIC_NAMES_PARAM = "metricNames";
+  private static final String HOSTNAME_PARAM = "hostname";
+
+  /**
+   * The most metric names of a merged request.
+   */
+  static final int MAX_MERGED_METRIC_NAMES = 50;
+
+  /**
+   * The most hosts of a merged request, the size of the host batches of
+   * {@link AMSPropertyProvider}.
+   */
+  static final int MAX_MERGED_HOST_NAMES = 100;
+
+  /**
+   * The requests in flight or pending by their collector, application and
+   * time window.
+   */
+  private final Map<String, List<InFlightRequest>> inFlightRequests = new HashMap<>();
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong mergedCount = new AtomicLong();
+  private final AtomicInteger printStatsCounter = new AtomicInteger(0);
+
+  /**
+   * Fetches the metrics of the query of the given builder, or waits for a
+   * request in flight which covers it or a pending request it is merged into.
+   *
+   * @param requestHelper the helper to send the request with if it is not coalesced
+   * @param uriBuilder    the query; it is not modified
+   * @param startTime     the start of the time window, or {@code null}
+   * @param endTime       the end of the time window, or {@code null}
+   * @return the metrics, or {@code null} if the collector could not provide them
+   * @throws IOException if the collector can't be reached
+   */
+  public TimelineMetrics fetchTimelineMetrics(MetricsRequestHelper requestHelper,
+      URIBuilder uriBuilder, Long startTime, Long endTime) throws IOException {
+    requestCount.incrementAndGet();
+
+    InFlightRequest request = new InFlightRequest(uriBuilder);
+    InFlightRequest coveringRequest = null;
+    boolean merged = false;
+
+    synchronized (inFlightRequests) {
+      List<InFlightRequest> sameWindowRequests = inFlightRequests.get(request.key);
+      if (sameWindowRequests == null) {
+        sameWindowRequests = new ArrayList<>();
+        inFlightRequests.put(request.key, sameWindowRequests);
+      }
+
+      for (InFlightRequest inFlightRequest : sameWindowRequests) {
+        if (inFlightRequest.covers(request)) {
+          coveringRequest = inFlightRequest;
+          break;
+        }
+      }
+
+      if (coveringRequest == null) {
+        InFlightRequest sentRequest = null;
+        InFlightRequest pendingRequest = null;
+        for (InFlightRequest inFlightRequest : sameWindowRequests) {
+          if (inFlightRequest.sent) {
+            sentRequest = inFlightRequest;
+          } else {
+            pendingRequest = inFlightRequest;
+          }
+        }
+
+        if (pendingRequest != null && pendingRequest.merge(request)) {
+          coveringRequest = pendingRequest;
+          merged = true;
+        } else {
+          // only one request waits for the requests in flight
+          if (sentRequest != null && pendingRequest == null) {
+            request.previous = sentRequest;
+          } else {
+            request.sent = true;
+          }
+          sameWindowRequests.add(request);
+        }
+      }
+    }
+
+    if (coveringRequest != null) {
+      if (merged) {
+        mergedCount.incrementAndGet();
+      } else {
+        coalescedCount.incrementAndGet();
+      }
+      logStatistics();
+      return coveringRequest.getResponse();
+    }
+
+    try {
+      if (request.previous != null) {
+        awaitPrevious(request);
+      }
+
+      // the helper changes the precision of the builder on retries
+      TimelineMetrics timelineMetrics = requestHelper.fetchTimelineMetrics(
+        request.createUriBuilder(), startTime, endTime);
+      request.response.set(timelineMetrics);
+      return timelineMetrics;
+    } catch (URISyntaxException e) {
+      request.response.set(null);
+      LOG.error("Error getting timeline metrics : " + e.getMessage());
+      return null;
+    } catch (IOException | RuntimeException e) {
+      request.response.setException(e);
+      throw e;
+    } finally {
+      synchronized (inFlightRequests) {
+        List<InFlightRequest> sameWindowRequests = inFlightRequests.get(request.key);
+        sameWindowRequests.remove(request);
+        if (sameWindowRequests.isEmpty()) {
+          inFlightRequests.remove(request.key);
+        }
+      }
+      logStatistics();
+    }
+  }
+
+  /**
+   * Waits for the request in flight before the pending request and closes
+   * the pending request for merging.
+   *
+   * @throws IOException if the collector is down or the thread is interrupted
+   */
+  private void awaitPrevious(InFlightRequest request) throws IOException {
+    try {
+      request.previous.getResponse();
+    } catch (InterruptedIOException | ConnectException e) {
+      // the collector is down, there is no point in asking it again
+      throw e;
+    } catch (IOException e) {
+      LOG.debug("Previous metrics request failed, sending the pending request", e);
+    }
+
+    synchronized (inFlightRequests) {
+      request.sent = true;
+      request.previous = null;
+    }
+  }
+
+  /**
+   * @return the number of requests made through this coalescer
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return the number of requests which were answered by another request in
+   *         flight
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * @return the number of requests which were merged into another pending
+   *         request
+   */
+  public long getMergedCount() {
+    return mergedCount.get();
+  }
+
+  /**
+   * @return the ratio of coalesced and merged requests to all requests
+   */
+  public double getCoalescedRatio() {
+    long requests = requestCount.get();
+    return requests == 0 ? 0 : (double) (coalescedCount.get() + mergedCount.get()) / requests;
+  }
+
+  private void logStatistics() {
+    if (LOG.isDebugEnabled()) {
+      // Print stats every 100 calls
+      if (printStatsCounter.getAndIncrement() == 0) {
+        LOG.debug("Metrics request coalescing stats => Requests = " + getRequestCount() +
+          ", Coalesced = " + getCoalescedCount() +
+          ", Merged = " + getMergedCount() +
+          ", Coalesced ratio = " + getCoalescedRatio());
+      } else {
+        printStatsCounter.compareAndSet(100, 0);
+      }
+    }
+  }
+
+  /**
+   * A request to the collector along with the future of its response. The
+   * metric names and hosts of a pending request grow as other requests are
+   * merged into it; they are only accessed while holding the lock of the
+   * requests in flight until the request is sent.
+   */
+  private static class InFlightRequest {
+    private final String spec;
+
+    /**
+     * The collector, path and all query parameters but the metric names and
+     * hosts, which have to be equal for one request to cover another.
+     */
+    private final String key;
+
+    private final Set<String> metricNames = new LinkedHashSet<>();
+    private final Set<String> hostNames = new LinkedHashSet<>();
+    private final SettableFuture<TimelineMetrics> response = SettableFuture.create();
+
+    /**
+     * Whether the request is sent, or is still pending and open for merging.
+     */
+    private boolean sent;
+
+    /**
+     * The request in flight which a pending request waits for.
+     */
+    private InFlightRequest previous;
+
+    /**
+     * Whether other requests were merged into this one.
+     */
+    private boolean merged;
+
+    private InFlightRequest(URIBuilder uriBuilder) {
+      spec = uriBuilder.toString();
+
+      Map<String, String> otherParams = new TreeMap<>();
+      for (NameValuePair param : uriBuilder.getQueryParams()) {
+        if (METRIC_NAMES_PARAM.equals(param.getName())) {
+          metricNames.addAll(split(param.getValue()));
+        } else if (HOSTNAME_PARAM.equals(param.getName())) {
+          hostNames.addAll(split(param.getValue()));
+        } else {
+          otherParams.put(param.getName(), param.getValue());
+        }
+      }
+
+      key = uriBuilder.getScheme() + "://" + uriBuilder.getHost() + ":" + uriBuilder.getPort() +
+        uriBuilder.getPath() + "?" + otherParams;
+    }
+
+    /**
+     * A query without metric names or hosts asks for all of them, so it is
+     * only covered by another such query.
+     */
+    private boolean covers(InFlightRequest request) {
+      return key.equals(request.key)
+        && metricNames.isEmpty() == request.metricNames.isEmpty()
+        && hostNames.isEmpty() == request.hostNames.isEmpty()
+        && metricNames.containsAll(request.metricNames)
+        && hostNames.containsAll(request.hostNames);
+    }
+
+    /**
+     * Adds the metric names and hosts of a request to this pending request,
+     * unless that makes it too large. A query without metric names or hosts
+     * asks for all of them, so it is only merged with another such query.
+     *
+     * @return whether the request was merged
+     */
+    private boolean merge(InFlightRequest request) {
+      if (sent
+          || !key.equals(request.key)
+          || metricNames.isEmpty() != request.metricNames.isEmpty()
+          || hostNames.isEmpty() != request.hostNames.isEmpty()
+          || unionSize(metricNames, request.metricNames) > MAX_MERGED_METRIC_NAMES
+          || unionSize(hostNames, request.hostNames) > MAX_MERGED_HOST_NAMES) {
+        return false;
+      }
+      metricNames.addAll(request.metricNames);
+      hostNames.addAll(request.hostNames);
+      merged = true;
+      return true;
+    }
+
+    /**
+     * @return a builder for the query, with the merged metric names and hosts
+     */
+    private URIBuilder createUriBuilder() throws URISyntaxException {
+      URIBuilder uriBuilder = new URIBuilder(spec);
+      if (merged) {
+        if (!metricNames.isEmpty()) {
+          uriBuilder.setParameter(METRIC_NAMES_PARAM, StringUtils.join(metricNames, ','));
+        }
+        if (!hostNames.isEmpty()) {
+          uriBuilder.setParameter(HOSTNAME_PARAM, StringUtils.join(hostNames, ','));
+        }
+      }
+      return uriBuilder;
+    }
+
+    private TimelineMetrics getResponse() throws IOException {
+      try {
+        return response.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for metrics request " + spec);
+      } catch (ExecutionException e) {
+        // the exception types tell the caller whether the collector is down
+        Throwable cause = e.getCause();
+        if (cause instanceof SocketTimeoutException) {
+          throw new SocketTimeoutException(cause.getMessage());
+        }
+        if (cause instanceof ConnectException) {
+          throw new ConnectException(cause.getMessage());
+        }
+        throw new IOException(cause.getMessage(), cause);
+      }
+    }
+
+    private static int unionSize(Set<String> names, Set<String> otherNames) {
+      int size = names.size();
+      for (String name : otherNames) {
+        if (!names.contains(name)) {
+          size++;
+        }
+      }
+      return size;
+    }
+
+    private static List<String> split(String value) {
+      if (value == null || value.isEmpty()) {
+        return Collections.emptyList();
+      }
+      return Arrays.asList(value.split(","));
+    }
+  }
+}
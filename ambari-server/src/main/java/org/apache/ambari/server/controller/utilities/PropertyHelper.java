@@ -25,6 +25,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,6 +62,17 @@ public class PropertyHelper {
   private static final List<Resource.InternalType> REPORT_METRIC_RESOURCES =
     Arrays.asList(Resource.InternalType.Cluster, Resource.InternalType.Host);
 
+  /**
+   * The category and name of each property id, interned, so that property ids
+   * are only split once instead of on every access to a resource property.
+   * Most property ids come from the resource schemas, but requests may refer
+   * to arbitrary ones, so the cache stops growing at
+   * {@link #PROPERTY_ID_PARTS_MAX_SIZE}.
+   */
+  private static final ConcurrentMap<String, String[]> PROPERTY_ID_PARTS = new ConcurrentHashMap<>();
+
+  private static final int PROPERTY_ID_PARTS_MAX_SIZE = 50000;
+
   private static final Map<Resource.InternalType, Set<String>> PROPERTY_IDS = readPropertyIds(PROPERTIES_FILE);
   private static final Map<Resource.InternalType, Map<String, Map<String, PropertyInfo>>> JMX_PROPERTY_IDS = readPropertyProviderIds(JMX_PROPERTIES_FILE);
   private static final Map<Resource.InternalType, Map<String, Map<String, PropertyInfo>>> GANGLIA_PROPERTY_IDS = readPropertyProviderIds(GANGLIA_PROPERTIES_FILE);
@@ -155,6 +168,10 @@ public class PropertyHelper {
    * @return the property name
    */
   public static String getPropertyName(String absProperty) {
+    return getPropertyIdParts(absProperty)[1];
+  }
+
+  private static String splitPropertyName(String absProperty) {
     int lastPathSep = absProperty.lastIndexOf(EXTERNAL_PATH_SEP);
 
     return lastPathSep == -1 ? absProperty : absProperty.substring(lastPathSep + 1);
@@ -187,6 +204,33 @@ public class PropertyHelper {
    * @return the property category; null if there is no category
    */
   public static String getPropertyCategory(String property) {
+    return getPropertyIdParts(property)[0];
+  }
+
+  /**
+   * Get the category and the name of the given property id.
+   *
+   * @param propertyId  the fully qualified property
+   *
+   * @return the category, which may be null, and the name of the property
+   */
+  private static String[] getPropertyIdParts(String propertyId) {
+    String[] parts = PROPERTY_ID_PARTS.get(propertyId);
+    if (parts == null) {
+      String category = splitPropertyCategory(propertyId);
+      String name = splitPropertyName(propertyId);
+
+      if (PROPERTY_ID_PARTS.size() < PROPERTY_ID_PARTS_MAX_SIZE) {
+        parts = new String[] { category == null ? null : category.intern(), name.intern() };
+        PROPERTY_ID_PARTS.putIfAbsent(propertyId, parts);
+      } else {
+        parts = new String[] { category, name };
+      }
+    }
+    return parts;
+  }
+
+  private static String splitPropertyCategory(String property) {
     int lastPathSep = -1;
 
     if( !containsArguments(property) ){
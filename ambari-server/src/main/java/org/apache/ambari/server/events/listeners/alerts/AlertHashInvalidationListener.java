@@ -28,6 +28,7 @@ import org.apache.ambari.server.events.AmbariEvent.AmbariEventType;
 import org.apache.ambari.server.events.ClusterEvent;
 import org.apache.ambari.server.events.ServiceComponentUninstalledEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.PartitionedEventSubscriber;
 import org.apache.ambari.server.state.alert.AlertDefinitionHash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +53,7 @@ import com.google.inject.Singleton;
  */
 @Singleton
 @EagerSingleton
+@PartitionedEventSubscriber
 public class AlertHashInvalidationListener {
   /**
    * Logger.
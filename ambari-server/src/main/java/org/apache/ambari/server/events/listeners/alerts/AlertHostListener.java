@@ -28,6 +28,7 @@ import org.apache.ambari.server.events.AlertHashInvalidationEvent;
 import org.apache.ambari.server.events.HostsAddedEvent;
 import org.apache.ambari.server.events.HostsRemovedEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.PartitionedEventSubscriber;
 import org.apache.ambari.server.metadata.AmbariServiceAlertDefinitions;
 import org.apache.ambari.server.orm.dao.AlertDefinitionDAO;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
@@ -50,6 +51,7 @@ import com.google.inject.Singleton;
  */
 @Singleton
 @EagerSingleton
+@PartitionedEventSubscriber
 public class AlertHostListener {
   /**
    * Logger.
@@ -26,6 +26,7 @@ import org.apache.ambari.server.events.AlertDefinitionDeleteEvent;
 import org.apache.ambari.server.events.AlertDefinitionRegistrationEvent;
 import org.apache.ambari.server.events.AlertHashInvalidationEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.PartitionedEventSubscriber;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
@@ -49,6 +50,7 @@ import com.google.inject.Singleton;
  */
 @Singleton
 @EagerSingleton
+@PartitionedEventSubscriber
 public class AlertLifecycleListener {
   /**
    * Logger.
@@ -342,6 +342,13 @@ public class AlertReceivedListener {
       }
     }
 
+    // if write-behind is enabled, the entities are written with other pending
+    // updates in a later batch and the events are published after that
+    if (m_alertsDao.isWriteBehindEnabled()) {
+      m_alertsDao.writeBehind(toMerge, toCreateHistoryAndMerge, alertEvents);
+      return;
+    }
+
     // invokes the EntityManager create/merge on various entities in a single
     // transaction
     saveEntities(toMerge, toCreateHistoryAndMerge);
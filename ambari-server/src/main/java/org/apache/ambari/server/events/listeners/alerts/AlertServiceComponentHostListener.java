@@ -20,6 +20,7 @@ package org.apache.ambari.server.events.listeners.alerts;
 import org.apache.ambari.server.EagerSingleton;
 import org.apache.ambari.server.events.ServiceComponentUninstalledEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.PartitionedEventSubscriber;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.slf4j.Logger;
@@ -34,6 +35,7 @@ import com.google.inject.Inject;
  * disabling of an alert definition.
  */
 @EagerSingleton
+@PartitionedEventSubscriber
 public class AlertServiceComponentHostListener {
   /**
    * Logger.
@@ -17,34 +17,153 @@
  */
 package org.apache.ambari.server.events.publishers;
 
-import java.util.concurrent.Executors;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.events.ClusterEvent;
+import org.apache.ambari.server.events.HostEvent;
+import org.apache.ambari.server.events.HostsAddedEvent;
+import org.apache.ambari.server.events.HostsRemovedEvent;
+import org.apache.ambari.server.events.ServiceComponentInstalledEvent;
+import org.apache.ambari.server.events.ServiceComponentUninstalledEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
  * The {@link AmbariEventPublisher} is used to publish instances of
- * {@link AmbariEvent} to any {@link Subscribe} methods interested. It uses a
- * single-threaded {@link AsyncEventBus}.
+ * {@link AmbariEvent} to any {@link Subscribe} methods interested. Listeners
+ * are served by a single-threaded {@link AsyncEventBus}, unless they are
+ * annotated with {@link PartitionedEventSubscriber}; such listeners receive
+ * events on one of several partition threads chosen by the hosts or, for
+ * events about no particular host, by the cluster of the event, so that slow
+ * listeners of one host or cluster do not hold up the others.
+ * <p/>
+ * An event is delivered to all partitioned listeners which handle it in one
+ * task, in the order in which they were registered. Events which concern the
+ * hosts or clusters of several partitions, or neither, are delivered once
+ * all of those partitions have delivered the events published before them.
  */
 @Singleton
 public class AmbariEventPublisher {
 
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(AmbariEventPublisher.class);
+
+  /**
+   * The name used for the statistics of the serial event bus.
+   */
+  private static final String SERIAL_SUBSCRIBERS = "serial";
+
   /**
    * A single threaded event bus for processing Ambari events in serial.
    */
   private final EventBus m_eventBus;
 
   /**
-   * Constructor.
+   * The thread of {@link #m_eventBus}.
+   */
+  private final ThreadPoolExecutor m_serialExecutor;
+
+  /**
+   * The single threaded executors of the partitions, or {@code null} if
+   * partitioned listeners are served by {@link #m_eventBus} as well.
+   */
+  private volatile ThreadPoolExecutor[] m_partitionExecutors;
+
+  /**
+   * The listeners served by the partition executors.
+   */
+  private final List<PartitionedSubscriber> m_partitionedSubscribers = new CopyOnWriteArrayList<>();
+
+  /**
+   * Serializes the submission of events which are not partitioned, so that
+   * every partition receives them in the same order.
+   */
+  private final Object m_barrierLock = new Object();
+
+  /**
+   * Dispatch statistics of {@link #m_eventBus}.
+   */
+  private final DispatchStatistics m_serialStatistics = new DispatchStatistics();
+
+  /**
+   * The number of events which were delivered across several partitions.
+   */
+  private final AtomicLong m_barriers = new AtomicLong();
+
+  /**
+   * Constructor. All listeners are served in serial.
    */
   public AmbariEventPublisher() {
-    m_eventBus = new AsyncEventBus("ambari-event-bus",
-        Executors.newSingleThreadExecutor());
+    this(0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          the configuration specifying the number of partitions.
+   */
+  @Inject
+  public AmbariEventPublisher(Configuration configuration) {
+    this(configuration.getAmbariEventPublisherPartitions());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param partitions
+   *          the number of partition threads for
+   *          {@link PartitionedEventSubscriber} listeners; {@code 0} to serve
+   *          them in serial.
+   */
+  private AmbariEventPublisher(int partitions) {
+    m_serialExecutor = createExecutor("ambari-event-bus-%d");
+    m_eventBus = new AsyncEventBus("ambari-event-bus", new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        m_serialExecutor.execute(m_serialStatistics.wrap(command));
+      }
+    });
+
+    if (partitions > 0) {
+      m_partitionExecutors = new ThreadPoolExecutor[partitions];
+      for (int i = 0; i < partitions; i++) {
+        m_partitionExecutors[i] = createExecutor("ambari-event-partition-" + i + "-%d");
+      }
+    }
+  }
+
+  private static ThreadPoolExecutor createExecutor(String nameFormat) {
+    return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setNameFormat(nameFormat).build());
   }
 
   /**
@@ -55,6 +174,136 @@ public class AmbariEventPublisher {
    */
   public void publish(AmbariEvent event) {
     m_eventBus.post(event);
+
+    ThreadPoolExecutor[] executors = m_partitionExecutors;
+    if (null == executors || m_partitionedSubscribers.isEmpty()) {
+      return;
+    }
+
+    final List<Runnable> deliveries = new ArrayList<>();
+    for (PartitionedSubscriber subscriber : m_partitionedSubscribers) {
+      if (subscriber.handles(event)) {
+        deliveries.add(subscriber.dispatch(event));
+      }
+    }
+
+    if (deliveries.isEmpty()) {
+      return;
+    }
+
+    Runnable dispatch = new Runnable() {
+      @Override
+      public void run() {
+        for (Runnable delivery : deliveries) {
+          delivery.run();
+        }
+      }
+    };
+
+    BitSet partitions = getPartitions(event, executors.length);
+    if (partitions.cardinality() == 1) {
+      executors[partitions.nextSetBit(0)].execute(dispatch);
+    } else {
+      dispatchToPartitions(executors, partitions, dispatch);
+    }
+  }
+
+  /**
+   * Gets the partitions which deliver an event. Events about particular hosts
+   * are delivered by the partitions of those hosts, so that the events of a
+   * host stay in order even if it moves between clusters. Other cluster
+   * events are delivered by the partition of their cluster. Events about
+   * neither are delivered by all partitions.
+   *
+   * @param event
+   *          the event to deliver
+   * @param partitionCount
+   *          the number of partitions
+   * @return the partitions which deliver the event
+   */
+  private static BitSet getPartitions(AmbariEvent event, int partitionCount) {
+    BitSet partitions = new BitSet(partitionCount);
+
+    Collection<String> hostNames = getHostNames(event);
+    if (!hostNames.isEmpty()) {
+      for (String hostName : hostNames) {
+        partitions.set((hostName.hashCode() & Integer.MAX_VALUE) % partitionCount);
+      }
+    } else if (event instanceof ClusterEvent) {
+      long clusterId = ((ClusterEvent) event).getClusterId();
+      partitions.set((int) ((clusterId ^ (clusterId >>> 32)) & Integer.MAX_VALUE) % partitionCount);
+    } else {
+      partitions.set(0, partitionCount);
+    }
+    return partitions;
+  }
+
+  /**
+   * Gets the hosts an event is about.
+   *
+   * @param event
+   *          the event
+   * @return the names of the hosts, or an empty collection if the event is
+   *         not about particular hosts
+   */
+  private static Collection<String> getHostNames(AmbariEvent event) {
+    String hostName = null;
+    if (event instanceof HostEvent) {
+      hostName = ((HostEvent) event).getHostName();
+    } else if (event instanceof ServiceComponentInstalledEvent) {
+      hostName = ((ServiceComponentInstalledEvent) event).getHostName();
+    } else if (event instanceof ServiceComponentUninstalledEvent) {
+      hostName = ((ServiceComponentUninstalledEvent) event).getHostName();
+    } else if (event instanceof HostsAddedEvent) {
+      return nullToEmpty(((HostsAddedEvent) event).getHostNames());
+    } else if (event instanceof HostsRemovedEvent) {
+      return nullToEmpty(((HostsRemovedEvent) event).getHostNames());
+    }
+
+    return null == hostName ? Collections.<String>emptySet() : Collections.singleton(hostName);
+  }
+
+  private static Collection<String> nullToEmpty(Collection<String> hostNames) {
+    return null == hostNames ? Collections.<String>emptySet() : hostNames;
+  }
+
+  /**
+   * Dispatches an event once the given partitions have delivered the events
+   * published before it, and holds back those partitions until it has been
+   * delivered.
+   */
+  private void dispatchToPartitions(ThreadPoolExecutor[] executors, BitSet partitions,
+      final Runnable dispatch) {
+    final CountDownLatch arrived = new CountDownLatch(partitions.cardinality());
+    final CountDownLatch delivered = new CountDownLatch(1);
+    m_barriers.incrementAndGet();
+
+    int first = partitions.nextSetBit(0);
+    synchronized (m_barrierLock) {
+      for (int i = first; i >= 0; i = partitions.nextSetBit(i + 1)) {
+        final boolean deliver = i == first;
+        executors[i].execute(new Runnable() {
+          @Override
+          public void run() {
+            arrived.countDown();
+            try {
+              if (deliver) {
+                arrived.await();
+                try {
+                  dispatch.run();
+                } finally {
+                  delivered.countDown();
+                }
+              } else {
+                delivered.await();
+              }
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+      }
+    }
   }
 
   /**
@@ -65,6 +314,127 @@ public class AmbariEventPublisher {
    *          the listener to receive events.
    */
   public void register(Object object) {
+    if (null != m_partitionExecutors
+        && object.getClass().isAnnotationPresent(PartitionedEventSubscriber.class)) {
+      m_partitionedSubscribers.add(new PartitionedSubscriber(object));
+      return;
+    }
+
     m_eventBus.register(object);
   }
+
+  /**
+   * Gets the dispatch statistics of the serial event bus and of every
+   * partitioned listener, keyed by {@code <listener>.<statistic>}. The queue
+   * size is the number of events waiting to be delivered and the latency, in
+   * milliseconds, is the time between publishing and completing the delivery
+   * of an event. {@code partitions.barriers} is the number of events which
+   * held back several partitions.
+   *
+   * @return the dispatch statistics
+   */
+  public Map<String, Number> getDispatchStatistics() {
+    Map<String, Number> statistics = new LinkedHashMap<>();
+    m_serialStatistics.addTo(statistics, SERIAL_SUBSCRIBERS);
+    if (null != m_partitionExecutors) {
+      statistics.put("partitions.barriers", m_barriers.get());
+    }
+    for (PartitionedSubscriber subscriber : m_partitionedSubscribers) {
+      subscriber.m_statistics.addTo(statistics, subscriber.m_name);
+    }
+    return statistics;
+  }
+
+  /**
+   * A listener which receives its events on the partition threads. It is
+   * registered with its own synchronous {@link EventBus}, which keeps the
+   * subscriber method resolution and exception handling of Guava.
+   */
+  private static final class PartitionedSubscriber {
+    private final String m_name;
+    private final EventBus m_subscriberBus;
+    private final Set<Class<?>> m_eventTypes = new HashSet<>();
+    private final DispatchStatistics m_statistics = new DispatchStatistics();
+
+    private PartitionedSubscriber(Object listener) {
+      // strip the suffix of classes enhanced by Guice
+      m_name = listener.getClass().getSimpleName().split("\\$\\$")[0];
+      m_subscriberBus = new EventBus(m_name);
+      m_subscriberBus.register(listener);
+
+      for (Class<?> clazz = listener.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+        for (Method method : clazz.getDeclaredMethods()) {
+          if (method.isAnnotationPresent(Subscribe.class) && method.getParameterTypes().length == 1) {
+            m_eventTypes.add(method.getParameterTypes()[0]);
+          }
+        }
+      }
+    }
+
+    private boolean handles(Object event) {
+      for (Class<?> eventType : m_eventTypes) {
+        if (eventType.isInstance(event)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private Runnable dispatch(final Object event) {
+      return m_statistics.wrap(new Runnable() {
+        @Override
+        public void run() {
+          m_subscriberBus.post(event);
+        }
+      });
+    }
+  }
+
+  /**
+   * Queue size and latency of event deliveries.
+   */
+  private static final class DispatchStatistics {
+    private long m_queued = 0;
+    private long m_delivered = 0;
+    private long m_totalLatency = 0;
+    private long m_maxLatency = 0;
+
+    /**
+     * Wraps a delivery so that its queueing and latency are recorded.
+     */
+    private Runnable wrap(final Runnable delivery) {
+      final long published = System.currentTimeMillis();
+      queued();
+      return new Runnable() {
+        @Override
+        public void run() {
+          try {
+            delivery.run();
+          } catch (RuntimeException e) {
+            LOG.error("Unable to deliver event", e);
+          } finally {
+            delivered(System.currentTimeMillis() - published);
+          }
+        }
+      };
+    }
+
+    private synchronized void queued() {
+      m_queued++;
+    }
+
+    private synchronized void delivered(long latency) {
+      m_queued--;
+      m_delivered++;
+      m_totalLatency += latency;
+      m_maxLatency = Math.max(m_maxLatency, latency);
+    }
+
+    private synchronized void addTo(Map<String, Number> statistics, String name) {
+      statistics.put(name + ".queue.size", m_queued);
+      statistics.put(name + ".delivered", m_delivered);
+      statistics.put(name + ".latency.avg", m_delivered == 0 ? 0L : m_totalLatency / m_delivered);
+      statistics.put(name + ".latency.max", m_maxLatency);
+    }
+  }
 }
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.apache.ambari.server.events.ClusterEvent;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * The {@link PartitionedEventSubscriber} annotation marks a listener registered
+ * with the {@link AmbariEventPublisher} which does not require all events to be
+ * delivered in global order. Events about the same host, and
+ * {@link ClusterEvent}s about no particular host of the same cluster, are
+ * still delivered in order, to all partitioned listeners in the order in which
+ * they were registered. Events of different hosts or clusters may be delivered
+ * concurrently, and an event about a host is not ordered with the events
+ * about its whole cluster. The listener must therefore be thread-safe and its
+ * {@link Subscribe} methods should be annotated with
+ * {@link AllowConcurrentEvents}; otherwise they are still invoked one at a time.
+ * <p/>
+ * Partitioned listeners are not ordered with the listeners without this
+ * annotation, which receive all events serially, in the order in which they
+ * were published. A listener should only be partitioned if it does not rely
+ * on the work of the serial listeners for the same event, or on the order of
+ * host and cluster events.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PartitionedEventSubscriber {
+}
@@ -17,8 +17,15 @@
  */
 package org.apache.ambari.server.logging;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -29,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -44,6 +52,11 @@ public class LockFactory {
 
   private static final Logger LOG = LoggerFactory.getLogger(LockFactory.class);
 
+  /**
+   * The number of locks included in the periodic contention report.
+   */
+  private static final int CONTENTION_REPORT_SIZE = 20;
+
   private final boolean profiling;
   private final Set<ProfiledLock> profiledLocks;
 
@@ -52,6 +65,19 @@ public class LockFactory {
     profiling = config.isServerLocksProfilingEnabled();
     profiledLocks = profiling ? new CopyOnWriteArraySet<ProfiledLock>() : null;
     LOG.info("Lock profiling is {}", profiling ? "enabled" : "disabled");
+
+    int reportInterval = profiling ? config.getServerLocksProfilingReportInterval() : 0;
+    if (reportInterval > 0) {
+      ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("lock-contention-report").setDaemon(true).build());
+
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          LOG.info("Lock contention report:{}", getContentionReport(CONTENTION_REPORT_SIZE));
+        }
+      }, reportInterval, reportInterval, TimeUnit.SECONDS);
+    }
   }
 
   /**
@@ -95,6 +121,52 @@ public class LockFactory {
     return baseLock;
   }
 
+  /**
+   * @return a new StripedReadWriteLock with <code>stripes</code> ReadWriteLock instances (implementation depends on configuration setting),
+   * each with <code>label</code> and its index to identify it in log messages
+   */
+  public StripedReadWriteLock newStripedReadWriteLock(String label, int stripes) {
+    ReadWriteLock[] locks = new ReadWriteLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      locks[i] = newReadWriteLock(label + "[" + i + "]");
+    }
+    return new StripedReadWriteLock(locks);
+  }
+
+  /**
+   * If lock profiling is enabled, lists the locks which threads have spent the most time waiting for, along with the
+   * total time spent waiting for and holding each of them and the number of times each was taken.
+   *
+   * @param limit the maximum number of locks to include
+   * @return the report, or an empty string if profiling is disabled
+   */
+  public String getContentionReport(int limit) {
+    if (!profiling) {
+      return "";
+    }
+
+    List<LockContention> contentions = new ArrayList<>();
+    for (ProfiledLock lock : profiledLocks) {
+      contentions.add(new LockContention(lock));
+    }
+
+    Collections.sort(contentions, new Comparator<LockContention>() {
+      @Override
+      public int compare(LockContention contention1, LockContention contention2) {
+        return Long.compare(contention2.waited, contention1.waited);
+      }
+    });
+
+    StringBuilder sb = new StringBuilder();
+    for (LockContention contention : contentions.subList(0, Math.min(limit, contentions.size()))) {
+      sb.append("\n\t").append(contention.label)
+        .append(" waited: ").append(contention.waited).append(" ms")
+        .append(" held: ").append(contention.held).append(" ms")
+        .append(" times locked: ").append(contention.count);
+    }
+    return sb.toString();
+  }
+
   /**
    * If lock profiling is enabled, append summary statistics about lock usage to <code>sb</code>
    * @param sb the buffer to append the statistics to
@@ -116,6 +188,31 @@ public class LockFactory {
     }
   }
 
+  /**
+   * The usage statistics of a lock summed up over all threads.
+   */
+  private static final class LockContention {
+    private final String label;
+    private long waited;
+    private long held;
+    private long count;
+
+    private LockContention(ProfiledLock lock) {
+      label = lock.getLabel() + (lock instanceof ReentrantReadWriteLock.ReadLock ? "(read)" : "")
+        + (lock instanceof ReentrantReadWriteLock.WriteLock ? "(write)" : "");
+
+      for (long time : lock.getTimeSpentWaitingForLock().values()) {
+        waited += time;
+      }
+      for (long time : lock.getTimeSpentLocked().values()) {
+        held += time;
+      }
+      for (int times : lock.getLockCount().values()) {
+        count += times;
+      }
+    }
+  }
+
   private static String getDefaultPrefix() {
     StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
     // 0: getStackTrace()
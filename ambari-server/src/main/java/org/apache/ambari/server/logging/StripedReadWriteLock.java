@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * A fixed number of {@link ReadWriteLock}s which keys, such as service names
+ * or configuration types, are mapped to by their hash code. Operations on
+ * different keys usually use different locks and therefore don't contend with
+ * each other, while operations on the same key are always guarded by the same
+ * lock.
+ * <p/>
+ * A thread which needs the locks of several keys must acquire them in the
+ * order returned by {@link #getAll(Iterable)} to avoid deadlocks with other
+ * threads doing the same.
+ *
+ * @see LockFactory#newStripedReadWriteLock(String, int)
+ */
+public class StripedReadWriteLock {
+
+  private final ReadWriteLock[] stripes;
+
+  /**
+   * Constructor.
+   *
+   * @param stripes the locks to map the keys to (not {@code null} or empty)
+   */
+  StripedReadWriteLock(ReadWriteLock[] stripes) {
+    this.stripes = stripes;
+  }
+
+  /**
+   * @param key the key (not {@code null})
+   * @return the lock which guards the key
+   */
+  public ReadWriteLock get(Object key) {
+    return stripes[indexFor(key)];
+  }
+
+  /**
+   * @param keys the keys (not {@code null})
+   * @return the distinct locks which guard the keys, in the order in which
+   *         they must be acquired
+   */
+  public List<ReadWriteLock> getAll(Iterable<?> keys) {
+    SortedSet<Integer> indexes = new TreeSet<>();
+    for (Object key : keys) {
+      indexes.add(indexFor(key));
+    }
+
+    List<ReadWriteLock> locks = new ArrayList<>(indexes.size());
+    for (int index : indexes) {
+      locks.add(stripes[index]);
+    }
+    return locks;
+  }
+
+  /**
+   * @return the number of locks
+   */
+  public int size() {
+    return stripes.length;
+  }
+
+  private int indexFor(Object key) {
+    // spread the hash so that keys which only differ in their high bits don't
+    // end up on the same stripe
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return (hash & Integer.MAX_VALUE) % stripes.length;
+  }
+}
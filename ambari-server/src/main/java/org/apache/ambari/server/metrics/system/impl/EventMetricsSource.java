@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.metrics.system.impl;
+
+import java.util.Map;
+
+import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.controller.AmbariServer;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+
+/**
+ * @{link EventMetricsSource} collects the queue sizes and delivery latencies of the
+ * {@link AmbariEventPublisher} listeners and publishes them to the Metrics Sink.
+ */
+public class EventMetricsSource extends StatisticsMetricsSource {
+  private static String EVENTS_PREFIX = "events.";
+
+  public EventMetricsSource() {
+    super(EVENTS_PREFIX);
+  }
+
+  @Override
+  protected Map<String, Number> getStatistics() {
+    AmbariManagementController controller = AmbariServer.getController();
+    if (controller == null) {
+      return null;
+    }
+    return controller.getAmbariEventPublisher().getDispatchStatistics();
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.metrics.system.impl;
+
+import java.util.Map;
+
+import org.apache.ambari.server.StaticallyInject;
+import org.apache.ambari.server.agent.HeartBeatHandler;
+import org.apache.ambari.server.agent.HeartbeatProcessor;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * @{link HeartbeatMetricsSource} collects the backlog and lag of the
+ * {@link HeartbeatProcessor} lanes and publishes them to the Metrics Sink.
+ */
+@StaticallyInject
+public class HeartbeatMetricsSource extends StatisticsMetricsSource {
+  private static String HEARTBEAT_PREFIX = "heartbeat.";
+
+  @Inject
+  private static Provider<HeartBeatHandler> heartBeatHandlerProvider;
+
+  public HeartbeatMetricsSource() {
+    super(HEARTBEAT_PREFIX);
+  }
+
+  @Override
+  protected Map<String, Number> getStatistics() {
+    if (heartBeatHandlerProvider == null) {
+      return null;
+    }
+
+    HeartbeatProcessor heartbeatProcessor = heartBeatHandlerProvider.get().getHeartbeatProcessor();
+    return heartbeatProcessor == null ? null : heartbeatProcessor.getLaneStatistics();
+  }
+}
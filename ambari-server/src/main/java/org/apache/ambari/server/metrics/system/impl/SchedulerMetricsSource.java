@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.metrics.system.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ambari.server.actionmanager.ActionManager;
+import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.controller.AmbariServer;
+
+/**
+ * @{link SchedulerMetricsSource} collects the wakeups, full sweeps and stage
+ * scheduling latencies of the action scheduler and publishes them to the
+ * Metrics Sink.
+ */
+public class SchedulerMetricsSource extends StatisticsMetricsSource {
+  private static String SCHEDULER_PREFIX = "scheduler.";
+
+  public SchedulerMetricsSource() {
+    super(SCHEDULER_PREFIX);
+  }
+
+  @Override
+  protected Map<String, Number> getStatistics() {
+    AmbariManagementController controller = AmbariServer.getController();
+    if (controller == null) {
+      return null;
+    }
+
+    ActionManager actionManager = controller.getActionManager();
+    return new LinkedHashMap<String, Number>(actionManager.getSchedulingStatistics());
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.metrics.system.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.metrics.system.MetricsSink;
+import org.apache.ambari.server.metrics.system.SingleMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @{link StatisticsMetricsSource} periodically publishes the statistics which
+ * a server component keeps about itself to the Metrics Sink. Each statistic is
+ * published as a metric named by the prefix of the source followed by the
+ * statistic key.
+ */
+public abstract class StatisticsMetricsSource extends AbstractMetricsSource {
+  private static Logger LOG = LoggerFactory.getLogger(StatisticsMetricsSource.class);
+  private ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+  private final String prefix;
+  private int interval = 10;
+
+  /**
+   * @param prefix  the prefix of the published metric names, including the
+   *                trailing separator
+   */
+  protected StatisticsMetricsSource(String prefix) {
+    this.prefix = prefix;
+  }
+
+  @Override
+  public void init(MetricsConfiguration configuration, MetricsSink sink) {
+    super.init(configuration, sink);
+    interval = Integer.parseInt(configuration.getProperty("interval", "10"));
+    LOG.info("{} initialized.", getClass().getSimpleName());
+  }
+
+  @Override
+  public void start() {
+    LOG.info("Starting {}...", getClass().getSimpleName());
+    try {
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          List<SingleMetric> metrics = getMetrics();
+          if (!metrics.isEmpty()) {
+            sink.publish(metrics);
+            LOG.debug("********* Published {} metrics to sink **********", prefix);
+          }
+        }
+      }, interval, interval, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      LOG.info("Throwing exception when starting metric source", e);
+    }
+  }
+
+  public List<SingleMetric> getMetrics() {
+    Map<String, Number> statistics = getStatistics();
+    if (statistics == null) {
+      return Collections.emptyList();
+    }
+
+    List<SingleMetric> metrics = new ArrayList<>(statistics.size());
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, Number> entry : statistics.entrySet()) {
+      metrics.add(new SingleMetric(prefix + entry.getKey(), entry.getValue().doubleValue(), now));
+    }
+    return metrics;
+  }
+
+  /**
+   * Gets the current statistics to publish.
+   *
+   * @return the statistics keyed by name, or {@code null} if the component
+   *         which keeps them is not available yet
+   */
+  protected abstract Map<String, Number> getStatistics();
+}
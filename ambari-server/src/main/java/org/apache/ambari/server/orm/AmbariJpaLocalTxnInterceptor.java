@@ -20,8 +20,10 @@ package org.apache.ambari.server.orm;
 
 import java.lang.reflect.Method;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -56,6 +58,10 @@ import com.google.inject.persist.jpa.AmbariJpaPersistService;
  * back. This ensures that transactional methods invoke from an already running
  * transaction can have their lock invoked for the lifespan of the outer
  * "parent" transaction.
+ * <p/>
+ * Callbacks registered with {@link #runAfterCommit(Runnable)} while a
+ * transaction started by this interceptor is active are run once the
+ * outer-most transaction has been committed.
  */
 public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
 
@@ -77,6 +83,13 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
     }
   };
 
+  /**
+   * The callbacks to run once the outer-most transaction of this thread has
+   * been committed, or {@code null} if this interceptor has not started a
+   * transaction on this thread.
+   */
+  private static final ThreadLocal<List<Runnable>> s_commitCallbacks = new ThreadLocal<>();
+
   /**
    * Used to ensure that methods which rely on the completion of
    * {@link Transactional} can detect when they are able to run.
@@ -118,6 +131,10 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
       return methodInvocation.proceed();
     }
 
+    List<Runnable> commitCallbacks = new ArrayList<>();
+    s_commitCallbacks.set(commitCallbacks);
+    boolean committed = false;
+
     try {
       // this is the outer-most transactional, begin a transaction
       final EntityTransaction txn = em.getTransaction();
@@ -151,6 +168,7 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
       // interferes with the advised method's throwing semantics)
       try {
         txn.commit();
+        committed = true;
       } catch (Exception e) {
         detailedLogForPersistenceError(e);
         throw e;
@@ -165,8 +183,50 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
       // or return result
       return result;
     } finally {
+      s_commitCallbacks.remove();
+
       // unlock all lock areas for this transaction
       unlockTransaction();
+
+      if (committed) {
+        runCommitCallbacks(commitCallbacks);
+      }
+    }
+  }
+
+  /**
+   * Runs the given callback once the transaction of the current thread has
+   * been committed. The callback is run right away if no transaction started
+   * by this interceptor is active, and it is dropped if the transaction does
+   * not complete normally.
+   *
+   * @param callback
+   *          the callback to run after the commit (not {@code null}).
+   */
+  public static void runAfterCommit(Runnable callback) {
+    List<Runnable> commitCallbacks = s_commitCallbacks.get();
+    if (null == commitCallbacks) {
+      callback.run();
+    } else {
+      commitCallbacks.add(callback);
+    }
+  }
+
+  /**
+   * Runs the callbacks registered during a committed transaction. A failing
+   * callback is logged and does not prevent the others from running, since
+   * the transaction itself has already been committed.
+   *
+   * @param commitCallbacks
+   *          the callbacks to run
+   */
+  private void runCommitCallbacks(List<Runnable> commitCallbacks) {
+    for (Runnable callback : commitCallbacks) {
+      try {
+        callback.run();
+      } catch (RuntimeException e) {
+        LOG.warn("Unable to run a callback after the transaction was committed", e);
+      }
     }
   }
 
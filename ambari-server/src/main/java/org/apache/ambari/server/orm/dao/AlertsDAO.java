@@ -22,12 +22,15 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
@@ -47,7 +50,9 @@ import org.apache.ambari.server.controller.AlertHistoryRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.utilities.PredicateHelper;
 import org.apache.ambari.server.events.AggregateAlertRecalculateEvent;
+import org.apache.ambari.server.events.AlertEvent;
 import org.apache.ambari.server.events.publishers.AlertEventPublisher;
+import org.apache.ambari.server.orm.AmbariJpaLocalTxnInterceptor;
 import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity_;
@@ -81,6 +86,14 @@ import com.google.inject.persist.Transactional;
  * periodically flushed. This means that many queries will need to swap in the
  * cached {@link AlertCurrentEntity} with that returned from the EclipseLink JPA
  * entity manager.
+ * <p/>
+ * If a write-behind staleness is also configured, then updates to
+ * {@link AlertCurrentEntity} and new {@link AlertHistoryEntity} instances are
+ * collected in memory and written to the database in batches by
+ * {@link #flushWriteBehind()}. Any {@link AlertEvent}s which depend on them are
+ * held until the batch has been committed and are then published in the order
+ * in which they were queued. Queries which are not keyed by a single alert do
+ * not return queued alerts whose history has not been written yet.
  */
 @Singleton
 @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
@@ -155,6 +168,67 @@ public class AlertsDAO implements Cleanable {
    */
   private static final int BATCH_SIZE = 999;
 
+  /**
+   * The maximum time, in milliseconds, that write-behind updates are held
+   * before being flushed, or {@code 0} if write-behind is disabled.
+   */
+  private final long m_writeBehindMaxStaleness;
+
+  /**
+   * The number of pending write-behind updates which forces an early flush.
+   */
+  private final int m_writeBehindBatchSize;
+
+  /**
+   * Guards the pending write-behind collections.
+   */
+  private final Object m_writeBehindLock = new Object();
+
+  /**
+   * Ensures that only a single write-behind flush runs at a time so that held
+   * events are published in the order in which they were queued.
+   */
+  private final ReentrantLock m_writeBehindFlushLock = new ReentrantLock();
+
+  /**
+   * New {@link AlertHistoryEntity} instances waiting to be persisted, in the
+   * order in which they were created.
+   */
+  private List<AlertHistoryEntity> m_pendingHistory = new ArrayList<>();
+
+  /**
+   * The latest {@link AlertCurrentEntity} waiting to be merged for each alert.
+   */
+  private Map<AlertCacheKey, AlertCurrentEntity> m_pendingCurrent = new LinkedHashMap<>();
+
+  /**
+   * The current alerts which are being written by a flush which is in
+   * progress.
+   */
+  private Map<AlertCacheKey, AlertCurrentEntity> m_flushingCurrent = Collections.emptyMap();
+
+  /**
+   * Events waiting for the pending entities to be written.
+   */
+  private List<AlertEvent> m_pendingEvents = new ArrayList<>();
+
+  /**
+   * The time that the oldest pending write-behind update was queued, or
+   * {@code 0} if nothing is pending.
+   */
+  private long m_oldestPendingTime = 0;
+
+  /**
+   * Write-behind flush statistics.
+   */
+  private final AtomicLong m_flushCount = new AtomicLong();
+  private final AtomicLong m_flushFailures = new AtomicLong();
+  private final AtomicLong m_flushedHistoryCount = new AtomicLong();
+  private final AtomicLong m_flushedCurrentCount = new AtomicLong();
+  private final AtomicLong m_flushTimeTotal = new AtomicLong();
+  private final AtomicLong m_flushTimeMax = new AtomicLong();
+  private final AtomicLong m_flushStalenessMax = new AtomicLong();
+
   /**
    * Constructor.
    *
@@ -177,6 +251,13 @@ public class AlertsDAO implements Cleanable {
             public AlertCurrentEntity load(AlertCacheKey key) throws Exception {
               LOG.debug("Cache miss for alert key {}, fetching from JPA", key);
 
+              // an alert which was evicted while its write-behind merge is
+              // still pending has not been written yet
+              AlertCurrentEntity pendingEntity = findPendingCurrent(key);
+              if (null != pendingEntity) {
+                return pendingEntity;
+              }
+
               final AlertCurrentEntity alertCurrentEntity;
 
               long clusterId = key.getClusterId();
@@ -199,6 +280,17 @@ public class AlertsDAO implements Cleanable {
               return alertCurrentEntity;
             }
           });
+
+      m_writeBehindMaxStaleness = m_configuration.getAlertCacheWriteBehindMaxStaleness();
+      m_writeBehindBatchSize = Math.max(1, m_configuration.getAlertCacheWriteBehindBatchSize());
+
+      if (m_writeBehindMaxStaleness > 0) {
+        LOG.info("Alert write-behind is enabled (maxStaleness={}ms, batchSize={})",
+            m_writeBehindMaxStaleness, m_writeBehindBatchSize);
+      }
+    } else {
+      m_writeBehindMaxStaleness = 0;
+      m_writeBehindBatchSize = 1;
     }
   }
 
@@ -742,6 +834,9 @@ public class AlertsDAO implements Cleanable {
    */
   @Transactional
   public void removeByDefinitionId(long definitionId) {
+    // write any queued alerts first so that the removal applies to them too
+    flushWriteBehind();
+
     EntityManager entityManager = m_entityManagerProvider.get();
     TypedQuery<AlertCurrentEntity> currentQuery = entityManager.createNamedQuery(
         "AlertCurrentEntity.removeByDefinitionId", AlertCurrentEntity.class);
@@ -760,7 +855,7 @@ public class AlertsDAO implements Cleanable {
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
     if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
+      invalidateCachedAlerts();
     }
   }
 
@@ -772,6 +867,9 @@ public class AlertsDAO implements Cleanable {
    */
   @Transactional
   public int removeCurrentByHistoryId(long historyId) {
+    // write any queued alerts first so that the removal applies to them too
+    flushWriteBehind();
+
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
       "AlertCurrentEntity.removeByHistoryId", AlertCurrentEntity.class);
 
@@ -781,7 +879,7 @@ public class AlertsDAO implements Cleanable {
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
     if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
+      invalidateCachedAlerts();
     }
 
     return rowsRemoved;
@@ -794,6 +892,9 @@ public class AlertsDAO implements Cleanable {
    */
   @Transactional
   public int removeCurrentDisabledAlerts() {
+    // write any queued alerts first so that the removal applies to them too
+    flushWriteBehind();
+
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
       "AlertCurrentEntity.findDisabled", AlertCurrentEntity.class);
 
@@ -809,7 +910,7 @@ public class AlertsDAO implements Cleanable {
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
     if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
+      invalidateCachedAlerts();
     }
 
     return rowsRemoved;
@@ -831,6 +932,9 @@ public class AlertsDAO implements Cleanable {
    */
   @Transactional
   public int removeCurrentByService(long clusterId, String serviceName) {
+    // write any queued alerts first so that the removal applies to them too
+    flushWriteBehind();
+
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
       "AlertCurrentEntity.findByServiceName", AlertCurrentEntity.class);
 
@@ -848,7 +952,7 @@ public class AlertsDAO implements Cleanable {
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
     if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
+      invalidateCachedAlerts();
     }
 
     // publish the event to recalculate aggregates
@@ -870,6 +974,9 @@ public class AlertsDAO implements Cleanable {
    */
   @Transactional
   public int removeCurrentByHost(String hostName) {
+    // write any queued alerts first so that the removal applies to them too
+    flushWriteBehind();
+
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
       "AlertCurrentEntity.findByHost", AlertCurrentEntity.class);
 
@@ -886,7 +993,7 @@ public class AlertsDAO implements Cleanable {
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
     if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
+      invalidateCachedAlerts();
     }
 
     // publish the event to recalculate aggregates for every cluster since a host could potentially have several clusters
@@ -927,6 +1034,8 @@ public class AlertsDAO implements Cleanable {
   @Transactional
   public int removeCurrentByServiceComponentHost(long clusterId, String serviceName,
       String componentName, String hostName) {
+    // write any queued alerts first so that the removal applies to them too
+    flushWriteBehind();
 
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
       "AlertCurrentEntity.findByHostComponent", AlertCurrentEntity.class);
@@ -947,7 +1056,7 @@ public class AlertsDAO implements Cleanable {
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
     if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
+      invalidateCachedAlerts();
     }
 
     // publish the event to recalculate aggregates
@@ -1187,6 +1296,12 @@ public class AlertsDAO implements Cleanable {
     ConcurrentMap<AlertCacheKey, AlertCurrentEntity> map = m_currentAlertCache.asMap();
     Set<Entry<AlertCacheKey, AlertCurrentEntity>> entries = map.entrySet();
     for (Entry<AlertCacheKey, AlertCurrentEntity> entry : entries) {
+      // alerts whose history has not been written yet are merged by the next
+      // write-behind flush
+      if (isHistoryPending(entry.getValue())) {
+        continue;
+      }
+
       merge(entry.getValue());
     }
 
@@ -1195,6 +1310,278 @@ public class AlertsDAO implements Cleanable {
     LOG.info("Flushed {} cached alerts to the database", cachedEntityCount);
   }
 
+  /**
+   * Gets whether updates to {@link AlertCurrentEntity} and new
+   * {@link AlertHistoryEntity} instances should be queued with
+   * {@link #writeBehind(List, List, List)} instead of being written
+   * immediately.
+   *
+   * @return {@code true} if alert caching is enabled and a write-behind
+   *         staleness has been configured.
+   * @see Configuration#getAlertCacheWriteBehindMaxStaleness()
+   */
+  public boolean isWriteBehindEnabled() {
+    return m_writeBehindMaxStaleness > 0;
+  }
+
+  /**
+   * Gets the maximum time that write-behind updates are held before being
+   * flushed.
+   *
+   * @return the maximum staleness, in milliseconds, or {@code 0} if
+   *         write-behind is disabled.
+   */
+  public long getWriteBehindMaxStaleness() {
+    return m_writeBehindMaxStaleness;
+  }
+
+  /**
+   * Queues current alert updates and new alert history entries to be written
+   * by the next {@link #flushWriteBehind()}. The cache is updated immediately
+   * so that lookups see the queued values. The specified events are published
+   * after the entities they refer to have been written, in the order in which
+   * they were queued.
+   * <p/>
+   * If the number of pending updates reaches the configured batch size, then
+   * they are flushed by the calling thread.
+   *
+   * @param toMerge
+   *          the existing current alerts to merge (not {@code null}).
+   * @param toCreateHistoryAndMerge
+   *          the existing current alerts whose new history must be created
+   *          before they are merged (not {@code null}).
+   * @param events
+   *          the events to publish once the entities have been written (not
+   *          {@code null}).
+   */
+  public void writeBehind(List<AlertCurrentEntity> toMerge,
+      List<AlertCurrentEntity> toCreateHistoryAndMerge, List<? extends AlertEvent> events) {
+    if (!isWriteBehindEnabled()) {
+      throw new IllegalStateException("Alert write-behind is not enabled");
+    }
+
+    boolean flush;
+    synchronized (m_writeBehindLock) {
+      for (AlertCurrentEntity entity : toMerge) {
+        AlertCacheKey key = AlertCacheKey.build(entity);
+        m_currentAlertCache.put(key, entity);
+        m_pendingCurrent.put(key, entity);
+      }
+
+      for (AlertCurrentEntity entity : toCreateHistoryAndMerge) {
+        AlertCacheKey key = AlertCacheKey.build(entity);
+        m_pendingHistory.add(entity.getAlertHistory());
+        m_currentAlertCache.put(key, entity);
+        m_pendingCurrent.put(key, entity);
+      }
+
+      m_pendingEvents.addAll(events);
+
+      if (m_oldestPendingTime == 0 && (!m_pendingCurrent.isEmpty() || !m_pendingEvents.isEmpty())) {
+        m_oldestPendingTime = System.currentTimeMillis();
+      }
+
+      flush = m_pendingHistory.size() + m_pendingCurrent.size() >= m_writeBehindBatchSize;
+    }
+
+    if (flush) {
+      flushWriteBehind();
+    }
+  }
+
+  /**
+   * Writes all pending write-behind updates to the database in a single
+   * transaction and then publishes the events which were waiting for them. If
+   * the write fails, the cache is invalidated so that the database values are
+   * used again and the waiting events are discarded.
+   * <p/>
+   * If this is invoked from within a transaction, then the updates become part
+   * of it and the events are published after it has been committed.
+   */
+  public void flushWriteBehind() {
+    if (!isWriteBehindEnabled()) {
+      return;
+    }
+
+    m_writeBehindFlushLock.lock();
+    try {
+      List<AlertHistoryEntity> history;
+      List<AlertCurrentEntity> current;
+      List<AlertEvent> events;
+      long oldestPendingTime;
+
+      synchronized (m_writeBehindLock) {
+        if (m_oldestPendingTime == 0) {
+          return;
+        }
+
+        history = m_pendingHistory;
+        current = new ArrayList<>(m_pendingCurrent.values());
+        events = m_pendingEvents;
+        oldestPendingTime = m_oldestPendingTime;
+
+        m_flushingCurrent = m_pendingCurrent;
+        m_pendingHistory = new ArrayList<>();
+        m_pendingCurrent = new LinkedHashMap<>();
+        m_pendingEvents = new ArrayList<>();
+        m_oldestPendingTime = 0;
+      }
+
+      long start = System.currentTimeMillis();
+      try {
+        persistWriteBehind(history, current);
+      } catch (Exception exception) {
+        m_flushFailures.incrementAndGet();
+        m_currentAlertCache.invalidateAll();
+
+        LOG.error(
+            "Unable to write {} alert history entries and {} current alerts to the database, discarding {} events",
+            history.size(), current.size(), events.size(), exception);
+        return;
+      } finally {
+        synchronized (m_writeBehindLock) {
+          m_flushingCurrent = Collections.emptyMap();
+        }
+      }
+
+      long end = System.currentTimeMillis();
+      long duration = end - start;
+
+      m_flushCount.incrementAndGet();
+      m_flushedHistoryCount.addAndGet(history.size());
+      m_flushedCurrentCount.addAndGet(current.size());
+      m_flushTimeTotal.addAndGet(duration);
+      updateMax(m_flushTimeMax, duration);
+      updateMax(m_flushStalenessMax, end - oldestPendingTime);
+
+      LOG.debug("Wrote {} alert history entries and {} current alerts to the database in {}ms",
+          history.size(), current.size(), duration);
+
+      // when invoked from within a transaction, such as by one of the removal
+      // methods, the entities are only visible once it commits
+      final List<AlertEvent> committedEvents = events;
+      AmbariJpaLocalTxnInterceptor.runAfterCommit(new Runnable() {
+        @Override
+        public void run() {
+          for (AlertEvent event : committedEvents) {
+            m_alertEventPublisher.publish(event);
+          }
+        }
+      });
+    } finally {
+      m_writeBehindFlushLock.unlock();
+    }
+  }
+
+  /**
+   * Persists the new history entries and merges the current alerts queued by
+   * {@link #writeBehind(List, List, List)}. Since everything is written in a
+   * single transaction, EclipseLink sends the statements in JDBC batches.
+   * <p/>
+   * The merged instances are not put back into the cache since the queued
+   * instances may have been updated again in the meantime.
+   *
+   * @param history
+   *          the history entries to persist (not {@code null}).
+   * @param current
+   *          the current alerts to merge (not {@code null}).
+   */
+  @Transactional
+  void persistWriteBehind(List<AlertHistoryEntity> history, List<AlertCurrentEntity> current) {
+    EntityManager entityManager = m_entityManagerProvider.get();
+
+    // a history entry may already have been persisted through the cascade of
+    // a current alert written by a previous flush
+    for (AlertHistoryEntity entity : history) {
+      if (null == entity.getAlertId()) {
+        entityManager.persist(entity);
+      }
+    }
+
+    for (AlertCurrentEntity entity : current) {
+      entityManager.merge(entity);
+    }
+
+    // make the rows visible to bulk queries which run later in an enclosing
+    // transaction
+    entityManager.flush();
+  }
+
+  /**
+   * Gets the write-behind queue sizes and flush statistics.
+   *
+   * @return the statistics keyed by name (never {@code null}).
+   */
+  public Map<String, Number> getWriteBehindStatistics() {
+    Map<String, Number> statistics = new LinkedHashMap<>();
+    synchronized (m_writeBehindLock) {
+      statistics.put("pending.history", m_pendingHistory.size());
+      statistics.put("pending.current", m_pendingCurrent.size());
+      statistics.put("pending.events", m_pendingEvents.size());
+    }
+
+    long flushCount = m_flushCount.get();
+    statistics.put("flushes", flushCount);
+    statistics.put("failures", m_flushFailures.get());
+    statistics.put("flushed.history", m_flushedHistoryCount.get());
+    statistics.put("flushed.current", m_flushedCurrentCount.get());
+    statistics.put("latency.avg", flushCount == 0 ? 0L : m_flushTimeTotal.get() / flushCount);
+    statistics.put("latency.max", m_flushTimeMax.get());
+    statistics.put("staleness.max", m_flushStalenessMax.get());
+    return statistics;
+  }
+
+  /**
+   * Sets the value to the specified maximum if it is larger.
+   */
+  private static void updateMax(AtomicLong max, long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Gets the current alert which is waiting to be written by the write-behind
+   * stage for the specified key.
+   *
+   * @param key
+   *          the key of the alert (not {@code null}).
+   * @return the queued alert, or {@code null} if none.
+   */
+  private AlertCurrentEntity findPendingCurrent(AlertCacheKey key) {
+    synchronized (m_writeBehindLock) {
+      AlertCurrentEntity pendingEntity = m_pendingCurrent.get(key);
+      if (null == pendingEntity) {
+        pendingEntity = m_flushingCurrent.get(key);
+      }
+
+      return pendingEntity;
+    }
+  }
+
+  /**
+   * Gets whether the history of the specified current alert has been queued
+   * by the write-behind stage and has not been written yet.
+   *
+   * @param alert
+   *          the current alert (not {@code null}).
+   * @return {@code true} if the history does not exist in the database yet.
+   */
+  private boolean isHistoryPending(AlertCurrentEntity alert) {
+    return isWriteBehindEnabled() && null == alert.getAlertHistory().getAlertId();
+  }
+
+  /**
+   * Invalidates the cache of current alerts so that the latest values are read
+   * back from the database. The removal methods flush the write-behind updates
+   * before removing anything, so any updates which are still pending were
+   * queued afterwards and are kept along with their history and events.
+   */
+  private void invalidateCachedAlerts() {
+    m_currentAlertCache.invalidateAll();
+  }
+
   /**
    * Gets a list that is comprised of the original values replaced by any cached
    * values from {@link #m_currentAlertCache}. This method should only be
@@ -1211,7 +1598,7 @@ public class AlertsDAO implements Cleanable {
     for (AlertCurrentEntity alert : alerts) {
       AlertCacheKey key = AlertCacheKey.build(alert);
       AlertCurrentEntity cachedEntity = m_currentAlertCache.getIfPresent(key);
-      if (null != cachedEntity) {
+      if (null != cachedEntity && !isHistoryPending(cachedEntity)) {
         alert = cachedEntity;
       }
 
@@ -19,11 +19,17 @@
 package org.apache.ambari.server.stack;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
@@ -53,6 +59,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 
@@ -109,6 +117,12 @@ public class StackManager {
    */
   private Map<String, ExtensionInfo> extensionMap = new HashMap<>();
 
+  /**
+   * The number of threads used to parse the stack, common service and
+   * extension directories.
+   */
+  static int parseThreads = Runtime.getRuntime().availableProcessors();
+
   /**
    * Constructor. Initialize stack manager.
    *
@@ -498,33 +512,55 @@ public class StackManager {
     Map<String, ServiceModule> commonServiceModules = new HashMap<>();
 
     if(commonServicesRoot != null) {
+      List<Callable<Map<String, ServiceModule>>> tasks = new ArrayList<>();
       File[] commonServiceFiles = commonServicesRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
       for (File commonService : commonServiceFiles) {
         if (commonService.isFile()) {
           continue;
         }
-        for (File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
-          String serviceName = serviceFolder.getParentFile().getName();
-          String serviceVersion = serviceFolder.getName();
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          if (metaInfoXml != null) {
-            if (metaInfoXml.isValid()) {
-              for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-                ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-                String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-                commonServiceModules.put(commonServiceKey, serviceModule);
-              }
-            } else {
-              ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
-              serviceModule.setValid(false);
-              serviceModule.addErrors(metaInfoXml.getErrors());
-              commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
-              metaInfoXml.setSchemaVersion(null);
+        for (final File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+          tasks.add(new Callable<Map<String, ServiceModule>>() {
+            @Override
+            public Map<String, ServiceModule> call() throws Exception {
+              return parseCommonServiceDirectory(serviceFolder);
             }
-          }
+          });
+        }
+      }
+
+      for (Map<String, ServiceModule> serviceModules : invokeAll(tasks)) {
+        commonServiceModules.putAll(serviceModules);
+      }
+    }
+    return commonServiceModules;
+  }
+
+  /**
+   * Parse the specified common service version directory.
+   *
+   * @param serviceFolder  the common service version directory to parse
+   * @return map of common service id which contains name and version to common service module.
+   * @throws AmbariException if unable to parse the common service
+   */
+  private Map<String, ServiceModule> parseCommonServiceDirectory(File serviceFolder) throws AmbariException {
+    Map<String, ServiceModule> commonServiceModules = new HashMap<>();
+
+    ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
+    ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+    if (metaInfoXml != null) {
+      if (metaInfoXml.isValid()) {
+        for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+          ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
+
+          String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+          commonServiceModules.put(commonServiceKey, serviceModule);
         }
+      } else {
+        ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
+        serviceModule.setValid(false);
+        serviceModule.addErrors(metaInfoXml.getErrors());
+        commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
+        metaInfoXml.setSchemaVersion(null);
       }
     }
     return commonServiceModules;
@@ -540,25 +576,38 @@ public class StackManager {
   private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
     Map<String, StackModule> stackModules = new HashMap<>();
 
+    List<String> stackKeys = new ArrayList<>();
+    List<Callable<StackModule>> tasks = new ArrayList<>();
     File[] stackFiles = stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File stack : stackFiles) {
       if (stack.isFile()) {
         continue;
       }
-      for (File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
         if (stackFolder.isFile()) {
           continue;
         }
         String stackName = stackFolder.getParentFile().getName();
         String stackVersion = stackFolder.getName();
 
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
-        String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+        stackKeys.add(stackName + StackManager.PATH_DELIMITER + stackVersion);
+        tasks.add(new Callable<StackModule>() {
+          @Override
+          public StackModule call() throws Exception {
+            return new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
+          }
+        });
       }
     }
 
+    List<StackModule> parsedModules = invokeAll(tasks);
+    for (int i = 0; i < parsedModules.size(); i++) {
+      StackModule stackModule = parsedModules.get(i);
+      String stackKey = stackKeys.get(i);
+      stackModules.put(stackKey, stackModule);
+      stackMap.put(stackKey, stackModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
           "stackRoot = " + stackRoot.getAbsolutePath());
@@ -584,29 +633,77 @@ public class StackManager {
     if (extensionRoot == null || !extensionRoot.exists())
       return extensionModules;
 
+    List<String> extensionKeys = new ArrayList<>();
+    List<Callable<ExtensionModule>> tasks = new ArrayList<>();
     File[] extensionFiles = extensionRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File extensionNameFolder : extensionFiles) {
       if (extensionNameFolder.isFile()) {
         continue;
       }
-      for (File extensionVersionFolder : extensionNameFolder.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File extensionVersionFolder : extensionNameFolder.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
         if (extensionVersionFolder.isFile()) {
           continue;
         }
         String extensionName = extensionNameFolder.getName();
         String extensionVersion = extensionVersionFolder.getName();
 
-        ExtensionModule extensionModule = new ExtensionModule(new ExtensionDirectory(extensionVersionFolder.getPath()), stackContext);
-        String extensionKey = extensionName + StackManager.PATH_DELIMITER + extensionVersion;
-        extensionModules.put(extensionKey, extensionModule);
-        extensionMap.put(extensionKey, extensionModule.getModuleInfo());
+        extensionKeys.add(extensionName + StackManager.PATH_DELIMITER + extensionVersion);
+        tasks.add(new Callable<ExtensionModule>() {
+          @Override
+          public ExtensionModule call() throws Exception {
+            return new ExtensionModule(new ExtensionDirectory(extensionVersionFolder.getPath()), stackContext);
+          }
+        });
       }
     }
 
+    List<ExtensionModule> parsedModules = invokeAll(tasks);
+    for (int i = 0; i < parsedModules.size(); i++) {
+      ExtensionModule extensionModule = parsedModules.get(i);
+      String extensionKey = extensionKeys.get(i);
+      extensionModules.put(extensionKey, extensionModule);
+      extensionMap.put(extensionKey, extensionModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find extension definitions under " +
           "extensionRoot = " + extensionRoot.getAbsolutePath());
     }
     return extensionModules;
   }
+
+  /**
+   * Executes the specified parse tasks on up to {@link #parseThreads} threads
+   * since the stack definition directories are independent of each other
+   * until they are resolved.
+   *
+   * @param tasks  the parse tasks
+   * @return the results of the tasks, in the order of the tasks.
+   * @throws AmbariException if any of the tasks failed
+   */
+  private <T> List<T> invokeAll(List<Callable<T>> tasks) throws AmbariException {
+    List<T> results = new ArrayList<>(tasks.size());
+    if (tasks.isEmpty()) {
+      return results;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parseThreads, tasks.size()),
+        new ThreadFactoryBuilder().setNameFormat("stack-parser-%d").setDaemon(true).build());
+
+    try {
+      for (Future<T> future : executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while parsing the stack definitions", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), AmbariException.class);
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return results;
+  }
 }
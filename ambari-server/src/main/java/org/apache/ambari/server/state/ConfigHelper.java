@@ -29,7 +29,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
@@ -45,7 +48,6 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Objects;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
@@ -68,10 +70,42 @@ public class ConfigHelper {
   private final int STALE_CONFIGS_CACHE_EXPIRATION_TIME;
 
   /**
-   * Cache for storing stale config flags. Key for cache is hash of [actualConfigs, desiredConfigs, hostName, serviceName,
-   * componentName].
+   * The config staleness of each {@link ServiceComponentHost}, along with the
+   * actual configurations and the generation of the desired configurations of
+   * its cluster which it was calculated for. An entry is only used while the
+   * component still reports the same actual configurations and nothing
+   * has invalidated the desired configurations of the cluster since, so it
+   * never has to be recalculated otherwise. Entries still expire after a
+   * while in case a change to the desired configurations is missed.
    */
-  private final Cache<Integer, Boolean> staleConfigsCache;
+  private final Cache<ServiceComponentHost, StaleConfigsEntry> staleConfigsCache;
+
+  /**
+   * The generation of the desired configurations of each cluster, by cluster
+   * ID.
+   *
+   * @see #invalidateStaleConfigs(long)
+   */
+  private final ConcurrentMap<Long, AtomicLong> staleConfigsGenerations = new ConcurrentHashMap<>();
+
+  /**
+   * The {@link ConfigurationSnapshot}s which are still referenced, keyed by
+   * their hash, so that commands resolving to the same effective
+   * configurations share a single copy of them.
+   */
+  private final Cache<String, ConfigurationSnapshot> configurationSnapshots =
+      CacheBuilder.newBuilder().weakValues().build();
+
+  /**
+   * The {@link ConfigurationSnapshot}s which were sent to agents by hash, keyed
+   * by the ID of the task they were sent with. Holding them keeps them in
+   * {@link #configurationSnapshots} until the task completes, so that the
+   * agent can still retrieve them even if no command in memory refers to them
+   * any longer. Tasks which never report completion, such as those of lost
+   * hosts, release them after a day.
+   */
+  private final Cache<Long, ConfigurationSnapshot> sentConfigurationSnapshots =
+      CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.DAYS).build();
 
   private static final Logger LOG =
       LoggerFactory.getLogger(ConfigHelper.class);
@@ -109,7 +143,7 @@ public class ConfigHelper {
     this.clusterDAO = clusterDAO;
     STALE_CONFIGS_CACHE_ENABLED = configuration.isStaleConfigCacheEnabled();
     STALE_CONFIGS_CACHE_EXPIRATION_TIME = configuration.staleConfigCacheExpiration();
-    staleConfigsCache = CacheBuilder.newBuilder().
+    staleConfigsCache = CacheBuilder.newBuilder().weakKeys().
         expireAfterWrite(STALE_CONFIGS_CACHE_EXPIRATION_TIME, TimeUnit.SECONDS).build();
   }
 
@@ -315,6 +349,117 @@ public class ConfigHelper {
     return attributes;
   }
 
+  /**
+   * Gets the effective config properties and attributes for a cluster given a
+   * set of configType to versionTags map as a {@link ConfigurationSnapshot}. If
+   * a snapshot with the same content is still in use, then that instance is
+   * returned instead of the new one.
+   *
+   * @param cluster
+   * @param desiredTags
+   * @return the snapshot (never {@code null}).
+   * @see #getEffectiveConfigProperties(Cluster, Map)
+   * @see #getEffectiveConfigAttributes(Cluster, Map)
+   */
+  public ConfigurationSnapshot getEffectiveConfigSnapshot(Cluster cluster,
+      Map<String, Map<String, String>> desiredTags) {
+    ConfigurationSnapshot snapshot = new ConfigurationSnapshot(
+        getEffectiveConfigProperties(cluster, desiredTags),
+        getEffectiveConfigAttributes(cluster, desiredTags));
+
+    return internConfigSnapshot(snapshot);
+  }
+
+  /**
+   * Gets the copy of a {@link ConfigurationSnapshot} which can be sent to the
+   * agent of a component, which is the snapshot itself unless some of its
+   * properties are hidden from the component.
+   *
+   * @param snapshot
+   *          the snapshot (not {@code null}).
+   * @param componentName
+   *          the component name (not {@code null}).
+   * @return the snapshot without the properties hidden from the component
+   *         (never {@code null}).
+   * @see #processHiddenAttribute(Map, Map, String, boolean)
+   */
+  public ConfigurationSnapshot getComponentConfigSnapshot(ConfigurationSnapshot snapshot,
+      String componentName) {
+    if (!snapshot.isHiddenFrom(componentName)) {
+      return snapshot;
+    }
+
+    ConfigurationSnapshot componentSnapshot = snapshot.getComponentSnapshot(componentName);
+    if (null == componentSnapshot) {
+      Map<String, Map<String, String>> properties = new HashMap<>(snapshot.getProperties());
+      processHiddenAttribute(properties, snapshot.getAttributes(), componentName, false);
+
+      componentSnapshot = internConfigSnapshot(
+          new ConfigurationSnapshot(properties, snapshot.getAttributes()));
+      snapshot.setComponentSnapshot(componentName, componentSnapshot);
+    }
+
+    return componentSnapshot;
+  }
+
+  /**
+   * Gets a {@link ConfigurationSnapshot} which is still in use by its hash.
+   *
+   * @param hash
+   *          the hash of the snapshot.
+   * @return the snapshot, or {@code null} if there is no snapshot with the
+   *         hash or it is no longer referenced by any command.
+   */
+  public ConfigurationSnapshot getConfigSnapshot(String hash) {
+    return configurationSnapshots.getIfPresent(hash);
+  }
+
+  /**
+   * Keeps a {@link ConfigurationSnapshot} which was sent to an agent by its
+   * hash available until the task it was sent with completes.
+   *
+   * @param taskId
+   *          the ID of the task.
+   * @param snapshot
+   *          the snapshot whose hash was sent (not {@code null}).
+   * @see #releaseConfigSnapshot(long)
+   */
+  public void retainConfigSnapshot(long taskId, ConfigurationSnapshot snapshot) {
+    sentConfigurationSnapshots.put(taskId, snapshot);
+  }
+
+  /**
+   * Releases the {@link ConfigurationSnapshot} retained for a task once the
+   * task has completed. The snapshot stays available for as long as other
+   * tasks or commands still refer to it.
+   *
+   * @param taskId
+   *          the ID of the completed task.
+   */
+  public void releaseConfigSnapshot(long taskId) {
+    sentConfigurationSnapshots.invalidate(taskId);
+  }
+
+  /**
+   * @param taskId
+   *          the ID of the task.
+   * @return the snapshot retained for the task, or {@code null} if none.
+   */
+  ConfigurationSnapshot getRetainedConfigSnapshot(long taskId) {
+    return sentConfigurationSnapshots.getIfPresent(taskId);
+  }
+
+  /**
+   * Gets the snapshot with the same content as the specified one if it is
+   * still in use, otherwise registers the specified one.
+   */
+  private ConfigurationSnapshot internConfigSnapshot(ConfigurationSnapshot snapshot) {
+    ConfigurationSnapshot existing = configurationSnapshots.asMap().putIfAbsent(
+        snapshot.getHash(), snapshot);
+
+    return null != existing ? existing : snapshot;
+  }
+
   /**
    * Merge override with original, if original property doesn't exist,
    * add it to the properties
@@ -1231,26 +1376,23 @@ public class ConfigHelper {
       return false;
     }
 
+    // the generation must be read before the desired configurations so that a
+    // concurrent change can't be cached under the new generation
+    long generation = 0;
+    if (STALE_CONFIGS_CACHE_ENABLED) {
+      generation = getStaleConfigsGeneration(sch.getClusterId()).get();
+      StaleConfigsEntry entry = staleConfigsCache.getIfPresent(sch);
+      if (null != entry && entry.generation == generation && entry.actualConfigs.equals(actual)) {
+        return entry.stale;
+      }
+    }
+
     Cluster cluster = clusters.getClusterById(sch.getClusterId());
 
     Map<String, Map<String, String>> desired = getEffectiveDesiredTags(cluster, sch.getHostName(),
             desiredConfigs);
 
-    Boolean stale = null;
-    int staleHash = 0;
-    if (STALE_CONFIGS_CACHE_ENABLED){
-      staleHash = Objects.hashCode(actual.hashCode(),
-              desired.hashCode(),
-              sch.getHostName(),
-              sch.getServiceComponentName(),
-              sch.getServiceName());
-      stale = staleConfigsCache.getIfPresent(staleHash);
-      if(stale != null) {
-        return stale;
-      }
-    }
-
-    stale = false;
+    boolean stale = false;
 
     StackId stackId = cluster.getDesiredStackVersion();
 
@@ -1295,11 +1437,39 @@ public class ConfigHelper {
       }
     }
     if (STALE_CONFIGS_CACHE_ENABLED) {
-      staleConfigsCache.put(staleHash, stale);
+      staleConfigsCache.put(sch, new StaleConfigsEntry(generation,
+          new HashMap<>(actual), stale));
     }
     return stale;
   }
 
+  /**
+   * Invalidates the cached config staleness of all components of a cluster.
+   * This must be called after anything which the desired configurations of
+   * the components are derived from changes, such as the desired
+   * configurations of the cluster or its hosts, its configuration groups or
+   * its stack.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   */
+  public void invalidateStaleConfigs(long clusterId) {
+    getStaleConfigsGeneration(clusterId).incrementAndGet();
+  }
+
+  private AtomicLong getStaleConfigsGeneration(long clusterId) {
+    AtomicLong generation = staleConfigsGenerations.get(clusterId);
+    if (null == generation) {
+      AtomicLong newGeneration = new AtomicLong();
+      generation = staleConfigsGenerations.putIfAbsent(clusterId, newGeneration);
+      if (null == generation) {
+        generation = newGeneration;
+      }
+    }
+
+    return generation;
+  }
+
   /**
    * Determines if the hostname has group specific configs for the type specified
    *
@@ -1455,6 +1625,7 @@ public class ConfigHelper {
       for(Map.Entry<String, Map<String,String>> confEntry : configurations.entrySet()){
         String configTag = confEntry.getKey();
         Map<String,String> confProperties = confEntry.getValue();
+        boolean copied = false;
         if(attributes.containsKey(configTag)){
           Map<String, Map<String, String>> configAttributes = attributes.get(configTag);
           if(configAttributes.containsKey("hidden")){
@@ -1467,6 +1638,13 @@ public class ConfigHelper {
                 // otherwise - check if we have matching component name
                 if ((configDownload ? components.contains("CONFIG_DOWNLOAD") : components.contains(componentName))
                     && confProperties.containsKey(propertyName)) {
+                  // the properties may be shared with other commands, so
+                  // remove the property from a copy of them
+                  if (!copied) {
+                    confProperties = new HashMap<>(confProperties);
+                    confEntry.setValue(confProperties);
+                    copied = true;
+                  }
                   confProperties.remove(propertyName);
                 }
               }
@@ -1494,4 +1672,25 @@ public class ConfigHelper {
     }
   }
 
+  /**
+   * The cached config staleness of a {@link ServiceComponentHost}.
+   */
+  private static final class StaleConfigsEntry {
+
+    private final long generation;
+
+    /**
+     * A copy of the actual configurations of the component.
+     */
+    private final Map<String, HostConfig> actualConfigs;
+
+    private final boolean stale;
+
+    private StaleConfigsEntry(long generation, Map<String, HostConfig> actualConfigs,
+        boolean stale) {
+      this.generation = generation;
+      this.actualConfigs = actualConfigs;
+      this.stale = stale;
+    }
+  }
 }
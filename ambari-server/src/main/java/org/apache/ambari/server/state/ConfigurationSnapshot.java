@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The {@link ConfigurationSnapshot} is an immutable set of effective
+ * configuration properties and attributes identified by a hash of its content.
+ * Commands which resolve to the same effective configurations share a single
+ * snapshot instead of each holding their own copy of the maps, and agents
+ * which support it can retrieve a snapshot once by its hash and then only
+ * receive the hash and the command specific overrides with every command.
+ */
+public final class ConfigurationSnapshot {
+
+  /**
+   * The attribute which lists the components that a property is hidden from.
+   */
+  private static final String HIDDEN_ATTRIBUTE = "hidden";
+
+  @SerializedName("hash")
+  private final String hash;
+
+  @SerializedName("configurations")
+  private final Map<String, Map<String, String>> properties;
+
+  @SerializedName("configuration_attributes")
+  private final Map<String, Map<String, Map<String, String>>> attributes;
+
+  /**
+   * The values of all {@code hidden} attributes of the snapshot, each being a
+   * list of the components that the property is hidden from.
+   */
+  private final transient Set<String> hiddenFrom;
+
+  /**
+   * The copies of this snapshot without the properties hidden from a
+   * component, by component name. They are kept here so that they remain
+   * available for as long as this snapshot is.
+   */
+  private final transient ConcurrentMap<String, ConfigurationSnapshot> componentSnapshots =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param properties
+   *          the effective properties by configuration type (not
+   *          {@code null}).
+   * @param attributes
+   *          the effective attributes by configuration type (not
+   *          {@code null}).
+   */
+  public ConfigurationSnapshot(Map<String, Map<String, String>> properties,
+      Map<String, Map<String, Map<String, String>>> attributes) {
+    Map<String, Map<String, String>> sortedProperties = new TreeMap<>();
+    for (Map.Entry<String, Map<String, String>> entry : properties.entrySet()) {
+      sortedProperties.put(entry.getKey(),
+          Collections.unmodifiableMap(new TreeMap<>(entry.getValue())));
+    }
+
+    Map<String, Map<String, Map<String, String>>> sortedAttributes = new TreeMap<>();
+    Set<String> hiddenFrom = new HashSet<>();
+    for (Map.Entry<String, Map<String, Map<String, String>>> entry : attributes.entrySet()) {
+      Map<String, Map<String, String>> typeAttributes = new TreeMap<>();
+      for (Map.Entry<String, Map<String, String>> attribute : entry.getValue().entrySet()) {
+        typeAttributes.put(attribute.getKey(),
+            Collections.unmodifiableMap(new TreeMap<>(attribute.getValue())));
+
+        if (HIDDEN_ATTRIBUTE.equals(attribute.getKey())) {
+          hiddenFrom.addAll(attribute.getValue().values());
+        }
+      }
+
+      sortedAttributes.put(entry.getKey(), Collections.unmodifiableMap(typeAttributes));
+    }
+
+    this.properties = Collections.unmodifiableMap(sortedProperties);
+    this.attributes = Collections.unmodifiableMap(sortedAttributes);
+    this.hiddenFrom = hiddenFrom;
+
+    Hasher hasher = Hashing.sha1().newHasher();
+    for (Map.Entry<String, Map<String, String>> entry : this.properties.entrySet()) {
+      putString(hasher, entry.getKey());
+      putMap(hasher, entry.getValue());
+    }
+
+    // separates the properties from the attributes
+    hasher.putInt(-1);
+    for (Map.Entry<String, Map<String, Map<String, String>>> entry : this.attributes.entrySet()) {
+      putString(hasher, entry.getKey());
+      hasher.putInt(entry.getValue().size());
+      for (Map.Entry<String, Map<String, String>> attribute : entry.getValue().entrySet()) {
+        putString(hasher, attribute.getKey());
+        putMap(hasher, attribute.getValue());
+      }
+    }
+
+    hash = hasher.hash().toString();
+  }
+
+  /**
+   * Gets the hash of the properties and attributes of this snapshot. Two
+   * snapshots with the same hash have the same content.
+   *
+   * @return the hash (never {@code null}).
+   */
+  public String getHash() {
+    return hash;
+  }
+
+  /**
+   * Gets the effective properties by configuration type.
+   *
+   * @return the unmodifiable properties (never {@code null}).
+   */
+  public Map<String, Map<String, String>> getProperties() {
+    return properties;
+  }
+
+  /**
+   * Gets the effective attributes by configuration type.
+   *
+   * @return the unmodifiable attributes (never {@code null}).
+   */
+  public Map<String, Map<String, Map<String, String>>> getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * Gets whether any of the properties of this snapshot are hidden from the
+   * specified component, in which case the snapshot must not be sent to the
+   * agent of the component as is.
+   *
+   * @param componentName
+   *          the component name (not {@code null}).
+   * @return {@code true} if a property is hidden from the component.
+   * @see ConfigHelper#processHiddenAttribute(Map, Map, String, boolean)
+   */
+  public boolean isHiddenFrom(String componentName) {
+    for (String components : hiddenFrom) {
+      if (null != components && components.contains(componentName)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Gets the copy of this snapshot without the properties hidden from the
+   * specified component.
+   *
+   * @param componentName
+   *          the component name.
+   * @return the copy, or {@code null} if it has not been created yet.
+   */
+  ConfigurationSnapshot getComponentSnapshot(String componentName) {
+    return componentSnapshots.get(componentName);
+  }
+
+  /**
+   * Sets the copy of this snapshot without the properties hidden from the
+   * specified component.
+   *
+   * @param componentName
+   *          the component name.
+   * @param snapshot
+   *          the copy.
+   */
+  void setComponentSnapshot(String componentName, ConfigurationSnapshot snapshot) {
+    componentSnapshots.put(componentName, snapshot);
+  }
+
+  private static void putMap(Hasher hasher, Map<String, String> map) {
+    hasher.putInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      putString(hasher, entry.getKey());
+      putString(hasher, entry.getValue());
+    }
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    if (null == value) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(value.length()).putString(value, Charsets.UTF_8);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return "ConfigurationSnapshot{hash=" + hash + ", types=" + properties.keySet() + "}";
+  }
+}
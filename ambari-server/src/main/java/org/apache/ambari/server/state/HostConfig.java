@@ -52,6 +52,21 @@ public class HostConfig {
     return configGroupOverrides;
   }
 
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    }
+
+    if (null == object || getClass() != object.getClass()) {
+      return false;
+    }
+
+    HostConfig that = (HostConfig) object;
+    return Objects.equal(defaultVersionTag, that.defaultVersionTag)
+        && configGroupOverrides.equals(that.configGroupOverrides);
+  }
+
   @Override
   public int hashCode(){
     return Objects.hashCode(defaultVersionTag.hashCode(), configGroupOverrides.hashCode());
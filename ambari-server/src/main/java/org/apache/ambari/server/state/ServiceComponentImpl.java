@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.state;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -44,9 +45,11 @@ import org.apache.ambari.server.orm.entities.HostComponentStateEntity;
 import org.apache.ambari.server.orm.entities.ServiceComponentDesiredStateEntity;
 import org.apache.ambari.server.orm.entities.StackEntity;
 import org.apache.ambari.server.state.cluster.ClusterImpl;
+import org.apache.ambari.server.state.svccomphost.HostComponentStateStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.inject.Inject;
 import com.google.inject.ProvisionException;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
@@ -86,6 +89,12 @@ public class ServiceComponentImpl implements ServiceComponent {
    */
   private final StackDAO stackDAO;
 
+  /**
+   * Used to count the host components by state.
+   */
+  @Inject
+  private HostComponentStateStore hostComponentStateStore;
+
   @AssistedInject
   public ServiceComponentImpl(@Assisted Service service, @Assisted String componentName,
       AmbariMetaInfo ambariMetaInfo,
@@ -572,23 +581,44 @@ public class ServiceComponentImpl implements ServiceComponent {
   }
 
 
-  private int getSCHCountByState(State state) {
-    int count = 0;
-    for (ServiceComponentHost sch : hostComponents.values()) {
-      if (sch.getState() == state) {
-        count++;
+  /**
+   * Counts the host components of this component by state in a single pass,
+   * from the {@link HostComponentStateStore} if the cluster has registered all
+   * of them with it.
+   */
+  private Map<State, Integer> getSCHCountsByState() {
+    Map<State, Integer> counts = hostComponentStateStore.getStateCounts(getClusterId(),
+        getServiceName(), componentName);
+
+    int total = 0;
+    for (int count : counts.values()) {
+      total += count;
+    }
+
+    if (total != hostComponents.size()) {
+      counts = new EnumMap<>(State.class);
+      for (ServiceComponentHost sch : hostComponents.values()) {
+        State state = sch.getState();
+        Integer count = counts.get(state);
+        counts.put(state, null == count ? 1 : count + 1);
       }
     }
-    return count;
+    return counts;
+  }
+
+  private static int getSCHCount(Map<State, Integer> counts, State state) {
+    Integer count = counts.get(state);
+    return null == count ? 0 : count;
   }
 
   private Map <String, Integer> getServiceComponentStateCount() {
+    Map<State, Integer> counts = getSCHCountsByState();
     Map <String, Integer> serviceComponentStateCountMap = new HashMap<>();
-    serviceComponentStateCountMap.put("startedCount", getSCHCountByState(State.STARTED));
-    serviceComponentStateCountMap.put("installedCount", getSCHCountByState(State.INSTALLED));
-    serviceComponentStateCountMap.put("installFailedCount", getSCHCountByState(State.INSTALL_FAILED));
-    serviceComponentStateCountMap.put("initCount", getSCHCountByState(State.INIT));
-    serviceComponentStateCountMap.put("unknownCount", getSCHCountByState(State.UNKNOWN));
+    serviceComponentStateCountMap.put("startedCount", getSCHCount(counts, State.STARTED));
+    serviceComponentStateCountMap.put("installedCount", getSCHCount(counts, State.INSTALLED));
+    serviceComponentStateCountMap.put("installFailedCount", getSCHCount(counts, State.INSTALL_FAILED));
+    serviceComponentStateCountMap.put("initCount", getSCHCount(counts, State.INIT));
+    serviceComponentStateCountMap.put("unknownCount", getSCHCount(counts, State.UNKNOWN));
     serviceComponentStateCountMap.put("totalCount", hostComponents.size());
     return serviceComponentStateCountMap;
   }
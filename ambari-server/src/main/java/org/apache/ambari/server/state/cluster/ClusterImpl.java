@@ -70,6 +70,7 @@ import org.apache.ambari.server.events.jpa.JPAEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.events.publishers.JPAEventPublisher;
 import org.apache.ambari.server.logging.LockFactory;
+import org.apache.ambari.server.logging.StripedReadWriteLock;
 import org.apache.ambari.server.metadata.RoleCommandOrder;
 import org.apache.ambari.server.metadata.RoleCommandOrderProvider;
 import org.apache.ambari.server.orm.RequiresSession;
@@ -144,6 +145,7 @@ import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
 import org.apache.ambari.server.state.scheduler.RequestExecution;
 import org.apache.ambari.server.state.scheduler.RequestExecutionFactory;
 import org.apache.ambari.server.state.stack.upgrade.Direction;
+import org.apache.ambari.server.state.svccomphost.HostComponentStateStore;
 import org.apache.ambari.server.state.svccomphost.ServiceComponentHostSummary;
 import org.apache.ambari.server.topology.TopologyRequest;
 import org.apache.commons.collections.CollectionUtils;
@@ -211,10 +213,33 @@ public class ClusterImpl implements Cluster {
    */
   private final Map<Long, RequestExecution> requestExecutions = new ConcurrentHashMap<>();
 
+  /**
+   * The number of locks which the configuration types and hosts of the
+   * cluster are spread over.
+   */
+  private static final int LOCK_STRIPES = 16;
+
+  /**
+   * Guards operations which span the whole cluster. Operations which only
+   * affect a single configuration type hold its read lock along with the lock
+   * of the type, so that they exclude cluster wide operations but not each
+   * other.
+   * <p/>
+   * Locks are always acquired in the order {@link #clusterGlobalLock},
+   * {@link #configTypeLocks}, {@link #hostLocks}.
+   */
   private final ReadWriteLock clusterGlobalLock;
 
-  // This is a lock for operations that do not need to be cluster global
-  private final Lock hostTransitionStateWriteLock;
+  /**
+   * Guards the cached configurations of each configuration type.
+   */
+  private final StripedReadWriteLock configTypeLocks;
+
+  /**
+   * Guards the host version transitions of each host, which don't need to be
+   * cluster global.
+   */
+  private final StripedReadWriteLock hostLocks;
 
   /**
    * The unique ID of the {@link @ClusterEntity}.
@@ -262,6 +287,9 @@ public class ClusterImpl implements Cluster {
   @Inject
   private ConfigHelper configHelper;
 
+  @Inject
+  private HostComponentStateStore hostComponentStateStore;
+
   @Inject
   private MaintenanceStateHelper maintenanceStateHelper;
 
@@ -345,7 +373,8 @@ public class ClusterImpl implements Cluster {
     injector.injectMembers(this);
 
     clusterGlobalLock = lockFactory.newReadWriteLock("clusterGlobalLock");
-    hostTransitionStateWriteLock = lockFactory.newLock("hostTransitionStateLock");
+    configTypeLocks = lockFactory.newStripedReadWriteLock("clusterConfigTypeLock", LOCK_STRIPES);
+    hostLocks = lockFactory.newStripedReadWriteLock("clusterHostLock", LOCK_STRIPES);
 
     loadStackVersion();
     loadServices();
@@ -435,6 +464,7 @@ public class ClusterImpl implements Cluster {
 
           List<ServiceComponentHost> compList = serviceComponentHostsByHost.get(hostname);
           compList.add(svcHostComponent);
+          hostComponentStateStore.add(svcHostComponent);
 
           if (!serviceComponentHosts.get(service.getName()).get(componentName).containsKey(
               hostname)) {
@@ -512,6 +542,7 @@ public class ClusterImpl implements Cluster {
           + configGroup.getTag());
     } else {
       clusterConfigGroups.put(configGroup.getId(), configGroup);
+      configHelper.invalidateStaleConfigs(getClusterId());
     }
   }
 
@@ -583,6 +614,7 @@ public class ClusterImpl implements Cluster {
 
     configGroup.delete();
     clusterConfigGroups.remove(id);
+    configHelper.invalidateStaleConfigs(getClusterId());
   }
 
   public ServiceComponentHost getServiceComponentHost(String serviceName,
@@ -711,6 +743,7 @@ public class ClusterImpl implements Cluster {
       svcCompHost);
 
     serviceComponentHostsByHost.get(hostname).add(svcCompHost);
+    hostComponentStateStore.add(svcCompHost);
   }
 
   @Override
@@ -786,6 +819,7 @@ public class ClusterImpl implements Cluster {
     serviceComponentHosts.get(serviceName).get(componentName).remove(hostname);
     if (schToRemove != null) {
       serviceComponentHostsByHost.get(hostname).remove(schToRemove);
+      hostComponentStateStore.remove(schToRemove);
     }
   }
 
@@ -942,6 +976,7 @@ public class ClusterImpl implements Cluster {
         }
       }
       loadServiceConfigTypes();
+      configHelper.invalidateStaleConfigs(getClusterId());
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -1564,7 +1599,8 @@ public class ClusterImpl implements Cluster {
       getClusterId(), repoVersionStackId, repositoryVersion.getVersion(),
       host.getHostId());
 
-    hostTransitionStateWriteLock.lock();
+    Lock hostLock = hostLocks.get(host.getHostName()).writeLock();
+    hostLock.lock();
     try {
       // Create one if it doesn't already exist. It will be possible to make further transitions below.
       boolean performingInitialBootstrap = false;
@@ -1604,7 +1640,7 @@ public class ClusterImpl implements Cluster {
         }
       }
     } finally {
-      hostTransitionStateWriteLock.unlock();
+      hostLock.unlock();
     }
     return hostVersionEntity;
   }
@@ -1901,7 +1937,9 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Map<String, Config> getConfigsByType(String configType) {
+    Lock configTypeLock = configTypeLocks.get(configType).readLock();
     clusterGlobalLock.readLock().lock();
+    configTypeLock.lock();
     try {
       if (!allConfigs.containsKey(configType)) {
         return null;
@@ -1909,13 +1947,16 @@ public class ClusterImpl implements Cluster {
 
       return Collections.unmodifiableMap(allConfigs.get(configType));
     } finally {
+      configTypeLock.unlock();
       clusterGlobalLock.readLock().unlock();
     }
   }
 
   @Override
   public Config getConfig(String configType, String versionTag) {
+    Lock configTypeLock = configTypeLocks.get(configType).readLock();
     clusterGlobalLock.readLock().lock();
+    configTypeLock.lock();
     try {
       if (!allConfigs.containsKey(configType)
           || !allConfigs.get(configType).containsKey(versionTag)) {
@@ -1923,13 +1964,16 @@ public class ClusterImpl implements Cluster {
       }
       return allConfigs.get(configType).get(versionTag);
     } finally {
+      configTypeLock.unlock();
       clusterGlobalLock.readLock().unlock();
     }
   }
 
   @Override
   public Config getConfigByVersion(String configType, Long configVersion) {
+    Lock configTypeLock = configTypeLocks.get(configType).readLock();
     clusterGlobalLock.readLock().lock();
+    configTypeLock.lock();
     try {
       if (!allConfigs.containsKey(configType)) {
         return null;
@@ -1943,6 +1987,7 @@ public class ClusterImpl implements Cluster {
 
       return null;
     } finally {
+      configTypeLock.unlock();
       clusterGlobalLock.readLock().unlock();
     }
   }
@@ -1953,7 +1998,10 @@ public class ClusterImpl implements Cluster {
       throw new IllegalArgumentException("Config type cannot be empty");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    // configurations of other types may be added concurrently
+    Lock configTypeLock = configTypeLocks.get(config.getType()).writeLock();
+    clusterGlobalLock.readLock().lock();
+    configTypeLock.lock();
     try {
       if (!allConfigs.containsKey(config.getType())) {
         allConfigs.put(config.getType(), new ConcurrentHashMap<String, Config>());
@@ -1961,7 +2009,8 @@ public class ClusterImpl implements Cluster {
 
       allConfigs.get(config.getType()).put(config.getTag(), config);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      configTypeLock.unlock();
+      clusterGlobalLock.readLock().unlock();
     }
   }
 
@@ -2087,6 +2136,7 @@ public class ClusterImpl implements Cluster {
     service.delete();
 
     serviceComponentHosts.remove(serviceName);
+    hostComponentStateStore.removeService(getClusterId(), serviceName);
 
     for (List<ServiceComponentHost> serviceComponents: serviceComponentHostsByHost.values()){
       Iterables.removeIf(serviceComponents, new Predicate<ServiceComponentHost>() {
@@ -2179,6 +2229,7 @@ public class ClusterImpl implements Cluster {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyConfigs(
           configs, user, serviceConfigVersionNote);
 
+      configHelper.invalidateStaleConfigs(getClusterId());
       return serviceConfigVersionResponse;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -2396,6 +2447,8 @@ public class ClusterImpl implements Cluster {
     try {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyServiceConfigVersion(
           serviceName, version, user, note);
+
+      configHelper.invalidateStaleConfigs(getClusterId());
       return serviceConfigVersionResponse;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -3149,6 +3202,7 @@ public class ClusterImpl implements Cluster {
       clusterEntity = clusterDAO.merge(clusterEntity);
 
       cacheConfigurations();
+      configHelper.invalidateStaleConfigs(getClusterId());
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -3243,6 +3297,7 @@ public class ClusterImpl implements Cluster {
     try {
       removeAllConfigsForStack(stackId);
       cacheConfigurations();
+      configHelper.invalidateStaleConfigs(getClusterId());
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
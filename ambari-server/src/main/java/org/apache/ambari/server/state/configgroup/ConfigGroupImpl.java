@@ -49,6 +49,7 @@ import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.Config;
 import org.apache.ambari.server.state.ConfigFactory;
+import org.apache.ambari.server.state.ConfigHelper;
 import org.apache.ambari.server.state.Host;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,6 +90,8 @@ public class ConfigGroupImpl implements ConfigGroup {
 
   private final ConfigFactory configFactory;
 
+  private final ConfigHelper configHelper;
+
   @AssistedInject
   public ConfigGroupImpl(@Assisted("cluster") Cluster cluster, @Assisted("name") String name,
       @Assisted("tag") String tag, @Assisted("description") String description,
@@ -96,9 +99,11 @@ public class ConfigGroupImpl implements ConfigGroup {
       @Assisted("hosts") Map<Long, Host> hosts, Clusters clusters, ConfigFactory configFactory,
       ClusterDAO clusterDAO, HostDAO hostDAO, ConfigGroupDAO configGroupDAO,
       ConfigGroupConfigMappingDAO configGroupConfigMappingDAO,
-      ConfigGroupHostMappingDAO configGroupHostMappingDAO, LockFactory lockFactory) {
+      ConfigGroupHostMappingDAO configGroupHostMappingDAO, LockFactory lockFactory,
+      ConfigHelper configHelper) {
 
     this.configFactory = configFactory;
+    this.configHelper = configHelper;
     this.clusterDAO = clusterDAO;
     this.hostDAO = hostDAO;
     this.configGroupDAO = configGroupDAO;
@@ -132,9 +137,11 @@ public class ConfigGroupImpl implements ConfigGroup {
       Clusters clusters, ConfigFactory configFactory,
       ClusterDAO clusterDAO, HostDAO hostDAO, ConfigGroupDAO configGroupDAO,
       ConfigGroupConfigMappingDAO configGroupConfigMappingDAO,
-      ConfigGroupHostMappingDAO configGroupHostMappingDAO, LockFactory lockFactory) {
+      ConfigGroupHostMappingDAO configGroupHostMappingDAO, LockFactory lockFactory,
+      ConfigHelper configHelper) {
 
     this.configFactory = configFactory;
+    this.configHelper = configHelper;
     this.clusterDAO = clusterDAO;
     this.hostDAO = hostDAO;
     this.configGroupDAO = configGroupDAO;
@@ -251,6 +258,7 @@ public class ConfigGroupImpl implements ConfigGroup {
       // persist enitites in a transaction first, then update internal state
       replaceHostMappings(hosts);
       m_hosts = new ConcurrentHashMap<>(hosts);
+      configHelper.invalidateStaleConfigs(cluster.getClusterId());
     } finally {
       hostLock.writeLock().unlock();
     }
@@ -269,6 +277,7 @@ public class ConfigGroupImpl implements ConfigGroup {
     // persisted
     persistConfigMapping(clusterEntity, configGroupEntity, configurations);
     m_configurations = new ConcurrentHashMap<>(configurations);
+    configHelper.invalidateStaleConfigs(cluster.getClusterId());
   }
 
   @Override
@@ -287,6 +296,7 @@ public class ConfigGroupImpl implements ConfigGroup {
         // remove the entities first, then update internal state
         removeConfigGroupHostEntity(host);
         m_hosts.remove(hostId);
+        configHelper.invalidateStaleConfigs(cluster.getClusterId());
       } catch (Exception e) {
         LOG.error("Failed to delete config group host mapping for cluster {} and host {}",
             cluster.getClusterName(), hostName, e);
@@ -471,6 +481,7 @@ public class ConfigGroupImpl implements ConfigGroup {
       ConfigGroupEntity configGroupEntity = getConfigGroupEntity();
       persistHostMapping(Collections.singletonList(host), configGroupEntity);
       m_hosts.putIfAbsent(host.getHostId(), host);
+      configHelper.invalidateStaleConfigs(cluster.getClusterId());
     } finally {
       hostLock.writeLock().unlock();
     }
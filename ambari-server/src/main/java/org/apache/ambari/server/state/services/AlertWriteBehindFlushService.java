@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.annotations.Experimental;
+import org.apache.ambari.annotations.ExperimentalFeature;
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link AlertWriteBehindFlushService} writes the alert updates queued by
+ * the {@link AlertsDAO} write-behind stage to the database so that they are
+ * never held for longer than
+ * {@link Configuration#getAlertCacheWriteBehindMaxStaleness()}. Any remaining
+ * updates are written when the service is stopped.
+ */
+@AmbariService
+@Experimental(feature = ExperimentalFeature.ALERT_CACHING)
+public class AlertWriteBehindFlushService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(AlertWriteBehindFlushService.class);
+
+  /**
+   * Used for flushing queued entities to the database.
+   */
+  @Inject
+  private AlertsDAO m_alertsDAO;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = Math.max(1L, m_alertsDAO.getWriteBehindMaxStaleness());
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Invokes {@link #stop()} if not enabled.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    if (!m_alertsDAO.isWriteBehindEnabled()) {
+      stopAsync();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes queued alert updates to the database.
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      m_alertsDAO.flushWriteBehind();
+    } catch (Exception exception) {
+      LOG.error("Unable to write queued alert updates to the database", exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes any remaining queued alert updates to the database.
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    m_alertsDAO.flushWriteBehind();
+  }
+}
@@ -89,6 +89,10 @@ public class CachedAlertFlushService extends AbstractScheduledService {
   protected void runOneIteration() throws Exception {
     try {
       LOG.info("Flushing cached alerts to the database");
+
+      // pending write-behind history must be written before the cached
+      // current alerts which refer to it
+      m_alertsDAO.flushWriteBehind();
       m_alertsDAO.flushCachedEntitiesToJPA();
     } catch (Exception exception) {
       LOG.error("Unable to flush cached alerts to the database", exception);
@@ -22,15 +22,21 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ambari.server.AmbariService;
 import org.apache.ambari.server.configuration.Configuration;
@@ -77,7 +83,14 @@ import com.google.inject.Inject;
  * <p/>
  * In order to control throttling requests to the same endpoint,
  * {@link Configuration#isMetricsServiceRequestTTLCacheEnabled()} can be enabled
- * to allow for a fixed interval of time to pass between requests.
+ * to allow for a fixed interval of time to pass between requests. The interval
+ * can be overridden for the endpoints of specific components with
+ * {@link Configuration#getMetricsServiceRequestTTLOverrides()}.
+ * <p/>
+ * A slow or unresponsive endpoint can't tie up more than
+ * {@link Configuration#getMetricsServiceRequestEndpointConcurrency()} of the
+ * threads; while it is at that limit, further requests to it are skipped and
+ * its cached data is served instead.
  */
 @AmbariService
 public class MetricsRetrievalService extends AbstractService {
@@ -158,15 +171,37 @@ public class MetricsRetrievalService extends AbstractService {
 
   /**
    * An evicting cache which ensures that multiple requests for the same
-   * endpoint are not executed back-to-back. When enabled, a fixed period of
-   * time must pass before this service will make requests to a previously
-   * retrieved endpoint.
+   * endpoint are not executed back-to-back. When enabled, a period of time
+   * must pass before this service will make requests to a previously retrieved
+   * endpoint.
    * <p/>
    * If this cache is not enabled, then it will be {@code null}.
    * <p/>
-   * For simplicity, this is a cache of URL to URL.
+   * This is a cache of URL to the time, in milliseconds, before which the URL
+   * must not be requested again.
+   */
+  private Cache<String, Long> m_ttlUrlCache;
+
+  /**
+   * The number of seconds between requests to the same URL, unless overridden
+   * for the component of the URL.
+   */
+  private int m_ttlSeconds;
+
+  /**
+   * The number of seconds between requests to the same URL by component name.
+   */
+  private Map<String, Integer> m_ttlSecondsOverrides;
+
+  /**
+   * The number of requests in flight by endpoint (host and port).
+   */
+  private final ConcurrentMap<String, AtomicInteger> m_endpointRequests = new ConcurrentHashMap<>();
+
+  /**
+   * The maximum number of requests in flight to the same endpoint.
    */
-  private Cache<String, String> m_ttlUrlCache;
+  private int m_endpointConcurrency;
 
 
   /**
@@ -198,13 +233,21 @@ public class MetricsRetrievalService extends AbstractService {
         TimeUnit.MINUTES).build();
 
     // enable the TTL cache if configured; otherwise leave it as null
-    int ttlSeconds = m_configuration.getMetricsServiceRequestTTL();
+    m_ttlSeconds = m_configuration.getMetricsServiceRequestTTL();
+    m_ttlSecondsOverrides = m_configuration.getMetricsServiceRequestTTLOverrides();
     boolean ttlCacheEnabled = m_configuration.isMetricsServiceRequestTTLCacheEnabled();
     if (ttlCacheEnabled) {
-      m_ttlUrlCache = CacheBuilder.newBuilder().expireAfterWrite(ttlSeconds,
+      int maxTtlSeconds = m_ttlSeconds;
+      for (int ttlSeconds : m_ttlSecondsOverrides.values()) {
+        maxTtlSeconds = Math.max(maxTtlSeconds, ttlSeconds);
+      }
+
+      m_ttlUrlCache = CacheBuilder.newBuilder().expireAfterWrite(maxTtlSeconds,
           TimeUnit.SECONDS).build();
     }
 
+    m_endpointConcurrency = m_configuration.getMetricsServiceRequestEndpointConcurrency();
+
     // iniitalize the executor service
     int corePoolSize = m_configuration.getMetricsServiceThreadPoolCoreSize();
     int maxPoolSize = m_configuration.getMetricsServiceThreadPoolMaxSize();
@@ -214,7 +257,7 @@ public class MetricsRetrievalService extends AbstractService {
         TimeUnit.SECONDS, m_queueMaximumSize);
 
     m_threadPoolExecutor.allowCoreThreadTimeOut(true);
-    m_threadPoolExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardOldestPolicy());
+    m_threadPoolExecutor.setRejectedExecutionHandler(new DiscardOldestMetricRunnablePolicy());
 
     ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
         "ambari-metrics-retrieval-service-thread-%d").setPriority(
@@ -228,8 +271,9 @@ public class MetricsRetrievalService extends AbstractService {
         corePoolSize, maxPoolSize, m_queueMaximumSize, threadPriority);
 
     if (ttlCacheEnabled) {
-      LOG.info("Metrics Retrieval Service request TTL cache is enabled and set to {} seconds",
-          ttlSeconds);
+      LOG.info(
+          "Metrics Retrieval Service request TTL cache is enabled and set to {} seconds, overridden by component with {}",
+          m_ttlSeconds, m_ttlSecondsOverrides);
     }
   }
 
@@ -255,6 +299,7 @@ public class MetricsRetrievalService extends AbstractService {
     }
 
     m_queuedUrls.clear();
+    m_endpointRequests.clear();
     m_threadPoolExecutor.shutdownNow();
   }
 
@@ -286,13 +331,47 @@ public class MetricsRetrievalService extends AbstractService {
    * @see #getCachedJMXMetric(String)
    */
   public void submitRequest(MetricSourceType type, StreamProvider streamProvider, String url) {
+    submitRequest(type, streamProvider, url, null);
+  }
+
+  /**
+   * Submit a {@link Runnable} for execution which retrieves metric data from
+   * the supplied endpoint of a component. This is the same as
+   * {@link #submitRequest(MetricSourceType, StreamProvider, String)}, except
+   * that the interval between requests to the URL may be overridden for the
+   * component.
+   *
+   * @param type
+   *          the type of service hosting the metric (not {@code null}).
+   * @param streamProvider
+   *          the {@link StreamProvider} to use to read from the remote
+   *          endpoint.
+   * @param url
+   *          the URL to read from
+   * @param componentName
+   *          the name of the component serving the URL, or {@code null} if
+   *          unknown.
+   */
+  public void submitRequest(MetricSourceType type, StreamProvider streamProvider, String url,
+      String componentName) {
     // check to ensure that the request isn't already queued
     if (m_queuedUrls.contains(url)) {
       return;
     }
 
     // check to ensure that the request wasn't made too recently
-    if (null != m_ttlUrlCache && null != m_ttlUrlCache.getIfPresent(url)) {
+    if (null != m_ttlUrlCache) {
+      Long nextRequestTime = m_ttlUrlCache.getIfPresent(url);
+      if (null != nextRequestTime && System.currentTimeMillis() < nextRequestTime) {
+        return;
+      }
+    }
+
+    // check to ensure that the endpoint isn't busy with other requests
+    String endpoint = getEndpoint(url);
+    if (!acquireEndpoint(endpoint)) {
+      LOG.debug("Skipping the request for {} since {} requests to {} are in flight", url,
+          m_endpointConcurrency, endpoint);
       return;
     }
 
@@ -307,14 +386,16 @@ public class MetricsRetrievalService extends AbstractService {
     // enqueue this URL
     m_queuedUrls.add(url);
 
-    Runnable runnable = null;
+    long ttlMillis = TimeUnit.SECONDS.toMillis(getTTLSeconds(componentName));
+
+    MetricRunnable runnable = null;
     switch (type) {
       case JMX:
-        runnable = new JMXRunnable(m_jmxCache, m_queuedUrls, m_ttlUrlCache, m_jmxObjectReader,
-            streamProvider, url);
+        runnable = new JMXRunnable(m_jmxCache, m_queuedUrls, m_ttlUrlCache, ttlMillis,
+            m_jmxObjectReader, streamProvider, url);
         break;
       case REST:
-        runnable = new RESTRunnable(m_restCache, m_queuedUrls, m_ttlUrlCache, m_gson,
+        runnable = new RESTRunnable(m_restCache, m_queuedUrls, m_ttlUrlCache, ttlMillis, m_gson,
             streamProvider, url);
         break;
       default:
@@ -322,8 +403,93 @@ public class MetricsRetrievalService extends AbstractService {
         break;
     }
 
-    if (null != runnable) {
-      m_threadPoolExecutor.execute(runnable);
+    if (null == runnable) {
+      m_queuedUrls.remove(url);
+      releaseEndpoint(endpoint);
+      return;
+    }
+
+    runnable.setEndpoint(endpoint, m_endpointRequests);
+    m_threadPoolExecutor.execute(runnable);
+  }
+
+  /**
+   * Gets the number of seconds between requests to the URLs of a component.
+   *
+   * @param componentName
+   *          the component name, or {@code null}.
+   * @return the number of seconds.
+   */
+  private int getTTLSeconds(String componentName) {
+    Integer ttlSeconds = null == componentName ? null : m_ttlSecondsOverrides.get(componentName);
+    return null == ttlSeconds ? m_ttlSeconds : ttlSeconds;
+  }
+
+  /**
+   * Gets the endpoint, which is the host and port, of a URL.
+   *
+   * @param url
+   *          the URL (not {@code null}).
+   * @return the endpoint, or the URL itself if it can't be parsed.
+   */
+  private static String getEndpoint(String url) {
+    try {
+      URI uri = new URI(url);
+      if (null != uri.getHost()) {
+        return uri.getHost() + ":" + uri.getPort();
+      }
+    } catch (URISyntaxException exception) {
+      LOG.debug("Unable to parse the endpoint of {}", url, exception);
+    }
+
+    return url;
+  }
+
+  /**
+   * Reserves one of the concurrent requests of an endpoint.
+   *
+   * @param endpoint
+   *          the endpoint.
+   * @return {@code true} if the request was reserved, or {@code false} if the
+   *         endpoint is at its limit.
+   */
+  private boolean acquireEndpoint(String endpoint) {
+    AtomicInteger requests = m_endpointRequests.get(endpoint);
+    if (null == requests) {
+      AtomicInteger newRequests = new AtomicInteger();
+      requests = m_endpointRequests.putIfAbsent(endpoint, newRequests);
+      if (null == requests) {
+        requests = newRequests;
+      }
+    }
+
+    while (true) {
+      int current = requests.get();
+      if (current >= m_endpointConcurrency) {
+        return false;
+      }
+
+      if (requests.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Releases a request reserved by {@link #acquireEndpoint(String)}.
+   *
+   * @param endpoint
+   *          the endpoint.
+   */
+  private void releaseEndpoint(String endpoint) {
+    releaseEndpoint(m_endpointRequests, endpoint);
+  }
+
+  private static void releaseEndpoint(ConcurrentMap<String, AtomicInteger> endpointRequests,
+      String endpoint) {
+    AtomicInteger requests = endpointRequests.get(endpoint);
+    if (null != requests) {
+      requests.decrementAndGet();
     }
   }
 
@@ -385,7 +551,20 @@ public class MetricsRetrievalService extends AbstractService {
      * An evicting cache used to control whether a request for a metric can be
      * made or if it is too soon after the last request.
      */
-    private final Cache<String, String> m_ttlUrlCache;
+    private final Cache<String, Long> m_ttlUrlCache;
+
+    /**
+     * The time, in milliseconds, which must pass before the URL is requested
+     * again.
+     */
+    private final long m_ttlMillis;
+
+    /**
+     * The endpoint of the URL and the number of requests in flight by
+     * endpoint, which this runnable releases its request of when done.
+     */
+    private String m_endpoint;
+    private ConcurrentMap<String, AtomicInteger> m_endpointRequests;
 
     /**
      * Constructor.
@@ -402,13 +581,48 @@ public class MetricsRetrievalService extends AbstractService {
      *          an evicting cache which is used to determine if a request for a
      *          metric is too soon after the last request, or {@code null} if
      *          requests can be made sequentially without any separation.
+     * @param ttlMillis
+     *          the time which must pass before the URL is requested again.
      */
     private MetricRunnable(StreamProvider streamProvider, String url, Set<String> queuedUrls,
-        Cache<String, String> ttlUrlCache) {
+        Cache<String, Long> ttlUrlCache, long ttlMillis) {
       m_streamProvider = streamProvider;
       m_url = url;
       m_queuedUrls = queuedUrls;
       m_ttlUrlCache = ttlUrlCache;
+      m_ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Sets the endpoint whose reserved request this runnable releases when it
+     * completes or is discarded.
+     *
+     * @param endpoint
+     *          the endpoint of the URL.
+     * @param endpointRequests
+     *          the number of requests in flight by endpoint.
+     */
+    private void setEndpoint(String endpoint, ConcurrentMap<String, AtomicInteger> endpointRequests) {
+      m_endpoint = endpoint;
+      m_endpointRequests = endpointRequests;
+    }
+
+    /**
+     * Releases the URL and its endpoint without making the request, such as
+     * when the runnable is discarded from a full worker queue.
+     */
+    private void discard() {
+      complete();
+    }
+
+    private void complete() {
+      // remove this URL from the list of queued URLs to ensure it will be
+      // requested again
+      m_queuedUrls.remove(m_url);
+
+      if (null != m_endpointRequests) {
+        releaseEndpoint(m_endpointRequests, m_endpoint);
+      }
     }
 
     /**
@@ -439,17 +653,14 @@ public class MetricsRetrievalService extends AbstractService {
 
         // cache the URL, but only after successful parsing of the response
         if (null != m_ttlUrlCache) {
-          m_ttlUrlCache.put(m_url, m_url);
+          m_ttlUrlCache.put(m_url, System.currentTimeMillis() + m_ttlMillis);
         }
 
       } catch (Exception exception) {
         logException(exception, m_url);
       } finally {
         IOUtils.closeQuietly(inputStream);
-
-        // remove this URL from the list of queued URLs to ensure it will be
-        // requested again
-        m_queuedUrls.remove(m_url);
+        complete();
       }
     }
 
@@ -520,14 +731,15 @@ public class MetricsRetrievalService extends AbstractService {
      * @param cache
      * @param queuedUrls
      * @param ttlUrlCache
+     * @param ttlMillis
      * @param jmxObjectReader
      * @param streamProvider
      * @param jmxUrl
      */
     private JMXRunnable(Cache<String, JMXMetricHolder> cache, Set<String> queuedUrls,
-        Cache<String, String> ttlUrlCache, ObjectReader jmxObjectReader,
+        Cache<String, Long> ttlUrlCache, long ttlMillis, ObjectReader jmxObjectReader,
         StreamProvider streamProvider, String jmxUrl) {
-      super(streamProvider, jmxUrl, queuedUrls, ttlUrlCache);
+      super(streamProvider, jmxUrl, queuedUrls, ttlUrlCache, ttlMillis);
       m_cache = cache;
       m_jmxObjectReader = jmxObjectReader;
     }
@@ -559,14 +771,15 @@ public class MetricsRetrievalService extends AbstractService {
      * @param cache
      * @param queuedUrls
      * @param ttlUrlCache
+     * @param ttlMillis
      * @param gson
      * @param streamProvider
      * @param restUrl
      */
     private RESTRunnable(Cache<String, Map<String, String>> cache, Set<String> queuedUrls,
-        Cache<String, String> ttlUrlCache, Gson gson, StreamProvider streamProvider,
-        String restUrl) {
-      super(streamProvider, restUrl, queuedUrls, ttlUrlCache);
+        Cache<String, Long> ttlUrlCache, long ttlMillis, Gson gson,
+        StreamProvider streamProvider, String restUrl) {
+      super(streamProvider, restUrl, queuedUrls, ttlUrlCache, ttlMillis);
       m_cache = cache;
       m_gson = gson;
     }
@@ -586,6 +799,34 @@ public class MetricsRetrievalService extends AbstractService {
     }
   }
 
+  /**
+   * Discards the oldest queued request when the worker queue is full, like
+   * {@link ThreadPoolExecutor.DiscardOldestPolicy}, but releases the URL and
+   * endpoint of the discarded request so that they can be requested again.
+   */
+  private static final class DiscardOldestMetricRunnablePolicy implements RejectedExecutionHandler {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        if (runnable instanceof MetricRunnable) {
+          ((MetricRunnable) runnable).discard();
+        }
+        return;
+      }
+
+      Runnable discarded = executor.getQueue().poll();
+      if (discarded instanceof MetricRunnable) {
+        ((MetricRunnable) discarded).discard();
+      }
+
+      executor.execute(runnable);
+    }
+  }
+
   /**
    * A default exception handler.
    */
@@ -0,0 +1,533 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.svccomphost;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.State;
+
+import com.google.inject.Singleton;
+
+/**
+ * The {@link HostComponentStateStore} keeps the state, desired state,
+ * maintenance state and version of all {@link ServiceComponentHost}s in
+ * columns of primitive arrays, one row per host component. Reading these
+ * values from the store doesn't need the JPA entities of the host components.
+ * The number of host components in each state is kept per component, so
+ * counting them doesn't need to look at the host components at all.
+ * <p/>
+ * The clusters register their host components when loading or adding them and
+ * the host components write their state transitions through to the store.
+ * Rows are appended in place and the arrays are only copied when they grow or
+ * when rows are removed, so readers never lock; they may however briefly see a
+ * value before or after a concurrent transition.
+ */
+@Singleton
+public class HostComponentStateStore {
+
+  /**
+   * The value of a column for a missing state or version.
+   */
+  private static final int NONE = -1;
+
+  private static final State[] STATES = State.values();
+
+  private static final MaintenanceState[] MAINTENANCE_STATES = MaintenanceState.values();
+
+  /**
+   * Guards all writes.
+   */
+  private final Object lock = new Object();
+
+  /**
+   * The current columns, replaced when they grow or rows are removed.
+   */
+  private volatile Columns columns = new Columns(16);
+
+  /**
+   * The distinct versions, which the version column refers to by index. Only
+   * ever appended to, guarded by {@link #lock}.
+   */
+  private volatile String[] versions = new String[0];
+
+  private final Map<String, Integer> versionIndexes = new HashMap<>();
+
+  /**
+   * The number of host components in each current state, indexed by the
+   * ordinal of the state, by component. Only updated while holding
+   * {@link #lock}.
+   */
+  private final ConcurrentMap<ComponentKey, AtomicIntegerArray> stateCounts =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Written after every change of a value so that readers, which read it
+   * first, see the change.
+   */
+  private volatile long modCount;
+
+  /**
+   * Adds the host component to the store, reading its current values.
+   *
+   * @param sch
+   *          the host component (not {@code null}).
+   */
+  public void add(ServiceComponentHost sch) {
+    State state = sch.getState();
+    State desiredState = sch.getDesiredState();
+    MaintenanceState maintenanceState = sch.getMaintenanceState();
+    String version = sch.getVersion();
+
+    synchronized (lock) {
+      Columns current = columns;
+      if (current.rows.containsKey(sch)) {
+        return;
+      }
+
+      if (current.size == current.hostComponents.length) {
+        current = current.copy(current.size * 2, null);
+      }
+
+      int row = current.size;
+      current.hostComponents[row] = sch;
+      current.clusterIds[row] = sch.getClusterId();
+      current.serviceNames[row] = sch.getServiceName();
+      current.componentNames[row] = sch.getServiceComponentName();
+      current.states[row] = toByte(state);
+      current.desiredStates[row] = toByte(desiredState);
+      current.maintenanceStates[row] = toByte(maintenanceState);
+      current.versions[row] = getVersionIndex(version);
+      current.rows.put(sch, row);
+      current.size = row + 1;
+      updateStateCount(current, row, current.states[row], 1);
+
+      columns = current;
+    }
+  }
+
+  /**
+   * Removes the host component from the store.
+   *
+   * @param sch
+   *          the host component (not {@code null}).
+   */
+  public void remove(ServiceComponentHost sch) {
+    synchronized (lock) {
+      Columns current = columns;
+      Integer row = current.rows.get(sch);
+      if (null != row) {
+        updateStateCount(current, row, current.states[row], -1);
+        columns = current.copy(current.hostComponents.length, Collections.singleton(row));
+      }
+    }
+  }
+
+  /**
+   * Removes all host components of the service from the store.
+   *
+   * @param clusterId
+   *          the cluster ID.
+   * @param serviceName
+   *          the service name (not {@code null}).
+   */
+  public void removeService(long clusterId, String serviceName) {
+    synchronized (lock) {
+      Columns current = columns;
+      Set<Integer> rows = new HashSet<>();
+      for (int row = 0; row < current.size; row++) {
+        if (current.clusterIds[row] == clusterId && serviceName.equals(current.serviceNames[row])) {
+          updateStateCount(current, row, current.states[row], -1);
+          rows.add(row);
+        }
+      }
+
+      if (!rows.isEmpty()) {
+        columns = current.copy(current.hostComponents.length, rows);
+      }
+    }
+  }
+
+  /**
+   * Sets the current state of the host component, if it is in the store.
+   *
+   * @param sch
+   *          the host component (not {@code null}).
+   * @param state
+   *          the state.
+   */
+  public void setState(ServiceComponentHost sch, State state) {
+    synchronized (lock) {
+      Columns current = columns;
+      Integer row = current.rows.get(sch);
+      if (null != row) {
+        updateStateCount(current, row, current.states[row], -1);
+        current.states[row] = toByte(state);
+        updateStateCount(current, row, current.states[row], 1);
+        modCount++;
+      }
+    }
+  }
+
+  /**
+   * Sets the desired state of the host component, if it is in the store.
+   *
+   * @param sch
+   *          the host component (not {@code null}).
+   * @param desiredState
+   *          the desired state.
+   */
+  public void setDesiredState(ServiceComponentHost sch, State desiredState) {
+    synchronized (lock) {
+      Columns current = columns;
+      Integer row = current.rows.get(sch);
+      if (null != row) {
+        current.desiredStates[row] = toByte(desiredState);
+        modCount++;
+      }
+    }
+  }
+
+  /**
+   * Sets the maintenance state of the host component, if it is in the store.
+   *
+   * @param sch
+   *          the host component (not {@code null}).
+   * @param maintenanceState
+   *          the maintenance state.
+   */
+  public void setMaintenanceState(ServiceComponentHost sch, MaintenanceState maintenanceState) {
+    synchronized (lock) {
+      Columns current = columns;
+      Integer row = current.rows.get(sch);
+      if (null != row) {
+        current.maintenanceStates[row] = toByte(maintenanceState);
+        modCount++;
+      }
+    }
+  }
+
+  /**
+   * Sets the version of the host component, if it is in the store.
+   *
+   * @param sch
+   *          the host component (not {@code null}).
+   * @param version
+   *          the version.
+   */
+  public void setVersion(ServiceComponentHost sch, String version) {
+    synchronized (lock) {
+      Columns current = columns;
+      Integer row = current.rows.get(sch);
+      if (null != row) {
+        current.versions[row] = getVersionIndex(version);
+        modCount++;
+      }
+    }
+  }
+
+  /**
+   * Sets the version of all host components which have a version other than
+   * {@code UNKNOWN}, like
+   * {@link org.apache.ambari.server.orm.dao.HostComponentStateDAO#updateVersions(String)}.
+   *
+   * @param version
+   *          the version (not {@code null}).
+   */
+  public void updateVersions(String version) {
+    synchronized (lock) {
+      Columns current = columns;
+      int index = getVersionIndex(version);
+      int unknown = getVersionIndex(State.UNKNOWN.name());
+      for (int row = 0; row < current.size; row++) {
+        // like in SQL, a missing version is never NOT IN the versions
+        if (current.versions[row] != NONE && current.versions[row] != unknown) {
+          current.versions[row] = index;
+        }
+      }
+      modCount++;
+    }
+  }
+
+  /**
+   * @param sch
+   *          the host component (not {@code null}).
+   * @return {@code true} if the host component is in the store.
+   */
+  public boolean contains(ServiceComponentHost sch) {
+    return readColumns().rows.containsKey(sch);
+  }
+
+  /**
+   * @param sch
+   *          the host component (not {@code null}).
+   * @return the desired state, or {@code null} if the host component is not in
+   *         the store or has no desired state.
+   */
+  public State getDesiredState(ServiceComponentHost sch) {
+    Columns current = readColumns();
+    Integer row = current.rows.get(sch);
+    return null == row ? null : toState(current.desiredStates[row]);
+  }
+
+  /**
+   * @param sch
+   *          the host component (not {@code null}).
+   * @return the maintenance state, or {@code null} if the host component is
+   *         not in the store or has no maintenance state.
+   */
+  public MaintenanceState getMaintenanceState(ServiceComponentHost sch) {
+    Columns current = readColumns();
+    Integer row = current.rows.get(sch);
+    return null == row ? null : toMaintenanceState(current.maintenanceStates[row]);
+  }
+
+  /**
+   * Counts the host components of a component by their current state.
+   *
+   * @param clusterId
+   *          the cluster ID.
+   * @param serviceName
+   *          the service name (not {@code null}).
+   * @param componentName
+   *          the component name (not {@code null}).
+   * @return the number of host components by state, without the states which
+   *         no host component is in.
+   */
+  public Map<State, Integer> getStateCounts(long clusterId, String serviceName,
+      String componentName) {
+    Map<State, Integer> counts = new EnumMap<>(State.class);
+    AtomicIntegerArray componentCounts = stateCounts.get(
+        new ComponentKey(clusterId, serviceName, componentName));
+    if (null == componentCounts) {
+      return counts;
+    }
+
+    for (int i = 0; i < componentCounts.length(); i++) {
+      int count = componentCounts.get(i);
+      if (count > 0) {
+        counts.put(STATES[i], count);
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Gets the version of the host component.
+   *
+   * @param sch
+   *          the host component (not {@code null}).
+   * @return the version, or {@code null} if the host component is not in the
+   *         store or has no version.
+   */
+  public String getVersion(ServiceComponentHost sch) {
+    Columns current = readColumns();
+    Integer row = current.rows.get(sch);
+    if (null == row || current.versions[row] == NONE) {
+      return null;
+    }
+    return versions[current.versions[row]];
+  }
+
+  /**
+   * @return the number of host components in the store.
+   */
+  public int size() {
+    return columns.size;
+  }
+
+  // read the modification count before the columns so that all values written
+  // before its last increment are visible
+  private Columns readColumns() {
+    @SuppressWarnings("unused")
+    long readModCount = modCount;
+    return columns;
+  }
+
+  // add the delta to the count of host components of the row's component in
+  // the state; must hold the lock
+  private void updateStateCount(Columns current, int row, byte state, int delta) {
+    if (state == NONE) {
+      return;
+    }
+
+    ComponentKey key = new ComponentKey(current.clusterIds[row], current.serviceNames[row],
+        current.componentNames[row]);
+    AtomicIntegerArray counts = stateCounts.get(key);
+    if (null == counts) {
+      counts = new AtomicIntegerArray(STATES.length);
+      stateCounts.put(key, counts);
+    }
+    counts.addAndGet(state, delta);
+  }
+
+  // get the index of the version, adding it if needed; must hold the lock
+  private int getVersionIndex(String version) {
+    if (null == version) {
+      return NONE;
+    }
+
+    Integer index = versionIndexes.get(version);
+    if (null == index) {
+      index = versions.length;
+      String[] newVersions = Arrays.copyOf(versions, index + 1);
+      newVersions[index] = version;
+      versions = newVersions;
+      versionIndexes.put(version, index);
+    }
+    return index;
+  }
+
+  private static byte toByte(Enum<?> value) {
+    return null == value ? NONE : (byte) value.ordinal();
+  }
+
+  private static State toState(byte value) {
+    return value == NONE ? null : STATES[value];
+  }
+
+  private static MaintenanceState toMaintenanceState(byte value) {
+    return value == NONE ? null : MAINTENANCE_STATES[value];
+  }
+
+
+  // ----- Columns -----------------------------------------------------------
+
+  /**
+   * The columns of the store. Rows are only appended while the columns are
+   * current; removing rows creates new columns.
+   */
+  private static final class Columns {
+
+    private final ServiceComponentHost[] hostComponents;
+
+    private final long[] clusterIds;
+
+    private final String[] serviceNames;
+
+    private final String[] componentNames;
+
+    private final byte[] states;
+
+    private final byte[] desiredStates;
+
+    private final byte[] maintenanceStates;
+
+    private final int[] versions;
+
+    /**
+     * The rows by host component, which readers look up without locking. Host
+     * components don't override equals(), so they are compared by identity.
+     */
+    private final ConcurrentMap<ServiceComponentHost, Integer> rows;
+
+    /**
+     * The number of rows, written after a row is appended.
+     */
+    private volatile int size;
+
+    private Columns(int capacity) {
+      hostComponents = new ServiceComponentHost[capacity];
+      clusterIds = new long[capacity];
+      serviceNames = new String[capacity];
+      componentNames = new String[capacity];
+      states = new byte[capacity];
+      desiredStates = new byte[capacity];
+      maintenanceStates = new byte[capacity];
+      versions = new int[capacity];
+      rows = new ConcurrentHashMap<>(capacity);
+    }
+
+    // copy the columns into new ones with the given capacity, without the given rows
+    private Columns copy(int capacity, Set<Integer> removedRows) {
+      Columns copy = new Columns(capacity);
+
+      int to = 0;
+      for (int from = 0; from < size; from++) {
+        if (null != removedRows && removedRows.contains(from)) {
+          continue;
+        }
+
+        copy.hostComponents[to] = hostComponents[from];
+        copy.clusterIds[to] = clusterIds[from];
+        copy.serviceNames[to] = serviceNames[from];
+        copy.componentNames[to] = componentNames[from];
+        copy.states[to] = states[from];
+        copy.desiredStates[to] = desiredStates[from];
+        copy.maintenanceStates[to] = maintenanceStates[from];
+        copy.versions[to] = versions[from];
+        copy.rows.put(hostComponents[from], to);
+        to++;
+      }
+
+      copy.size = to;
+      return copy;
+    }
+  }
+
+  // ----- ComponentKey ------------------------------------------------------
+
+  /**
+   * Identifies a component of a service in a cluster.
+   */
+  private static final class ComponentKey {
+
+    private final long clusterId;
+
+    private final String serviceName;
+
+    private final String componentName;
+
+    private ComponentKey(long clusterId, String serviceName, String componentName) {
+      this.clusterId = clusterId;
+      this.serviceName = serviceName;
+      this.componentName = componentName;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ComponentKey)) {
+        return false;
+      }
+
+      ComponentKey other = (ComponentKey) obj;
+      return clusterId == other.clusterId && serviceName.equals(other.serviceName)
+          && componentName.equals(other.componentName);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (clusterId ^ (clusterId >>> 32));
+      result = 31 * result + serviceName.hashCode();
+      return 31 * result + componentName.hashCode();
+    }
+  }
+}
@@ -121,6 +121,13 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   @Inject
   private RepositoryVersionHelper repositoryVersionHelper;
 
+  /**
+   * Keeps the states and version of this host component in memory once the
+   * cluster has registered it.
+   */
+  @Inject
+  private HostComponentStateStore stateStore;
+
   /**
    * Used for creating commands to send to the agents when alert definitions are
    * added as the result of a service install.
@@ -868,6 +875,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     if (stateEntity != null) {
       stateEntity.setCurrentState(state);
       stateEntity = hostComponentStateDAO.merge(stateEntity);
+      stateStore.setState(this, state);
     } else {
       LOG.warn("Setting a member on an entity object that may have been "
           + "previously deleted, serviceName = " + getServiceName() + ", " + "componentName = "
@@ -877,6 +885,11 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public String getVersion() {
+    String version = stateStore.getVersion(this);
+    if (null != version) {
+      return version;
+    }
+
     HostComponentStateEntity stateEntity = getStateEntity();
     if (stateEntity != null) {
       return stateEntity.getVersion();
@@ -895,6 +908,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     if (stateEntity != null) {
       stateEntity.setVersion(version);
       stateEntity = hostComponentStateDAO.merge(stateEntity);
+      stateStore.setVersion(this, version);
     } else {
       LOG.warn("Setting a member on an entity object that may have been "
           + "previously deleted, serviceName = " + getServiceName() + ", " + "componentName = "
@@ -1009,6 +1023,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
         HostComponentStateEntity stateEntity = getStateEntity();
         stateEntity.setCurrentState(stateMachine.getCurrentState());
         stateEntity = hostComponentStateDAO.merge(stateEntity);
+        stateStore.setState(this, stateMachine.getCurrentState());
         // TODO Audit logs
       } catch (InvalidStateTransitionException e) {
         LOG.error("Can't handle ServiceComponentHostEvent event at"
@@ -1151,6 +1166,11 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public State getDesiredState() {
+    State desiredState = stateStore.getDesiredState(this);
+    if (null != desiredState) {
+      return desiredState;
+    }
+
     HostComponentDesiredStateEntity desiredStateEntity = getDesiredStateEntity();
     if (desiredStateEntity != null) {
       return desiredStateEntity.getDesiredState();
@@ -1172,6 +1192,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     if (desiredStateEntity != null) {
       desiredStateEntity.setDesiredState(state);
       hostComponentDesiredStateDAO.merge(desiredStateEntity);
+      stateStore.setDesiredState(this, state);
     } else {
       LOG.warn("Setting a member on an entity object that may have been "
           + "previously deleted, serviceName = " + getServiceName() + ", " + "componentName = "
@@ -1476,6 +1497,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     if (desiredStateEntity != null) {
       desiredStateEntity.setMaintenanceState(state);
       hostComponentDesiredStateDAO.merge(desiredStateEntity);
+      stateStore.setMaintenanceState(this, state);
 
       // broadcast the maintenance mode change
       MaintenanceModeEvent event = new MaintenanceModeEvent(state, this);
@@ -1489,6 +1511,11 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   @Override
   public MaintenanceState getMaintenanceState() {
+    MaintenanceState maintenanceState = stateStore.getMaintenanceState(this);
+    if (null != maintenanceState) {
+      return maintenanceState;
+    }
+
     return getDesiredStateEntity().getMaintenanceState();
   }
 
@@ -72,6 +72,9 @@ public class EventBusSynchronizer {
 
     replaceEventBus(AmbariEventPublisher.class, publisher, synchronizedBus);
 
+    // partitioned listeners are registered with the synchronous bus as well
+    replaceField(AmbariEventPublisher.class, publisher, "m_partitionExecutors", null);
+
     // register common ambari event listeners
     registerAmbariListeners(injector, synchronizedBus);
 
@@ -127,11 +130,16 @@ public class EventBusSynchronizer {
 
   private static void replaceEventBus(Class<?> eventPublisherClass,
       Object instance, EventBus eventBus) {
+    replaceField(eventPublisherClass, instance, "m_eventBus", eventBus);
+  }
+
+  private static void replaceField(Class<?> eventPublisherClass,
+      Object instance, String fieldName, Object value) {
 
     try {
-      Field field = eventPublisherClass.getDeclaredField("m_eventBus");
+      Field field = eventPublisherClass.getDeclaredField(fieldName);
       field.setAccessible(true);
-      field.set(instance, eventBus);
+      field.set(instance, value);
     } catch (Exception exception) {
       throw new RuntimeException(exception);
     }
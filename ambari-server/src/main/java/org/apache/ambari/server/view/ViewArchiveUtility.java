@@ -39,6 +39,10 @@ import javax.xml.validation.SchemaFactory;
 import org.apache.ambari.server.view.configuration.ViewConfig;
 import org.xml.sax.SAXException;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
 /**
  * Helper class for basic view archive utility.
  */
@@ -50,6 +54,14 @@ public class ViewArchiveUtility {
   private static final String VIEW_XML = "view.xml";
   private static final String WEB_INF_VIEW_XML = "WEB-INF/classes/" + VIEW_XML;
   private static final String VIEW_XSD = "view.xsd";
+  private static final String EXTRACTED_MARKER = ".extracted";
+
+  /**
+   * The JAXB context and schema of view descriptors, which are expensive to
+   * create and thread safe, so they are shared by all view archives.
+   */
+  private static JAXBContext jaxbContext;
+  private static Schema schema;
 
 
   // ----- ViewArchiveUtility ------------------------------------------------
@@ -78,8 +90,7 @@ public class ViewArchiveUtility {
 
     try {
 
-      JAXBContext jaxbContext       = JAXBContext.newInstance(ViewConfig.class);
-      Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
+      Unmarshaller jaxbUnmarshaller = getJAXBContext().createUnmarshaller();
 
       return (ViewConfig) jaxbUnmarshaller.unmarshal(configStream);
     } finally {
@@ -114,8 +125,7 @@ public class ViewArchiveUtility {
     InputStream  configStream = new FileInputStream(configFile);
     try {
 
-      JAXBContext  jaxbContext      = JAXBContext.newInstance(ViewConfig.class);
-      Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
+      Unmarshaller jaxbUnmarshaller = getJAXBContext().createUnmarshaller();
 
       return (ViewConfig) jaxbUnmarshaller.unmarshal(configStream);
     } finally {
@@ -123,6 +133,61 @@ public class ViewArchiveUtility {
     }
   }
 
+  /**
+   * Determine whether the given archive directory holds the extraction of the
+   * given view archive as it currently is. The archive is only checksummed if
+   * its size or modification time differ from when it was extracted, so
+   * archives which were only touched or copied over with the same content are
+   * not extracted again.
+   *
+   * @param archiveFile  the view archive file
+   * @param archiveDir   the view archive directory
+   *
+   * @return true if the archive directory is a complete extraction of the archive
+   *
+   * @throws IOException if the archive or the extraction record can not be read
+   */
+  public boolean isArchiveExtracted(File archiveFile, File archiveDir) throws IOException {
+    File markerFile = getFile(archiveDir.getAbsolutePath() + File.separator + EXTRACTED_MARKER);
+    if (!markerFile.isFile()) {
+      return false;
+    }
+
+    String[] marker = Files.toString(markerFile, Charsets.UTF_8).trim().split(" ");
+    if (marker.length != 3) {
+      return false;
+    }
+
+    if (marker[0].equals(String.valueOf(archiveFile.length())) &&
+        marker[1].equals(String.valueOf(archiveFile.lastModified()))) {
+      return true;
+    }
+
+    if (!marker[2].equals(getChecksum(archiveFile))) {
+      return false;
+    }
+
+    // the content is unchanged, so remember the new size and modification time
+    setArchiveExtracted(archiveFile, archiveDir);
+    return true;
+  }
+
+  /**
+   * Record that the given archive directory holds the complete extraction of
+   * the given view archive.
+   *
+   * @param archiveFile  the view archive file
+   * @param archiveDir   the view archive directory
+   *
+   * @throws IOException if the archive can not be read or the extraction record can not be written
+   */
+  public void setArchiveExtracted(File archiveFile, File archiveDir) throws IOException {
+    File markerFile = getFile(archiveDir.getAbsolutePath() + File.separator + EXTRACTED_MARKER);
+
+    Files.write(archiveFile.length() + " " + archiveFile.lastModified() + " " + getChecksum(archiveFile),
+        markerFile, Charsets.UTF_8);
+  }
+
   /**
    * Get a new file instance for the given path.
    *
@@ -159,6 +224,30 @@ public class ViewArchiveUtility {
 
   // ----- helper methods ----------------------------------------------------
 
+  // get the checksum of the given file
+  private static String getChecksum(File file) throws IOException {
+    return Files.hash(file, Hashing.sha1()).toString();
+  }
+
+  // get the shared JAXB context for view descriptors
+  private static synchronized JAXBContext getJAXBContext() throws JAXBException {
+    if (jaxbContext == null) {
+      jaxbContext = JAXBContext.newInstance(ViewConfig.class);
+    }
+    return jaxbContext;
+  }
+
+  // get the shared schema for view descriptors
+  private static synchronized Schema getSchema() throws SAXException {
+    if (schema == null) {
+      SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+
+      URL schemaUrl = ViewArchiveUtility.class.getClassLoader().getResource(VIEW_XSD);
+      schema = schemaFactory.newSchema(schemaUrl);
+    }
+    return schema;
+  }
+
   /**
    * Validate the given view descriptor file against the view schema.
    *
@@ -168,11 +257,6 @@ public class ViewArchiveUtility {
    * @throws IOException if the descriptor file can not be read
    */
   protected void validateConfig(InputStream  configStream) throws SAXException, IOException {
-    SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-
-    URL schemaUrl = getClass().getClassLoader().getResource(VIEW_XSD);
-    Schema schema = schemaFactory.newSchema(schemaUrl);
-
-    schema.newValidator().validate(new StreamSource(configStream));
+    getSchema().newValidator().validate(new StreamSource(configStream));
   }
 }
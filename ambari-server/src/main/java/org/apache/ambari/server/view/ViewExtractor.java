@@ -74,8 +74,9 @@ public class ViewExtractor {
     String archivePath = archiveDir.getAbsolutePath();
 
     try {
-      // Remove directory if jar was updated since last extracting
-      if (archiveDir.exists() && viewArchive != null && viewArchive.lastModified() > archiveDir.lastModified()) {
+      // Remove directory if the jar was changed or not completely extracted since last extracting
+      if (archiveDir.exists() && viewArchive != null && viewArchive.isFile() &&
+          !archiveUtility.isArchiveExtracted(viewArchive, archiveDir)) {
         FileUtils.deleteDirectory(archiveDir);
       }
 
@@ -148,6 +149,9 @@ public class ViewExtractor {
           } finally {
             jarInputStream.close();
           }
+
+          // only record the extraction once it is complete
+          archiveUtility.setArchiveExtracted(viewArchive, archiveDir);
         } else {
           msg = "Could not create archive directory " + archivePath + ".";
 
@@ -170,6 +174,24 @@ public class ViewExtractor {
     }
   }
 
+  /**
+   * Determine whether the given view archive needs to be extracted, which is
+   * the case if it has not been extracted yet or has changed since.
+   *
+   * @param viewArchive  the view archive file
+   * @param archiveDir   the view archive directory
+   *
+   * @return true if the archive needs to be extracted
+   */
+  public boolean isExtractionRequired(File viewArchive, File archiveDir) {
+    try {
+      return !archiveDir.exists() || !archiveUtility.isArchiveExtracted(viewArchive, archiveDir);
+    } catch (IOException e) {
+      LOG.warn("Could not determine whether " + viewArchive + " was extracted.", e);
+      return true;
+    }
+  }
+
   /**
    * Ensure that the extracted view archive directory exists.
    *
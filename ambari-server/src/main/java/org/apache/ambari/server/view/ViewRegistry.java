@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -33,8 +34,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -174,7 +178,7 @@ public class ViewRegistry {
    * Mapping of view instances to view definition and instance name.
    */
   private Map<ViewEntity, Map<String, ViewInstanceEntity>> viewInstanceDefinitions =
-    new HashMap<>();
+    Collections.synchronizedMap(new HashMap<ViewEntity, Map<String, ViewInstanceEntity>>());
 
   /**
    * Mapping of view names to sub-resources.
@@ -452,10 +456,13 @@ public class ViewRegistry {
    * @param instanceDefinition the instance definition
    */
   public void addInstanceDefinition(ViewEntity definition, ViewInstanceEntity instanceDefinition) {
-    Map<String, ViewInstanceEntity> instanceDefinitions = viewInstanceDefinitions.get(definition);
-    if (instanceDefinitions == null) {
-      instanceDefinitions = new HashMap<>();
-      viewInstanceDefinitions.put(definition, instanceDefinitions);
+    Map<String, ViewInstanceEntity> instanceDefinitions;
+    synchronized (viewInstanceDefinitions) {
+      instanceDefinitions = viewInstanceDefinitions.get(definition);
+      if (instanceDefinitions == null) {
+        instanceDefinitions = new HashMap<>();
+        viewInstanceDefinitions.put(definition, instanceDefinitions);
+      }
     }
 
     View view = definition.getView();
@@ -1687,6 +1694,7 @@ public class ViewRegistry {
         if (files != null) {
 
           Set<Runnable> extractionRunnables = new HashSet<>();
+          List<Callable<Void>> deployments = new ArrayList<>();
 
           final String serverVersion = ambariMetaInfoProvider.get().getServerVersion();
 
@@ -1716,9 +1724,17 @@ public class ViewRegistry {
                   addDefinition(viewDefinition);
 
                   // always load system views up front
-                  if (systemView || !useExecutor || extractedArchiveDirFile.exists()) {
-                    // if the archive is already extracted then load the view now
+                  if (systemView) {
                     readViewArchive(viewDefinition, archiveFile, extractedArchiveDirFile, serverVersion);
+                  } else if (!useExecutor || !extractor.isExtractionRequired(archiveFile, extractedArchiveDirFile)) {
+                    // if the archive is already extracted then load the view now, along with the others
+                    deployments.add(new Callable<Void>() {
+                      @Override
+                      public Void call() {
+                        readViewArchive(viewDefinition, archiveFile, extractedArchiveDirFile, serverVersion);
+                        return null;
+                      }
+                    });
                   } else {
                     // if the archive needs to be extracted then create a runnable to do it
                     extractionRunnables.add(new Runnable() {
@@ -1737,6 +1753,8 @@ public class ViewRegistry {
             }
           }
 
+          deployViewArchives(deployments);
+
           for (ViewEntity view : getDefinitions()) {
             if (view.getStatus() == ViewDefinition.ViewStatus.DEPLOYED) {
               // migrate views that are not need extraction, for ones that need call will be done in the runnable.
@@ -1765,6 +1783,32 @@ public class ViewRegistry {
     }
   }
 
+  // deploy the given view archives in parallel and wait for all of them, so
+  // that the views are persisted before data is migrated between their versions
+  private void deployViewArchives(List<Callable<Void>> deployments) throws InterruptedException {
+    if (deployments.size() == 1) {
+      try {
+        deployments.get(0).call();
+      } catch (Exception e) {
+        LOG.error("Caught exception deploying view archive.", e);
+      }
+    } else if (deployments.size() > 1) {
+      long startTime = System.currentTimeMillis();
+
+      List<Future<Void>> futures = getExecutorService(configuration).invokeAll(deployments);
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          LOG.error("Caught exception deploying view archive.", e.getCause());
+        }
+      }
+
+      LOG.info("Deployed " + deployments.size() + " view archives in " +
+          (System.currentTimeMillis() - startTime) + " ms.");
+    }
+  }
+
   // read a view archive
   private void readViewArchive(ViewEntity viewDefinition,
                                File archiveFile,
@@ -1777,6 +1821,8 @@ public class ViewRegistry {
 
     LOG.info("Reading view archive " + archiveFile + ".");
 
+    long startTime = System.currentTimeMillis();
+
     try {
       // extract the archive and get the class loader
       ClassLoader cl = extractor.extractViewArchive(viewDefinition, archiveFile, extractedArchiveDirFile);
@@ -1807,9 +1853,12 @@ public class ViewRegistry {
           addAutoInstanceDefinition(viewDefinition);
         }
 
-        setViewStatus(viewDefinition, ViewEntity.ViewStatus.DEPLOYED, "Deployed " + extractedArchiveDirPath + ".");
+        long deployTime = System.currentTimeMillis() - startTime;
+
+        setViewStatus(viewDefinition, ViewEntity.ViewStatus.DEPLOYED,
+            "Deployed " + extractedArchiveDirPath + " in " + deployTime + " ms.");
 
-        LOG.info("View deployed: " + viewDefinition.getName() + ".");
+        LOG.info("View deployed: " + viewDefinition.getName() + " in " + deployTime + " ms.");
       }
     } catch (Throwable e) {
       String msg = "Caught exception loading view " + viewDefinition.getName();
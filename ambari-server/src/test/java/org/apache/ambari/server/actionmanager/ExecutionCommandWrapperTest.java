@@ -40,6 +40,7 @@ import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.ConfigFactory;
 import org.apache.ambari.server.state.ConfigHelper;
+import org.apache.ambari.server.state.ConfigurationSnapshot;
 import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.svccomphost.ServiceComponentHostStartEvent;
 import org.apache.ambari.server.utils.StageUtils;
@@ -232,6 +233,60 @@ public class ExecutionCommandWrapperTest {
 
   }
 
+  @Test
+  public void testConfigurationSnapshot() throws JSONException, AmbariException {
+    Map<String, Map<String, String>> confs = new HashMap<>();
+    confs.put(GLOBAL_CONFIG, new HashMap<>(Collections.singletonMap(GLOBAL_NAME1, GLOBAL_VAL1)));
+
+    Map<String, Map<String, String>> confTags = new HashMap<>();
+    confTags.put(SERVICE_SITE_CONFIG, Collections.singletonMap("tag", CLUSTER_VERSION_TAG));
+    confTags.put(GLOBAL_CONFIG, Collections.singletonMap("tag", CLUSTER_VERSION_TAG));
+
+    ExecutionCommand executionCommand = new ExecutionCommand();
+    executionCommand.setClusterName(CLUSTER1);
+    executionCommand.setTaskId(1);
+    executionCommand.setRequestAndStage(1, 1);
+    executionCommand.setHostname(HOST1);
+    executionCommand.setRole("NAMENODE");
+    executionCommand.setRoleCommand(RoleCommand.START);
+    executionCommand.setConfigurations(confs);
+    executionCommand.setConfigurationTags(confTags);
+    executionCommand.setServiceName("HDFS");
+    executionCommand.setCommandType(AgentCommandType.EXECUTION_COMMAND);
+
+    String json = StageUtils.getGson().toJson(executionCommand, ExecutionCommand.class);
+
+    ExecutionCommandWrapper wrapper1 = new ExecutionCommandWrapper(json);
+    injector.injectMembers(wrapper1);
+    ExecutionCommand command1 = wrapper1.getExecutionCommand();
+
+    ExecutionCommandWrapper wrapper2 = new ExecutionCommandWrapper(json);
+    injector.injectMembers(wrapper2);
+    ExecutionCommand command2 = wrapper2.getExecutionCommand();
+
+    // commands with the same effective configurations share them
+    ConfigurationSnapshot snapshot = command1.getConfigurationSnapshot();
+    Assert.assertNotNull(snapshot);
+    Assert.assertSame(snapshot, command2.getConfigurationSnapshot());
+    Assert.assertSame(snapshot, configHelper.getConfigSnapshot(snapshot.getHash()));
+    Assert.assertSame(command1.getConfigurations().get(SERVICE_SITE_CONFIG),
+        command2.getConfigurations().get(SERVICE_SITE_CONFIG));
+    Assert.assertEquals(SERVICE_SITE_CLUSTER, command1.getConfigurations().get(SERVICE_SITE_CONFIG));
+
+    // the overrides of the command are still applied on top of the snapshot
+    Assert.assertEquals(GLOBAL_VAL1, command1.getConfigurations().get(GLOBAL_CONFIG).get(GLOBAL_NAME1));
+    Assert.assertEquals(GLOBAL_CLUSTER_VAL1, snapshot.getProperties().get(GLOBAL_CONFIG).get(GLOBAL_NAME1));
+
+    // the delta only carries the overrides along with the snapshot hash
+    Assert.assertSame(snapshot, configHelper.getComponentConfigSnapshot(snapshot, "NAMENODE"));
+    ExecutionCommand delta = command1.createConfigurationDeltaCommand(snapshot);
+    Assert.assertNotSame(command1, delta);
+    Assert.assertEquals(snapshot.getHash(), delta.getConfigurationsHash());
+    Assert.assertEquals(confs, delta.getConfigurations());
+    Assert.assertEquals(command1.getTaskId(), delta.getTaskId());
+    Assert.assertNull(command1.getConfigurationsHash());
+  }
+
   @Test
   public void testGetMergedConfig() {
     Map<String, String> baseConfig = new HashMap<>();
@@ -55,6 +55,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
 
@@ -73,7 +74,9 @@ import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.HostsMap;
 import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.events.TaskUpdateEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.TaskEventPublisher;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.orm.dao.HostDAO;
@@ -120,6 +123,7 @@ import com.google.inject.Guice;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
 import com.google.inject.persist.UnitOfWork;
 
 public class TestActionScheduler {
@@ -2925,6 +2929,94 @@ public class TestActionScheduler {
     EasyMock.verify(previousStage, nextStage, actionDBAccessor, hostRoleCommand);
   }
 
+  @Test
+  public void testTaskUpdateEventWakesUpScheduler() throws Exception {
+    ActionDBAccessor db = mock(ActionDBAccessor.class);
+    ActionScheduler scheduler = new ActionScheduler(100, 50, db, null, null, 3,
+        new HostsMap((String) null), null, null, null, entityManagerProviderMock, null, null);
+
+    HostRoleCommand inProgress = mock(HostRoleCommand.class);
+    when(inProgress.getStatus()).thenReturn(HostRoleStatus.IN_PROGRESS);
+    when(inProgress.getRequestId()).thenReturn(1L);
+
+    scheduler.onTaskUpdateEvent(new TaskUpdateEvent(Collections.singletonList(inProgress)));
+    assertEquals(null, scheduler.getSchedulingStatistics().get("wakeups.task.completed"));
+
+    HostRoleCommand completed = mock(HostRoleCommand.class);
+    when(completed.getStatus()).thenReturn(HostRoleStatus.COMPLETED);
+    when(completed.getRequestId()).thenReturn(1L);
+
+    scheduler.onTaskUpdateEvent(new TaskUpdateEvent(Arrays.asList(inProgress, completed)));
+    assertEquals(Long.valueOf(1), scheduler.getSchedulingStatistics().get("wakeups.task.completed"));
+  }
+
+  /**
+   * Publishes a task completion from a transaction, like the DAO does when it
+   * merges a task status update, and checks that the scheduler only runs once
+   * that transaction has been committed.
+   */
+  @Test
+  public void testTaskCompletionWakesUpSchedulerAfterCommit() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.EXECUTION_SCHEDULER_FULL_SWEEP_CYCLES.getKey(), "100000");
+    Configuration conf = new Configuration(properties);
+
+    final AtomicInteger workCount = new AtomicInteger();
+    ActionScheduler scheduler = new ActionScheduler(50, 50, mock(ActionDBAccessor.class), null, null, 3,
+        new HostsMap((String) null), null, null, conf, entityManagerProviderMock, null, null) {
+      @Override
+      public void doWork() {
+        workCount.incrementAndGet();
+      }
+    };
+    injector.getInstance(TaskEventPublisher.class).register(scheduler);
+    scheduler.start();
+
+    try {
+      final HostRoleCommand completed = mock(HostRoleCommand.class);
+      when(completed.getStatus()).thenReturn(HostRoleStatus.COMPLETED);
+      when(completed.getRequestId()).thenReturn(1L);
+
+      final HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
+      final AtomicInteger workCountBeforeCommit = new AtomicInteger(-1);
+      injector.getInstance(TransactionRunner.class).run(new Runnable() {
+        @Override
+        public void run() {
+          hostRoleCommandDAO.publishTaskUpdateEvent(Collections.singletonList(completed));
+
+          // several scheduler wait cycles pass before the transaction commits
+          try {
+            Thread.sleep(500);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          workCountBeforeCommit.set(workCount.get());
+        }
+      });
+
+      assertEquals(0, workCountBeforeCommit.get());
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (workCount.get() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, workCount.get());
+      assertEquals(Long.valueOf(1), scheduler.getSchedulingStatistics().get("wakeups.task.completed"));
+    } finally {
+      scheduler.stop();
+    }
+  }
+
+  /**
+   * Runs work in a transaction of the {@code AmbariJpaLocalTxnInterceptor}.
+   */
+  public static class TransactionRunner {
+    @Transactional
+    public void run(Runnable work) {
+      work.run();
+    }
+  }
+
   public static class MockModule extends AbstractModule {
     @Override
     protected void configure() {
@@ -34,10 +34,12 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -60,6 +62,8 @@ import org.apache.ambari.server.actionmanager.StageFactory;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.audit.AuditLogger;
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metrics.system.SingleMetric;
+import org.apache.ambari.server.metrics.system.impl.HeartbeatMetricsSource;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.orm.dao.HostDAO;
@@ -1364,6 +1368,80 @@ public class HeartbeatProcessorTest {
     assertEquals(State.STOPPING, componentState2);
   }
 
+  @Test
+  public void testCoalesceHeartbeats() {
+    HeartBeat pending = new HeartBeat();
+    pending.setHostname(DummyHostname1);
+    pending.setResponseId(1);
+
+    CommandReport report1 = new CommandReport();
+    report1.setTaskId(1);
+    pending.setReports(new ArrayList<>(Collections.singletonList(report1)));
+
+    ComponentStatus datanodeInstalled = new ComponentStatus();
+    datanodeInstalled.setClusterName(DummyCluster);
+    datanodeInstalled.setServiceName(HDFS);
+    datanodeInstalled.setComponentName(DATANODE);
+    datanodeInstalled.setStatus(State.INSTALLED.name());
+    ComponentStatus namenodeStarted = new ComponentStatus();
+    namenodeStarted.setClusterName(DummyCluster);
+    namenodeStarted.setServiceName(HDFS);
+    namenodeStarted.setComponentName(NAMENODE);
+    namenodeStarted.setStatus(State.STARTED.name());
+    pending.setComponentStatus(new ArrayList<>(Arrays.asList(datanodeInstalled, namenodeStarted)));
+    pending.setAlerts(new ArrayList<>(Collections.singletonList(new Alert())));
+
+    HeartBeat next = new HeartBeat();
+    next.setHostname(DummyHostname1);
+    next.setResponseId(2);
+
+    CommandReport report2 = new CommandReport();
+    report2.setTaskId(2);
+    next.setReports(new ArrayList<>(Collections.singletonList(report2)));
+
+    ComponentStatus datanodeStarted = new ComponentStatus();
+    datanodeStarted.setClusterName(DummyCluster);
+    datanodeStarted.setServiceName(HDFS);
+    datanodeStarted.setComponentName(DATANODE);
+    datanodeStarted.setStatus(State.STARTED.name());
+    next.setComponentStatus(new ArrayList<>(Collections.singletonList(datanodeStarted)));
+
+    HeartBeat merged = HeartbeatProcessor.coalesce(pending, next);
+
+    assertEquals(2, merged.getResponseId());
+    assertEquals(Arrays.asList(report1, report2), merged.getReports());
+    assertEquals(Arrays.asList(namenodeStarted, datanodeStarted), merged.getComponentStatus());
+    assertEquals(1, merged.getAlerts().size());
+
+    // the heartbeats themselves are not modified
+    assertEquals(Collections.singletonList(report2), next.getReports());
+    assertEquals(Collections.singletonList(datanodeStarted), next.getComponentStatus());
+    assertNull(next.getAlerts());
+  }
+
+  @Test
+  public void testLaneStatisticsArePublished() {
+    HeartbeatProcessor heartbeatProcessor = injector.getInstance(HeartBeatHandler.class).getHeartbeatProcessor();
 
+    HeartBeat hb = new HeartBeat();
+    hb.setHostname(DummyHostname1);
+    hb.setResponseId(1);
+    heartbeatProcessor.addHeartbeat(hb);
+
+    // the processor is not started, so the heartbeat stays queued in its lane
+    Map<String, Number> statistics = heartbeatProcessor.getLaneStatistics();
+    List<SingleMetric> metrics = new HeartbeatMetricsSource().getMetrics();
+    assertEquals(statistics.size(), metrics.size());
+
+    int queued = 0;
+    for (SingleMetric metric : metrics) {
+      String key = metric.getMetricName().substring("heartbeat.".length());
+      assertTrue(statistics.containsKey(key));
+      if (key.endsWith(".queued")) {
+        queued += metric.getValue();
+      }
+    }
+    assertEquals(1, queued);
+  }
 
 }
@@ -47,6 +47,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -70,6 +71,7 @@ import org.apache.ambari.server.actionmanager.Request;
 import org.apache.ambari.server.actionmanager.Stage;
 import org.apache.ambari.server.actionmanager.StageFactory;
 import org.apache.ambari.server.agent.HostStatus.Status;
+import org.apache.ambari.server.agent.rest.CompactAgentEncoding;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.audit.AuditLogger;
 import org.apache.ambari.server.configuration.Configuration;
@@ -375,13 +377,40 @@ public class TestHeartbeatHandler {
     reg.setHardwareProfile(hi);
     reg.setAgentVersion(metaInfo.getServerVersion());
     reg.setPrefix(Configuration.PREFIX_DIR);
-    handler.handleRegistration(reg);
+    RegistrationResponse response = handler.handleRegistration(reg);
     assertEquals(hostObject.getState(), HostState.HEALTHY);
     assertEquals(DummyOsType, hostObject.getOsType());
     assertEquals(DummyCurrentPingPort, hostObject.getCurrentPingPort());
     assertTrue(hostObject.getLastRegistrationTime() != 0);
     assertEquals(hostObject.getLastHeartbeatTime(),
         hostObject.getLastRegistrationTime());
+
+    // agents which do not advertise any encodings use JSON
+    assertEquals(CompactAgentEncoding.ENCODING_JSON, response.getEncoding());
+  }
+
+  @Test
+  public void testRegistrationCompactEncoding() throws Exception {
+    ActionManager am = actionManagerTestHelper.getMockActionManager();
+    replay(am);
+    HeartBeatHandler handler = new HeartBeatHandler(clusters, new ActionQueue(), am,
+        injector);
+    clusters.addHost(DummyHostname1);
+
+    Register reg = new Register();
+    HostInfo hi = new HostInfo();
+    hi.setHostName(DummyHostname1);
+    hi.setOS(DummyOsType);
+    reg.setHostname(DummyHostname1);
+    reg.setCurrentPingPort(DummyCurrentPingPort);
+    reg.setHardwareProfile(hi);
+    reg.setAgentVersion(metaInfo.getServerVersion());
+    reg.setPrefix(Configuration.PREFIX_DIR);
+    reg.setEncodings(Arrays.asList(CompactAgentEncoding.ENCODING_COMPACT,
+        CompactAgentEncoding.ENCODING_JSON));
+
+    RegistrationResponse response = handler.handleRegistration(reg);
+    assertEquals(CompactAgentEncoding.ENCODING_COMPACT, response.getEncoding());
   }
 
   @Test
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.agent.HeartBeat;
+import org.apache.ambari.server.agent.HeartBeatResponse;
+import org.apache.ambari.server.agent.StatusCommand;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Compares the payload size and the serialization time of the JSON and
+ * {@link CompactAgentEncoding} agent payloads for each command type. It is not
+ * run as part of the build; run it with
+ * <pre>
+ * java -cp ... org.apache.ambari.server.agent.rest.CompactAgentEncodingBenchmark [iterations]
+ * </pre>
+ */
+public class CompactAgentEncodingBenchmark {
+
+  private static final ObjectMapper MAPPER = CompactAgentEncodingTest.MAPPER;
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+    System.out.println(String.format("%-28s %10s %10s %10s %10s %10s %10s %10s",
+        "payload", "json B", "gzip B", "compact B", "json us", "gzip us", "compact us",
+        "decode us"));
+
+    for (int hosts : new int[] { 10, 500, 4000 }) {
+      run("EXECUTION_COMMAND/" + hosts, CompactAgentEncodingTest.createExecutionCommand(hosts),
+          ExecutionCommand.class, iterations);
+    }
+
+    run("STATUS_COMMAND", CompactAgentEncodingTest.createStatusCommand("DATANODE"),
+        StatusCommand.class, iterations);
+
+    run("HEARTBEAT_RESPONSE/4000", CompactAgentEncodingTest.createHeartBeatResponse(4000, 20),
+        HeartBeatResponse.class, iterations);
+
+    run("HEARTBEAT", CompactAgentEncodingTest.createHeartBeat(20), HeartBeat.class, iterations);
+  }
+
+  /**
+   * Measures a single payload after warming up with the same number of
+   * iterations.
+   */
+  private static void run(String name, Object payload, Class<?> type, int iterations)
+      throws IOException {
+    byte[] json = MAPPER.writeValueAsBytes(payload);
+    byte[] gzip = gzip(json);
+    byte[] compact = CompactAgentEncodingTest.write(payload);
+
+    long jsonTime = 0;
+    long gzipTime = 0;
+    long compactTime = 0;
+    long decodeTime = 0;
+
+    for (int pass = 0; pass < 2; pass++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        MAPPER.writeValueAsBytes(payload);
+      }
+      jsonTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        gzip(MAPPER.writeValueAsBytes(payload));
+      }
+      gzipTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        CompactAgentEncodingTest.write(payload);
+      }
+      compactTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        CompactAgentEncoding.read(MAPPER, type, new ByteArrayInputStream(compact));
+      }
+      decodeTime = System.nanoTime() - start;
+    }
+
+    System.out.println(String.format("%-28s %10d %10d %10d %10d %10d %10d %10d", name,
+        json.length, gzip.length, compact.length, jsonTime / iterations / 1000,
+        gzipTime / iterations / 1000, compactTime / iterations / 1000,
+        decodeTime / iterations / 1000));
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(bytes);
+    gzip.close();
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,319 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.agent.CommandReport;
+import org.apache.ambari.server.agent.ComponentStatus;
+import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.agent.HeartBeat;
+import org.apache.ambari.server.agent.HeartBeatResponse;
+import org.apache.ambari.server.agent.StatusCommand;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CompactAgentEncoding}.
+ */
+public class CompactAgentEncodingTest {
+
+  /**
+   * Configured like the mapper of the JSON provider used by the agent API.
+   */
+  static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void testExecutionCommandRoundTrip() throws Exception {
+    ExecutionCommand command = createExecutionCommand(50);
+    byte[] frame = write(command);
+
+    // the decoded document is the same one that the JSON provider produces,
+    // including the names of all properties
+    JsonNode decoded = read(frame, JsonNode.class);
+    assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(command)), decoded);
+    assertTrue(decoded.has("clusterHostInfo"));
+
+    // large commands are compressed and much smaller than JSON
+    assertTrue((frame[3] & 0x01) != 0);
+    assertTrue(frame.length * 4 < MAPPER.writeValueAsBytes(command).length);
+  }
+
+  @Test
+  public void testHeartBeatResponseMatchesJson() throws Exception {
+    HeartBeatResponse response = createHeartBeatResponse(10, 5);
+    JsonNode decoded = read(write(response), JsonNode.class);
+
+    assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(response)), decoded);
+  }
+
+  @Test
+  public void testHeartBeatRoundTrip() throws Exception {
+    HeartBeat heartBeat = createHeartBeat(10);
+    byte[] frame = write(heartBeat);
+
+    HeartBeat copy = read(frame, HeartBeat.class);
+    assertEquals(MAPPER.writeValueAsString(heartBeat), MAPPER.writeValueAsString(copy));
+
+    // a heartbeat sent as JSON is read in the same way
+    HeartBeat fromJson = MAPPER.readValue(MAPPER.writeValueAsString(heartBeat), HeartBeat.class);
+    assertEquals(MAPPER.writeValueAsString(fromJson), MAPPER.writeValueAsString(copy));
+  }
+
+  @Test
+  public void testSmallPayloadIsNotCompressed() throws Exception {
+    Map<String, Object> values = new HashMap<>();
+    values.put("long", Long.MIN_VALUE);
+    values.put("double", 0.25d);
+    values.put("boolean", Boolean.TRUE);
+    values.put("empty", "");
+    values.put("null", null);
+
+    byte[] frame = write(values);
+    assertFalse((frame[3] & 0x01) != 0);
+
+    JsonNode decoded = read(frame, JsonNode.class);
+    assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(values)), decoded);
+
+    // nulls are written, just like JSON
+    assertTrue(decoded.get("null").isNull());
+    assertEquals(Long.MIN_VALUE, decoded.get("long").getLongValue());
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidFrame() throws Exception {
+    read("{\"responseId\":1}".getBytes(StandardCharsets.UTF_8), JsonNode.class);
+  }
+
+  @Test
+  public void testOversizedFrameIsRejected() throws Exception {
+    // the claimed length is rejected before anything is allocated
+    assertRejected(frame(0, CompactAgentEncoding.MAX_FRAME_LENGTH + 1, new byte[0]));
+
+    // a frame which is shorter than it claims to be
+    assertRejected(frame(0, 1024, new byte[] { 6 }));
+
+    // a string which claims to be longer than the frame or the string limit
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(payload);
+    out.writeByte(6);
+    writeVarInt(out, 1024 * 1024);
+    out.write(new byte[16]);
+    assertRejected(frame(0, payload.size(), payload.toByteArray()));
+
+    payload.reset();
+    out.writeByte(6);
+    writeVarInt(out, CompactAgentEncoding.MAX_STRING_LENGTH + 1);
+    assertRejected(frame(0, payload.size(), payload.toByteArray()));
+  }
+
+  @Test
+  public void testOversizedInflatedPayloadIsRejected() throws Exception {
+    // an array of strings which each fit, but together inflate to more than
+    // the maximum payload
+    int length = CompactAgentEncoding.MAX_STRING_LENGTH / 2;
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(compressed));
+    out.writeByte(9);
+    for (int i = 0; i <= CompactAgentEncoding.MAX_PAYLOAD_LENGTH / length; i++) {
+      out.writeByte(6);
+      writeVarInt(out, length);
+      out.write(new byte[length]);
+    }
+    out.writeByte(10);
+    out.close();
+
+    byte[] payload = compressed.toByteArray();
+    assertTrue(payload.length < CompactAgentEncoding.MAX_FRAME_LENGTH);
+    assertRejected(frame(0x01, payload.length, payload));
+  }
+
+  @Test
+  public void testDeeplyNestedPayloadIsRejected() throws Exception {
+    byte[] payload = new byte[CompactAgentEncoding.MAX_DEPTH * 2 + 2];
+    for (int i = 0; i < payload.length / 2; i++) {
+      payload[i] = 9;
+      payload[payload.length - i - 1] = 10;
+    }
+
+    assertRejected(frame(0, payload.length, payload));
+  }
+
+  static byte[] write(Object src) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompactAgentEncoding.write(MAPPER, src, out);
+    return out.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> T read(byte[] frame, Class<T> type) throws IOException {
+    return (T) CompactAgentEncoding.read(MAPPER, type, new ByteArrayInputStream(frame));
+  }
+
+  private static void assertRejected(byte[] frame) {
+    try {
+      read(frame, JsonNode.class);
+      fail("The frame should have been rejected");
+    } catch (IOException expected) {
+    }
+  }
+
+  private static byte[] frame(int flags, int length, byte[] payload) throws IOException {
+    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(frame);
+    out.writeByte('A');
+    out.writeByte('C');
+    out.writeByte(1);
+    out.writeByte(flags);
+    out.writeInt(length);
+    out.write(payload);
+    return frame.toByteArray();
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Creates a command with a cluster host info and configurations which are
+   * sized like those of a cluster with the specified number of hosts.
+   */
+  static ExecutionCommand createExecutionCommand(int hosts) {
+    ExecutionCommand command = new ExecutionCommand();
+    command.setClusterName("c1");
+    command.setHostname("c6401.ambari.apache.org");
+    command.setRequestAndStage(1L, 2L);
+    command.setTaskId(3L);
+    command.setRole("DATANODE");
+    command.setRoleCommand(RoleCommand.START);
+    command.setServiceName("HDFS");
+    command.setComponentName("DATANODE");
+
+    Map<String, Set<String>> clusterHostInfo = new HashMap<>();
+    Set<String> allHosts = new LinkedHashSet<>();
+    for (int i = 0; i < hosts; i++) {
+      allHosts.add(String.valueOf(i));
+    }
+    clusterHostInfo.put("all_hosts", allHosts);
+    clusterHostInfo.put("slave_hosts", allHosts);
+    clusterHostInfo.put("all_ping_ports", allHosts);
+    command.setClusterHostInfo(clusterHostInfo);
+
+    Map<String, Map<String, String>> configurations = new HashMap<>();
+    for (String type : new String[] { "core-site", "hdfs-site", "hadoop-env", "cluster-env" }) {
+      Map<String, String> properties = new HashMap<>();
+      for (int i = 0; i < 100; i++) {
+        properties.put(type + ".property." + i, i % 2 == 0 ? "true" : "/hadoop/" + type + "/" + i);
+      }
+      configurations.put(type, properties);
+    }
+    command.setConfigurations(configurations);
+
+    Map<String, String> commandParams = new HashMap<>();
+    commandParams.put("command_timeout", "600");
+    commandParams.put("script_type", "PYTHON");
+    command.setCommandParams(commandParams);
+    return command;
+  }
+
+  /**
+   * Creates a status command for the specified component.
+   */
+  static StatusCommand createStatusCommand(String componentName) {
+    StatusCommand command = new StatusCommand();
+    command.setClusterName("c1");
+    command.setServiceName("HDFS");
+    command.setComponentName(componentName);
+    return command;
+  }
+
+  /**
+   * Creates a heartbeat response with a single execution command and status
+   * commands for the specified number of components.
+   */
+  static HeartBeatResponse createHeartBeatResponse(int hosts, int components) {
+    HeartBeatResponse response = new HeartBeatResponse();
+    response.setResponseId(1L);
+    response.addExecutionCommand(createExecutionCommand(hosts));
+    for (int i = 0; i < components; i++) {
+      response.addStatusCommand(createStatusCommand("COMPONENT_" + i));
+    }
+    return response;
+  }
+
+  /**
+   * Creates a heartbeat with command reports and component statuses for the
+   * specified number of components.
+   */
+  static HeartBeat createHeartBeat(int components) {
+    HeartBeat heartBeat = new HeartBeat();
+    heartBeat.setResponseId(1L);
+    heartBeat.setTimestamp(System.currentTimeMillis());
+    heartBeat.setHostname("c6401.ambari.apache.org");
+
+    List<CommandReport> reports = new ArrayList<>();
+    List<ComponentStatus> statuses = new ArrayList<>();
+    for (int i = 0; i < components; i++) {
+      CommandReport report = new CommandReport();
+      report.setClusterName("c1");
+      report.setServiceName("HDFS");
+      report.setRole("COMPONENT_" + i);
+      report.setRoleCommand("START");
+      report.setStatus("COMPLETED");
+      report.setTaskId(i);
+      report.setExitCode(0);
+      report.setStdOut("stdout " + i);
+      report.setStdErr("");
+      report.setStructuredOut("{}");
+      reports.add(report);
+
+      ComponentStatus status = new ComponentStatus();
+      status.setClusterName("c1");
+      status.setServiceName("HDFS");
+      status.setComponentName("COMPONENT_" + i);
+      status.setStatus("STARTED");
+      statuses.add(status);
+    }
+
+    heartBeat.setReports(reports);
+    heartBeat.setComponentStatus(statuses);
+    return heartBeat;
+  }
+}
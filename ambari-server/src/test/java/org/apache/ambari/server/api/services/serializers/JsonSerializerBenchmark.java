@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.api.services.serializers;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultImpl;
+import org.apache.ambari.server.api.services.ResultStatus;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+
+/**
+ * Measures the bytes allocated and the time taken to serialize the result of
+ * a large host query with {@link JsonSerializer}, once into a String as the
+ * non streaming path does and once directly to an output stream. The result
+ * tree is built before either is measured, as it is by the request handlers,
+ * and the bytes allocated to build it are reported separately. It is not run
+ * as part of the build and needs a JVM which supports thread allocation
+ * measurement; run it with
+ * <pre>
+ * java -cp ... org.apache.ambari.server.api.services.serializers.JsonSerializerBenchmark [hosts] [iterations]
+ * </pre>
+ */
+public class JsonSerializerBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int hosts = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    com.sun.management.ThreadMXBean threadMXBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+    Result result = createResult(hosts);
+    long treeBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+
+    System.out.println(String.format("%d hosts, %d MB allocated to build the result tree", hosts,
+        treeBytes / (1024 * 1024)));
+    System.out.println(String.format("%-10s %12s %12s %12s", "output", "MB written", "MB allocated",
+        "avg ms"));
+
+    for (boolean streaming : new boolean[] { false, true }) {
+      // warm up
+      run(result, streaming);
+
+      long allocated = 0;
+      long elapsed = 0;
+      long written = 0;
+      for (int i = 0; i < iterations; i++) {
+        bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        written = run(result, streaming);
+
+        elapsed += System.nanoTime() - start;
+        allocated += threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+      }
+
+      System.out.println(String.format("%-10s %12d %12d %12d", streaming ? "stream" : "string",
+          written / (1024 * 1024), allocated / iterations / (1024 * 1024),
+          elapsed / iterations / 1000000));
+    }
+  }
+
+  private static long run(Result result, boolean streaming) throws Exception {
+    JsonSerializer serializer = new JsonSerializer();
+    if (streaming) {
+      CountingOutputStream out = new CountingOutputStream();
+      serializer.serialize(result, out);
+      return out.count;
+    }
+    return ((String) serializer.serialize(result)).length();
+  }
+
+  private static Result createResult(int hosts) {
+    List<String> propertyIds = new ArrayList<>(PropertyHelper.getPropertyIds(Resource.Type.Host));
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    tree.setProperty("isCollection", "true");
+
+    for (int i = 0; i < hosts; i++) {
+      Resource resource = new ResourceImpl(Resource.Type.Host);
+      for (String propertyId : propertyIds) {
+        resource.setProperty(propertyId, "value" + i);
+      }
+      TreeNode<Resource> node = tree.addChild(resource, "Host:" + i);
+      node.setProperty("href", "http://localhost:8080/api/v1/clusters/c1/hosts/host" + i);
+    }
+    return result;
+  }
+
+  /**
+   * Discards the written bytes, counting them.
+   */
+  private static class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+}
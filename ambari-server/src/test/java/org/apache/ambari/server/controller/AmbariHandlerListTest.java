@@ -42,7 +42,6 @@ import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
-import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.webapp.WebAppContext;
 import org.junit.Assert;
@@ -65,10 +64,6 @@ public class AmbariHandlerListTest {
     ViewInstanceEntity viewInstanceEntity = ViewInstanceEntityTest.getViewInstanceEntity();
 
     final WebAppContext handler = createNiceMock(WebAppContext.class);
-    Server server = createNiceMock(Server.class);
-
-    expect(handler.getServer()).andReturn(server);
-    handler.setServer(null);
 
     Capture<FilterHolder> securityHeaderFilterCapture = EasyMock.newCapture();
     Capture<FilterHolder> persistFilterCapture = EasyMock.newCapture();
@@ -79,39 +74,44 @@ public class AmbariHandlerListTest {
     handler.addFilter(capture(securityFilterCapture), eq("/*"), eq(AmbariServer.DISPATCHER_TYPES));
     handler.setAllowNullPathInfo(true);
 
-    replay(handler, server);
+    replay(handler);
 
     AmbariHandlerList handlerList = getAmbariHandlerList(handler);
 
     handlerList.addViewInstance(viewInstanceEntity);
 
-    ArrayList<Handler> handlers = new ArrayList<>(Arrays.asList(handlerList.getHandlers()));
-
-    Assert.assertTrue(handlers.contains(handler));
+    // the handler is only added on the first request for the view instance
+    Assert.assertNull(handlerList.getHandlers());
 
     Assert.assertEquals(ambariViewsSecurityHeaderFilter, securityHeaderFilterCapture.getValue().getFilter());
     Assert.assertEquals(persistFilter, persistFilterCapture.getValue().getFilter());
     Assert.assertEquals(springSecurityFilter, securityFilterCapture.getValue().getFilter());
 
-    verify(handler, server);
+    verify(handler);
   }
 
   @Test
   public void testRemoveViewInstance() throws Exception {
     ViewInstanceEntity viewInstanceEntity = ViewInstanceEntityTest.getViewInstanceEntity();
 
-    final WebAppContext handler = createNiceMock(WebAppContext.class);
-    Server server = createNiceMock(Server.class);
+    TestWebAppContext handler = new TestWebAppContext();
+    Handler nonViewHandler = createNiceMock(Handler.class);
 
-    expect(handler.getServer()).andReturn(server);
-    handler.setServer(null);
+    Request baseRequest = createNiceMock(Request.class);
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
 
-    replay(handler, server);
+    replay(nonViewHandler, baseRequest, request, response);
 
     AmbariHandlerList handlerList = getAmbariHandlerList(handler);
+    handlerList.viewRegistry = createNiceMock(ViewRegistry.class);
 
+    handlerList.start();
+    handlerList.addHandler(nonViewHandler);
     handlerList.addViewInstance(viewInstanceEntity);
 
+    handlerList.handle(viewInstanceEntity.getContextPath(), baseRequest, request, response);
+
     ArrayList<Handler> handlers = new ArrayList<>(Arrays.asList(handlerList.getHandlers()));
 
     Assert.assertTrue(handlers.contains(handler));
@@ -122,8 +122,47 @@ public class AmbariHandlerListTest {
 
     Assert.assertFalse(handlers.contains(handler));
 
-    verify(handler, server);
+    handlerList.stop();
+  }
+
+  @Test
+  public void testHandleStartsViewInstance() throws Exception {
+    ViewInstanceEntity viewInstanceEntity = ViewInstanceEntityTest.getViewInstanceEntity();
+
+    TestWebAppContext handler = new TestWebAppContext();
+    Handler nonViewHandler = createNiceMock(Handler.class);
+
+    Request baseRequest = createNiceMock(Request.class);
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+
+    replay(nonViewHandler, baseRequest, request, response);
+
+    AmbariHandlerList handlerList = getAmbariHandlerList(handler);
+    handlerList.viewRegistry = createNiceMock(ViewRegistry.class);
+
+    handlerList.start();
+    handlerList.addHandler(nonViewHandler);
+    handlerList.addViewInstance(viewInstanceEntity);
+
+    Assert.assertFalse(handler.isStarted());
+
+    // requests for other targets do not start the view instance
+    handlerList.handle("/api/v1/clusters", baseRequest, request, response);
+    handlerList.handle(viewInstanceEntity.getContextPath() + "_OTHER", baseRequest, request, response);
 
+    Assert.assertFalse(handler.isStarted());
+    Assert.assertEquals(0, handler.requests);
+
+    handlerList.handle(viewInstanceEntity.getContextPath() + "/index.html", baseRequest, request, response);
+
+    Assert.assertTrue(handler.isStarted());
+    Assert.assertTrue(Arrays.asList(handlerList.getHandlers()).contains(handler));
+    Assert.assertEquals(1, handler.requests);
+
+    handlerList.stop();
+
+    Assert.assertFalse(handler.isStarted());
   }
 
   @Test
@@ -170,6 +209,29 @@ public class AmbariHandlerListTest {
     return handlerList;
   }
 
+  /**
+   * A web app context which counts its requests instead of serving them.
+   */
+  private static class TestWebAppContext extends WebAppContext {
+    private int requests;
+
+    @Override
+    protected void doStart() throws Exception {
+      // do nothing...
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+      // do nothing...
+    }
+
+    @Override
+    public void doScope(String target, Request baseRequest, HttpServletRequest request,
+                        HttpServletResponse response) {
+      requests++;
+    }
+  }
+
   private static class HandlerProvider implements Provider<WebAppContext> {
     private final WebAppContext context;
 
@@ -44,6 +44,7 @@ import org.apache.ambari.server.controller.spi.PageResponse;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.PropertyProvider;
 import org.apache.ambari.server.controller.spi.ProviderModule;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
@@ -291,6 +292,87 @@ public class ClusterControllerImplTest {
     Assert.assertEquals("host:0", (String) list.get(3).getPropertyValue(PropertyHelper.getPropertyId("Hosts", "host_name")));
   }
 
+  @Test
+  public void testGetPageOfManyResources() throws Exception {
+    ClusterControllerImpl controller = new ClusterControllerImpl(new TestProviderModule());
+    Request request = PropertyHelper.getReadRequest(Collections.<String>emptySet());
+
+    List<SortRequestProperty> sortRequestProperties =
+      new ArrayList<SortRequestProperty>() {{
+        add(new SortRequestProperty("c1/p2", SortRequest.Order.DESC));
+        add(new SortRequestProperty("c1/p1", SortRequest.Order.ASC));
+      }};
+    SortRequest sortRequest = new SortRequestImpl(sortRequestProperties);
+
+    Set<Resource> resources = new HashSet<>();
+    for (int i = 0; i < 100; ++i) {
+      ResourceImpl resource = new ResourceImpl(Resource.Type.Host);
+      resource.setProperty(PropertyHelper.getPropertyId("Hosts", "cluster_name"), "cluster");
+      resource.setProperty(PropertyHelper.getPropertyId("Hosts", "host_name"), "host:" + i);
+      resource.setProperty(PropertyHelper.getPropertyId("c1", "p1"), i % 7);
+      resource.setProperty(PropertyHelper.getPropertyId("c1", "p2"), i % 3);
+      resources.add(resource);
+    }
+
+    // the pages of the unsorted resources must be the pages of the sorted ones
+    List<Resource> sorted = new ArrayList<>(resources);
+    Collections.sort(sorted, controller.new ResourceComparator(sortRequest));
+
+    Predicate predicate = new PredicateBuilder().property("c1/p2").equals(1).toPredicate();
+    List<Resource> filtered = new ArrayList<>();
+    for (Resource resource : sorted) {
+      if (predicate.evaluate(resource)) {
+        filtered.add(resource);
+      }
+    }
+
+    for (boolean providerSorted : new boolean[] { false, true }) {
+      QueryResponse queryResponse = providerSorted
+          ? new QueryResponseImpl(new LinkedHashSet<>(sorted), true, false, 0)
+          : new QueryResponseImpl(resources);
+
+      // from the start, with and without predicate
+      for (int offset : new int[] { 0, 1, 10, 30, 90, 98 }) {
+        PageResponse pageResponse = controller.getPage(Resource.Type.Host, queryResponse, request,
+            null, new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 5, offset, null, null),
+            sortRequest);
+        assertPage(sorted, offset, Math.min(offset + 5, 100), pageResponse);
+
+        if (offset < filtered.size()) {
+          pageResponse = controller.getPage(Resource.Type.Host, queryResponse, request,
+              predicate, new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 5, offset, null, null),
+              sortRequest);
+          assertPage(filtered, offset, Math.min(offset + 5, filtered.size()), pageResponse);
+        }
+      }
+
+      // to the end
+      PageResponse pageResponse = controller.getPage(Resource.Type.Host, queryResponse, request,
+          null, new PageRequestImpl(PageRequest.StartingPoint.End, 5, 0, null, null), sortRequest);
+      assertPage(sorted, 95, 100, pageResponse);
+
+      for (int offset : new int[] { 99, 60, 6, 2 }) {
+        pageResponse = controller.getPage(Resource.Type.Host, queryResponse, request,
+            null, new PageRequestImpl(PageRequest.StartingPoint.OffsetEnd, 5, offset, null, null),
+            sortRequest);
+        assertPage(sorted, Math.max(offset - 4, 0), offset + 1, pageResponse);
+      }
+    }
+  }
+
+  private static void assertPage(List<Resource> expected, int from, int to, PageResponse pageResponse) {
+    List<Resource> page = new ArrayList<>();
+    for (Resource resource : pageResponse.getIterable()) {
+      page.add(resource);
+    }
+
+    Assert.assertEquals(expected.subList(from, to), page);
+    Assert.assertEquals(from, pageResponse.getOffset());
+    Assert.assertEquals(from == 0 ? null : expected.get(from - 1), pageResponse.getPreviousResource());
+    Assert.assertEquals(to == expected.size() ? null : expected.get(to), pageResponse.getNextResource());
+    Assert.assertEquals(expected.size(), pageResponse.getTotalResourceCount().intValue());
+  }
+
   @Test
   public void testGetResourcesPageFromOffset() throws Exception{
     ClusterControllerImpl controller = new ClusterControllerImpl(new TestProviderModule());
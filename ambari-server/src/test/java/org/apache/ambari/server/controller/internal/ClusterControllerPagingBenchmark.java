@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+
+/**
+ * Measures the time it takes the {@link ClusterControllerImpl} to get a sorted
+ * page of synthetic host resources which the provider did not sort, compared
+ * to sorting all of them into a {@link TreeSet} first. It is not run as part
+ * of the build; run it with
+ * <pre>
+ * java -cp ... org.apache.ambari.server.controller.internal.ClusterControllerPagingBenchmark [resources] [iterations]
+ * </pre>
+ */
+public class ClusterControllerPagingBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int resourceCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    ClusterControllerImpl controller = new ClusterControllerImpl(
+        new ClusterControllerImplTest.TestProviderModule());
+    Request request = PropertyHelper.getReadRequest(Collections.<String>emptySet());
+    SortRequest sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty("Hosts/host_name", SortRequest.Order.DESC)));
+
+    Set<Resource> resources = new HashSet<>();
+    for (int i = 0; i < resourceCount; i++) {
+      Resource resource = new ResourceImpl(Resource.Type.Host);
+      resource.setProperty("Hosts/cluster_name", "c1");
+      resource.setProperty("Hosts/host_name", String.format("host-%08d.example.com", i));
+      resource.setProperty("Hosts/host_state", i % 10 == 0 ? "HEARTBEAT_LOST" : "HEALTHY");
+      resources.add(resource);
+    }
+
+    QueryResponseImpl queryResponse = new QueryResponseImpl(resources);
+    PageRequest[] pageRequests = {
+        new PageRequestImpl(PageRequest.StartingPoint.Beginning, 20, 0, null, null),
+        new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 20, 1000, null, null),
+        new PageRequestImpl(PageRequest.StartingPoint.End, 20, 0, null, null),
+        new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 20, resourceCount / 2, null, null) };
+
+    System.out.println(String.format("%-30s %10s %10s", "page", "min ms", "avg ms"));
+
+    long min = Long.MAX_VALUE;
+    long total = 0;
+    for (int i = 0; i < iterations + 1; i++) {
+      long start = System.nanoTime();
+      TreeSet<Resource> sorted = new TreeSet<>(controller.new ResourceComparator(sortRequest));
+      sorted.addAll(resources);
+      long elapsed = (System.nanoTime() - start) / 1000000;
+
+      // the first iteration warms up
+      if (i > 0) {
+        min = Math.min(min, elapsed);
+        total += elapsed;
+      }
+    }
+    System.out.println(String.format("%-30s %10d %10d", "TreeSet of all", min, total / iterations));
+
+    for (PageRequest pageRequest : pageRequests) {
+      min = Long.MAX_VALUE;
+      total = 0;
+      for (int i = 0; i < iterations + 1; i++) {
+        long start = System.nanoTime();
+        controller.getPage(Resource.Type.Host, queryResponse, request, null, pageRequest,
+            sortRequest);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        if (i > 0) {
+          min = Math.min(min, elapsed);
+          total += elapsed;
+        }
+      }
+
+      System.out.println(String.format("%-30s %10d %10d",
+          pageRequest.getStartingPoint() + "@" + pageRequest.getOffset(), min, total / iterations));
+    }
+  }
+}
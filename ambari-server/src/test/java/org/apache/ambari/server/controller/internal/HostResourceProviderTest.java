@@ -54,10 +54,15 @@ import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.controller.ResourceProviderFactory;
 import org.apache.ambari.server.controller.ServiceComponentHostRequest;
 import org.apache.ambari.server.controller.ServiceComponentHostResponse;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceProvider;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.apache.ambari.server.orm.DBAccessor;
@@ -73,6 +78,7 @@ import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.HostConfig;
 import org.apache.ambari.server.state.HostHealthStatus;
 import org.apache.ambari.server.state.HostHealthStatus.HealthStatus;
+import org.apache.ambari.server.state.HostState;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.ServiceComponentHost;
 import org.apache.ambari.server.state.stack.OsFamily;
@@ -276,6 +282,88 @@ public class HostResourceProviderTest extends EasyMockSupport {
     verifyAll();
   }
 
+  @Test
+  public void testQueryForResources_Paged() throws Exception {
+    Resource.Type type = Resource.Type.Host;
+    Injector injector = createInjector();
+    AmbariManagementController managementController = injector.getInstance(AmbariManagementController.class);
+    Clusters clusters = injector.getInstance(Clusters.class);
+    Cluster cluster = createMock(Cluster.class);
+
+    // only the host on the requested page may be converted to a response
+    Host host100 = createMock(Host.class);
+    expectSummary(host100, "Host100", "HEALTHY");
+    Host host101 = createMockHost("Host101", "Cluster100", null, "HEALTHY", "RECOVERABLE", null);
+    Host host102 = createMock(Host.class);
+    expectSummary(host102, "Host102", "HEALTHY");
+
+    AmbariMetaInfo ambariMetaInfo = createNiceMock(AmbariMetaInfo.class);
+    ResourceProviderFactory resourceProviderFactory = createNiceMock(ResourceProviderFactory.class);
+    ResourceProvider hostResourceProvider = getHostProvider(injector);
+
+    AbstractControllerResourceProvider.init(resourceProviderFactory);
+
+    Set<Cluster> clusterSet = Collections.singleton(cluster);
+
+    expect(host100.getMaintenanceState(2)).andReturn(MaintenanceState.OFF).anyTimes();
+    expect(host101.getMaintenanceState(2)).andReturn(MaintenanceState.OFF).anyTimes();
+    expect(host102.getMaintenanceState(2)).andReturn(MaintenanceState.OFF).anyTimes();
+
+    expect(managementController.getClusters()).andReturn(clusters).anyTimes();
+    expect(managementController.getAmbariMetaInfo()).andReturn(ambariMetaInfo).anyTimes();
+    expect(resourceProviderFactory.getHostResourceProvider(EasyMock.<Set<String>>anyObject(),
+            EasyMock.<Map<Resource.Type, String>>anyObject(),
+            eq(managementController))).
+        andReturn(hostResourceProvider).anyTimes();
+
+    expect(clusters.getHosts()).andReturn(Arrays.asList(host100, host101, host102)).anyTimes();
+    expect(clusters.getHost("Host101")).andReturn(host101).anyTimes();
+    expect(clusters.getCluster("Cluster100")).andReturn(cluster).anyTimes();
+    expect(clusters.getClustersForHost("Host100")).andReturn(clusterSet).anyTimes();
+    expect(clusters.getClustersForHost("Host101")).andReturn(clusterSet).anyTimes();
+    expect(clusters.getClustersForHost("Host102")).andReturn(clusterSet).anyTimes();
+
+    expect(cluster.getClusterId()).andReturn(2L).anyTimes();
+    expect(cluster.getDesiredConfigs()).andReturn(new HashMap<String, DesiredConfig>()).anyTimes();
+
+    Set<String> propertyIds = new HashSet<>();
+    propertyIds.add(HostResourceProvider.HOST_NAME_PROPERTY_ID);
+    propertyIds.add(HostResourceProvider.HOST_HOST_HEALTH_REPORT_PROPERTY_ID);
+
+    // the second host when sorted by name in descending order
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 1, 1,
+        null, null);
+    SortRequest sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty(HostResourceProvider.HOST_NAME_PROPERTY_ID, SortRequest.Order.DESC)));
+
+    Predicate predicate = buildPredicate("Cluster100", null);
+    Request request = PropertyHelper.getReadRequest(propertyIds, null, null, pageRequest,
+        sortRequest);
+
+    replayAll();
+
+    SecurityContextHolder.getContext().setAuthentication(TestAuthenticationFactory.createAdministrator());
+
+    ExtendedResourceProvider provider = (ExtendedResourceProvider) AbstractControllerResourceProvider.getResourceProvider(
+        type,
+        PropertyHelper.getPropertyIds(type),
+        PropertyHelper.getKeyPropertyIds(type),
+        managementController);
+
+    QueryResponse response = provider.queryForResources(request, predicate);
+
+    Assert.assertTrue(response.isPagedResponse());
+    Assert.assertTrue(response.isSortedResponse());
+    Assert.assertEquals(3, response.getTotalResourceCount());
+    Assert.assertEquals(1, response.getResources().size());
+
+    Resource resource = response.getResources().iterator().next();
+    Assert.assertEquals("Host101", resource.getPropertyValue(HostResourceProvider.HOST_NAME_PROPERTY_ID));
+    Assert.assertEquals("", resource.getPropertyValue(HostResourceProvider.HOST_HOST_HEALTH_REPORT_PROPERTY_ID));
+
+    verifyAll();
+  }
+
   @Test
   public void testGetResources_Status_NoCluster() throws Exception {
     Resource.Type type = Resource.Type.Host;
@@ -1423,13 +1511,28 @@ public class HostResourceProviderTest extends EasyMockSupport {
     } catch (AmbariException e) {
       Assert.fail(e.getMessage());
     }
-    expect(host.getHostName()).andReturn(hostName).anyTimes();
-    expect(host.getRackInfo()).andReturn("rackInfo").anyTimes();
+    expectSummary(host, hostName, status);
     host.setRackInfo(EasyMock.<String>anyObject());
     expectLastCall().anyTimes();
     return host;
   }
 
+  private void expectSummary(Host host, String hostName, String status) {
+    expect(host.getHostName()).andReturn(hostName).anyTimes();
+    expect(host.getPublicHostName()).andReturn(hostName).anyTimes();
+    expect(host.getIPv4()).andReturn(null).anyTimes();
+    expect(host.getTotalMemBytes()).andReturn(1024L).anyTimes();
+    expect(host.getCpuCount()).andReturn(1).anyTimes();
+    expect(host.getPhCpuCount()).andReturn(1).anyTimes();
+    expect(host.getOsArch()).andReturn(null).anyTimes();
+    expect(host.getOsType()).andReturn("centos6").anyTimes();
+    expect(host.getRackInfo()).andReturn("rackInfo").anyTimes();
+    expect(host.getLastHeartbeatTime()).andReturn(1L).anyTimes();
+    expect(host.getLastRegistrationTime()).andReturn(1L).anyTimes();
+    expect(host.getState()).andReturn(HostState.HEALTHY).anyTimes();
+    expect(host.getStatus()).andReturn(status).anyTimes();
+  }
+
   private Predicate buildPredicate(String clusterName, String hostName) {
     PredicateBuilder builder = new PredicateBuilder();
     if (clusterName != null && hostName != null) {
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+
+/**
+ * Measures the bytes allocated and the time taken to build, read and copy
+ * the resources of large host and host component queries, the way the
+ * resource providers and the cluster controller do. It is not run as part of
+ * the build and needs a JVM which supports thread allocation measurement; run
+ * it with
+ * <pre>
+ * java -cp ... org.apache.ambari.server.controller.internal.ResourceAllocationBenchmark [hosts] [iterations]
+ * </pre>
+ */
+public class ResourceAllocationBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int hosts = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    com.sun.management.ThreadMXBean threadMXBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    System.out.println(String.format("%-20s %10s %12s %12s", "type", "resources", "MB allocated",
+        "avg ms"));
+
+    for (Resource.Type type : new Resource.Type[] { Resource.Type.Host, Resource.Type.HostComponent }) {
+      List<String> propertyIds = new ArrayList<>(PropertyHelper.getPropertyIds(type));
+      Set<String> requestedIds = new HashSet<>(propertyIds.subList(0, propertyIds.size() / 2));
+      int resourceCount = type == Resource.Type.Host ? hosts : hosts * 10;
+
+      // warm up
+      run(type, resourceCount, propertyIds, requestedIds);
+
+      long allocated = 0;
+      long elapsed = 0;
+      for (int i = 0; i < iterations; i++) {
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        run(type, resourceCount, propertyIds, requestedIds);
+
+        elapsed += System.nanoTime() - start;
+        allocated += threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+      }
+
+      System.out.println(String.format("%-20s %10d %12d %12d", type, resourceCount,
+          allocated / iterations / (1024 * 1024), elapsed / iterations / 1000000));
+    }
+  }
+
+  private static int run(Resource.Type type, int resourceCount, List<String> propertyIds,
+      Set<String> requestedIds) {
+    int found = 0;
+    for (int i = 0; i < resourceCount; i++) {
+      Resource resource = new ResourceImpl(type);
+      for (String propertyId : propertyIds) {
+        resource.setProperty(propertyId, "value");
+      }
+
+      for (String propertyId : propertyIds) {
+        if (resource.getPropertyValue(propertyId) != null) {
+          found++;
+        }
+      }
+
+      found += new ResourceImpl(resource, requestedIds).getPropertiesMap().size();
+    }
+    return found;
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics.timeline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.http.client.utils.URIBuilder;
+
+/**
+ * Simulates many dashboard widgets refreshing at the same time and measures
+ * how many collector queries the {@link MetricsRequestCoalescer} saves. Each
+ * widget asks for one of a few distinct host metric queries over the same time
+ * window, which are coalesced when equal and merged otherwise, and every
+ * collector query takes a fixed time. It is not run as part
+ * of the build; run it with
+ * <pre>
+ * java -cp ... org.apache.ambari.server.controller.metrics.timeline.MetricsRequestCoalescerBenchmark [widgets] [queries] [latencyMs]
+ * </pre>
+ */
+public class MetricsRequestCoalescerBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int widgets = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    long latency = args.length > 2 ? Long.parseLong(args[2]) : 50;
+
+    System.out.println(String.format("%-12s %10s %10s %10s %10s", "mode", "widgets",
+        "queries", "collector", "ms"));
+
+    for (boolean coalesce : new boolean[] { false, true }) {
+      SlowRequestHelper requestHelper = new SlowRequestHelper(latency);
+      MetricsRequestCoalescer coalescer = new MetricsRequestCoalescer();
+
+      long elapsed = refresh(widgets, queries, coalesce ? coalescer : null, requestHelper);
+
+      System.out.println(String.format("%-12s %10d %10d %10d %10d",
+          coalesce ? "coalesced" : "direct", widgets, queries, requestHelper.calls.get(),
+          elapsed));
+
+      if (coalesce) {
+        System.out.println(String.format("coalesced = %d, merged = %d, ratio = %.2f",
+            coalescer.getCoalescedCount(), coalescer.getMergedCount(), coalescer.getCoalescedRatio()));
+      }
+    }
+  }
+
+  private static long refresh(int widgets, int queries, final MetricsRequestCoalescer coalescer,
+      final MetricsRequestHelper requestHelper) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(widgets);
+    final CountDownLatch start = new CountDownLatch(1);
+
+    try {
+      List<Future<TimelineMetrics>> refreshes = new ArrayList<>(widgets);
+      for (int i = 0; i < widgets; i++) {
+        final URIBuilder uriBuilder = createUriBuilder(i % queries);
+        refreshes.add(executor.submit(new Callable<TimelineMetrics>() {
+          @Override
+          public TimelineMetrics call() throws Exception {
+            start.await();
+            if (coalescer == null) {
+              return requestHelper.fetchTimelineMetrics(uriBuilder, 1000L, 2000L);
+            }
+            return coalescer.fetchTimelineMetrics(requestHelper, uriBuilder, 1000L, 2000L);
+          }
+        }));
+      }
+
+      long startTime = System.nanoTime();
+      start.countDown();
+      for (Future<TimelineMetrics> refresh : refreshes) {
+        refresh.get();
+      }
+      return (System.nanoTime() - startTime) / 1000000;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static URIBuilder createUriBuilder(int query) {
+    StringBuilder hostNames = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      if (i > 0) {
+        hostNames.append(',');
+      }
+      hostNames.append("host").append(i).append(".example.com");
+    }
+
+    URIBuilder uriBuilder = AMSPropertyProvider.getAMSUriBuilder("collector", 6188, false);
+    uriBuilder.setParameter("metricNames", "cpu_user,mem_free,metric" + query);
+    uriBuilder.setParameter("hostname", hostNames.toString());
+    uriBuilder.setParameter("appId", "HOST");
+    uriBuilder.setParameter("startTime", "1000");
+    uriBuilder.setParameter("endTime", "2000");
+    return uriBuilder;
+  }
+
+  /**
+   * Answers every query with an empty response after a fixed latency, while
+   * the collector is limited to a few concurrent queries.
+   */
+  private static class SlowRequestHelper extends MetricsRequestHelper {
+    private final long latency;
+    private final Semaphore collectorThreads = new Semaphore(8);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private SlowRequestHelper(long latency) {
+      super(null);
+      this.latency = latency;
+    }
+
+    @Override
+    public TimelineMetrics fetchTimelineMetrics(URIBuilder uriBuilder, Long startTime,
+        Long endTime) throws IOException {
+      calls.incrementAndGet();
+      try {
+        collectorThreads.acquire();
+        try {
+          Thread.sleep(latency);
+        } finally {
+          collectorThreads.release();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new TimelineMetrics();
+    }
+  }
+}
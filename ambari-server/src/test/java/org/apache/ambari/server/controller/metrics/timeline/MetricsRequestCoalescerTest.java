@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics.timeline;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URIBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRequestCoalescerTest {
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testCoveredRequestIsCoalesced() throws Exception {
+    final MetricsRequestCoalescer coalescer = new MetricsRequestCoalescer();
+    final BlockingRequestHelper requestHelper = new BlockingRequestHelper();
+
+    Future<TimelineMetrics> leader = fetch(coalescer, requestHelper,
+      createUriBuilder("cpu_user,mem_free", "h1,h2", "HOST"));
+    Assert.assertTrue(requestHelper.started.await(10, TimeUnit.SECONDS));
+
+    // a subset of the metrics and hosts of the request in flight
+    Future<TimelineMetrics> follower = fetch(coalescer, requestHelper,
+      createUriBuilder("cpu_user", "h2", "HOST"));
+
+    waitForCoalescedRequests(coalescer, 1);
+    requestHelper.release.countDown();
+
+    Assert.assertSame(leader.get(10, TimeUnit.SECONDS), follower.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(1, requestHelper.calls.get());
+    Assert.assertEquals(1, coalescer.getCoalescedCount());
+    Assert.assertEquals(0.5, coalescer.getCoalescedRatio(), 0.0);
+  }
+
+  @Test
+  public void testUncoveredRequestsAreNotCoalesced() throws Exception {
+    MetricsRequestCoalescer coalescer = new MetricsRequestCoalescer();
+    BlockingRequestHelper requestHelper = new BlockingRequestHelper();
+
+    Future<TimelineMetrics> leader = fetch(coalescer, requestHelper,
+      createUriBuilder("cpu_user", "h1", "HOST"));
+    Assert.assertTrue(requestHelper.started.await(10, TimeUnit.SECONDS));
+
+    // another application and all hosts
+    List<Future<TimelineMetrics>> others = Arrays.asList(
+      fetch(coalescer, requestHelper, createUriBuilder("cpu_user", "h1", "NAMENODE")),
+      fetch(coalescer, requestHelper, createUriBuilder("cpu_user", null, "HOST")));
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (requestHelper.calls.get() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    requestHelper.release.countDown();
+
+    leader.get(10, TimeUnit.SECONDS);
+    for (Future<TimelineMetrics> other : others) {
+      other.get(10, TimeUnit.SECONDS);
+    }
+
+    Assert.assertEquals(3, requestHelper.calls.get());
+    Assert.assertEquals(0, coalescer.getCoalescedCount());
+    Assert.assertEquals(0, coalescer.getMergedCount());
+  }
+
+  @Test
+  public void testConcurrentRequestsAreMerged() throws Exception {
+    MetricsRequestCoalescer coalescer = new MetricsRequestCoalescer();
+    BlockingRequestHelper requestHelper = new BlockingRequestHelper();
+
+    Future<TimelineMetrics> leader = fetch(coalescer, requestHelper,
+      createUriBuilder("cpu_user", "h1", "HOST"));
+    Assert.assertTrue(requestHelper.started.await(10, TimeUnit.SECONDS));
+
+    // another host and another metric wait for the leader in one request
+    Future<TimelineMetrics> otherHost = fetch(coalescer, requestHelper,
+      createUriBuilder("cpu_user", "h2", "HOST"));
+    Future<TimelineMetrics> otherMetric = fetch(coalescer, requestHelper,
+      createUriBuilder("mem_free", "h1", "HOST"));
+
+    waitForMergedRequests(coalescer, 1);
+    requestHelper.release.countDown();
+
+    leader.get(10, TimeUnit.SECONDS);
+    Assert.assertSame(otherHost.get(10, TimeUnit.SECONDS), otherMetric.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(2, requestHelper.calls.get());
+    Assert.assertEquals(1, coalescer.getMergedCount());
+    Assert.assertEquals(0, coalescer.getCoalescedCount());
+
+    URIBuilder mergedRequest = requestHelper.uriBuilders.get(1);
+    Map<String, Set<String>> params = new HashMap<>();
+    for (NameValuePair param : mergedRequest.getQueryParams()) {
+      params.put(param.getName(), new HashSet<>(Arrays.asList(param.getValue().split(","))));
+    }
+    Assert.assertEquals(new HashSet<>(Arrays.asList("cpu_user", "mem_free")), params.get("metricNames"));
+    Assert.assertEquals(new HashSet<>(Arrays.asList("h1", "h2")), params.get("hostname"));
+    Assert.assertEquals(Collections.singleton("HOST"), params.get("appId"));
+  }
+
+  @Test
+  public void testFailureIsPropagatedToCoalescedRequests() throws Exception {
+    MetricsRequestCoalescer coalescer = new MetricsRequestCoalescer();
+    BlockingRequestHelper requestHelper = new BlockingRequestHelper();
+    requestHelper.failure = new SocketTimeoutException("timeout");
+
+    Future<TimelineMetrics> leader = fetch(coalescer, requestHelper,
+      createUriBuilder("cpu_user", "h1", "HOST"));
+    Assert.assertTrue(requestHelper.started.await(10, TimeUnit.SECONDS));
+    Future<TimelineMetrics> follower = fetch(coalescer, requestHelper,
+      createUriBuilder("cpu_user", "h1", "HOST"));
+    Future<TimelineMetrics> pending = fetch(coalescer, requestHelper,
+      createUriBuilder("cpu_user", "h2", "HOST"));
+    Future<TimelineMetrics> merged = fetch(coalescer, requestHelper,
+      createUriBuilder("mem_free", "h2", "HOST"));
+
+    waitForCoalescedRequests(coalescer, 1);
+    waitForMergedRequests(coalescer, 1);
+    requestHelper.release.countDown();
+
+    // the pending request is not sent to the collector which timed out
+    for (Future<TimelineMetrics> future : Arrays.asList(leader, follower, pending, merged)) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        Assert.fail("Expected the timeout to be propagated");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof SocketTimeoutException);
+      }
+    }
+    Assert.assertEquals(1, requestHelper.calls.get());
+  }
+
+  private Future<TimelineMetrics> fetch(final MetricsRequestCoalescer coalescer,
+      final MetricsRequestHelper requestHelper, final URIBuilder uriBuilder) {
+    return executor.submit(new Callable<TimelineMetrics>() {
+      @Override
+      public TimelineMetrics call() throws Exception {
+        return coalescer.fetchTimelineMetrics(requestHelper, uriBuilder, 1000L, 2000L);
+      }
+    });
+  }
+
+  private static void waitForCoalescedRequests(MetricsRequestCoalescer coalescer, long count)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (coalescer.getCoalescedCount() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static void waitForMergedRequests(MetricsRequestCoalescer coalescer, long count)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (coalescer.getMergedCount() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  static URIBuilder createUriBuilder(String metricNames, String hostNames, String appId) {
+    URIBuilder uriBuilder = AMSPropertyProvider.getAMSUriBuilder("collector", 6188, false);
+    uriBuilder.setParameter("metricNames", metricNames);
+    if (hostNames != null) {
+      uriBuilder.setParameter("hostname", hostNames);
+    }
+    uriBuilder.setParameter("appId", appId);
+    uriBuilder.setParameter("startTime", "1000");
+    uriBuilder.setParameter("endTime", "2000");
+    return uriBuilder;
+  }
+
+  /**
+   * Holds the first request until it is released and records all of them.
+   */
+  private static class BlockingRequestHelper extends MetricsRequestHelper {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<URIBuilder> uriBuilders = new CopyOnWriteArrayList<>();
+    private IOException failure;
+
+    private BlockingRequestHelper() {
+      super(null);
+    }
+
+    @Override
+    public TimelineMetrics fetchTimelineMetrics(URIBuilder uriBuilder, Long startTime,
+        Long endTime) throws IOException {
+      calls.incrementAndGet();
+      uriBuilders.add(uriBuilder);
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      if (failure != null) {
+        throw failure;
+      }
+      return new TimelineMetrics();
+    }
+  }
+}
@@ -85,6 +85,22 @@ public class PropertyHelperTest {
     Assert.assertNull(category);
   }
 
+  @Test
+  public void testGetPropertyCategoryAndNameInterned() {
+    // the parts of a property id are split once and then shared
+    String propertyId = new String("Hosts/host_name");
+    Assert.assertEquals("Hosts", PropertyHelper.getPropertyCategory(propertyId));
+    Assert.assertEquals("host_name", PropertyHelper.getPropertyName(propertyId));
+
+    Assert.assertSame(PropertyHelper.getPropertyCategory(propertyId),
+        PropertyHelper.getPropertyCategory(new String("Hosts/host_name")));
+    Assert.assertSame(PropertyHelper.getPropertyName(propertyId),
+        PropertyHelper.getPropertyName(new String("Hosts/host_name")));
+
+    Assert.assertNull(PropertyHelper.getPropertyCategory("host_name"));
+    Assert.assertEquals("host_name", PropertyHelper.getPropertyName("host_name"));
+  }
+
   @Test
   public void testGetCategories() {
     String propertyId = "metrics/yarn/Queue/$1.replaceAll(\",q(\\d+)=\",\"/\").substring(1)/AppsRunning";
@@ -0,0 +1,300 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.events.AmbariEvent.AmbariEventType;
+import org.apache.ambari.server.events.ClusterEvent;
+import org.apache.ambari.server.events.HostsAddedEvent;
+import org.apache.ambari.server.events.HostsRemovedEvent;
+import org.apache.ambari.server.state.Cluster;
+import org.junit.Test;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * AmbariEventPublisher tests.
+ */
+public class AmbariEventPublisherTest {
+
+  private static AmbariEventPublisher createPublisher(int partitions) {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.SERVER_EVENTS_PARTITIONS.getKey(), String.valueOf(partitions));
+    return new AmbariEventPublisher(new Configuration(properties));
+  }
+
+  private static void waitForStatistic(AmbariEventPublisher publisher, String name, Number expected)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!expected.equals(publisher.getDispatchStatistics().get(name))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, publisher.getDispatchStatistics().get(name));
+  }
+
+  /**
+   * Gets the hosts, or if there are none the cluster, whose events must stay
+   * in order with the given event.
+   */
+  private static Set<String> getOrderingKeys(AmbariEvent event) {
+    Set<String> keys = new HashSet<>();
+    if (event instanceof HostsAddedEvent) {
+      keys.addAll(((HostsAddedEvent) event).getHostNames());
+    } else if (event instanceof HostsRemovedEvent) {
+      keys.addAll(((HostsRemovedEvent) event).getHostNames());
+    } else {
+      keys.add("cluster" + ((ClusterEvent) event).getClusterId());
+    }
+    return keys;
+  }
+
+  /**
+   * Gets the deliveries of the log which the given key must keep in order,
+   * as {@code <listener>:<event index>}, optionally only those of one
+   * listener.
+   */
+  private static List<String> getDeliveries(List<Delivery> log, List<AmbariEvent> events, String key,
+      String listener) {
+    List<String> deliveries = new ArrayList<>();
+    for (Delivery delivery : log) {
+      if (getOrderingKeys(delivery.m_event).contains(key)
+          && (null == listener || listener.equals(delivery.m_listener))) {
+        deliveries.add(delivery.m_listener + ":" + events.indexOf(delivery.m_event));
+      }
+    }
+    return deliveries;
+  }
+
+  @Test(timeout = 30000)
+  public void testPartitionedEventOrdering() throws Exception {
+    AmbariEventPublisher publisher = createPublisher(4);
+
+    // the partitioned listeners must see the events of every host and
+    // cluster in the same order as the serial listeners see them, and one
+    // event must have been delivered to both before the next one of the same
+    // host or cluster is
+    List<Delivery> partitionedLog = new ArrayList<>();
+    List<Delivery> serialLog = new ArrayList<>();
+    List<SerialListener> listeners = Arrays.asList(
+        new PartitionedListener("first", partitionedLog, 51),
+        new PartitionedListener("second", partitionedLog, 51),
+        new SerialListener("first", serialLog, 51),
+        new SerialListener("second", serialLog, 51));
+    for (SerialListener listener : listeners) {
+      publisher.register(listener);
+    }
+
+    List<AmbariEvent> events = new ArrayList<>();
+    for (int sequence = 0; sequence < 10; sequence++) {
+      for (long clusterId = 1; clusterId <= 3; clusterId++) {
+        events.add(new ClusterEvent(AmbariEventType.CLUSTER_RENAME, clusterId));
+      }
+
+      // a host moves between clusters
+      events.add(new HostsAddedEvent(sequence % 3 + 1, Collections.singleton("host" + sequence % 4)));
+      events.add(new HostsRemovedEvent(Collections.singleton("host" + sequence % 4),
+          Collections.<Cluster>emptySet()));
+    }
+    Set<String> allHosts = new LinkedHashSet<>(Arrays.asList("host0", "host1", "host2", "host3"));
+    events.add(new HostsRemovedEvent(allHosts, Collections.<Cluster>emptySet()));
+
+    for (AmbariEvent event : events) {
+      publisher.publish(event);
+    }
+    for (SerialListener listener : listeners) {
+      assertTrue(listener.m_latch.await(10, TimeUnit.SECONDS));
+    }
+
+    Set<String> keys = new HashSet<>(allHosts);
+    keys.addAll(Arrays.asList("cluster1", "cluster2", "cluster3"));
+    for (String key : keys) {
+      List<String> interleaved = new ArrayList<>();
+      for (String listener : Arrays.asList("first", "second")) {
+        List<String> expected = getDeliveries(serialLog, events, key, listener);
+        assertTrue(expected.size() > 0);
+        assertEquals(key, expected, getDeliveries(partitionedLog, events, key, listener));
+      }
+      for (String delivery : getDeliveries(serialLog, events, key, "first")) {
+        interleaved.add(delivery);
+        interleaved.add(delivery.replace("first", "second"));
+      }
+      assertEquals(key, interleaved, getDeliveries(partitionedLog, events, key, null));
+    }
+
+    // only the removal of all hosts holds back several partitions
+    waitForStatistic(publisher, "partitions.barriers", 1L);
+
+    // statistics are updated right after the delivery
+    waitForStatistic(publisher, "PartitionedListener.delivered", 51L);
+    waitForStatistic(publisher, "serial.delivered", 102L);
+    assertEquals(0L, publisher.getDispatchStatistics().get("PartitionedListener.queue.size"));
+  }
+
+  @Test(timeout = 30000)
+  public void testSlowClusterDoesNotBlockOthers() throws Exception {
+    AmbariEventPublisher publisher = createPublisher(4);
+    final CountDownLatch release = new CountDownLatch(1);
+    PartitionedListener listener = new PartitionedListener("listener", new ArrayList<Delivery>(), 2) {
+      @Override
+      public void onEvent(ClusterEvent event) throws InterruptedException {
+        if (event.getClusterId() == 1) {
+          release.await();
+        }
+        super.onEvent(event);
+      }
+    };
+    publisher.register(listener);
+
+    publisher.publish(new ClusterEvent(AmbariEventType.CLUSTER_RENAME, 1));
+    publisher.publish(new ClusterEvent(AmbariEventType.CLUSTER_RENAME, 2));
+
+    // cluster 2 is delivered while cluster 1 is still blocked
+    List<Delivery> deliveries = listener.waitForDeliveries(1);
+    assertEquals(1, deliveries.size());
+    assertEquals(2L, ((ClusterEvent) deliveries.get(0).m_event).getClusterId());
+
+    release.countDown();
+    assertTrue(listener.m_latch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 30000)
+  public void testSlowHostDoesNotBlockOtherHostsOfCluster() throws Exception {
+    AmbariEventPublisher publisher = createPublisher(4);
+    final CountDownLatch release = new CountDownLatch(1);
+    PartitionedListener listener = new PartitionedListener("listener", new ArrayList<Delivery>(), 2) {
+      @Override
+      public void onEvent(ClusterEvent event) throws InterruptedException {
+        if (((HostsAddedEvent) event).getHostNames().contains("host1")) {
+          release.await();
+        }
+        super.onEvent(event);
+      }
+    };
+    publisher.register(listener);
+
+    publisher.publish(new HostsAddedEvent(1, Collections.singleton("host1")));
+    publisher.publish(new HostsAddedEvent(1, Collections.singleton("host2")));
+
+    // host2 is delivered while host1 is still blocked
+    List<Delivery> deliveries = listener.waitForDeliveries(1);
+    assertEquals(1, deliveries.size());
+    assertEquals(Collections.singleton("host2"), ((HostsAddedEvent) deliveries.get(0).m_event).getHostNames());
+
+    release.countDown();
+    assertTrue(listener.m_latch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 30000)
+  public void testPartitioningDisabled() throws Exception {
+    AmbariEventPublisher publisher = createPublisher(0);
+    PartitionedListener listener = new PartitionedListener("listener", new ArrayList<Delivery>(), 1);
+    publisher.register(listener);
+
+    publisher.publish(new HostsAddedEvent(1, Collections.singleton("host1")));
+
+    assertTrue(listener.m_latch.await(10, TimeUnit.SECONDS));
+    assertEquals(null, publisher.getDispatchStatistics().get("PartitionedListener.delivered"));
+  }
+
+  /**
+   * An event received by a listener.
+   */
+  private static class Delivery {
+    private final String m_listener;
+    private final AmbariEvent m_event;
+
+    private Delivery(String listener, AmbariEvent event) {
+      m_listener = listener;
+      m_event = event;
+    }
+  }
+
+  /**
+   * Records the events it receives in a log, which may be shared with other
+   * listeners.
+   */
+  private static class SerialListener {
+    private final String m_name;
+    private final List<Delivery> m_log;
+    protected final CountDownLatch m_latch;
+
+    private SerialListener(String name, List<Delivery> log, int expectedEvents) {
+      m_name = name;
+      m_log = log;
+      m_latch = new CountDownLatch(expectedEvents);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent(ClusterEvent event) throws InterruptedException {
+      record(event);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent(HostsRemovedEvent event) {
+      record(event);
+    }
+
+    protected void record(AmbariEvent event) {
+      synchronized (m_log) {
+        m_log.add(new Delivery(m_name, event));
+      }
+      m_latch.countDown();
+    }
+
+    public List<Delivery> waitForDeliveries(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (System.currentTimeMillis() < deadline) {
+        synchronized (m_log) {
+          if (m_log.size() >= count) {
+            return new ArrayList<>(m_log);
+          }
+        }
+        Thread.sleep(10);
+      }
+      synchronized (m_log) {
+        return new ArrayList<>(m_log);
+      }
+    }
+  }
+
+  @PartitionedEventSubscriber
+  private static class PartitionedListener extends SerialListener {
+    private PartitionedListener(String name, List<Delivery> log, int expectedEvents) {
+      super(name, log, expectedEvents);
+    }
+  }
+}
@@ -17,12 +17,18 @@
  */
 package org.apache.ambari.server.orm.dao;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.AggregateAlertRecalculateEvent;
+import org.apache.ambari.server.events.publishers.AlertEventPublisher;
 import org.apache.ambari.server.orm.DBAccessor;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
@@ -36,6 +42,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
+import com.google.common.eventbus.Subscribe;
 import com.google.inject.Binder;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -107,7 +114,7 @@ public class AlertsDAOCachedTest {
   @Before
   public void before() {
     // create an injector which will inject the mocks
-    m_injector = Guice.createInjector(new MockModule());
+    m_injector = Guice.createInjector(new MockModule(0L));
   }
 
   /**
@@ -193,6 +200,160 @@ public class AlertsDAOCachedTest {
     EasyMock.verify(definition, history, entityManager, daoUtils);
   }
 
+  /**
+   * Tests that write-behind updates are visible through the cache right away,
+   * are only written to JPA when flushed, and that the events waiting for them
+   * are published after the flush.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testWriteBehind() throws Exception {
+    m_injector = Guice.createInjector(new MockModule(60000L));
+    EntityManager entityManager = m_injector.getInstance(EntityManager.class);
+
+    AlertDefinitionEntity definition = createDefinition();
+    AlertCurrentEntity current = createCurrent(definition);
+    AlertHistoryEntity history = current.getAlertHistory();
+
+    // the history must be persisted before the current alert is merged
+    EasyMock.checkOrder(entityManager, true);
+    entityManager.persist(history);
+    EasyMock.expectLastCall().once();
+    EasyMock.expect(entityManager.merge(current)).andReturn(current).once();
+    entityManager.flush();
+    EasyMock.expectLastCall().once();
+
+    EasyMock.replay(entityManager);
+
+    final CountDownLatch published = new CountDownLatch(1);
+    AlertEventPublisher publisher = m_injector.getInstance(AlertEventPublisher.class);
+    publisher.register(new Object() {
+      @Subscribe
+      public void onEvent(AggregateAlertRecalculateEvent event) {
+        published.countDown();
+      }
+    });
+
+    AlertsDAO alertsDAO = m_injector.getInstance(AlertsDAO.class);
+    Assert.assertTrue(alertsDAO.isWriteBehindEnabled());
+
+    alertsDAO.writeBehind(Collections.<AlertCurrentEntity> emptyList(),
+        Collections.singletonList(current),
+        Collections.singletonList(new AggregateAlertRecalculateEvent(1L)));
+
+    // the queued alert is returned from the cache without being written
+    Assert.assertSame(current, alertsDAO.findCurrentByHostAndName(1L, HOST, "definitionName"));
+
+    Map<String, Number> statistics = alertsDAO.getWriteBehindStatistics();
+    Assert.assertEquals(1, statistics.get("pending.history"));
+    Assert.assertEquals(1, statistics.get("pending.current"));
+    Assert.assertEquals(1, statistics.get("pending.events"));
+    Assert.assertEquals(1L, published.getCount());
+
+    // flushing the cache must not merge the alert before its history exists,
+    // and the alert must still be found once it is no longer cached
+    alertsDAO.flushCachedEntitiesToJPA();
+    Assert.assertSame(current, alertsDAO.findCurrentByHostAndName(1L, HOST, "definitionName"));
+
+    alertsDAO.flushWriteBehind();
+    Assert.assertTrue(published.await(10, TimeUnit.SECONDS));
+
+    statistics = alertsDAO.getWriteBehindStatistics();
+    Assert.assertEquals(0, statistics.get("pending.history"));
+    Assert.assertEquals(0, statistics.get("pending.current"));
+    Assert.assertEquals(0, statistics.get("pending.events"));
+    Assert.assertEquals(1L, statistics.get("flushes"));
+    Assert.assertEquals(1L, statistics.get("flushed.history"));
+    Assert.assertEquals(1L, statistics.get("flushed.current"));
+
+    EasyMock.verify(definition, entityManager);
+  }
+
+  /**
+   * Tests that removing current alerts first writes the queued write-behind
+   * updates so that the removal applies to them and that none of their
+   * history or events are left behind.
+   *
+   * @throws Exception
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRemovalWritesQueuedAlertsFirst() throws Exception {
+    m_injector = Guice.createInjector(new MockModule(60000L));
+    EntityManager entityManager = m_injector.getInstance(EntityManager.class);
+    DaoUtils daoUtils = m_injector.getInstance(DaoUtils.class);
+
+    AlertDefinitionEntity definition = createDefinition();
+    AlertCurrentEntity current = createCurrent(definition);
+    AlertHistoryEntity history = current.getAlertHistory();
+
+    TypedQuery<AlertCurrentEntity> typedQuery = EasyMock.createNiceMock(TypedQuery.class);
+
+    // the queued alert must be written before the alerts to remove are found
+    EasyMock.checkOrder(entityManager, true);
+    entityManager.persist(history);
+    EasyMock.expectLastCall().once();
+    EasyMock.expect(entityManager.merge(current)).andReturn(current).once();
+    entityManager.flush();
+    EasyMock.expectLastCall().once();
+    EasyMock.expect(entityManager.createNamedQuery("AlertCurrentEntity.findByHost",
+        AlertCurrentEntity.class)).andReturn(typedQuery).once();
+    EasyMock.expect(daoUtils.selectList(typedQuery)).andReturn(
+        Collections.<AlertCurrentEntity> emptyList()).once();
+
+    EasyMock.replay(entityManager, daoUtils, typedQuery);
+
+    final CountDownLatch published = new CountDownLatch(1);
+    AlertEventPublisher publisher = m_injector.getInstance(AlertEventPublisher.class);
+    publisher.register(new Object() {
+      @Subscribe
+      public void onEvent(AggregateAlertRecalculateEvent event) {
+        published.countDown();
+      }
+    });
+
+    AlertsDAO alertsDAO = m_injector.getInstance(AlertsDAO.class);
+    alertsDAO.writeBehind(Collections.<AlertCurrentEntity> emptyList(),
+        Collections.singletonList(current),
+        Collections.singletonList(new AggregateAlertRecalculateEvent(1L)));
+
+    alertsDAO.removeCurrentByHost(HOST);
+    Assert.assertTrue(published.await(10, TimeUnit.SECONDS));
+
+    Map<String, Number> statistics = alertsDAO.getWriteBehindStatistics();
+    Assert.assertEquals(0, statistics.get("pending.history"));
+    Assert.assertEquals(0, statistics.get("pending.current"));
+    Assert.assertEquals(0, statistics.get("pending.events"));
+    Assert.assertEquals(1L, statistics.get("flushed.history"));
+    Assert.assertEquals(1L, statistics.get("flushed.current"));
+
+    EasyMock.verify(definition, entityManager, daoUtils);
+  }
+
+  private AlertDefinitionEntity createDefinition() {
+    AlertDefinitionEntity definition = EasyMock.createNiceMock(AlertDefinitionEntity.class);
+    EasyMock.expect(definition.getDefinitionId()).andReturn(1L).anyTimes();
+    EasyMock.expect(definition.getDefinitionName()).andReturn("definitionName").atLeastOnce();
+    EasyMock.replay(definition);
+    return definition;
+  }
+
+  /**
+   * Creates a current alert whose new history has not been persisted yet.
+   */
+  private AlertCurrentEntity createCurrent(AlertDefinitionEntity definition) {
+    AlertHistoryEntity history = new AlertHistoryEntity();
+    history.setClusterId(1L);
+    history.setHostName(HOST);
+    history.setAlertDefinition(definition);
+
+    AlertCurrentEntity current = new AlertCurrentEntity();
+    current.setAlertHistory(history);
+    current.setLatestTimestamp(3L);
+    return current;
+  }
+
   @SuppressWarnings("unchecked")
   private void testFindUsesCache(CachedAlertTestArea testArea) throws Exception {
     EntityManager entityManager = m_injector.getInstance(EntityManager.class);
@@ -265,6 +426,12 @@ public class AlertsDAOCachedTest {
    *
    */
   private class MockModule implements Module {
+    private final long m_writeBehindMaxStaleness;
+
+    private MockModule(long writeBehindMaxStaleness) {
+      m_writeBehindMaxStaleness = writeBehindMaxStaleness;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -279,6 +446,8 @@ public class AlertsDAOCachedTest {
       EasyMock.expect(configuration.getAlertEventPublisherWorkerQueueSize()).andReturn(Integer.valueOf(Configuration.ALERTS_EXECUTION_SCHEDULER_WORKER_QUEUE_SIZE.getDefaultValue())).anyTimes();
       EasyMock.expect(configuration.isAlertCacheEnabled()).andReturn(Boolean.TRUE).anyTimes();
       EasyMock.expect(configuration.getAlertCacheSize()).andReturn(100).anyTimes();
+      EasyMock.expect(configuration.getAlertCacheWriteBehindMaxStaleness()).andReturn(m_writeBehindMaxStaleness).anyTimes();
+      EasyMock.expect(configuration.getAlertCacheWriteBehindBatchSize()).andReturn(100).anyTimes();
       EasyMock.replay(configuration);
 
       binder.bind(Configuration.class).toInstance(configuration);
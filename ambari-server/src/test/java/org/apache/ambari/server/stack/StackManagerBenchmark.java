@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stack;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metadata.ActionMetadata;
+import org.apache.ambari.server.orm.dao.ExtensionDAO;
+import org.apache.ambari.server.orm.dao.ExtensionLinkDAO;
+import org.apache.ambari.server.orm.dao.MetainfoDAO;
+import org.apache.ambari.server.orm.dao.StackDAO;
+import org.apache.ambari.server.orm.entities.ExtensionLinkEntity;
+import org.apache.ambari.server.state.stack.OsFamily;
+import org.easymock.EasyMock;
+
+/**
+ * Measures the time it takes the {@link StackManager} to parse and resolve the
+ * stack definitions on startup when parsing serially and in parallel. It is not
+ * run as part of the build; run it from the ambari-server directory with
+ * <pre>
+ * java -cp ... org.apache.ambari.server.stack.StackManagerBenchmark [stackRoot] [commonServicesRoot] [iterations]
+ * </pre>
+ */
+public class StackManagerBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    File stackRoot = new File(args.length > 0 ? args[0] : "src/main/resources/stacks");
+    File commonServicesRoot = new File(args.length > 1 ? args[1] : "src/main/resources/common-services");
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    int processors = Runtime.getRuntime().availableProcessors();
+    System.out.println(String.format("%-10s %10s %10s %10s", "threads", "stacks", "min ms", "avg ms"));
+
+    for (int threads : new int[] { 1, processors }) {
+      StackManager.parseThreads = threads;
+
+      // warm up the JAXB contexts and schemas
+      createStackManager(stackRoot, commonServicesRoot);
+
+      long min = Long.MAX_VALUE;
+      long total = 0;
+      int stacks = 0;
+      for (int i = 0; i < iterations; i++) {
+        long start = System.nanoTime();
+        stacks = createStackManager(stackRoot, commonServicesRoot).getStacks().size();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        min = Math.min(min, elapsed);
+        total += elapsed;
+      }
+
+      System.out.println(String.format("%-10d %10d %10d %10d", threads, stacks, min,
+          total / iterations));
+    }
+  }
+
+  private static StackManager createStackManager(File stackRoot, File commonServicesRoot)
+      throws Exception {
+    MetainfoDAO metaInfoDao = createNiceMock(MetainfoDAO.class);
+    StackDAO stackDao = createNiceMock(StackDAO.class);
+    ExtensionDAO extensionDao = createNiceMock(ExtensionDAO.class);
+    ExtensionLinkDAO linkDao = createNiceMock(ExtensionLinkDAO.class);
+    ActionMetadata actionMetadata = createNiceMock(ActionMetadata.class);
+    Configuration config = createNiceMock(Configuration.class);
+
+    expect(config.getSharedResourcesDirPath()).andReturn(
+        ClassLoader.getSystemClassLoader().getResource("").getPath()).anyTimes();
+
+    expect(linkDao.findByStack(EasyMock.anyObject(String.class),
+        EasyMock.anyObject(String.class))).andReturn(
+            Collections.<ExtensionLinkEntity>emptyList()).anyTimes();
+
+    replay(config, metaInfoDao, stackDao, extensionDao, linkDao, actionMetadata);
+
+    return new StackManager(stackRoot, commonServicesRoot, null, new OsFamily(config), false,
+        metaInfoDao, actionMetadata, stackDao, extensionDao, linkDao);
+  }
+}
@@ -133,6 +133,32 @@ public class StackManagerTest {
     assertEquals(20, stacks.size());
   }
 
+  @Test
+  public void testParseSerially() throws Exception {
+    int parseThreads = StackManager.parseThreads;
+    StackManager.parseThreads = 1;
+    try {
+      StackManager serialStackManager = createTestStackManager();
+
+      // the stacks are the same regardless of how many threads parsed them
+      Collection<StackInfo> stacks = serialStackManager.getStacks();
+      assertEquals(stackManager.getStacks().size(), stacks.size());
+      for (StackInfo stack : stacks) {
+        StackInfo parallelStack = stackManager.getStack(stack.getName(), stack.getVersion());
+        assertNotNull(parallelStack);
+        assertEquals(stack.getServices().size(), parallelStack.getServices().size());
+        for (ServiceInfo service : stack.getServices()) {
+          ServiceInfo parallelService = parallelStack.getService(service.getName());
+          assertNotNull(parallelService);
+          assertEquals(service.getVersion(), parallelService.getVersion());
+          assertEquals(service.getProperties().size(), parallelService.getProperties().size());
+        }
+      }
+    } finally {
+      StackManager.parseThreads = parseThreads;
+    }
+  }
+
   @Test
   public void testGetStacksByName() {
     Collection<StackInfo> stacks = stackManager.getStacks("HDP");
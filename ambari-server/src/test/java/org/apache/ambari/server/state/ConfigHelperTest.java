@@ -33,6 +33,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
 
@@ -58,6 +59,7 @@ import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.apache.ambari.server.state.configgroup.ConfigGroupFactory;
 import org.apache.ambari.server.state.host.HostFactory;
 import org.apache.ambari.server.state.stack.OsFamily;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -306,6 +308,54 @@ public class ConfigHelperTest {
       Assert.assertEquals(expectedConfig_hiveServer1, originalConfig_hiveServer1);
     }
 
+    @Test
+    public void testComponentConfigSnapshot() throws Exception {
+      StackInfo stackInfo = metaInfo.getStack("HDP", "2.0.5");
+      Map<String, Map<String, Map<String, String>>> configAttributes = new HashMap<>();
+      configAttributes.put("hive-site", stackInfo.getDefaultConfigAttributesForConfigType("hive-site"));
+
+      ConfigurationSnapshot snapshot = new ConfigurationSnapshot(createHiveConfig(), configAttributes);
+      Assert.assertEquals(snapshot.getHash(),
+          new ConfigurationSnapshot(createHiveConfig(), configAttributes).getHash());
+
+      // the hidden password is removed from the copy for the client only
+      Assert.assertSame(snapshot, configHelper.getComponentConfigSnapshot(snapshot, "HIVE_SERVER"));
+
+      ConfigurationSnapshot clientSnapshot = configHelper.getComponentConfigSnapshot(snapshot, "HIVE_CLIENT");
+      Assert.assertNotSame(snapshot, clientSnapshot);
+      Assert.assertFalse(snapshot.getHash().equals(clientSnapshot.getHash()));
+      Assert.assertFalse(clientSnapshot.getProperties().get("hive-site").containsKey(
+          "javax.jdo.option.ConnectionPassword"));
+      Assert.assertTrue(snapshot.getProperties().get("hive-site").containsKey(
+          "javax.jdo.option.ConnectionPassword"));
+
+      Assert.assertSame(clientSnapshot, configHelper.getComponentConfigSnapshot(snapshot, "HIVE_CLIENT"));
+      Assert.assertSame(clientSnapshot, configHelper.getConfigSnapshot(clientSnapshot.getHash()));
+    }
+
+    @Test
+    public void testSentConfigSnapshotIsRetainedUntilTaskCompletes() throws Exception {
+      StackInfo stackInfo = metaInfo.getStack("HDP", "2.0.5");
+      Map<String, Map<String, Map<String, String>>> configAttributes = new HashMap<>();
+      configAttributes.put("hive-site", stackInfo.getDefaultConfigAttributesForConfigType("hive-site"));
+
+      ConfigurationSnapshot snapshot = configHelper.getComponentConfigSnapshot(
+          new ConfigurationSnapshot(createHiveConfig(), configAttributes), "HIVE_CLIENT");
+      configHelper.retainConfigSnapshot(1L, snapshot);
+      configHelper.retainConfigSnapshot(2L, snapshot);
+
+      Assert.assertSame(snapshot, configHelper.getRetainedConfigSnapshot(1L));
+      Assert.assertSame(snapshot, configHelper.getConfigSnapshot(snapshot.getHash()));
+
+      // once a task has completed, only the other task still holds the snapshot
+      configHelper.releaseConfigSnapshot(1L);
+      Assert.assertNull(configHelper.getRetainedConfigSnapshot(1L));
+      Assert.assertSame(snapshot, configHelper.getRetainedConfigSnapshot(2L));
+
+      configHelper.releaseConfigSnapshot(2L);
+      Assert.assertNull(configHelper.getRetainedConfigSnapshot(2L));
+    }
+
     private Map<String, Map<String, String>> createHiveConfig() {
       return new HashMap<String, Map<String, String>>() {{
         put("hive-site", new HashMap<String, String>() {{
@@ -952,6 +1002,52 @@ public class ConfigHelperTest {
 
       verify(sch);
     }
+
+    @Test
+    public void testStaleConfigsRecalculatedAfterDesiredConfigChange() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version1");
+      schReturn.put("flume-conf", hc);
+
+      // the service name is only looked up when the staleness is calculated
+      final AtomicInteger calculations = new AtomicInteger();
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      expect(sch.getActualConfigs()).andReturn(schReturn).anyTimes();
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(cluster.getClusterId()).anyTimes();
+      expect(sch.getServiceName()).andAnswer(new IAnswer<String>() {
+        @Override
+        public String answer() throws Throwable {
+          calculations.incrementAndGet();
+          return "FLUME";
+        }
+      }).anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
+      replay(sch);
+
+      // calculated once and then served from the cache
+      Assert.assertFalse(configHelper.isStaleConfigs(sch, null));
+      Assert.assertEquals(1, calculations.get());
+      Assert.assertFalse(configHelper.isStaleConfigs(sch, null));
+      Assert.assertEquals(1, calculations.get());
+
+      // a new desired version invalidates the cached staleness
+      applyConfig(Collections.singletonMap("a", "b"), "flume-conf", "version2");
+      Assert.assertTrue(configHelper.isStaleConfigs(sch, null));
+      Assert.assertEquals(2, calculations.get());
+      Assert.assertTrue(configHelper.isStaleConfigs(sch, null));
+      Assert.assertEquals(2, calculations.get());
+
+      // as does the component reporting the new version
+      HostConfig hc2 = new HostConfig();
+      hc2.setDefaultVersionTag("version2");
+      schReturn.put("flume-conf", hc2);
+      Assert.assertFalse(configHelper.isStaleConfigs(sch, null));
+      Assert.assertEquals(3, calculations.get());
+
+      verify(sch);
+    }
   }
 
   public static class RunWithCustomModule {
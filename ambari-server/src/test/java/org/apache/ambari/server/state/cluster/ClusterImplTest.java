@@ -20,6 +20,7 @@ package org.apache.ambari.server.state.cluster;
 
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createMockBuilder;
+import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
@@ -30,9 +31,17 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.H2DatabaseCleaner;
@@ -42,15 +51,19 @@ import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Config;
 import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.Service;
 import org.apache.ambari.server.state.ServiceComponent;
 import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.ServiceComponentHostEvent;
 import org.apache.ambari.server.state.StackId;
+import org.easymock.IAnswer;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import com.google.inject.Guice;
@@ -326,4 +339,129 @@ public class ClusterImplTest {
     assertEquals(2, clusterSize);
 
   }
+
+  @Test
+  public void testAddConfigDoesNotBlockOtherConfigTypes() throws Exception {
+    // given
+    String clusterName = "TEST_CLUSTER_CONFIG_LOCKS";
+    clusters.addCluster(clusterName, new StackId("HDP-2.1.1"));
+    final Cluster cluster = clusters.getCluster(clusterName);
+
+    final CountDownLatch adding = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    // the tag of this configuration is only returned once the test releases
+    // it, which keeps the adding thread inside the lock of its type
+    final Config coreSite = createNiceMock(Config.class);
+    expect(coreSite.getType()).andReturn("core-site").anyTimes();
+    expect(coreSite.getTag()).andAnswer(new IAnswer<String>() {
+      @Override
+      public String answer() throws Throwable {
+        adding.countDown();
+        release.await();
+        return "version1";
+      }
+    }).anyTimes();
+
+    final Config hdfsSite = createConfig("hdfs-site", "version1");
+    replay(coreSite);
+
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        cluster.addConfig(coreSite);
+      }
+    };
+    writer.start();
+    assertTrue(adding.await(10, TimeUnit.SECONDS));
+
+    // when
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<Config> future = executor.submit(new Callable<Config>() {
+      @Override
+      public Config call() throws Exception {
+        cluster.addConfig(hdfsSite);
+        cluster.processServiceComponentHostEvents(
+            ArrayListMultimap.<String, ServiceComponentHostEvent>create());
+        return cluster.getConfig("hdfs-site", "version1");
+      }
+    });
+
+    // then
+    try {
+      assertEquals(hdfsSite, future.get(10, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+      writer.join();
+      executor.shutdownNow();
+    }
+
+    assertEquals(coreSite, cluster.getConfig("core-site", "version1"));
+  }
+
+  @Test
+  public void testConcurrentConfigReadsAndWrites() throws Exception {
+    // given
+    String clusterName = "TEST_CLUSTER_CONFIG_STRESS";
+    clusters.addCluster(clusterName, new StackId("HDP-2.1.1"));
+    final Cluster cluster = clusters.getCluster(clusterName);
+
+    final int types = 8;
+    final int configsPerType = 200;
+
+    List<Callable<Integer>> tasks = new ArrayList<>();
+    for (int i = 0; i < types; i++) {
+      final String type = "type-" + i;
+
+      // REST requests adding configurations
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          for (int j = 0; j < configsPerType; j++) {
+            cluster.addConfig(createConfig(type, "version" + j));
+          }
+          return configsPerType;
+        }
+      });
+
+      // heartbeats reading configurations and processing events
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          int reads = 0;
+          for (int j = 0; j < configsPerType; j++) {
+            cluster.getConfigsByType(type);
+            cluster.getAllConfigs();
+            cluster.processServiceComponentHostEvents(
+                ArrayListMultimap.<String, ServiceComponentHostEvent>create());
+            reads++;
+          }
+          return reads;
+        }
+      });
+    }
+
+    // when
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+    try {
+      for (Future<Integer> future : executor.invokeAll(tasks, 60, TimeUnit.SECONDS)) {
+        assertEquals(configsPerType, future.get().intValue());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // then
+    for (int i = 0; i < types; i++) {
+      assertEquals(configsPerType, cluster.getConfigsByType("type-" + i).size());
+    }
+  }
+
+  private Config createConfig(String type, String tag) {
+    Config config = createNiceMock(Config.class);
+    expect(config.getType()).andReturn(type).anyTimes();
+    expect(config.getTag()).andReturn(tag).anyTimes();
+    replay(config);
+    return config;
+  }
 }
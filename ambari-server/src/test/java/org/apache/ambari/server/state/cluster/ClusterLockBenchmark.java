@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.logging.LockFactory;
+import org.apache.ambari.server.logging.StripedReadWriteLock;
+
+/**
+ * Compares the throughput of configuration writes and heartbeat style reads
+ * when they are guarded the way {@link ClusterImpl} guards them, with the
+ * cluster global lock plus a lock striped by configuration type, against
+ * holding the global write lock for every write as before. Each writer adds
+ * configurations of its own type and holds the lock for a configurable time
+ * to stand in for slower work under the lock, while each reader looks up
+ * the configurations of a type and processes events under the global read
+ * lock. It is not run as part of the build; run it with
+ * <pre>
+ * java -cp ... org.apache.ambari.server.state.cluster.ClusterLockBenchmark [writers] [readers] [holdMicros] [seconds]
+ * </pre>
+ */
+public class ClusterLockBenchmark {
+
+  private static final int LOCK_STRIPES = 16;
+
+  public static void main(String[] args) throws Exception {
+    int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int readers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+    long holdMicros = args.length > 2 ? Long.parseLong(args[2]) : 50;
+    int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+    LockFactory lockFactory = new LockFactory(new Configuration(new Properties()));
+
+    System.out.println(String.format("%d writers, %d readers, %d us held per write",
+        writers, readers, holdMicros));
+    System.out.println(String.format("%-10s %14s %14s", "lock", "writes/s", "reads/s"));
+
+    // each mode runs twice, in turns, so that neither only runs on a cold JVM
+    for (boolean striped : new boolean[] { false, true, false, true }) {
+      ConfigLocks locks = new ConfigLocks(lockFactory, striped, holdMicros);
+      long[] operations = run(locks, writers, readers, seconds);
+      System.out.println(String.format("%-10s %14d %14d", striped ? "striped" : "global",
+          operations[0] / seconds, operations[1] / seconds));
+    }
+  }
+
+  private static long[] run(final ConfigLocks locks, int writers, int readers, int seconds)
+      throws InterruptedException {
+    final AtomicLong writes = new AtomicLong();
+    final AtomicLong reads = new AtomicLong();
+    final CountDownLatch start = new CountDownLatch(1);
+    final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds + 1);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < writers; i++) {
+      final String type = "type-" + i;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          await(start);
+          long tag = 0;
+          while (System.nanoTime() < end) {
+            locks.addConfig(type, "version" + tag++);
+            writes.incrementAndGet();
+          }
+        }
+      });
+    }
+    for (int i = 0; i < readers; i++) {
+      final String type = "type-" + (i % Math.max(writers, 1));
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          await(start);
+          while (System.nanoTime() < end) {
+            locks.getConfigsByType(type);
+            locks.processEvents();
+            reads.incrementAndGet();
+          }
+        }
+      });
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    start.countDown();
+
+    // the first second warms up
+    Thread.sleep(1000);
+    long writesBefore = writes.get();
+    long readsBefore = reads.get();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return new long[] { writes.get() - writesBefore, reads.get() - readsBefore };
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The configurations of a cluster guarded like in {@link ClusterImpl}, or
+   * with the global write lock for writes.
+   */
+  private static class ConfigLocks {
+    private final ReadWriteLock clusterGlobalLock;
+    private final StripedReadWriteLock configTypeLocks;
+    private final boolean striped;
+    private final long holdNanos;
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> allConfigs =
+        new ConcurrentHashMap<>();
+
+    private ConfigLocks(LockFactory lockFactory, boolean striped, long holdMicros) {
+      clusterGlobalLock = lockFactory.newReadWriteLock("clusterGlobalLock");
+      configTypeLocks = lockFactory.newStripedReadWriteLock("clusterConfigTypeLock", LOCK_STRIPES);
+      this.striped = striped;
+      holdNanos = TimeUnit.MICROSECONDS.toNanos(holdMicros);
+    }
+
+    private void addConfig(String type, String tag) {
+      Lock globalLock = striped ? clusterGlobalLock.readLock() : clusterGlobalLock.writeLock();
+      Lock configTypeLock = configTypeLocks.get(type).writeLock();
+      globalLock.lock();
+      if (striped) {
+        configTypeLock.lock();
+      }
+      try {
+        ConcurrentMap<String, String> configs = allConfigs.get(type);
+        if (configs == null) {
+          configs = new ConcurrentHashMap<>();
+          allConfigs.put(type, configs);
+        }
+        // keep the maps small, only the locking is measured
+        configs.clear();
+        configs.put(tag, tag);
+        hold();
+      } finally {
+        if (striped) {
+          configTypeLock.unlock();
+        }
+        globalLock.unlock();
+      }
+    }
+
+    private Map<String, String> getConfigsByType(String type) {
+      Lock configTypeLock = configTypeLocks.get(type).readLock();
+      clusterGlobalLock.readLock().lock();
+      if (striped) {
+        configTypeLock.lock();
+      }
+      try {
+        return allConfigs.get(type);
+      } finally {
+        if (striped) {
+          configTypeLock.unlock();
+        }
+        clusterGlobalLock.readLock().unlock();
+      }
+    }
+
+    private int processEvents() {
+      clusterGlobalLock.readLock().lock();
+      try {
+        return allConfigs.size();
+      } finally {
+        clusterGlobalLock.readLock().unlock();
+      }
+    }
+
+    private void hold() {
+      long end = System.nanoTime() + holdNanos;
+      while (System.nanoTime() < end) {
+        // busy wait, as work under the lock would
+      }
+    }
+  }
+}
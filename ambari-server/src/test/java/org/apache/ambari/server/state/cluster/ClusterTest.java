@@ -510,8 +510,10 @@ public class ClusterTest {
           hce.getComponentName());
 
       if (compInfo.isVersionAdvertised()) {
-        hce.setVersion(version);
-        hostComponentStateDAO.merge(hce);
+        // the host component keeps its version, so set it through the host
+        // component like the StackVersionListener does
+        cluster.getService(hce.getServiceName()).getServiceComponent(hce.getComponentName())
+            .getServiceComponentHost(hce.getHostName()).setVersion(version);
       }
 
       RepositoryVersionEntity rv = helper.getOrCreateRepositoryVersion(stackId, version);
@@ -1983,8 +1985,10 @@ public class ClusterTest {
           hce.getComponentName());
 
       if (compInfo.isVersionAdvertised()) {
-        hce.setVersion(v1);
-        hostComponentStateDAO.merge(hce);
+        // the host component keeps its version, so set it through the host
+        // component like the StackVersionListener does
+        cluster.getService(hce.getServiceName()).getServiceComponent(hce.getComponentName())
+            .getServiceComponentHost(hce.getHostName()).setVersion(v1);
         versionedComponentCount++;
       }
 
@@ -2084,8 +2088,10 @@ public class ClusterTest {
           hce.getComponentName());
 
       if (compInfo.isVersionAdvertised()) {
-        hce.setVersion(v2);
-        hostComponentStateDAO.merge(hce);
+        // the host component keeps its version, so set it through the host
+        // component like the StackVersionListener does
+        cluster.getService(hce.getServiceName()).getServiceComponent(hce.getComponentName())
+            .getServiceComponentHost(hce.getHostName()).setVersion(v2);
         versionedComponentCount++;
       }
 
@@ -2148,8 +2154,10 @@ public class ClusterTest {
       }
 
       if (compInfo.isVersionAdvertised()) {
-        hce.setVersion(v1);
-        hostComponentStateDAO.merge(hce);
+        // the host component keeps its version, so set it through the host
+        // component like the StackVersionListener does
+        cluster.getService(hce.getServiceName()).getServiceComponent(hce.getComponentName())
+            .getServiceComponentHost(hce.getHostName()).setVersion(v1);
         versionedComponentCount++;
       }
 
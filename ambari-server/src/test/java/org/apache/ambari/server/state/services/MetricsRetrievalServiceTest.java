@@ -19,6 +19,9 @@ package org.apache.ambari.server.state.services;
 
 import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
 
@@ -34,6 +37,7 @@ import org.apache.ambari.server.utils.SynchronousThreadPoolExecutor;
 import org.apache.commons.io.IOUtils;
 import org.easymock.EasyMock;
 import org.easymock.EasyMockSupport;
+import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -174,6 +178,104 @@ public class MetricsRetrievalServiceTest extends EasyMockSupport {
     verifyAll();
   }
 
+  /**
+   * Tests that the request TTL can be overridden for the endpoints of a
+   * component.
+   */
+  @Test
+  public void testRequestTTLComponentOverride() throws Exception {
+    Configuration configuration = m_injector.getInstance(Configuration.class);
+    configuration.setProperty(
+        Configuration.METRIC_RETRIEVAL_SERVICE_REQUEST_TTL_COMPONENTS.getKey(), "DATANODE:0");
+
+    // allow 10 calls for the overridden component and 1 for the other
+    StreamProvider streamProvider = createStrictMock(StreamProvider.class);
+    EasyMock.expect(streamProvider.readFrom(JMX_URL)).andAnswer(new IAnswer<InputStream>() {
+      @Override
+      public InputStream answer() throws Throwable {
+        return IOUtils.toInputStream("{ \"beans\": [] }");
+      }
+    }).times(10);
+
+    EasyMock.expect(streamProvider.readFrom(REST_URL)).andReturn(
+        IOUtils.toInputStream("{}")).once();
+
+    replayAll();
+
+    m_service.doStart();
+
+    // make the service synchronous
+    m_service.setThreadPoolExecutor(new SynchronousThreadPoolExecutor());
+
+    for (int i = 0; i < 10; i++) {
+      m_service.submitRequest(MetricSourceType.JMX, streamProvider, JMX_URL, "DATANODE");
+      m_service.submitRequest(MetricSourceType.REST, streamProvider, REST_URL, "NAMENODE");
+    }
+
+    verifyAll();
+  }
+
+  /**
+   * Tests that requests to an endpoint which is at its limit of concurrent
+   * requests are skipped.
+   */
+  @Test
+  public void testEndpointConcurrency() throws Exception {
+    final String url1 = JMX_URL + ":8080/jmx";
+    final String url2 = JMX_URL + ":8080/jmx?qry=1";
+    final String url3 = JMX_URL + ":8080/jmx?qry=2";
+
+    final CountDownLatch started = new CountDownLatch(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger skippedRequests = new AtomicInteger();
+
+    StreamProvider blockingProvider = createNiceMock(StreamProvider.class);
+    EasyMock.expect(blockingProvider.readFrom(EasyMock.anyObject(String.class))).andAnswer(
+        new IAnswer<InputStream>() {
+          @Override
+          public InputStream answer() throws Throwable {
+            started.countDown();
+            release.await();
+            return IOUtils.toInputStream("{ \"beans\": [] }");
+          }
+        }).anyTimes();
+
+    StreamProvider skippedProvider = createNiceMock(StreamProvider.class);
+    EasyMock.expect(skippedProvider.readFrom(EasyMock.anyObject(String.class))).andAnswer(
+        new IAnswer<InputStream>() {
+          @Override
+          public InputStream answer() throws Throwable {
+            skippedRequests.incrementAndGet();
+            return IOUtils.toInputStream("{ \"beans\": [] }");
+          }
+        }).anyTimes();
+
+    replayAll();
+
+    m_service.doStart();
+
+    // tie up both of the requests allowed for the endpoint
+    m_service.submitRequest(MetricSourceType.JMX, blockingProvider, url1);
+    m_service.submitRequest(MetricSourceType.JMX, blockingProvider, url2);
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    // the endpoint is busy, so this request must be skipped
+    m_service.submitRequest(MetricSourceType.JMX, skippedProvider, url3);
+
+    // once the endpoint is released, the URL can be requested
+    release.countDown();
+    long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (null == m_service.getCachedJMXMetric(url3) && System.currentTimeMillis() < timeout) {
+      m_service.submitRequest(MetricSourceType.JMX, blockingProvider, url3);
+      Thread.sleep(10);
+    }
+
+    Assert.assertNotNull(m_service.getCachedJMXMetric(url3));
+    Assert.assertEquals(0, skippedRequests.get());
+
+    m_service.doStop();
+  }
+
   /**
    *
    */
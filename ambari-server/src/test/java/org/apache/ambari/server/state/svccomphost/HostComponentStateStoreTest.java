@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.svccomphost;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.State;
+import org.junit.Test;
+
+/**
+ * Tests {@link HostComponentStateStore}.
+ */
+public class HostComponentStateStoreTest {
+
+  @Test
+  public void testAddAndSet() throws Exception {
+    HostComponentStateStore store = new HostComponentStateStore();
+    ServiceComponentHost sch = createHostComponent(1L, "HDFS", "DATANODE", "h1",
+        State.INSTALLED, "2.5.0.0-1");
+
+    store.add(sch);
+    assertTrue(store.contains(sch));
+    assertEquals(State.STARTED, store.getDesiredState(sch));
+    assertEquals(MaintenanceState.OFF, store.getMaintenanceState(sch));
+    assertEquals("2.5.0.0-1", store.getVersion(sch));
+
+    store.setState(sch, State.STARTED);
+    store.setDesiredState(sch, State.INSTALLED);
+    store.setMaintenanceState(sch, MaintenanceState.ON);
+    store.setVersion(sch, "2.6.0.0-1");
+
+    assertEquals(Collections.singletonMap(State.STARTED, 1),
+        store.getStateCounts(1L, "HDFS", "DATANODE"));
+    assertEquals(State.INSTALLED, store.getDesiredState(sch));
+    assertEquals(MaintenanceState.ON, store.getMaintenanceState(sch));
+    assertEquals("2.6.0.0-1", store.getVersion(sch));
+
+    // values of unknown host components are not stored
+    ServiceComponentHost unknown = createHostComponent(1L, "HDFS", "DATANODE", "h2",
+        State.INSTALLED, "2.5.0.0-1");
+    store.setDesiredState(unknown, State.STARTED);
+    assertFalse(store.contains(unknown));
+    assertNull(store.getDesiredState(unknown));
+    assertNull(store.getVersion(unknown));
+  }
+
+  @Test
+  public void testStateCounts() throws Exception {
+    HostComponentStateStore store = new HostComponentStateStore();
+
+    // more than the initial capacity
+    for (int i = 0; i < 40; i++) {
+      store.add(createHostComponent(1L, "HDFS", "DATANODE", "h" + i,
+          i % 4 == 0 ? State.INSTALLED : State.STARTED, "2.5.0.0-1"));
+    }
+
+    ServiceComponentHost namenode = createHostComponent(1L, "HDFS", "NAMENODE", "h0",
+        State.INSTALL_FAILED, "2.5.0.0-1");
+    ServiceComponentHost otherCluster = createHostComponent(2L, "HDFS", "DATANODE", "h0",
+        State.INSTALLED, "2.5.0.0-1");
+    store.add(namenode);
+    store.add(otherCluster);
+
+    assertEquals(42, store.size());
+
+    Map<State, Integer> counts = store.getStateCounts(1L, "HDFS", "DATANODE");
+    assertEquals(2, counts.size());
+    assertEquals(10, counts.get(State.INSTALLED).intValue());
+    assertEquals(30, counts.get(State.STARTED).intValue());
+
+    assertEquals(Collections.singletonMap(State.INSTALL_FAILED, 1),
+        store.getStateCounts(1L, "HDFS", "NAMENODE"));
+
+    assertEquals(Collections.singletonMap(State.INSTALLED, 1),
+        store.getStateCounts(2L, "HDFS", "DATANODE"));
+    assertTrue(store.getStateCounts(1L, "YARN", "NODEMANAGER").isEmpty());
+
+    // transitions move the host component between the counts
+    store.setState(namenode, State.INSTALLED);
+    assertEquals(Collections.singletonMap(State.INSTALLED, 1),
+        store.getStateCounts(1L, "HDFS", "NAMENODE"));
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    HostComponentStateStore store = new HostComponentStateStore();
+    ServiceComponentHost datanode = createHostComponent(1L, "HDFS", "DATANODE", "h1",
+        State.STARTED, "2.5.0.0-1");
+    ServiceComponentHost namenode = createHostComponent(1L, "HDFS", "NAMENODE", "h1",
+        State.STARTED, "2.5.0.0-1");
+    ServiceComponentHost nodemanager = createHostComponent(1L, "YARN", "NODEMANAGER", "h1",
+        State.INSTALLED, "2.5.0.0-1");
+
+    store.add(datanode);
+    store.add(namenode);
+    store.add(nodemanager);
+
+    store.remove(datanode);
+    assertFalse(store.contains(datanode));
+    assertEquals(2, store.size());
+    assertTrue(store.getStateCounts(1L, "HDFS", "DATANODE").isEmpty());
+
+    // the rows after the removed one keep their values
+    store.setState(nodemanager, State.STARTED);
+    assertEquals(Collections.singletonMap(State.STARTED, 1),
+        store.getStateCounts(1L, "HDFS", "NAMENODE"));
+    assertEquals(Collections.singletonMap(State.STARTED, 1),
+        store.getStateCounts(1L, "YARN", "NODEMANAGER"));
+
+    store.removeService(1L, "HDFS");
+    assertFalse(store.contains(namenode));
+    assertTrue(store.contains(nodemanager));
+    assertEquals(1, store.size());
+    assertTrue(store.getStateCounts(1L, "HDFS", "NAMENODE").isEmpty());
+  }
+
+  @Test
+  public void testUpdateVersions() throws Exception {
+    HostComponentStateStore store = new HostComponentStateStore();
+    ServiceComponentHost current = createHostComponent(1L, "HDFS", "DATANODE", "h1",
+        State.STARTED, "2.5.0.0-1");
+    ServiceComponentHost unknown = createHostComponent(1L, "HDFS", "DATANODE", "h2",
+        State.STARTED, State.UNKNOWN.name());
+    ServiceComponentHost missing = createHostComponent(1L, "HDFS", "DATANODE", "h3",
+        State.STARTED, null);
+
+    store.add(current);
+    store.add(unknown);
+    store.add(missing);
+
+    store.updateVersions("2.6.0.0-1");
+
+    assertEquals("2.6.0.0-1", store.getVersion(current));
+    assertEquals(State.UNKNOWN.name(), store.getVersion(unknown));
+    assertNull(store.getVersion(missing));
+    assertEquals(Collections.singletonMap(State.STARTED, 3),
+        store.getStateCounts(1L, "HDFS", "DATANODE"));
+  }
+
+  private static ServiceComponentHost createHostComponent(long clusterId, String serviceName,
+      String componentName, String hostName, State state, String version) {
+    ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+    expect(sch.getClusterId()).andReturn(clusterId).anyTimes();
+    expect(sch.getServiceName()).andReturn(serviceName).anyTimes();
+    expect(sch.getServiceComponentName()).andReturn(componentName).anyTimes();
+    expect(sch.getHostName()).andReturn(hostName).anyTimes();
+    expect(sch.getState()).andReturn(state).anyTimes();
+    expect(sch.getDesiredState()).andReturn(State.STARTED).anyTimes();
+    expect(sch.getMaintenanceState()).andReturn(MaintenanceState.OFF).anyTimes();
+    expect(sch.getVersion()).andReturn(version).anyTimes();
+    replay(sch);
+    return sch;
+  }
+}
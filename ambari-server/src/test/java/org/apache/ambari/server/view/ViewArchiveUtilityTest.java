@@ -18,15 +18,25 @@
 
 package org.apache.ambari.server.view;
 
+import java.io.File;
 import java.io.InputStream;
 
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
 
 /**
  * ViewArchiveUtility tests.
  */
 public class ViewArchiveUtilityTest {
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void testValidateConfig() throws Exception {
     ViewArchiveUtility utility = new ViewArchiveUtility();
@@ -35,4 +45,29 @@ public class ViewArchiveUtilityTest {
 
     utility.validateConfig(configStream);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testArchiveExtracted() throws Exception {
+    ViewArchiveUtility utility = new ViewArchiveUtility();
+
+    File archiveFile = temporaryFolder.newFile("view.jar");
+    File archiveDir = temporaryFolder.newFolder("view");
+    Files.write("content", archiveFile, Charsets.UTF_8);
+
+    // never extracted
+    Assert.assertFalse(utility.isArchiveExtracted(archiveFile, archiveDir));
+
+    utility.setArchiveExtracted(archiveFile, archiveDir);
+    Assert.assertTrue(utility.isArchiveExtracted(archiveFile, archiveDir));
+
+    // touched, but unchanged
+    Assert.assertTrue(archiveFile.setLastModified(archiveFile.lastModified() - 10000L));
+    Assert.assertTrue(utility.isArchiveExtracted(archiveFile, archiveDir));
+
+    // replaced with an older archive of the same size
+    long lastModified = archiveFile.lastModified() - 10000L;
+    Files.write("changed", archiveFile, Charsets.UTF_8);
+    Assert.assertTrue(archiveFile.setLastModified(lastModified));
+    Assert.assertFalse(utility.isArchiveExtracted(archiveFile, archiveDir));
+  }
+}
@@ -289,5 +289,15 @@ public class ViewExtractorTest {
     public JarInputStream getJarFileStream(File file) throws IOException {
       return jarFiles.get(file);
     }
+
+    @Override
+    public boolean isArchiveExtracted(File archiveFile, File archiveDir) {
+      return true;
+    }
+
+    @Override
+    public void setArchiveExtracted(File archiveFile, File archiveDir) {
+      // do nothing...
+    }
   }
 }
@@ -1778,6 +1778,16 @@ public class ViewRegistryTest {
       return jarFiles.get(file);
     }
 
+    @Override
+    public boolean isArchiveExtracted(File archiveFile, File archiveDir) {
+      return true;
+    }
+
+    @Override
+    public void setArchiveExtracted(File archiveFile, File archiveDir) {
+      // do nothing...
+    }
+
     public boolean isDeploymentFailed() {
       return deploymentFailed;
     }